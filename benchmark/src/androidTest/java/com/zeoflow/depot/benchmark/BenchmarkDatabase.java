@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.benchmark;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.zeoflow.depot.Database;
+import com.zeoflow.depot.Depot;
+import com.zeoflow.depot.DepotDatabase;
+
+@Database(entities = {Item.class}, version = 1, exportSchema = false)
+public abstract class BenchmarkDatabase extends DepotDatabase {
+    private static final String NAME = "benchmark.db";
+
+    public abstract ItemDao itemDao();
+
+    /**
+     * Returns a builder for a fresh WAL database file, so every benchmark starts from an empty
+     * database.
+     */
+    @NonNull
+    static DepotDatabase.Builder<BenchmarkDatabase> builder() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(NAME);
+        return Depot.databaseBuilder(context, BenchmarkDatabase.class, NAME)
+                .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.benchmark;
+
+import static org.junit.Assert.assertEquals;
+
+import android.database.Cursor;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.filters.LargeTest;
+
+import com.zeoflow.depot.util.CursorUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures {@link CursorUtil} column lookups on a cursor of the framework SQLite, the lookup
+ * every generated query does once per result column.
+ */
+@LargeTest
+@RunWith(Parameterized.class)
+public class CursorUtilBenchmark {
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final int mColumnCount;
+    private BenchmarkDatabase mDb;
+    private Cursor mCursor;
+    private String mFirstColumn;
+    private String mLastColumn;
+
+    public CursorUtilBenchmark(int columnCount) {
+        mColumnCount = columnCount;
+    }
+
+    @Parameterized.Parameters(name = "columns={0}")
+    public static List<Object[]> parameters() {
+        return Arrays.asList(new Object[][]{{4}, {16}, {64}});
+    }
+
+    @Before
+    public void setUp() {
+        mDb = BenchmarkDatabase.builder().build();
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < mColumnCount; i++) {
+            sql.append(i == 0 ? "" : ", ").append(i).append(" AS column").append(i);
+        }
+        mCursor = mDb.query(sql.toString(), null);
+        mFirstColumn = "column0";
+        mLastColumn = "column" + (mColumnCount - 1);
+    }
+
+    @After
+    public void tearDown() {
+        mCursor.close();
+        mDb.close();
+    }
+
+    @Test
+    public void getColumnIndexOrThrow_first() {
+        BenchmarkState state = benchmarkRule.getState();
+        int index = -1;
+        while (state.keepRunning()) {
+            index = CursorUtil.getColumnIndexOrThrow(mCursor, mFirstColumn);
+        }
+        assertEquals(0, index);
+    }
+
+    @Test
+    public void getColumnIndexOrThrow_last() {
+        BenchmarkState state = benchmarkRule.getState();
+        int index = -1;
+        while (state.keepRunning()) {
+            index = CursorUtil.getColumnIndexOrThrow(mCursor, mLastColumn);
+        }
+        assertEquals(mColumnCount - 1, index);
+    }
+
+    @Test
+    public void getColumnIndex_missing() {
+        BenchmarkState state = benchmarkRule.getState();
+        int index = 0;
+        while (state.keepRunning()) {
+            // a miss retries with the name in backticks before giving up
+            index = CursorUtil.getColumnIndex(mCursor, "missing");
+        }
+        assertEquals(-1, index);
+    }
+}
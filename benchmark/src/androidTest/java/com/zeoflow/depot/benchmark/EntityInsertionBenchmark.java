@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.filters.LargeTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures {@code EntityInsertionAdapter} through a generated {@code @Insert} of a list, which
+ * binds and executes one statement per entity inside a single transaction.
+ */
+@LargeTest
+@RunWith(Parameterized.class)
+public class EntityInsertionBenchmark {
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final int mBatchSize;
+    private BenchmarkDatabase mDb;
+    private List<Item> mItems;
+
+    public EntityInsertionBenchmark(int batchSize) {
+        mBatchSize = batchSize;
+    }
+
+    @Parameterized.Parameters(name = "batchSize={0}")
+    public static List<Object[]> parameters() {
+        return Arrays.asList(new Object[][]{{1}, {100}, {1000}});
+    }
+
+    @Before
+    public void setUp() {
+        mDb = BenchmarkDatabase.builder().build();
+        mItems = Item.create(mBatchSize);
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+    }
+
+    @Test
+    public void insertAll() {
+        ItemDao dao = mDb.itemDao();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            // the ids repeat, REPLACE keeps the table at the same size for every iteration
+            dao.insertAll(mItems);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.benchmark;
+
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.filters.LargeTest;
+
+import com.zeoflow.depot.InvalidationTracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures a single row write followed by the {@link InvalidationTracker} refresh and the
+ * notification of its observers.
+ * <p>
+ * The query executor runs tasks inline, so the refresh that the write schedules when its
+ * transaction ends is part of the measured time.
+ */
+@LargeTest
+@RunWith(Parameterized.class)
+public class InvalidationTrackerBenchmark {
+    private static final String[] TABLES = {"item"};
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final int mObserverCount;
+    private final boolean mKeyed;
+    private final AtomicLong mNotifications = new AtomicLong();
+    private final List<InvalidationTracker.Observer> mObservers = new ArrayList<>();
+    private BenchmarkDatabase mDb;
+
+    public InvalidationTrackerBenchmark(int observerCount, boolean keyed) {
+        mObserverCount = observerCount;
+        mKeyed = keyed;
+    }
+
+    @Parameterized.Parameters(name = "observers={0},keyed={1}")
+    public static List<Object[]> parameters() {
+        List<Object[]> parameters = new ArrayList<>();
+        for (int observerCount : new int[]{1, 100, 1000}) {
+            parameters.add(new Object[]{observerCount, false});
+            parameters.add(new Object[]{observerCount, true});
+        }
+        return parameters;
+    }
+
+    @Before
+    public void setUp() {
+        mDb = BenchmarkDatabase.builder()
+                .setQueryExecutor(Runnable::run)
+                .build();
+        mDb.itemDao().insertAll(Item.create(mObserverCount));
+        InvalidationTracker tracker = mDb.getInvalidationTracker();
+        for (int i = 1; i <= mObserverCount; i++) {
+            // a keyed observer only hears about its own row, so one of them is notified per write
+            InvalidationTracker.Observer observer = mKeyed
+                    ? new CountingObserver(new long[]{i})
+                    : new CountingObserver();
+            tracker.addObserver(observer);
+            mObservers.add(observer);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (InvalidationTracker.Observer observer : mObservers) {
+            mDb.getInvalidationTracker().removeObserver(observer);
+        }
+        mDb.close();
+    }
+
+    @Test
+    public void writeAndNotify() {
+        ItemDao dao = mDb.itemDao();
+        Item item = new Item(1, "item 1", 0);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            item.value++;
+            dao.insert(item);
+        }
+        assertTrue("observers were never notified", mNotifications.get() > 0);
+    }
+
+    private class CountingObserver extends InvalidationTracker.Observer {
+        CountingObserver() {
+            super(TABLES);
+        }
+
+        CountingObserver(@NonNull long[] rowIds) {
+            super(TABLES, TABLES[0], rowIds);
+        }
+
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            mNotifications.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.benchmark;
+
+import androidx.annotation.NonNull;
+
+import com.zeoflow.depot.Entity;
+import com.zeoflow.depot.PrimaryKey;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The row written and read by the benchmarks.
+ */
+@Entity(tableName = "item")
+public class Item {
+    @PrimaryKey
+    public long id;
+
+    @NonNull
+    public String name;
+
+    public long value;
+
+    public Item(long id, @NonNull String name, long value) {
+        this.id = id;
+        this.name = name;
+        this.value = value;
+    }
+
+    /**
+     * Creates the items with ids {@code 1..count}.
+     */
+    @NonNull
+    static List<Item> create(int count) {
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            items.add(new Item(i, "item " + i, i));
+        }
+        return items;
+    }
+}
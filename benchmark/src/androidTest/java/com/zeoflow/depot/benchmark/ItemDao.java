@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.benchmark;
+
+import androidx.paging.DataSource;
+
+import com.zeoflow.depot.Dao;
+import com.zeoflow.depot.Insert;
+import com.zeoflow.depot.OnConflictStrategy;
+import com.zeoflow.depot.Query;
+
+import java.util.List;
+
+@Dao
+public interface ItemDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(Item item);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<Item> items);
+
+    @Query("SELECT * FROM item ORDER BY id")
+    DataSource.Factory<Integer, Item> pagedById();
+
+    @Query("SELECT COUNT(*) FROM item")
+    int count();
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.benchmark;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.filters.LargeTest;
+
+import com.zeoflow.depot.paging.LimitOffsetDataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures {@link LimitOffsetDataSource} page loads at increasing offsets. SQLite has to step
+ * over every skipped row, so the cost of a page grows with its depth.
+ */
+@LargeTest
+@RunWith(Parameterized.class)
+public class LimitOffsetPagingBenchmark {
+    private static final int PAGE_SIZE = 50;
+    private static final int ROW_COUNT = 50_000;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final int mDepth;
+    private BenchmarkDatabase mDb;
+    private LimitOffsetDataSource<Item> mDataSource;
+
+    public LimitOffsetPagingBenchmark(int depth) {
+        mDepth = depth;
+    }
+
+    @Parameterized.Parameters(name = "depth={0}")
+    public static List<Object[]> parameters() {
+        return Arrays.asList(new Object[][]{{0}, {1_000}, {10_000}, {ROW_COUNT - PAGE_SIZE}});
+    }
+
+    @Before
+    public void setUp() {
+        mDb = BenchmarkDatabase.builder().build();
+        mDb.itemDao().insertAll(Item.create(ROW_COUNT));
+        mDataSource = (LimitOffsetDataSource<Item>) mDb.itemDao().pagedById().create();
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+    }
+
+    @Test
+    public void loadRange() {
+        BenchmarkState state = benchmarkRule.getState();
+        List<Item> page = null;
+        while (state.keepRunning()) {
+            page = mDataSource.loadRange(mDepth, PAGE_SIZE);
+        }
+        assertEquals(PAGE_SIZE, page.size());
+    }
+}
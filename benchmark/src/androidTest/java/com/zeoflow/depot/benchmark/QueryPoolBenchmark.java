@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.filters.LargeTest;
+
+import com.zeoflow.depot.DepotSQLiteQuery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures {@link DepotSQLiteQuery#acquire(String, int)} and {@link DepotSQLiteQuery#release()}
+ * while other threads use the same pool.
+ */
+@LargeTest
+@RunWith(Parameterized.class)
+public class QueryPoolBenchmark {
+    private static final String SQL = "SELECT * FROM item WHERE id = ?";
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final int mContendingThreads;
+    private final List<Thread> mThreads = new ArrayList<>();
+    private volatile boolean mRunning;
+
+    public QueryPoolBenchmark(int contendingThreads) {
+        mContendingThreads = contendingThreads;
+    }
+
+    @Parameterized.Parameters(name = "contendingThreads={0}")
+    public static List<Object[]> parameters() {
+        return Arrays.asList(new Object[][]{{0}, {1}, {3}});
+    }
+
+    @Before
+    public void setUp() {
+        mRunning = true;
+        for (int i = 0; i < mContendingThreads; i++) {
+            Thread thread = new Thread(() -> {
+                while (mRunning) {
+                    acquireAndRelease(1);
+                }
+            }, "QueryPoolBenchmark-" + i);
+            thread.start();
+            mThreads.add(thread);
+        }
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        mRunning = false;
+        for (Thread thread : mThreads) {
+            thread.join();
+        }
+    }
+
+    @Test
+    public void acquireAndRelease() {
+        BenchmarkState state = benchmarkRule.getState();
+        long id = 0;
+        while (state.keepRunning()) {
+            acquireAndRelease(++id);
+        }
+    }
+
+    private static void acquireAndRelease(long id) {
+        DepotSQLiteQuery query = DepotSQLiteQuery.acquire(SQL, 1);
+        query.bindLong(1, id);
+        query.release();
+    }
+}
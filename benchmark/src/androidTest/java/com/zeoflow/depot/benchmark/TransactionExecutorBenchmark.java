@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.filters.LargeTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures the throughput of the database's transaction executor: the time to run a burst of
+ * tasks submitted at once, with and without a write in each of them.
+ */
+@LargeTest
+@RunWith(Parameterized.class)
+public class TransactionExecutorBenchmark {
+    private static final int BURST_SIZE = 100;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final int mMaxTransactionsPerHandoff;
+    private ExecutorService mDelegate;
+    private BenchmarkDatabase mDb;
+
+    public TransactionExecutorBenchmark(int maxTransactionsPerHandoff) {
+        mMaxTransactionsPerHandoff = maxTransactionsPerHandoff;
+    }
+
+    @Parameterized.Parameters(name = "maxTransactionsPerHandoff={0}")
+    public static List<Object[]> parameters() {
+        return Arrays.asList(new Object[][]{{1}, {16}});
+    }
+
+    @Before
+    public void setUp() {
+        mDelegate = Executors.newFixedThreadPool(4);
+        mDb = BenchmarkDatabase.builder()
+                .setQueryExecutor(mDelegate)
+                .setMaxTransactionsPerHandoff(mMaxTransactionsPerHandoff)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+        mDelegate.shutdown();
+    }
+
+    @Test
+    public void emptyTasks() throws InterruptedException {
+        Executor executor = mDb.getTransactionExecutor();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            CountDownLatch done = new CountDownLatch(BURST_SIZE);
+            for (int i = 0; i < BURST_SIZE; i++) {
+                executor.execute(done::countDown);
+            }
+            done.await();
+        }
+    }
+
+    @Test
+    public void singleRowTransactions() throws InterruptedException {
+        Executor executor = mDb.getTransactionExecutor();
+        ItemDao dao = mDb.itemDao();
+        Item item = new Item(1, "item 1", 0);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            CountDownLatch done = new CountDownLatch(BURST_SIZE);
+            for (int i = 0; i < BURST_SIZE; i++) {
+                executor.execute(() -> {
+                    dao.insert(item);
+                    done.countDown();
+                });
+            }
+            done.await();
+        }
+    }
+}
@@ -88,10 +88,32 @@ object DepotTypeNames {
         ClassName.get("$DEPOT_PACKAGE.util", "ViewInfo")
     val LIMIT_OFFSET_DATA_SOURCE: ClassName =
         ClassName.get("$DEPOT_PACKAGE.paging", "LimitOffsetDataSource")
+    val KEYSET_DATA_SOURCE: ClassName =
+        ClassName.get("$DEPOT_PACKAGE.paging", "KeysetDataSource")
     val DB_UTIL: ClassName =
         ClassName.get("$DEPOT_PACKAGE.util", "DBUtil")
     val CURSOR_UTIL: ClassName =
         ClassName.get("$DEPOT_PACKAGE.util", "CursorUtil")
+    val CURSOR_ITERATOR: ClassName =
+        ClassName.get("$DEPOT_PACKAGE.util", "CursorIterator")
+    val CLOSEABLE_ITERATOR: ClassName =
+        ClassName.get(DEPOT_PACKAGE, "CloseableIterator")
+    val ENTITY_CACHE: ClassName =
+        ClassName.get(DEPOT_PACKAGE, "EntityCache")
+    val TABLE_MIRROR: ClassName =
+        ClassName.get(DEPOT_PACKAGE, "TableMirror")
+    val TABLE_MIRROR_ROW_READER: ClassName =
+        ClassName.get(DEPOT_PACKAGE, "TableMirror", "RowReader")
+    val COLUMN_INFO: ClassName =
+        ClassName.get(DEPOT_PACKAGE, "ColumnInfo")
+    val LIST_DIFF: ClassName =
+        ClassName.get(DEPOT_PACKAGE, "ListDiff")
+    val CHANGE_SUPPRESSING_CALLABLE: ClassName =
+        ClassName.get(DEPOT_PACKAGE, "ChangeSuppressingCallable")
+    val DAO_METHOD_METRICS: ClassName =
+        ClassName.get(DEPOT_PACKAGE, "DaoMethodMetrics")
+    val DAO_METHOD_METRICS_CALL: ClassName =
+        ClassName.get(DEPOT_PACKAGE, "DaoMethodMetrics", "Call")
     val MIGRATION: ClassName = ClassName.get("$DEPOT_PACKAGE.migration", "Migration")
     val AUTO_MIGRATION_SPEC: ClassName = ClassName.get(
         "$DEPOT_PACKAGE.migration",
@@ -137,6 +159,8 @@ object CommonTypeNames {
     val STRING = ClassName.get("java.lang", "String")
     val INTEGER = ClassName.get("java.lang", "Integer")
     val OPTIONAL = ClassName.get("java.util", "Optional")
+    val ITERATOR = ClassName.get("java.util", "Iterator")
+    val STREAM = ClassName.get("java.util.stream", "Stream")
     val ILLEGAL_ARG_EXCEPTION = ClassName.get(
         "java.lang", "IllegalArgumentException"
     )
@@ -215,9 +239,10 @@ fun TypeName.defaultValue(): String {
 
 fun CallableTypeSpecBuilder(
     parameterTypeName: TypeName,
+    baseTypeName: ClassName = Callable::class.typeName,
     callBody: MethodSpec.Builder.() -> Unit
 ) = TypeSpec.anonymousClassBuilder("").apply {
-    superclass(ParameterizedTypeName.get(Callable::class.typeName, parameterTypeName))
+    superclass(ParameterizedTypeName.get(baseTypeName, parameterTypeName))
     addMethod(
         MethodSpec.methodBuilder("call").apply {
             returns(parameterTypeName)
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.processor
+
+import com.zeoflow.depot.compiler.processing.XTypeElement
+import com.zeoflow.depot.compiler.processing.isArray
+import com.zeoflow.depot.parser.ParsedQuery
+import com.zeoflow.depot.vo.ColumnBatch
+import com.zeoflow.depot.vo.ColumnBatchColumn
+
+/**
+ * Processes a class annotated with @ColumnBatch that is returned from a @Query method.
+ */
+class ColumnBatchProcessor(
+    val context: Context,
+    val element: XTypeElement,
+    val query: ParsedQuery
+) {
+    fun process(): ColumnBatch {
+        context.checker.check(
+            element.getConstructors().any { it.parameters.isEmpty() && !it.isPrivate() },
+            element,
+            ProcessorErrors.COLUMN_BATCH_WITHOUT_EMPTY_CONSTRUCTOR
+        )
+        val columns = element.getAllFieldsIncludingPrivateSupers().filterNot {
+            it.isStatic() || it.isTransient() || it.hasAnnotation(com.zeoflow.depot.Ignore::class)
+        }.mapNotNull { field ->
+            val type = field.type
+            val kind = if (type.isArray()) {
+                ColumnBatchColumn.Kind.fromComponentType(type.componentType.typeName)
+            } else {
+                null
+            }
+            if (kind == null) {
+                context.logger.e(field, ProcessorErrors.COLUMN_BATCH_INVALID_FIELD_TYPE)
+                return@mapNotNull null
+            }
+            context.checker.check(
+                !field.isPrivate() && !field.isFinal(),
+                field,
+                ProcessorErrors.COLUMN_BATCH_FIELD_NOT_ASSIGNABLE
+            )
+            val columnInfo = field.getAnnotation(com.zeoflow.depot.ColumnInfo::class)?.value
+            val columnName = if (columnInfo != null &&
+                columnInfo.name != com.zeoflow.depot.ColumnInfo.INHERIT_FIELD_NAME
+            ) {
+                columnInfo.name
+            } else {
+                field.name
+            }
+            ColumnBatchColumn(element = field, columnName = columnName, kind = kind)
+        }
+        val resultColumns = query.resultInfo?.takeIf { it.error == null }?.columns?.map { it.name }
+        if (resultColumns != null) {
+            columns.filterNot { it.columnName in resultColumns }.forEach {
+                context.logger.e(
+                    it.element,
+                    ProcessorErrors.columnBatchColumnNotInResult(it.columnName, resultColumns)
+                )
+            }
+        }
+        return ColumnBatch(element = element, columns = columns)
+    }
+}
@@ -178,7 +178,8 @@ class Context private constructor(
 
     enum class BooleanProcessorOptions(val argName: String, private val defaultValue: Boolean) {
         INCREMENTAL("com.zeoflow.depot.incremental", true),
-        EXPAND_PROJECTION("com.zeoflow.depot.expandProjection", false);
+        EXPAND_PROJECTION("com.zeoflow.depot.expandProjection", false),
+        DAO_METRICS("com.zeoflow.depot.daoMetrics", true);
 
         /**
          * Returns the value of this option passed through the [XProcessingEnv]. If the value
@@ -157,6 +157,41 @@ object ProcessorErrors {
         " possibility of inconsistent results between the POJO and its relations. See " +
         TRANSACTION_REFERENCE_DOCS + " for details."
 
+    val STREAMING_QUERY_WITH_RELATION = "A method that returns a CloseableIterator or a Stream" +
+        " maps rows lazily and cannot return a POJO with a @Relation. Return a List instead."
+
+    val STREAMING_QUERY_WITH_ITERATOR = "A method cannot return an Iterator since the caller" +
+        " would have no way to close its cursor if it stops early. Return a CloseableIterator" +
+        " or a Stream instead."
+
+    val DIFF_QUERY_NOT_SUPPORTED = "A method that returns a LiveData of a ListDiff must" +
+        " select every column of a single entity, `SELECT * FROM table ...`, and return that" +
+        " entity. The entity must have an INTEGER primary key, which keys the rows of the diffs," +
+        " and the database verifier must be available."
+
+    val STREAMING_QUERY_IN_TRANSACTION = "A method that returns an Iterator or a Stream cannot be" +
+        " annotated with @Transaction because the rows are read after the method returns."
+
+    val COLUMN_BATCH_WITHOUT_EMPTY_CONSTRUCTOR = "A class annotated with @ColumnBatch must have" +
+        " a non-private constructor without parameters."
+
+    val COLUMN_BATCH_INVALID_FIELD_TYPE = "Fields of a @ColumnBatch class must be one of long[]," +
+        " int[], short[], double[], float[], boolean[], String[] or byte[][]. Use @Ignore to" +
+        " skip other fields."
+
+    val COLUMN_BATCH_FIELD_NOT_ASSIGNABLE = "Fields of a @ColumnBatch class must not be private or" +
+        " final because the generated code assigns them directly."
+
+    fun columnBatchColumnNotInResult(columnName: String, resultColumns: List<String>): String {
+        return "The query does not return a column named $columnName. Available columns:" +
+            " ${resultColumns.joinToString(", ")}."
+    }
+
+    val CACHE_RESULT_WITHOUT_TABLES = "A @CacheResult query must read at least one table so" +
+        " that its cached result can be evicted when the table changes."
+
+    val CACHE_RESULT_ON_WRITE_QUERY = "Only SELECT queries can be annotated with @CacheResult."
+
     val CANNOT_FIND_ENTITY_FOR_SHORTCUT_QUERY_PARAMETER = "Type of the parameter must be a class " +
         "annotated with @Entity or a collection/array of it."
 
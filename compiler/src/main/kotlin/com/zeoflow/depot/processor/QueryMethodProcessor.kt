@@ -23,6 +23,7 @@ import com.zeoflow.depot.compiler.processing.XMethodElement
 import com.zeoflow.depot.compiler.processing.XType
 import com.zeoflow.depot.ext.isNotError
 import com.zeoflow.depot.solver.query.result.PojoRowAdapter
+import com.zeoflow.depot.solver.query.result.StreamingQueryResultBinder
 import com.zeoflow.depot.verifier.DatabaseVerificationErrors
 import com.zeoflow.depot.verifier.DatabaseVerifier
 import com.zeoflow.depot.vo.QueryMethod
@@ -181,6 +182,11 @@ private class InternalQueryProcessor(
             executableElement,
             ProcessorErrors.cannotFindPreparedQueryResultAdapter(returnType.typeName, query.type)
         )
+        context.checker.check(
+            !executableElement.hasAnnotation(com.zeoflow.depot.CacheResult::class),
+            executableElement,
+            ProcessorErrors.CACHE_RESULT_ON_WRITE_QUERY
+        )
 
         val parameters = delegate.extractQueryParams(query)
         return WriteQueryMethod(
@@ -207,6 +213,11 @@ private class InternalQueryProcessor(
         )
 
         val inTransaction = executableElement.hasAnnotation(com.zeoflow.depot.Transaction::class)
+        context.checker.check(
+            !inTransaction || resultBinder !is StreamingQueryResultBinder,
+            executableElement,
+            ProcessorErrors.STREAMING_QUERY_IN_TRANSACTION
+        )
         if (query.type == QueryType.SELECT && !inTransaction) {
             // put a warning if it is has relations and not annotated w/ transaction
             if (rowAdapter is PojoRowAdapter && rowAdapter.relationCollectors.isNotEmpty()) {
@@ -217,6 +228,13 @@ private class InternalQueryProcessor(
             }
         }
 
+        val cacheResult = executableElement.hasAnnotation(com.zeoflow.depot.CacheResult::class)
+        context.checker.check(
+            !cacheResult || query.tables.isNotEmpty(),
+            executableElement,
+            ProcessorErrors.CACHE_RESULT_WITHOUT_TABLES
+        )
+
         val parameters = delegate.extractQueryParams(query)
 
         return ReadQueryMethod(
@@ -226,7 +244,8 @@ private class InternalQueryProcessor(
             returnType = returnType,
             parameters = parameters,
             inTransaction = inTransaction,
-            queryResultBinder = resultBinder
+            queryResultBinder = resultBinder,
+            resultCacheTables = if (cacheResult) query.tables.map { it.name } else null
         )
     }
 
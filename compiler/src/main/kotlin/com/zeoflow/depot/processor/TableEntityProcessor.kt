@@ -157,7 +157,9 @@ class TableEntityProcessor internal constructor(
             primaryKey = primaryKey,
             foreignKeys = entityForeignKeys,
             constructor = pojo.constructor,
-            shadowTableName = null
+            shadowTableName = null,
+            cached = annotationBox?.value?.cached ?: false,
+            mirrored = annotationBox?.value?.mirrored ?: false
         )
 
         return entity
@@ -17,11 +17,18 @@
 package com.zeoflow.depot.solver
 
 import com.zeoflow.depot.parser.ParsedQuery
+import com.zeoflow.depot.parser.QueryType
+import com.zeoflow.depot.parser.SQLTypeAffinity
 import com.zeoflow.depot.compiler.processing.XType
 import com.zeoflow.depot.processor.Context
 import com.zeoflow.depot.processor.ProcessorErrors
+import com.zeoflow.depot.solver.binderprovider.PrimaryKeyLookupResolver
 import com.zeoflow.depot.solver.query.result.QueryResultAdapter
 import com.zeoflow.depot.solver.query.result.QueryResultBinder
+import com.zeoflow.depot.vo.Entity
+import com.zeoflow.depot.vo.FtsEntity
+import com.zeoflow.depot.vo.ObservedRowKey
+import java.util.Locale
 
 /**
  * Binder provider class that has common functionality for observables.
@@ -35,6 +42,19 @@ abstract class ObservableQueryResultBinderProvider(val context: Context) :
         tableNames: Set<String>
     ): QueryResultBinder
 
+    /**
+     * Creates the binder for a query whose observer may track rows or columns rather than whole
+     * tables. Observables that can't narrow down their observer ignore the [rowKey] and the
+     * [observedColumns], which map a table name to the columns the query reads from it.
+     */
+    protected open fun create(
+        typeArg: XType,
+        resultAdapter: QueryResultAdapter?,
+        tableNames: Set<String>,
+        rowKey: ObservedRowKey?,
+        observedColumns: Map<String, List<String>>
+    ): QueryResultBinder = create(typeArg, resultAdapter, tableNames)
+
     final override fun provide(declared: XType, query: ParsedQuery): QueryResultBinder {
         val typeArg = extractTypeArg(declared)
         val adapter = context.typeAdapterStore.findQueryResultAdapter(typeArg, query)
@@ -48,7 +68,122 @@ abstract class ObservableQueryResultBinderProvider(val context: Context) :
         return create(
             typeArg = typeArg,
             resultAdapter = adapter,
-            tableNames = tableNames
+            tableNames = tableNames,
+            rowKey = findObservedRowKey(query, tableNames),
+            observedColumns = findObservedColumns(query, adapter)
         )
     }
+
+    /**
+     * Finds out if the query is a `SELECT ... FROM table WHERE pk = :arg` where `pk` is the
+     * INTEGER PRIMARY KEY, hence the rowid, of an entity. Entities are only known when the
+     * database verifier is available, otherwise the query observes whole tables.
+     */
+    private fun findObservedRowKey(query: ParsedQuery, tableNames: Set<String>): ObservedRowKey? {
+        if (tableNames.size != 1) {
+            return null
+        }
+        val entity = PrimaryKeyLookupResolver(context).resolve(query) ?: return null
+        if (entity.primaryKey.fields.single().affinity != SQLTypeAffinity.INTEGER) {
+            return null
+        }
+        return ObservedRowKey(tableName = entity.tableName, argIndex = 1)
+    }
+
+    /**
+     * Finds the columns a `SELECT` reads from each of its entities so that updates of other
+     * columns don't invalidate the observer.
+     *
+     * A column counts as read when its name appears anywhere in the query, which is a superset
+     * of the columns the query depends on. Tables that are read through a view or a relation,
+     * `*` projections and rowid accesses make the query observe whole tables.
+     */
+    private fun findObservedColumns(
+        query: ParsedQuery,
+        adapter: QueryResultAdapter?
+    ): Map<String, List<String>> {
+        if (query.type != QueryType.SELECT || query.tables.isEmpty()) {
+            return emptyMap()
+        }
+        val entities = context.databaseVerifier?.entitiesAndViews ?: return emptyMap()
+        val relationTables = adapter?.accessedTableNames()?.map {
+            it.lowercase(Locale.US)
+        }?.toSet() ?: emptySet()
+        val identifiers = collectIdentifiers(query.original) ?: return emptyMap()
+        if (ROWID_ALIASES.any { it in identifiers }) {
+            return emptyMap()
+        }
+        val result = linkedMapOf<String, List<String>>()
+        query.tables.forEach { table ->
+            val entity = entities.firstOrNull {
+                it is Entity && it.tableName.equals(table.name, ignoreCase = true)
+            } as? Entity ?: return emptyMap()
+            if (entity is FtsEntity || entity.tableName.lowercase(Locale.US) in relationTables) {
+                return@forEach
+            }
+            val columns = entity.fields.map { it.columnName }.filter {
+                it.lowercase(Locale.US) in identifiers
+            }
+            if (columns.size < entity.fields.size) {
+                result[entity.tableName] = columns
+            }
+        }
+        return result
+    }
+
+    /**
+     * Collects the lower case identifiers of the query, skipping literals and comments.
+     *
+     * @return The identifiers or null if the query has a `*` projection.
+     */
+    private fun collectIdentifiers(sql: String): Set<String>? {
+        val identifiers = mutableSetOf<String>()
+        var index = 0
+        while (index < sql.length) {
+            val c = sql[index]
+            when {
+                c == '\'' -> index = sql.indexOf('\'', index + 1).let {
+                    if (it < 0) sql.length else it + 1
+                }
+                sql.startsWith("--", index) -> index = sql.indexOf('\n', index).let {
+                    if (it < 0) sql.length else it + 1
+                }
+                sql.startsWith("/*", index) -> index = sql.indexOf("*/", index + 2).let {
+                    if (it < 0) sql.length else it + 2
+                }
+                c == '`' || c == '"' || c == '[' -> {
+                    val end = sql.indexOf(if (c == '[') ']' else c, index + 1)
+                    if (end < 0) {
+                        return null
+                    }
+                    identifiers.add(sql.substring(index + 1, end).lowercase(Locale.US))
+                    index = end + 1
+                }
+                c.isLetter() || c == '_' -> {
+                    val start = index
+                    while (index < sql.length &&
+                        (sql[index].isLetterOrDigit() || sql[index] == '_' || sql[index] == '$')
+                    ) {
+                        index++
+                    }
+                    identifiers.add(sql.substring(start, index).lowercase(Locale.US))
+                }
+                c == '*' -> {
+                    // only `COUNT(*)` and the like don't read every column.
+                    val before = sql.substring(0, index).trimEnd().lastOrNull()
+                    val after = sql.substring(index + 1).trimStart().firstOrNull()
+                    if (before != '(' || after != ')') {
+                        return null
+                    }
+                    index++
+                }
+                else -> index++
+            }
+        }
+        return identifiers
+    }
+
+    companion object {
+        private val ROWID_ALIASES = setOf("rowid", "oid", "_rowid_")
+    }
 }
\ No newline at end of file
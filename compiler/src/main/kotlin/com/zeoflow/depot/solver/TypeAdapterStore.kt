@@ -28,6 +28,7 @@ import com.zeoflow.depot.ext.isNotVoid
 import com.zeoflow.depot.ext.isNotVoidObject
 import com.zeoflow.depot.parser.ParsedQuery
 import com.zeoflow.depot.parser.SQLTypeAffinity
+import com.zeoflow.depot.processor.ColumnBatchProcessor
 import com.zeoflow.depot.processor.Context
 import com.zeoflow.depot.processor.EntityProcessor
 import com.zeoflow.depot.processor.FieldProcessor
@@ -36,12 +37,14 @@ import com.zeoflow.depot.solver.binderprovider.CoroutineFlowResultBinderProvider
 import com.zeoflow.depot.solver.binderprovider.CursorQueryResultBinderProvider
 import com.zeoflow.depot.solver.binderprovider.DataSourceFactoryQueryResultBinderProvider
 import com.zeoflow.depot.solver.binderprovider.DataSourceQueryResultBinderProvider
+import com.zeoflow.depot.solver.binderprovider.DiffLiveDataQueryResultBinderProvider
 import com.zeoflow.depot.solver.binderprovider.GuavaListenableFutureQueryResultBinderProvider
 import com.zeoflow.depot.solver.binderprovider.InstantQueryResultBinderProvider
 import com.zeoflow.depot.solver.binderprovider.LiveDataQueryResultBinderProvider
 import com.zeoflow.depot.solver.binderprovider.PagingSourceQueryResultBinderProvider
 import com.zeoflow.depot.solver.binderprovider.RxCallableQueryResultBinderProvider
 import com.zeoflow.depot.solver.binderprovider.RxQueryResultBinderProvider
+import com.zeoflow.depot.solver.binderprovider.StreamingQueryResultBinderProvider
 import com.zeoflow.depot.solver.prepared.binder.PreparedQueryResultBinder
 import com.zeoflow.depot.solver.prepared.binderprovider.GuavaListenableFuturePreparedQueryResultBinderProvider
 import com.zeoflow.depot.solver.prepared.binderprovider.InstantPreparedQueryResultBinderProvider
@@ -53,6 +56,7 @@ import com.zeoflow.depot.solver.query.parameter.BasicQueryParameterAdapter
 import com.zeoflow.depot.solver.query.parameter.CollectionQueryParameterAdapter
 import com.zeoflow.depot.solver.query.parameter.QueryParameterAdapter
 import com.zeoflow.depot.solver.query.result.ArrayQueryResultAdapter
+import com.zeoflow.depot.solver.query.result.ColumnBatchQueryResultAdapter
 import com.zeoflow.depot.solver.query.result.EntityRowAdapter
 import com.zeoflow.depot.solver.query.result.GuavaOptionalQueryResultAdapter
 import com.zeoflow.depot.solver.query.result.ImmutableListQueryResultAdapter
@@ -166,6 +170,7 @@ class TypeAdapterStore private constructor(
     val queryResultBinderProviders: List<QueryResultBinderProvider> =
         mutableListOf<QueryResultBinderProvider>().apply {
             add(CursorQueryResultBinderProvider(context))
+            add(DiffLiveDataQueryResultBinderProvider(context))
             add(LiveDataQueryResultBinderProvider(context))
             add(GuavaListenableFutureQueryResultBinderProvider(context))
             addAll(RxQueryResultBinderProvider.getAll(context))
@@ -174,6 +179,7 @@ class TypeAdapterStore private constructor(
             add(DataSourceFactoryQueryResultBinderProvider(context))
             add(PagingSourceQueryResultBinderProvider(context))
             add(CoroutineFlowResultBinderProvider(context))
+            add(StreamingQueryResultBinderProvider(context))
             add(InstantQueryResultBinderProvider(context))
         }
 
@@ -423,6 +429,11 @@ class TypeAdapterStore private constructor(
                 findRowAdapter(typeMirror.componentType, query) ?: return null
             return ArrayQueryResultAdapter(rowAdapter)
         } else {
+            val typeElement = typeMirror.typeElement
+            if (typeElement != null && typeElement.hasAnnotation(com.zeoflow.depot.ColumnBatch::class)) {
+                val batch = ColumnBatchProcessor(context, typeElement, query).process()
+                return ColumnBatchQueryResultAdapter(batch)
+            }
             if (typeMirror.typeArguments.isEmpty()) {
                 val rowAdapter = findRowAdapter(typeMirror, query) ?: return null
                 return SingleEntityQueryResultAdapter(rowAdapter)
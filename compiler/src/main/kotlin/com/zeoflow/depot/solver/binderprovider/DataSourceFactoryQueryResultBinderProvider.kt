@@ -49,7 +49,8 @@ class DataSourceFactoryQueryResultBinderProvider(val context: Context) : QueryRe
         val countedBinder = PositionalDataSourceQueryResultBinder(
             listAdapter = adapter,
             tableNames = tableNames,
-            forPaging3 = false
+            forPaging3 = false,
+            keysetPaging = KeysetPagingResolver(context).resolve(query)
         )
         return DataSourceFactoryQueryResultBinder(countedBinder)
     }
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.solver.binderprovider
+
+import com.zeoflow.depot.compiler.processing.XRawType
+import com.zeoflow.depot.compiler.processing.XType
+import com.zeoflow.depot.ext.DepotTypeNames
+import com.zeoflow.depot.ext.LifecyclesTypeNames
+import com.zeoflow.depot.parser.ParsedQuery
+import com.zeoflow.depot.parser.QueryType
+import com.zeoflow.depot.parser.SQLTypeAffinity
+import com.zeoflow.depot.processor.Context
+import com.zeoflow.depot.processor.ProcessorErrors
+import com.zeoflow.depot.solver.QueryResultBinderProvider
+import com.zeoflow.depot.solver.query.result.DiffLiveDataQueryResultBinder
+import com.zeoflow.depot.solver.query.result.QueryResultBinder
+import com.zeoflow.depot.vo.Entity
+import com.zeoflow.depot.vo.FtsEntity
+
+/**
+ * Provides binders for methods that return a LiveData of the ListDiff of a list query.
+ *
+ * The query has to be a `SELECT * FROM table ...` of a single entity with an INTEGER PRIMARY
+ * KEY, which keys the rows of the diffs. Entities are only known when the database verifier is
+ * available.
+ */
+class DiffLiveDataQueryResultBinderProvider(val context: Context) : QueryResultBinderProvider {
+    private val liveDataType: XRawType? by lazy {
+        context.processingEnv.findType(LifecyclesTypeNames.LIVE_DATA)?.rawType
+    }
+
+    override fun provide(declared: XType, query: ParsedQuery): QueryResultBinder {
+        val entityType = declared.typeArguments.first().typeArguments.first()
+        val entity = resolveEntity(entityType, query)
+        if (entity == null) {
+            context.logger.e(ProcessorErrors.DIFF_QUERY_NOT_SUPPORTED)
+        }
+        return DiffLiveDataQueryResultBinder(
+            adapter = context.typeAdapterStore.findQueryResultAdapter(entityType, query),
+            entity = entity,
+            // rows that did not change may enter or leave a limited result.
+            incremental = !LIMIT.containsMatchIn(query.original)
+        )
+    }
+
+    override fun matches(declared: XType): Boolean {
+        if (declared.typeArguments.size != 1 || liveDataType == null ||
+            !declared.rawType.isAssignableFrom(liveDataType!!)
+        ) {
+            return false
+        }
+        val typeArg = declared.typeArguments.first()
+        return typeArg.typeArguments.size == 1 &&
+            typeArg.rawType.typeName == DepotTypeNames.LIST_DIFF
+    }
+
+    private fun resolveEntity(entityType: XType, query: ParsedQuery): Entity? {
+        if (query.type != QueryType.SELECT || query.tables.size != 1) {
+            return null
+        }
+        val table = query.tables.single()
+        val entity = context.databaseVerifier?.entitiesAndViews?.firstOrNull {
+            it is Entity && it !is FtsEntity && it.tableName.equals(table.name, ignoreCase = true)
+        } as? Entity ?: return null
+        if (!entity.type.isSameType(entityType)) {
+            return null
+        }
+        val primaryKey = entity.primaryKey.fields.singleOrNull() ?: return null
+        if (primaryKey.affinity != SQLTypeAffinity.INTEGER) {
+            return null
+        }
+        val pattern = Regex(
+            "^\\s*SELECT\\s+(\\w+\\.)?\\*\\s+FROM\\s+`?${Regex.escape(table.name)}`?([\\s;].*)?$",
+            setOf(RegexOption.IGNORE_CASE, RegexOption.DOT_MATCHES_ALL)
+        )
+        return if (pattern.matches(query.original)) entity else null
+    }
+
+    companion object {
+        private val LIMIT = Regex("\\b(LIMIT|OFFSET)\\b", RegexOption.IGNORE_CASE)
+    }
+}
@@ -20,15 +20,43 @@ import com.zeoflow.depot.compiler.processing.XType
 import com.zeoflow.depot.parser.ParsedQuery
 import com.zeoflow.depot.processor.Context
 import com.zeoflow.depot.solver.QueryResultBinderProvider
+import com.zeoflow.depot.solver.query.result.EntityCacheQueryResultBinder
 import com.zeoflow.depot.solver.query.result.InstantQueryResultBinder
+import com.zeoflow.depot.solver.query.result.ListQueryResultAdapter
+import com.zeoflow.depot.solver.query.result.MirrorQueryResultBinder
+import com.zeoflow.depot.solver.query.result.QueryResultAdapter
 import com.zeoflow.depot.solver.query.result.QueryResultBinder
+import com.zeoflow.depot.solver.query.result.SingleEntityQueryResultAdapter
+import com.zeoflow.depot.vo.Entity
 
 class InstantQueryResultBinderProvider(val context: Context) : QueryResultBinderProvider {
     override fun provide(declared: XType, query: ParsedQuery): QueryResultBinder {
-        return InstantQueryResultBinder(
-            context.typeAdapterStore.findQueryResultAdapter(declared, query)
-        )
+        val adapter = context.typeAdapterStore.findQueryResultAdapter(declared, query)
+        val mirrorLookup = MirrorLookupResolver(context).resolve(query)
+        if (mirrorLookup != null && returnsEntity(adapter, mirrorLookup.entity)) {
+            return MirrorQueryResultBinder(
+                adapter = adapter,
+                lookup = mirrorLookup,
+                returnsList = adapter is ListQueryResultAdapter
+            )
+        }
+        val cachedEntity = PrimaryKeyLookupResolver(context).resolve(query, wholeEntity = true)?.takeIf { entity ->
+            entity.cached && adapter is SingleEntityQueryResultAdapter &&
+                returnsEntity(adapter, entity)
+        }
+        if (cachedEntity != null) {
+            return EntityCacheQueryResultBinder(adapter, cachedEntity)
+        }
+        return InstantQueryResultBinder(adapter)
     }
 
     override fun matches(declared: XType): Boolean = true
+
+    /**
+     * Returns true if the adapter returns instances of the entity itself, one or a list of them.
+     */
+    private fun returnsEntity(adapter: QueryResultAdapter?, entity: Entity): Boolean {
+        return (adapter is SingleEntityQueryResultAdapter || adapter is ListQueryResultAdapter) &&
+            adapter?.rowAdapter?.out?.typeElement?.className == entity.element.className
+    }
 }
\ No newline at end of file
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.solver.binderprovider
+
+import com.zeoflow.depot.parser.ParsedQuery
+import com.zeoflow.depot.parser.QueryType
+import com.zeoflow.depot.parser.SQLTypeAffinity
+import com.zeoflow.depot.processor.Context
+import com.zeoflow.depot.vo.Entity
+import com.zeoflow.depot.vo.FtsEntity
+import com.zeoflow.depot.vo.KeysetPaging
+import java.util.Locale
+
+/**
+ * Finds out if a paged query can be paged by seeking to a sort key.
+ *
+ * That is the case for a `SELECT` of a single entity that ends with an `ORDER BY` of plain, non
+ * null columns which are selected as is. The primary key of the entity completes the sort key.
+ * Queries with grouping, compound selects, their own `LIMIT`, bind parameters in the `ORDER BY`
+ * or columns that can't be resolved without the database verifier are paged with LIMIT/OFFSET.
+ */
+class KeysetPagingResolver(val context: Context) {
+
+    fun resolve(query: ParsedQuery): KeysetPaging? {
+        if (query.type != QueryType.SELECT || query.tables.size != 1) {
+            return null
+        }
+        val resultColumns = query.resultInfo?.columns?.map {
+            it.name.lowercase(Locale.US)
+        }?.toSet() ?: return null
+        val table = query.tables.single()
+        val entity = context.databaseVerifier?.entitiesAndViews?.firstOrNull {
+            it is Entity && it.tableName.equals(table.name, ignoreCase = true)
+        } as? Entity ?: return null
+        if (entity is FtsEntity) {
+            return null
+        }
+        val sql = query.queryWithReplacedBindParams.trimEnd { it.isWhitespace() || it == ';' }
+        val words = topLevelWords(sql) ?: return null
+        if (words.any { it.first in UNSUPPORTED_CLAUSES }) {
+            return null
+        }
+        val orderIndex = words.indexOfFirst { it.first == "ORDER" }
+        if (orderIndex < 0 || words.getOrNull(orderIndex + 1)?.first != "BY") {
+            return null
+        }
+        val orderByClause = sql.substring(words[orderIndex].second)
+        if (orderByClause.contains('?')) {
+            return null
+        }
+        val fromIndex = words.indexOfFirst { it.first == "FROM" }
+        if (words.first().first != "SELECT" || fromIndex < 0) {
+            return null
+        }
+        val projection = parseProjection(
+            sql.substring(words.first().second + "SELECT".length, words[fromIndex].second)
+        )
+        val keyColumns = mutableListOf<String>()
+        val descending = mutableListOf<Boolean>()
+        splitTopLevel(sql.substring(words[orderIndex + 1].second + "BY".length)).forEach { term ->
+            val match = ORDER_TERM.matchEntire(term.trim()) ?: return null
+            keyColumns.add(unquote(match.groupValues[1]))
+            descending.add(match.groupValues[2].equals("DESC", ignoreCase = true))
+        }
+        entity.primaryKey.fields.forEach { field ->
+            if (keyColumns.none { it.equals(field.columnName, ignoreCase = true) }) {
+                keyColumns.add(field.columnName)
+                descending.add(false)
+            }
+        }
+        // An INTEGER PRIMARY KEY is the rowid, which is never null.
+        val rowIdField = entity.primaryKey.fields.singleOrNull()?.takeIf {
+            it.affinity == SQLTypeAffinity.INTEGER
+        }
+        val resolvedColumns = keyColumns.map { column ->
+            val field = entity.fields.firstOrNull {
+                it.columnName.equals(column, ignoreCase = true)
+            } ?: return null
+            val name = field.columnName.lowercase(Locale.US)
+            // The key is read back from the rows, so it must be selected as the column itself.
+            if (!(field.nonNull || field == rowIdField) || name !in resultColumns ||
+                name in projection.aliases || !(projection.star || name in projection.columns)
+            ) {
+                return null
+            }
+            field.columnName
+        }
+        return KeysetPaging(
+            orderByClause = orderByClause,
+            keyColumns = resolvedColumns,
+            descending = descending
+        )
+    }
+
+    private class Projection(
+        val star: Boolean,
+        val columns: Set<String>,
+        val aliases: Set<String>
+    )
+
+    private fun parseProjection(selectList: String): Projection {
+        var star = false
+        val columns = mutableSetOf<String>()
+        val aliases = mutableSetOf<String>()
+        splitTopLevel(selectList.trim().replace(DISTINCT, "")).forEach { term ->
+            val trimmed = term.trim()
+            val column = PLAIN_COLUMN.matchEntire(trimmed)
+            val alias = ALIASED_TERM.matchEntire(trimmed)
+            when {
+                trimmed == "*" || trimmed.endsWith(".*") -> star = true
+                column != null -> columns.add(unquote(column.groupValues[1]).lowercase(Locale.US))
+                alias != null -> aliases.add(unquote(alias.groupValues[1]).lowercase(Locale.US))
+            }
+        }
+        return Projection(star, columns, aliases)
+    }
+
+    /**
+     * @return The upper case words of the query that are not in parentheses, literals or quoted
+     * identifiers, with their index, or null if the parentheses don't match.
+     */
+    private fun topLevelWords(sql: String): List<Pair<String, Int>>? {
+        val words = mutableListOf<Pair<String, Int>>()
+        var depth = 0
+        var index = 0
+        while (index < sql.length) {
+            val c = sql[index]
+            when {
+                c == '\'' || c == '"' || c == '`' || c == '[' -> {
+                    val end = sql.indexOf(if (c == '[') ']' else c, index + 1)
+                    index = if (end < 0) sql.length else end + 1
+                }
+                c == '(' -> {
+                    depth++
+                    index++
+                }
+                c == ')' -> {
+                    depth--
+                    if (depth < 0) {
+                        return null
+                    }
+                    index++
+                }
+                c.isLetter() || c == '_' -> {
+                    val start = index
+                    while (index < sql.length &&
+                        (sql[index].isLetterOrDigit() || sql[index] == '_' || sql[index] == '$')
+                    ) {
+                        index++
+                    }
+                    if (depth == 0) {
+                        words.add(sql.substring(start, index).uppercase(Locale.US) to start)
+                    }
+                }
+                else -> index++
+            }
+        }
+        return if (depth == 0) words else null
+    }
+
+    /**
+     * Splits the text at the commas that are not in parentheses, literals or quoted identifiers.
+     */
+    private fun splitTopLevel(text: String): List<String> {
+        val parts = mutableListOf<String>()
+        var depth = 0
+        var start = 0
+        var index = 0
+        while (index < text.length) {
+            val c = text[index]
+            when {
+                c == '\'' || c == '"' || c == '`' || c == '[' -> {
+                    val end = text.indexOf(if (c == '[') ']' else c, index + 1)
+                    index = if (end < 0) text.length else end
+                }
+                c == '(' -> depth++
+                c == ')' -> depth--
+                c == ',' && depth == 0 -> {
+                    parts.add(text.substring(start, index))
+                    start = index + 1
+                }
+            }
+            index++
+        }
+        parts.add(text.substring(start))
+        return parts
+    }
+
+    private fun unquote(identifier: String): String {
+        if (identifier.length >= 2 && identifier.first() in "`\"[") {
+            return identifier.substring(1, identifier.length - 1)
+        }
+        return identifier
+    }
+
+    companion object {
+        private val UNSUPPORTED_CLAUSES = setOf(
+            "GROUP", "HAVING", "LIMIT", "OFFSET", "UNION", "INTERSECT", "EXCEPT", "WINDOW",
+            "VALUES", "COLLATE", "NULLS"
+        )
+        private const val IDENTIFIER = "(?:\\w+|`[^`]+`|\"[^\"]+\"|\\[[^\\]]+])"
+        private val PLAIN_COLUMN = Regex("(?:$IDENTIFIER\\.)?($IDENTIFIER)")
+        private val ALIASED_TERM = Regex(".+?\\s+(?:AS\\s+)?($IDENTIFIER)", RegexOption.IGNORE_CASE)
+        private val ORDER_TERM = Regex(
+            "(?:$IDENTIFIER\\.)?($IDENTIFIER)(?:\\s+(ASC|DESC))?",
+            RegexOption.IGNORE_CASE
+        )
+        private val DISTINCT = Regex("^(DISTINCT|ALL)\\s+", RegexOption.IGNORE_CASE)
+    }
+}
@@ -24,6 +24,7 @@ import com.zeoflow.depot.solver.ObservableQueryResultBinderProvider
 import com.zeoflow.depot.solver.query.result.LiveDataQueryResultBinder
 import com.zeoflow.depot.solver.query.result.QueryResultAdapter
 import com.zeoflow.depot.solver.query.result.QueryResultBinder
+import com.zeoflow.depot.vo.ObservedRowKey
 
 class LiveDataQueryResultBinderProvider(context: Context) :
     ObservableQueryResultBinderProvider(context) {
@@ -37,11 +38,21 @@ class LiveDataQueryResultBinderProvider(context: Context) :
         typeArg: XType,
         resultAdapter: QueryResultAdapter?,
         tableNames: Set<String>
+    ): QueryResultBinder = create(typeArg, resultAdapter, tableNames, null, emptyMap())
+
+    override fun create(
+        typeArg: XType,
+        resultAdapter: QueryResultAdapter?,
+        tableNames: Set<String>,
+        rowKey: ObservedRowKey?,
+        observedColumns: Map<String, List<String>>
     ): QueryResultBinder {
         return LiveDataQueryResultBinder(
             typeArg = typeArg,
             tableNames = tableNames,
-            adapter = resultAdapter
+            adapter = resultAdapter,
+            rowKey = rowKey,
+            observedColumns = observedColumns
         )
     }
 
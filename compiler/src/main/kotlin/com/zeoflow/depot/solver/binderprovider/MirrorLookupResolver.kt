@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.solver.binderprovider
+
+import com.zeoflow.depot.parser.ParsedQuery
+import com.zeoflow.depot.parser.QueryType
+import com.zeoflow.depot.parser.SQLTypeAffinity
+import com.zeoflow.depot.processor.Context
+import com.zeoflow.depot.vo.Entity
+import com.zeoflow.depot.vo.FtsEntity
+import com.zeoflow.depot.vo.MirrorLookup
+
+/**
+ * Finds out if a query can be answered from the in-memory mirror of a table.
+ *
+ * That is the case for a `SELECT * FROM table` of a mirrored entity, optionally followed by a
+ * `WHERE column = :arg` on its primary key or on the column of a single column index. Columns
+ * with a collation are compared by SQLite only, so they are never looked up in memory. The
+ * argument is converted by the affinity of the column at runtime, as SQLite does. Entities are
+ * only known when the database verifier is available.
+ */
+class MirrorLookupResolver(val context: Context) {
+
+    fun resolve(query: ParsedQuery): MirrorLookup? {
+        if (query.type != QueryType.SELECT || query.tables.size != 1 || query.inputs.size > 1) {
+            return null
+        }
+        val table = query.tables.single()
+        val entity = context.databaseVerifier?.entitiesAndViews?.firstOrNull {
+            it is Entity && it !is FtsEntity && it.tableName.equals(table.name, ignoreCase = true)
+        } as? Entity ?: return null
+        if (!entity.mirrored) {
+            return null
+        }
+        val from = "^\\s*SELECT\\s+(\\w+\\.)?\\*\\s+FROM\\s+`?${Regex.escape(table.name)}`?" +
+            "(\\s+(AS\\s+)?\\w+)?"
+        if (query.inputs.isEmpty()) {
+            val pattern = Regex("$from\\s*;?\\s*$", RegexOption.IGNORE_CASE)
+            return if (pattern.matches(query.original)) MirrorLookup(entity, null) else null
+        }
+        val input = query.inputs.single()
+        if (input.isMultiple) {
+            return null
+        }
+        val pattern = Regex(
+            "$from\\s+WHERE\\s+(\\w+\\.)?`?(\\w+)`?\\s*==?\\s*${Regex.escape(input.text)}" +
+                "\\s*;?\\s*$",
+            setOf(RegexOption.IGNORE_CASE, RegexOption.DOT_MATCHES_ALL)
+        )
+        val match = pattern.matchEntire(query.original) ?: return null
+        val columnName = match.groupValues[5]
+        val indexColumn = MirrorLookup.indexColumnsOf(entity).firstOrNull {
+            it.equals(columnName, ignoreCase = true)
+        } ?: return null
+        val field = entity.fields.firstOrNull { it.columnName == indexColumn } ?: return null
+        if (field.collate != null) {
+            return null
+        }
+        return MirrorLookup(entity, indexColumn, field.affinity ?: SQLTypeAffinity.TEXT)
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.solver.binderprovider
+
+import com.zeoflow.depot.parser.ParsedQuery
+import com.zeoflow.depot.parser.QueryType
+import com.zeoflow.depot.processor.Context
+import com.zeoflow.depot.vo.Entity
+import com.zeoflow.depot.vo.FtsEntity
+import java.util.Locale
+
+/**
+ * Finds out if a query is a `SELECT ... FROM table WHERE pk = :arg` where `pk` is the single
+ * column primary key of an entity, so that its only argument identifies the selected row.
+ * Entities are only known when the database verifier is available.
+ */
+class PrimaryKeyLookupResolver(val context: Context) {
+
+    /**
+     * @param wholeEntity If true, the query must also select every column of the entity, either
+     * through `*` or by listing all of them, so that its result can stand for the row.
+     * @return The entity whose row is looked up, or null if the query is not a lookup by
+     * primary key.
+     */
+    fun resolve(query: ParsedQuery, wholeEntity: Boolean = false): Entity? {
+        if (query.type != QueryType.SELECT || query.tables.size != 1 ||
+            query.inputs.size != 1 || query.inputs[0].isMultiple
+        ) {
+            return null
+        }
+        val table = query.tables.single()
+        val entity = context.databaseVerifier?.entitiesAndViews?.firstOrNull {
+            it is Entity && it !is FtsEntity && it.tableName.equals(table.name, ignoreCase = true)
+        } as? Entity ?: return null
+        val primaryKey = entity.primaryKey.fields.singleOrNull() ?: return null
+        val pattern = Regex(
+            "^\\s*SELECT\\s+(.+?)\\s+FROM\\s+`?${Regex.escape(table.name)}`?" +
+                "(\\s+(AS\\s+)?\\w+)?\\s+WHERE\\s+(\\w+\\.)?" +
+                "`?${Regex.escape(primaryKey.columnName)}`?" +
+                "\\s*==?\\s*${Regex.escape(query.inputs[0].text)}" +
+                "(\\s+LIMIT\\s+\\d+)?\\s*;?\\s*$",
+            setOf(RegexOption.IGNORE_CASE, RegexOption.DOT_MATCHES_ALL)
+        )
+        val match = pattern.matchEntire(query.original) ?: return null
+        if (wholeEntity && !selectsAllColumns(match.groupValues[1], entity)) {
+            return null
+        }
+        return entity
+    }
+
+    private fun selectsAllColumns(projection: String, entity: Entity): Boolean {
+        val columns = projection.split(',').map {
+            it.trim().substringAfterLast('.').trim('`').lowercase(Locale.US)
+        }
+        if (columns == listOf("*")) {
+            return true
+        }
+        val entityColumns = entity.fields.map { it.columnName.lowercase(Locale.US) }
+        return columns.size == entityColumns.size && columns.toSet() == entityColumns.toSet()
+    }
+}
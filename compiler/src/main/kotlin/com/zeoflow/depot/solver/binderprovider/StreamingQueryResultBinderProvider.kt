@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.solver.binderprovider
+
+import com.zeoflow.depot.compiler.processing.XType
+import com.zeoflow.depot.ext.CommonTypeNames
+import com.zeoflow.depot.ext.DepotTypeNames
+import com.zeoflow.depot.parser.ParsedQuery
+import com.zeoflow.depot.processor.Context
+import com.zeoflow.depot.processor.ProcessorErrors
+import com.zeoflow.depot.solver.QueryResultBinderProvider
+import com.zeoflow.depot.solver.query.result.PojoRowAdapter
+import com.zeoflow.depot.solver.query.result.QueryResultBinder
+import com.zeoflow.depot.solver.query.result.StreamingQueryResultAdapter
+import com.zeoflow.depot.solver.query.result.StreamingQueryResultBinder
+
+/**
+ * Provides binders for methods that return a CloseableIterator or a Stream and map the rows of
+ * the cursor lazily.
+ *
+ * A plain Iterator is matched only to report that it can't be closed, an iterator abandoned before
+ * its last row would hold its cursor, and the reader connection behind it, until it is collected.
+ */
+class StreamingQueryResultBinderProvider(val context: Context) : QueryResultBinderProvider {
+    override fun provide(declared: XType, query: ParsedQuery): QueryResultBinder {
+        if (declared.rawType.typeName == CommonTypeNames.ITERATOR) {
+            context.logger.e(ProcessorErrors.STREAMING_QUERY_WITH_ITERATOR)
+        }
+        val typeArg = declared.typeArguments.first()
+        val rowAdapter = context.typeAdapterStore.findRowAdapter(typeArg, query)
+        if (rowAdapter is PojoRowAdapter && rowAdapter.relationCollectors.isNotEmpty()) {
+            context.logger.e(ProcessorErrors.STREAMING_QUERY_WITH_RELATION)
+        }
+        val adapter = rowAdapter?.let { StreamingQueryResultAdapter(typeArg, it) }
+        return StreamingQueryResultBinder(
+            adapter = adapter,
+            asStream = declared.rawType.typeName == CommonTypeNames.STREAM
+        )
+    }
+
+    override fun matches(declared: XType): Boolean =
+        declared.typeArguments.size == 1 && declared.rawType.typeName in STREAMING_TYPES
+
+    companion object {
+        private val STREAMING_TYPES = setOf(
+            CommonTypeNames.ITERATOR,
+            CommonTypeNames.STREAM,
+            DepotTypeNames.CLOSEABLE_ITERATOR
+        )
+    }
+}
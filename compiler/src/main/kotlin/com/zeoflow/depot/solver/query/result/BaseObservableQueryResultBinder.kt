@@ -41,13 +41,22 @@ abstract class BaseObservableQueryResultBinder(adapter: QueryResultAdapter?) :
         }.build()
     }
 
+    /**
+     * Whether the generated function can skip results whose rows did not change. Only the rows of
+     * the query itself are compared, so results that also read relations are always computed.
+     */
+    protected fun canSuppressUnchanged(inTransaction: Boolean): Boolean {
+        return !inTransaction && adapter != null && adapter.accessedTableNames().isEmpty()
+    }
+
     protected fun createRunQueryAndReturnStatements(
         builder: MethodSpec.Builder,
         depotSQLiteQueryVar: String,
         dbField: FieldSpec,
         inTransaction: Boolean,
         scope: CodeGenScope,
-        cancellationSignalVar: String
+        cancellationSignalVar: String,
+        suppressUnchanged: Boolean = false
     ) {
         val transactionWrapper = if (inTransaction) {
             builder.transactionWrapper(dbField)
@@ -70,6 +79,12 @@ abstract class BaseObservableQueryResultBinder(adapter: QueryResultAdapter?) :
                 cancellationSignalVar
             )
             beginControlFlow("try").apply {
+                if (suppressUnchanged) {
+                    beginControlFlow("if (isUnchanged($L))", cursorVar).apply {
+                        addStatement("return null")
+                    }
+                    endControlFlow()
+                }
                 val adapterScope = scope.fork()
                 adapter?.convert(outVar, cursorVar, adapterScope)
                 addCode(adapterScope.builder().build())
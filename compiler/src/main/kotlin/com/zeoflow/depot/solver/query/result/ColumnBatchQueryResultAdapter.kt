@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.solver.query.result
+
+import com.zeoflow.depot.ext.DepotTypeNames
+import com.zeoflow.depot.ext.L
+import com.zeoflow.depot.ext.S
+import com.zeoflow.depot.ext.T
+import com.zeoflow.depot.solver.CodeGenScope
+import com.zeoflow.depot.vo.ColumnBatch
+import com.zeoflow.depot.vo.ColumnBatchColumn
+import com.squareup.javapoet.ArrayTypeName
+import com.squareup.javapoet.TypeName
+import stripNonJava
+import java.util.Locale
+
+/**
+ * Reads every row of the cursor into one array per column of a @ColumnBatch class, without
+ * creating an object per row.
+ */
+class ColumnBatchQueryResultAdapter(val batch: ColumnBatch) : QueryResultAdapter(null) {
+    override fun convert(outVarName: String, cursorVarName: String, scope: CodeGenScope) {
+        scope.builder().apply {
+            val countVar = scope.getTmpVar("_count")
+            addStatement("final $T $L = $L.getCount()", TypeName.INT, countVar, cursorVarName)
+            val arrayVars = batch.columns.map { column ->
+                val suffix = column.name.stripNonJava().capitalize(Locale.US)
+                val indexVar = scope.getTmpVar("_cursorIndexOf$suffix")
+                addStatement(
+                    "final $T $L = $T.getColumnIndexOrThrow($L, $S)",
+                    TypeName.INT, indexVar, DepotTypeNames.CURSOR_UTIL, cursorVarName,
+                    column.columnName
+                )
+                val arrayVar = scope.getTmpVar("_column$suffix")
+                val componentType = column.kind.componentTypeName
+                if (componentType is ArrayTypeName) {
+                    // byte[][] is allocated as new byte[count][]
+                    addStatement(
+                        "final $T $L = new $T[$L][]",
+                        ArrayTypeName.of(componentType), arrayVar, componentType.componentType,
+                        countVar
+                    )
+                } else {
+                    addStatement(
+                        "final $T $L = new $T[$L]",
+                        ArrayTypeName.of(componentType), arrayVar, componentType, countVar
+                    )
+                }
+                Triple(column, indexVar, arrayVar)
+            }
+            val rowVar = scope.getTmpVar("_row")
+            addStatement("$T $L = 0", TypeName.INT, rowVar)
+            beginControlFlow("while ($L.moveToNext())", cursorVarName).apply {
+                arrayVars.forEach { (column, indexVar, arrayVar) ->
+                    if (column.kind == ColumnBatchColumn.Kind.BOOLEAN) {
+                        addStatement(
+                            "$L[$L] = $L.$L($L) != 0",
+                            arrayVar, rowVar, cursorVarName, column.kind.cursorMethod, indexVar
+                        )
+                    } else {
+                        addStatement(
+                            "$L[$L] = $L.$L($L)",
+                            arrayVar, rowVar, cursorVarName, column.kind.cursorMethod, indexVar
+                        )
+                    }
+                }
+                addStatement("$L++", rowVar)
+            }
+            endControlFlow()
+            addStatement("final $T $L = new $T()", batch.typeName, outVarName, batch.typeName)
+            arrayVars.forEach { (column, _, arrayVar) ->
+                addStatement("$L.$L = $L", outVarName, column.name, arrayVar)
+            }
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.solver.query.result
+
+import com.zeoflow.depot.ext.L
+import com.zeoflow.depot.ext.N
+import com.zeoflow.depot.ext.S
+import com.zeoflow.depot.solver.CodeGenScope
+import com.zeoflow.depot.vo.Entity
+import com.zeoflow.depot.writer.MirrorRowReaderWriter
+import com.squareup.javapoet.FieldSpec
+
+/**
+ * Returns a LiveData that emits the changes of the rows of a list query over a single entity,
+ * keyed by its primary key, rather than the whole list. No query is run until necessary.
+ *
+ * The rows are converted by the row reader of the entity, the [adapter] is only used to validate
+ * the method.
+ */
+class DiffLiveDataQueryResultBinder(
+    adapter: QueryResultAdapter?,
+    val entity: Entity?,
+    private val incremental: Boolean
+) : QueryResultBinder(adapter) {
+    override fun convertAndReturn(
+        depotSQLiteQueryVar: String,
+        canReleaseQuery: Boolean,
+        dbField: FieldSpec,
+        inTransaction: Boolean,
+        scope: CodeGenScope
+    ) {
+        scope.builder().apply {
+            if (entity == null) {
+                // the error is already reported.
+                addStatement("return null")
+                return
+            }
+            val reader = scope.writer.getOrCreateField(MirrorRowReaderWriter(entity))
+            addStatement(
+                "return $N.getInvalidationTracker().createDiffLiveData($L, $S, $S, $L, $N)",
+                dbField,
+                depotSQLiteQueryVar,
+                entity.tableName,
+                entity.primaryKey.fields.single().columnName,
+                if (incremental) "true" else "false",
+                reader
+            )
+        }
+    }
+}
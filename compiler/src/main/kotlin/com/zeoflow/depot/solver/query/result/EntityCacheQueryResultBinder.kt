@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.solver.query.result
+
+import com.zeoflow.depot.ext.AndroidTypeNames
+import com.zeoflow.depot.ext.DepotTypeNames
+import com.zeoflow.depot.ext.L
+import com.zeoflow.depot.ext.N
+import com.zeoflow.depot.ext.S
+import com.zeoflow.depot.ext.T
+import com.zeoflow.depot.solver.CodeGenScope
+import com.zeoflow.depot.vo.Entity
+import com.zeoflow.depot.writer.DaoWriter
+import com.squareup.javapoet.FieldSpec
+import com.squareup.javapoet.ParameterizedTypeName
+import com.squareup.javapoet.TypeName
+
+/**
+ * Runs a lookup of a cached entity by its primary key, returning the cached instance if there is
+ * one and caching the loaded instance otherwise. Lookups in a @Transaction method always run the
+ * query.
+ */
+class EntityCacheQueryResultBinder(
+    adapter: QueryResultAdapter?,
+    val entity: Entity
+) : QueryResultBinder(adapter) {
+    override fun convertAndReturn(
+        depotSQLiteQueryVar: String,
+        canReleaseQuery: Boolean,
+        dbField: FieldSpec,
+        inTransaction: Boolean,
+        scope: CodeGenScope
+    ) {
+        if (inTransaction) {
+            InstantQueryResultBinder(adapter).convertAndReturn(
+                depotSQLiteQueryVar, canReleaseQuery, dbField, inTransaction, scope
+            )
+            return
+        }
+        scope.builder().apply {
+            addStatement("$N.assertNotSuspendingTransaction()", DaoWriter.dbField)
+            val entityTypeName = entity.typeName
+            val cacheVar = scope.getTmpVar("_entityCache")
+            addStatement(
+                "final $T $L = $N.getEntityCache($S)",
+                ParameterizedTypeName.get(DepotTypeNames.ENTITY_CACHE, entityTypeName),
+                cacheVar, dbField, entity.tableName
+            )
+            val cachedVar = scope.getTmpVar("_cached")
+            addStatement(
+                "final $T $L = $L.get($L)", entityTypeName, cachedVar, cacheVar,
+                depotSQLiteQueryVar
+            )
+            beginControlFlow("if ($L != null)", cachedVar).apply {
+                if (canReleaseQuery) {
+                    addStatement("$L.release()", depotSQLiteQueryVar)
+                }
+                addStatement("return $L", cachedVar)
+            }
+            endControlFlow()
+            val tokenVar = scope.getTmpVar("_cacheToken")
+            addStatement("final $T $L = $L.beginLoad()", TypeName.LONG, tokenVar, cacheVar)
+            val outVar = scope.getTmpVar("_result")
+            val cursorVar = scope.getTmpVar("_cursor")
+            addStatement(
+                "final $T $L = $T.query($N, $L, $L, $L)",
+                AndroidTypeNames.CURSOR,
+                cursorVar,
+                DepotTypeNames.DB_UTIL,
+                dbField,
+                depotSQLiteQueryVar,
+                "false",
+                "null"
+            )
+            beginControlFlow("try").apply {
+                adapter?.convert(outVar, cursorVar, scope)
+                addStatement(
+                    "$L.put($L, $L, $L)", cacheVar, depotSQLiteQueryVar, outVar, tokenVar
+                )
+                addStatement("return $L", outVar)
+            }
+            nextControlFlow("finally").apply {
+                addStatement("$L.close()", cursorVar)
+                if (canReleaseQuery) {
+                    addStatement("$L.release()", depotSQLiteQueryVar)
+                }
+            }
+            endControlFlow()
+        }
+    }
+}
@@ -17,13 +17,20 @@
 package com.zeoflow.depot.solver.query.result
 
 import com.zeoflow.depot.ext.CallableTypeSpecBuilder
+import com.zeoflow.depot.ext.DepotTypeNames
 import com.zeoflow.depot.ext.L
 import com.zeoflow.depot.ext.N
+import com.zeoflow.depot.ext.S
 import com.zeoflow.depot.ext.T
 import com.zeoflow.depot.ext.arrayTypeName
+import com.zeoflow.depot.ext.typeName
 import com.zeoflow.depot.compiler.processing.XType
 import com.zeoflow.depot.solver.CodeGenScope
+import com.zeoflow.depot.vo.ObservedRowKey
+import com.squareup.javapoet.ArrayTypeName
+import com.squareup.javapoet.CodeBlock
 import com.squareup.javapoet.FieldSpec
+import java.util.concurrent.Callable
 
 /**
  * Converts the query into a LiveData and returns it. No query is run until necessary.
@@ -31,7 +38,9 @@ import com.squareup.javapoet.FieldSpec
 class LiveDataQueryResultBinder(
     val typeArg: XType,
     val tableNames: Set<String>,
-    adapter: QueryResultAdapter?
+    adapter: QueryResultAdapter?,
+    val rowKey: ObservedRowKey? = null,
+    val observedColumns: Map<String, List<String>> = emptyMap()
 ) : BaseObservableQueryResultBinder(adapter) {
     @Suppress("JoinDeclarationAndAssignment")
     override fun convertAndReturn(
@@ -41,14 +50,22 @@ class LiveDataQueryResultBinder(
         inTransaction: Boolean,
         scope: CodeGenScope
     ) {
-        val callableImpl = CallableTypeSpecBuilder(typeArg.typeName) {
+        // Identical rows are not posted again, the function tells the LiveData when they are.
+        val suppressUnchanged = canSuppressUnchanged(inTransaction)
+        val callableType = if (suppressUnchanged) {
+            DepotTypeNames.CHANGE_SUPPRESSING_CALLABLE
+        } else {
+            Callable::class.typeName
+        }
+        val callableImpl = CallableTypeSpecBuilder(typeArg.typeName, callableType) {
             createRunQueryAndReturnStatements(
                 builder = this,
                 depotSQLiteQueryVar = depotSQLiteQueryVar,
                 inTransaction = inTransaction,
                 dbField = dbField,
                 scope = scope,
-                cancellationSignalVar = "null" // LiveData can't be cancelled
+                cancellationSignalVar = "null", // LiveData can't be cancelled
+                suppressUnchanged = suppressUnchanged
             )
         }.apply {
             if (canReleaseQuery) {
@@ -58,14 +75,65 @@ class LiveDataQueryResultBinder(
 
         scope.builder().apply {
             val tableNamesList = tableNames.joinToString(",") { "\"$it\"" }
-            addStatement(
-                "return $N.getInvalidationTracker().createLiveData(new $T{$L}, $L, $L)",
-                dbField,
-                String::class.arrayTypeName,
-                tableNamesList,
-                if (inTransaction) "true" else "false",
-                callableImpl
-            )
+            val rowIds = if (rowKey == null) {
+                CodeBlock.of("null")
+            } else {
+                CodeBlock.of("$L.getBoundRowIds($L)", depotSQLiteQueryVar, rowKey.argIndex)
+            }
+            val columns = if (observedColumns.isEmpty()) {
+                CodeBlock.of("null")
+            } else {
+                val stringArray = String::class.arrayTypeName
+                CodeBlock.builder().apply {
+                    add("new $T {", ArrayTypeName.of(stringArray))
+                    observedColumns.entries.forEachIndexed { index, (table, tableColumns) ->
+                        add(if (index == 0) "new $T {$S" else ", new $T {$S", stringArray, table)
+                        tableColumns.forEach { add(", $S", it) }
+                        add("}")
+                    }
+                    add("}")
+                }.build()
+            }
+            if (canReleaseQuery) {
+                // The query is known, so callers of the same query share a single LiveData.
+                addStatement(
+                    "return $N.getInvalidationTracker().createSharedLiveData($L, " +
+                        "new $T{$L}, $L, $L, $S, $L, $L)",
+                    dbField,
+                    depotSQLiteQueryVar,
+                    String::class.arrayTypeName,
+                    tableNamesList,
+                    if (inTransaction) "true" else "false",
+                    callableImpl,
+                    rowKey?.tableName,
+                    rowIds,
+                    columns
+                )
+            } else if (rowKey == null && observedColumns.isEmpty()) {
+                addStatement(
+                    "return $N.getInvalidationTracker().createLiveData(new $T{$L}, $L, $L)",
+                    dbField,
+                    String::class.arrayTypeName,
+                    tableNamesList,
+                    if (inTransaction) "true" else "false",
+                    callableImpl
+                )
+            } else {
+                // Only the selected row and the read columns can change the result, observe them
+                // rather than the whole tables.
+                addStatement(
+                    "return $N.getInvalidationTracker().createLiveData(new $T{$L}, $L, $L, $S, " +
+                        "$L, $L)",
+                    dbField,
+                    String::class.arrayTypeName,
+                    tableNamesList,
+                    if (inTransaction) "true" else "false",
+                    callableImpl,
+                    rowKey?.tableName,
+                    rowIds,
+                    columns
+                )
+            }
         }
     }
 }
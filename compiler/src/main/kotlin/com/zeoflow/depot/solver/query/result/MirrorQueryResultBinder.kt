@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.solver.query.result
+
+import com.zeoflow.depot.ext.CommonTypeNames
+import com.zeoflow.depot.ext.DepotTypeNames
+import com.zeoflow.depot.ext.L
+import com.zeoflow.depot.ext.N
+import com.zeoflow.depot.ext.S
+import com.zeoflow.depot.ext.T
+import com.zeoflow.depot.parser.SQLTypeAffinity
+import com.zeoflow.depot.solver.CodeGenScope
+import com.zeoflow.depot.vo.MirrorLookup
+import com.zeoflow.depot.writer.MirrorRowReaderWriter
+import com.squareup.javapoet.FieldSpec
+import com.squareup.javapoet.ParameterizedTypeName
+
+/**
+ * Answers a query from the in-memory mirror of its table and runs it on the database when the
+ * mirror can't, e.g. inside a transaction. Queries of a @Transaction method always run on the
+ * database.
+ */
+class MirrorQueryResultBinder(
+    adapter: QueryResultAdapter?,
+    val lookup: MirrorLookup,
+    private val returnsList: Boolean
+) : QueryResultBinder(adapter) {
+    override fun convertAndReturn(
+        depotSQLiteQueryVar: String,
+        canReleaseQuery: Boolean,
+        dbField: FieldSpec,
+        inTransaction: Boolean,
+        scope: CodeGenScope
+    ) {
+        if (!inTransaction) {
+            scope.builder().apply {
+                val entityTypeName = lookup.entity.typeName
+                val reader = scope.writer.getOrCreateField(MirrorRowReaderWriter(lookup.entity))
+                val mirrorVar = scope.getTmpVar("_mirror")
+                addStatement(
+                    "final $T $L = $N.getTableMirror($S, $N)",
+                    ParameterizedTypeName.get(DepotTypeNames.TABLE_MIRROR, entityTypeName),
+                    mirrorVar, dbField, lookup.entity.tableName, reader
+                )
+                val rowsVar = scope.getTmpVar("_mirrored")
+                val rowsTypeName = ParameterizedTypeName.get(CommonTypeNames.LIST, entityTypeName)
+                if (lookup.columnName == null) {
+                    addStatement("final $T $L = $L.getAll()", rowsTypeName, rowsVar, mirrorVar)
+                } else {
+                    val affinity = when (lookup.affinity) {
+                        SQLTypeAffinity.TEXT -> "TEXT"
+                        SQLTypeAffinity.INTEGER -> "INTEGER"
+                        SQLTypeAffinity.REAL -> "REAL"
+                        SQLTypeAffinity.BLOB -> "BLOB"
+                        else -> "UNDEFINED"
+                    }
+                    addStatement(
+                        "final $T $L = $L.find($S, $T.$L, $L)", rowsTypeName, rowsVar, mirrorVar,
+                        lookup.columnName, DepotTypeNames.COLUMN_INFO, affinity,
+                        depotSQLiteQueryVar
+                    )
+                }
+                if (returnsList) {
+                    beginControlFlow("if ($L != null)", rowsVar)
+                } else {
+                    // a missing row is reported by the query, as usual.
+                    beginControlFlow("if ($L != null && !$L.isEmpty())", rowsVar, rowsVar)
+                }
+                if (canReleaseQuery) {
+                    addStatement("$L.release()", depotSQLiteQueryVar)
+                }
+                if (returnsList) {
+                    addStatement("return $L", rowsVar)
+                } else {
+                    addStatement("return $L.get(0)", rowsVar)
+                }
+                endControlFlow()
+            }
+        }
+        InstantQueryResultBinder(adapter).convertAndReturn(
+            depotSQLiteQueryVar, canReleaseQuery, dbField, inTransaction, scope
+        )
+    }
+}
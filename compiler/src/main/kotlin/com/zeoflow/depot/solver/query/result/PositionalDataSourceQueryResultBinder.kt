@@ -22,6 +22,11 @@ import com.zeoflow.depot.ext.L
 import com.zeoflow.depot.ext.N
 import com.zeoflow.depot.ext.DepotTypeNames
 import com.zeoflow.depot.solver.CodeGenScope
+import com.zeoflow.depot.ext.S
+import com.zeoflow.depot.ext.T
+import com.zeoflow.depot.vo.KeysetPaging
+import com.squareup.javapoet.ArrayTypeName
+import com.squareup.javapoet.CodeBlock
 import com.squareup.javapoet.FieldSpec
 import com.squareup.javapoet.MethodSpec
 import com.squareup.javapoet.ParameterSpec
@@ -48,10 +53,16 @@ class PositionalDataSourceQueryResultBinder(
     val listAdapter: ListQueryResultAdapter?,
     val tableNames: Set<String>,
     val forPaging3: Boolean,
+    val keysetPaging: KeysetPaging? = null
 ) : QueryResultBinder(listAdapter) {
     val itemTypeName: TypeName = listAdapter?.rowAdapter?.out?.typeName ?: TypeName.OBJECT
     val typeName: ParameterizedTypeName = ParameterizedTypeName.get(
-        DepotTypeNames.LIMIT_OFFSET_DATA_SOURCE, itemTypeName
+        if (keysetPaging == null) {
+            DepotTypeNames.LIMIT_OFFSET_DATA_SOURCE
+        } else {
+            DepotTypeNames.KEYSET_DATA_SOURCE
+        },
+        itemTypeName
     )
     override fun convertAndReturn(
         depotSQLiteQueryVar: String,
@@ -64,10 +75,25 @@ class PositionalDataSourceQueryResultBinder(
         // we don't need a comma. If list is empty, this prevents generating bad code (it is still
         // an error to have empty list but that is already reported while item is processed)
         val tableNamesList = tableNames.joinToString("") { ", \"$it\"" }
-        val spec = TypeSpec.anonymousClassBuilder(
-            "$N, $L, $L, $L $L",
-            dbField, depotSQLiteQueryVar, inTransaction, !forPaging3, tableNamesList
-        ).apply {
+        val constructorArgs = if (keysetPaging == null) {
+            CodeBlock.of(
+                "$N, $L, $L, $L $L",
+                dbField, depotSQLiteQueryVar, inTransaction, !forPaging3, tableNamesList
+            )
+        } else {
+            // The sort key is derived from the ORDER BY, pages seek to the key of their neighbor.
+            CodeBlock.of(
+                "$N, $L, $L, $L, $S, new $T {$L}, new $T {$L} $L",
+                dbField, depotSQLiteQueryVar, inTransaction, !forPaging3,
+                keysetPaging.orderByClause,
+                ArrayTypeName.of(CommonTypeNames.STRING),
+                keysetPaging.keyColumns.joinToString(", ") { "\"$it\"" },
+                ArrayTypeName.of(TypeName.BOOLEAN),
+                keysetPaging.descending.joinToString(", "),
+                tableNamesList
+            )
+        }
+        val spec = TypeSpec.anonymousClassBuilder(constructorArgs).apply {
             superclass(typeName)
             addMethod(createConvertRowsMethod(scope))
         }.build()
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.solver.query.result
+
+import com.zeoflow.depot.compiler.processing.XType
+import com.zeoflow.depot.ext.AndroidTypeNames
+import com.zeoflow.depot.ext.DepotTypeNames
+import com.zeoflow.depot.ext.L
+import com.zeoflow.depot.ext.T
+import com.zeoflow.depot.solver.CodeGenScope
+import com.squareup.javapoet.MethodSpec
+import com.squareup.javapoet.ParameterizedTypeName
+import com.squareup.javapoet.TypeSpec
+import javax.lang.model.element.Modifier
+
+/**
+ * Wraps the cursor in a CursorIterator that converts one row per call to next() instead of
+ * reading the whole result up front.
+ */
+class StreamingQueryResultAdapter(
+    private val typeArg: XType,
+    rowAdapter: RowAdapter
+) : QueryResultAdapter(rowAdapter) {
+    override fun convert(outVarName: String, cursorVarName: String, scope: CodeGenScope) {
+        convert(outVarName, cursorVarName, null, scope)
+    }
+
+    /**
+     * @param queryVarName The query to release with the cursor, or null if the caller owns it.
+     */
+    fun convert(
+        outVarName: String,
+        cursorVarName: String,
+        queryVarName: String?,
+        scope: CodeGenScope
+    ) {
+        val iteratorType = ParameterizedTypeName.get(
+            DepotTypeNames.CURSOR_ITERATOR, typeArg.typeName
+        )
+        scope.builder().apply {
+            rowAdapter?.onCursorReady(cursorVarName, scope)
+            val convertScope = scope.fork()
+            convertScope.builder().apply {
+                val tmpVarName = convertScope.getTmpVar("_item")
+                addStatement("final $T $L", typeArg.typeName, tmpVarName)
+                rowAdapter?.convert(tmpVarName, cursorVarName, convertScope)
+                addStatement("return $L", tmpVarName)
+            }
+            val convertMethod = MethodSpec.methodBuilder("convert").apply {
+                addAnnotation(Override::class.java)
+                addModifiers(Modifier.PROTECTED)
+                returns(typeArg.typeName)
+                addParameter(AndroidTypeNames.CURSOR, cursorVarName)
+                addCode(convertScope.builder().build())
+            }.build()
+            val iterator = TypeSpec.anonymousClassBuilder(
+                "$L, $L", cursorVarName, queryVarName ?: "null"
+            ).apply {
+                superclass(iteratorType)
+                addMethod(convertMethod)
+            }.build()
+            addStatement("final $T $L = $L", iteratorType, outVarName, iterator)
+        }
+    }
+}
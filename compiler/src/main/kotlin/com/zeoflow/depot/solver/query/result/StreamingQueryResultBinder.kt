@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.solver.query.result
+
+import com.zeoflow.depot.ext.AndroidTypeNames
+import com.zeoflow.depot.ext.DepotTypeNames
+import com.zeoflow.depot.ext.L
+import com.zeoflow.depot.ext.N
+import com.zeoflow.depot.ext.T
+import com.zeoflow.depot.solver.CodeGenScope
+import com.zeoflow.depot.writer.DaoWriter
+import com.squareup.javapoet.ClassName
+import com.squareup.javapoet.FieldSpec
+
+/**
+ * Runs the query and returns an iterator, or a stream, that owns the cursor and maps its rows
+ * lazily. The cursor is only closed here if something fails before it is handed off. The query
+ * is marked as streaming so that the database never copies its whole result.
+ */
+class StreamingQueryResultBinder(
+    adapter: StreamingQueryResultAdapter?,
+    private val asStream: Boolean
+) : QueryResultBinder(adapter) {
+    override fun convertAndReturn(
+        depotSQLiteQueryVar: String,
+        canReleaseQuery: Boolean,
+        dbField: FieldSpec,
+        inTransaction: Boolean,
+        scope: CodeGenScope
+    ) {
+        scope.builder().apply {
+            addStatement("$N.assertNotSuspendingTransaction()", DaoWriter.dbField)
+            val outVar = scope.getTmpVar("_result")
+            val cursorVar = scope.getTmpVar("_cursor")
+            addStatement(
+                "final $T $L = $T.queryStreaming($N, $L, $L)",
+                AndroidTypeNames.CURSOR,
+                cursorVar,
+                DepotTypeNames.DB_UTIL,
+                dbField,
+                depotSQLiteQueryVar,
+                "null"
+            )
+            beginControlFlow("try").apply {
+                (adapter as? StreamingQueryResultAdapter)?.convert(
+                    outVar, cursorVar, if (canReleaseQuery) depotSQLiteQueryVar else null, scope
+                )
+                if (asStream) {
+                    addStatement("return $L.asStream()", outVar)
+                } else {
+                    addStatement("return $L", outVar)
+                }
+            }
+            val exceptionVar = scope.getTmpVar("_e")
+            nextControlFlow("catch ($T $L)", RUNTIME_EXCEPTION, exceptionVar).apply {
+                addStatement("$L.close()", cursorVar)
+                if (canReleaseQuery) {
+                    addStatement("$L.release()", depotSQLiteQueryVar)
+                }
+                addStatement("throw $L", exceptionVar)
+            }
+            endControlFlow()
+        }
+    }
+
+    companion object {
+        private val RUNTIME_EXCEPTION = ClassName.get(RuntimeException::class.java)
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.vo
+
+import com.zeoflow.depot.compiler.processing.XFieldElement
+import com.zeoflow.depot.compiler.processing.XTypeElement
+import com.zeoflow.depot.ext.CommonTypeNames
+import com.squareup.javapoet.ArrayTypeName
+import com.squareup.javapoet.TypeName
+
+/**
+ * A class annotated with @ColumnBatch whose array fields each receive one result column.
+ */
+data class ColumnBatch(val element: XTypeElement, val columns: List<ColumnBatchColumn>) {
+    val typeName: TypeName
+        get() = element.className
+}
+
+data class ColumnBatchColumn(
+    val element: XFieldElement,
+    val columnName: String,
+    val kind: Kind
+) {
+    val name: String
+        get() = element.name
+
+    /**
+     * The supported array component types and the cursor method that reads each of them.
+     */
+    enum class Kind(val componentTypeName: TypeName, val cursorMethod: String) {
+        LONG(TypeName.LONG, "getLong"),
+        INT(TypeName.INT, "getInt"),
+        SHORT(TypeName.SHORT, "getShort"),
+        DOUBLE(TypeName.DOUBLE, "getDouble"),
+        FLOAT(TypeName.FLOAT, "getFloat"),
+        BOOLEAN(TypeName.BOOLEAN, "getInt"),
+        STRING(CommonTypeNames.STRING, "getString"),
+        BLOB(ArrayTypeName.of(TypeName.BYTE), "getBlob");
+
+        companion object {
+            fun fromComponentType(typeName: TypeName): Kind? {
+                return values().firstOrNull { it.componentTypeName == typeName }
+            }
+        }
+    }
+}
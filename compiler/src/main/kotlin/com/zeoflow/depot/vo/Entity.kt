@@ -33,7 +33,9 @@ open class Entity(
     val indices: List<Index>,
     val foreignKeys: List<ForeignKey>,
     constructor: Constructor?,
-    val shadowTableName: String?
+    val shadowTableName: String?,
+    val cached: Boolean = false,
+    val mirrored: Boolean = false
 ) : Pojo(element, type, fields, embeddedFields, emptyList(), constructor),
     HasSchemaIdentity,
     EntityOrView {
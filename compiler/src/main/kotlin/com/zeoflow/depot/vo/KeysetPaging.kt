@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.vo
+
+/**
+ * Describes how a paged query can seek to the sort key of the previous page rather than skip
+ * rows with OFFSET.
+ *
+ * @param orderByClause The ORDER BY clause the query ends with, as it appears in the generated
+ * SQL.
+ * @param keyColumns The columns of the sort key: the ORDER BY columns followed by the primary key
+ * columns that are not part of it, so that the key is unique.
+ * @param descending For each key column, true if it is sorted in descending order.
+ */
+data class KeysetPaging(
+    val orderByClause: String,
+    val keyColumns: List<String>,
+    val descending: List<Boolean>
+)
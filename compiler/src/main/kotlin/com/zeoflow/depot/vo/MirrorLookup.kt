@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.vo
+
+import com.zeoflow.depot.parser.SQLTypeAffinity
+
+/**
+ * Describes a query that can be answered from the in-memory mirror of a table.
+ *
+ * @param entity The mirrored entity.
+ * @param columnName The indexed column the query selects rows by, or null if it selects every
+ * row of the table.
+ * @param affinity The type affinity of the indexed column, which SQLite applies to the argument
+ * before comparing it.
+ */
+data class MirrorLookup(
+    val entity: Entity,
+    val columnName: String?,
+    val affinity: SQLTypeAffinity? = null
+) {
+    /**
+     * The columns the mirror indexes: the primary key and the single column indices.
+     */
+    val indexColumns: List<String>
+        get() = indexColumnsOf(entity)
+
+    companion object {
+        fun indexColumnsOf(entity: Entity): List<String> {
+            val primaryKey = entity.primaryKey.fields.singleOrNull()?.columnName
+            val indexed = entity.indices.filter { it.fields.size == 1 }.map {
+                it.fields.single().columnName
+            }
+            return (listOfNotNull(primaryKey) + indexed).distinct()
+        }
+    }
+}
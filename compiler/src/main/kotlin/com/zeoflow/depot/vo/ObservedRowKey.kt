@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.vo
+
+/**
+ * Describes an observable query that selects rows of a single table by its INTEGER PRIMARY KEY,
+ * so that its observer only needs to be notified when one of the selected rows changes.
+ *
+ * @param tableName The table whose rows are selected.
+ * @param argIndex The 1-based index of the query argument that holds the selected rowid.
+ */
+data class ObservedRowKey(
+    val tableName: String,
+    val argIndex: Int
+)
@@ -62,7 +62,8 @@ class ReadQueryMethod(
     returnType: XType,
     parameters: List<QueryParameter>,
     val inTransaction: Boolean,
-    val queryResultBinder: QueryResultBinder
+    val queryResultBinder: QueryResultBinder,
+    val resultCacheTables: List<String>? = null
 ) : QueryMethod(element, query, name, returnType, parameters)
 
 /**
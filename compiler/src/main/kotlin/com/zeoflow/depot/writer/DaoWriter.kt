@@ -26,13 +26,24 @@ import com.zeoflow.depot.compiler.processing.isVoid
 import com.zeoflow.depot.ext.CommonTypeNames
 import com.zeoflow.depot.ext.L
 import com.zeoflow.depot.ext.N
+import com.zeoflow.depot.ext.S
 import com.zeoflow.depot.ext.DepotTypeNames
 import com.zeoflow.depot.ext.SupportDbTypeNames
 import com.zeoflow.depot.ext.T
 import com.zeoflow.depot.ext.W
+import com.zeoflow.depot.processor.Context
 import com.zeoflow.depot.processor.OnConflictProcessor
 import com.zeoflow.depot.solver.CodeGenScope
 import com.zeoflow.depot.solver.KotlinDefaultMethodDelegateBinder
+import com.zeoflow.depot.solver.prepared.binder.InstantPreparedQueryResultBinder
+import com.zeoflow.depot.solver.query.result.CursorQueryResultBinder
+import com.zeoflow.depot.solver.query.result.EntityCacheQueryResultBinder
+import com.zeoflow.depot.solver.query.result.InstantQueryResultBinder
+import com.zeoflow.depot.solver.query.result.MirrorQueryResultBinder
+import com.zeoflow.depot.solver.query.result.QueryResultBinder
+import com.zeoflow.depot.solver.shortcut.binder.InstantDeleteOrUpdateMethodBinder
+import com.zeoflow.depot.solver.shortcut.binder.InstantInsertMethodBinder
+import com.zeoflow.depot.solver.transaction.binder.InstantTransactionMethodBinder
 import com.zeoflow.depot.solver.types.getRequiredTypeConverters
 import com.zeoflow.depot.vo.Dao
 import com.zeoflow.depot.vo.InsertionMethod
@@ -74,6 +85,9 @@ class DaoWriter(
 ) :
     ClassWriter(dao.typeName) {
     private val declaredDao = dao.element.type
+    private val daoMetrics = Context.BooleanProcessorOptions.DAO_METRICS.getValue(processingEnv)
+    // metric name to the field that holds its recorder, initialized in the constructor
+    private val metricsFields = linkedMapOf<String, FieldSpec>()
 
     companion object {
         const val GET_LIST_OF_TYPE_CONVERTERS_METHOD = "getRequiredConverters"
@@ -82,6 +96,8 @@ class DaoWriter(
             .builder(DepotTypeNames.DEPOT_DB, "__db", PRIVATE, FINAL)
             .build()
 
+        private val PACKAGE_PREFIX = Regex("\\b[a-z_][a-z0-9_]*\\.")
+
         private fun shortcutEntityFieldNamePart(shortcutEntity: ShortcutEntity): String {
             return if (shortcutEntity.isPartialEntity) {
                 typeNameToFieldName(shortcutEntity.pojo.typeName) + "As" +
@@ -117,6 +133,12 @@ class DaoWriter(
         val shortcutMethods = createInsertionMethods() +
             createDeletionMethods() + createUpdateMethods() + createTransactionMethods() +
             createPreparedQueries(preparedQueries)
+        // created before the constructor, which initializes the metrics fields they register
+        val selectMethods = dao.queryMethods.filterIsInstance<ReadQueryMethod>().map {
+            createSelectMethod(it)
+        }
+        val oneOffPreparedMethods = oneOffPreparedQueries.map { createPreparedQueryMethod(it) }
+        val rawQueryMethods = dao.rawQueryMethods.map { createRawQueryMethod(it) }
 
         builder.apply {
             addOriginatingElement(dbElement)
@@ -137,15 +159,9 @@ class DaoWriter(
                 addMethod(it.methodImpl)
             }
 
-            dao.queryMethods.filterIsInstance<ReadQueryMethod>().forEach { method ->
-                addMethod(createSelectMethod(method))
-            }
-            oneOffPreparedQueries.forEach {
-                addMethod(createPreparedQueryMethod(it))
-            }
-            dao.rawQueryMethods.forEach {
-                addMethod(createRawQueryMethod(it))
-            }
+            selectMethods.forEach { addMethod(it) }
+            oneOffPreparedMethods.forEach { addMethod(it) }
+            rawQueryMethods.forEach { addMethod(it) }
             dao.kotlinDefaultMethodDelegates.forEach {
                 addMethod(createDefaultMethodDelegate(it))
             }
@@ -228,7 +244,11 @@ class DaoWriter(
             scope = scope
         )
         return overrideWithoutAnnotations(method.element, declaredDao)
-            .addCode(scope.generate())
+            .addMeasuredCode(
+                method.element,
+                scope.generate(),
+                method.preparedQueryResultBinder is InstantPreparedQueryResultBinder
+            )
             .build()
     }
 
@@ -249,7 +269,11 @@ class DaoWriter(
             scope = scope
         )
         return overrideWithoutAnnotations(method.element, declaredDao)
-            .addCode(scope.generate())
+            .addMeasuredCode(
+                method.element,
+                scope.generate(),
+                method.methodBinder is InstantTransactionMethodBinder
+            )
             .build()
     }
 
@@ -276,12 +300,19 @@ class DaoWriter(
             }.forEach {
                 addStatement("this.$N = $L", it.first, it.second)
             }
+            metricsFields.forEach { (metricName, field) ->
+                addStatement("this.$N = $N.getDaoMethodMetrics($S)", field, dbField, metricName)
+            }
         }.build()
     }
 
     private fun createSelectMethod(method: ReadQueryMethod): MethodSpec {
         return overrideWithoutAnnotations(method.element, declaredDao).apply {
-            addCode(createQueryMethodBody(method))
+            addMeasuredCode(
+                method.element,
+                createQueryMethodBody(method),
+                isInstant(method.queryResultBinder)
+            )
         }.build()
     }
 
@@ -296,7 +327,7 @@ class DaoWriter(
                 queryParam?.isString() == true -> {
                     depotSQLiteQueryVar = scope.getTmpVar("_statement")
                     shouldReleaseQuery = true
-                    addStatement(
+                    scope.builder().addStatement(
                         "$T $L = $T.acquire($L, 0)",
                         DepotTypeNames.DEPOT_SQL_QUERY,
                         depotSQLiteQueryVar,
@@ -309,7 +340,7 @@ class DaoWriter(
                     depotSQLiteQueryVar = scope.getTmpVar("_internalQuery")
                     // move it to a final variable so that the generated code can use it inside
                     // callback blocks in java 7
-                    addStatement(
+                    scope.builder().addStatement(
                         "final $T $L = $N",
                         queryParam.type,
                         depotSQLiteQueryVar,
@@ -320,7 +351,7 @@ class DaoWriter(
                     // try to generate compiling code. we would've already reported this error
                     depotSQLiteQueryVar = scope.getTmpVar("_statement")
                     shouldReleaseQuery = false
-                    addStatement(
+                    scope.builder().addStatement(
                         "$T $L = $T.acquire($L, 0)",
                         DepotTypeNames.DEPOT_SQL_QUERY,
                         depotSQLiteQueryVar,
@@ -340,13 +371,21 @@ class DaoWriter(
                     scope = scope
                 )
             }
-            addCode(scope.builder().build())
+            addMeasuredCode(
+                method.element,
+                scope.generate(),
+                isInstant(method.queryResultBinder)
+            )
         }.build()
     }
 
     private fun createPreparedQueryMethod(method: WriteQueryMethod): MethodSpec {
         return overrideWithoutAnnotations(method.element, declaredDao).apply {
-            addCode(createPreparedQueryMethodBody(method))
+            addMeasuredCode(
+                method.element,
+                createPreparedQueryMethodBody(method),
+                method.preparedQueryResultBinder is InstantPreparedQueryResultBinder
+            )
         }.build()
     }
 
@@ -370,7 +409,11 @@ class DaoWriter(
                     insertionMethod.element,
                     declaredDao
                 ).apply {
-                    addCode(createInsertionMethodBody(insertionMethod, fields))
+                    addMeasuredCode(
+                        insertionMethod.element,
+                        createInsertionMethodBody(insertionMethod, fields),
+                        insertionMethod.methodBinder is InstantInsertMethodBinder
+                    )
                 }.build()
                 PreparedStmtQuery(fields, methodImpl)
             }
@@ -439,7 +482,11 @@ class DaoWriter(
                     spec to impl
                 }
                 val methodSpec = overrideWithoutAnnotations(method.element, declaredDao).apply {
-                    addCode(createDeleteOrUpdateMethodBody(method, fields))
+                    addMeasuredCode(
+                        method.element,
+                        createDeleteOrUpdateMethodBody(method, fields),
+                        method.methodBinder is InstantDeleteOrUpdateMethodBinder
+                    )
                 }.build()
                 PreparedStmtQuery(fields, methodSpec)
             }
@@ -545,6 +592,49 @@ class DaoWriter(
         return MethodSpecHelper.overridingWithFinalParams(elm, owner)
     }
 
+    /**
+     * Adds [code] to the method, wrapped so that every call is recorded in the DAO metrics of the
+     * database if they are enabled.
+     *
+     * Only methods that run their query before returning are [measured], the ones returning an
+     * observable or a deferred result would only measure its creation.
+     */
+    private fun MethodSpec.Builder.addMeasuredCode(
+        method: XMethodElement,
+        code: CodeBlock,
+        measured: Boolean
+    ): MethodSpec.Builder {
+        if (!daoMetrics || !measured || code.isEmpty) {
+            return addCode(code)
+        }
+        // overloads are told apart by their parameter types, without their packages.
+        val parameterTypes = method.parameters.joinToString(", ") {
+            it.type.typeName.withoutAnnotations().toString().replace(PACKAGE_PREFIX, "")
+        }
+        val metricName = "${dao.typeName.simpleName()}.${method.name}($parameterTypes)"
+        val field = getOrCreateField(DaoMetricsField(metricName, method.name))
+        metricsFields[metricName] = field
+        val callVar = "_metricsCall"
+        addStatement(
+            "final $T $L = $T.begin($N)",
+            DepotTypeNames.DAO_METHOD_METRICS_CALL, callVar,
+            DepotTypeNames.DAO_METHOD_METRICS, field
+        )
+        beginControlFlow("try")
+        addCode(code)
+        nextControlFlow("finally")
+        addStatement("$T.end($L)", DepotTypeNames.DAO_METHOD_METRICS, callVar)
+        endControlFlow()
+        return this
+    }
+
+    private fun isInstant(binder: QueryResultBinder): Boolean {
+        return binder is InstantQueryResultBinder ||
+            binder is CursorQueryResultBinder ||
+            binder is EntityCacheQueryResultBinder ||
+            binder is MirrorQueryResultBinder
+    }
+
     /**
      * Represents a query statement prepared in Dao implementation.
      *
@@ -602,6 +692,21 @@ class DaoWriter(
         }
     }
 
+    private class DaoMetricsField(
+        val metricName: String,
+        methodName: String
+    ) : SharedFieldSpec(
+        "metricsOf${methodName.capitalize(Locale.US)}", DepotTypeNames.DAO_METHOD_METRICS
+    ) {
+        override fun prepare(writer: ClassWriter, builder: FieldSpec.Builder) {
+            builder.addModifiers(PRIVATE, FINAL)
+        }
+
+        override fun getUniqueKey(): String {
+            return "metrics-$metricName"
+        }
+    }
+
     class PreparedStatementField(val method: QueryMethod) : SharedFieldSpec(
         "preparedStmtOf${method.name.capitalize(Locale.US)}", DepotTypeNames.SHARED_SQLITE_STMT
     ) {
@@ -32,6 +32,8 @@ import com.zeoflow.depot.ext.W
 import com.zeoflow.depot.solver.CodeGenScope
 import com.zeoflow.depot.vo.DaoMethod
 import com.zeoflow.depot.vo.Database
+import com.zeoflow.depot.vo.FtsEntity
+import com.squareup.javapoet.ArrayTypeName
 import com.squareup.javapoet.ClassName
 import com.squareup.javapoet.CodeBlock
 import com.squareup.javapoet.FieldSpec
@@ -280,9 +282,33 @@ class DatabaseWriter(val database: Database) : ClassWriter(database.implTypeName
                     view.viewName.lowercase(Locale.US), tablesVar
                 )
             }
+            val tableColumnsVar = scope.getTmpVar("_tableColumns")
+            val tableColumnsType = ParameterizedTypeName.get(
+                HashMap::class.typeName,
+                CommonTypeNames.STRING,
+                ArrayTypeName.of(CommonTypeNames.STRING)
+            )
+            // FTS tables are rewritten as a whole, so they are only tracked per table.
+            val columnTrackedEntities = database.entities.filterNot { it is FtsEntity }
+            addStatement(
+                "final $T $L = new $T($L)", tableColumnsType, tableColumnsVar, tableColumnsType,
+                columnTrackedEntities.size
+            )
+            columnTrackedEntities.forEach { entity ->
+                val columns = CodeBlock.builder().apply {
+                    entity.fields.forEachIndexed { index, field ->
+                        add(if (index == 0) "$S" else ", $S", field.columnName)
+                    }
+                }.build()
+                addStatement(
+                    "$L.put($S, new $T[] {$L})", tableColumnsVar, entity.tableName,
+                    CommonTypeNames.STRING, columns
+                )
+            }
             addStatement(
-                "return new $T(this, $L, $L, $L)",
-                DepotTypeNames.INVALIDATION_TRACKER, shadowTablesVar, viewTablesVar, tableNames
+                "return new $T(this, $L, $L, $L, $L)",
+                DepotTypeNames.INVALIDATION_TRACKER, shadowTablesVar, viewTablesVar,
+                tableColumnsVar, tableNames
             )
         }.build()
     }
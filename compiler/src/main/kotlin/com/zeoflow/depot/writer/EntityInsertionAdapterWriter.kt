@@ -21,6 +21,7 @@ import com.zeoflow.depot.ext.L
 import com.zeoflow.depot.ext.DepotTypeNames
 import com.zeoflow.depot.ext.S
 import com.zeoflow.depot.ext.SupportDbTypeNames
+import com.zeoflow.depot.parser.SQLTypeAffinity
 import com.zeoflow.depot.solver.CodeGenScope
 import com.zeoflow.depot.vo.FieldWithIndex
 import com.zeoflow.depot.vo.Pojo
@@ -32,12 +33,14 @@ import com.squareup.javapoet.ParameterSpec
 import com.squareup.javapoet.ParameterizedTypeName
 import com.squareup.javapoet.TypeName
 import com.squareup.javapoet.TypeSpec
+import javax.lang.model.element.Modifier.PROTECTED
 import javax.lang.model.element.Modifier.PUBLIC
 
 class EntityInsertionAdapterWriter private constructor(
     val tableName: String,
     val pojo: Pojo,
     val primitiveAutoGenerateColumn: String?,
+    val rowIdColumn: String?,
     val onConflict: String
 ) {
     companion object {
@@ -57,10 +60,15 @@ class EntityInsertionAdapterWriter private constructor(
             } else {
                 null
             }
+            // A single INTEGER primary key column is an alias for the rowid.
+            val rowIdField = entity.primaryKey.fields.singleOrNull()?.takeIf {
+                it.affinity == SQLTypeAffinity.INTEGER
+            }
             return EntityInsertionAdapterWriter(
                 tableName = entity.tableName,
                 pojo = entity.pojo,
                 primitiveAutoGenerateColumn = primitiveAutoGenerateField?.columnName,
+                rowIdColumn = rowIdField?.columnName,
                 onConflict = onConflict
             )
         }
@@ -118,6 +126,15 @@ class EntityInsertionAdapterWriter private constructor(
                     addCode(bindScope.builder().build())
                 }.build()
             )
+            addMethod(
+                MethodSpec.methodBuilder("getRowIdBindIndex").apply {
+                    addAnnotation(Override::class.java)
+                    addModifiers(PROTECTED)
+                    returns(TypeName.INT)
+                    val rowIdIndex = pojo.fields.indexOfFirst { it.columnName == rowIdColumn }
+                    addStatement("return $L", rowIdIndex + 1)
+                }.build()
+            )
         }.build()
     }
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.writer
+
+import com.zeoflow.depot.ext.AndroidTypeNames
+import com.zeoflow.depot.ext.DepotTypeNames
+import com.zeoflow.depot.ext.L
+import com.zeoflow.depot.ext.N
+import com.zeoflow.depot.ext.S
+import com.zeoflow.depot.vo.Entity
+import com.zeoflow.depot.vo.MirrorLookup
+import com.squareup.javapoet.CodeBlock
+import com.squareup.javapoet.FieldSpec
+import com.squareup.javapoet.MethodSpec
+import com.squareup.javapoet.ParameterizedTypeName
+import com.squareup.javapoet.TypeSpec
+import stripNonJava
+import javax.lang.model.element.Modifier.FINAL
+import javax.lang.model.element.Modifier.PRIVATE
+import javax.lang.model.element.Modifier.PROTECTED
+
+/**
+ * Creates the field that converts the rows of a mirrored table into entities.
+ */
+class MirrorRowReaderWriter(val entity: Entity) : ClassWriter.SharedFieldSpec(
+    "mirrorRowReaderOf${entity.typeName.toString().stripNonJava()}",
+    ParameterizedTypeName.get(DepotTypeNames.TABLE_MIRROR_ROW_READER, entity.typeName)
+) {
+    override fun getUniqueKey(): String {
+        return "mirror_row_reader_of_${entity.element.qualifiedName}"
+    }
+
+    override fun prepare(writer: ClassWriter, builder: FieldSpec.Builder) {
+        val converter = writer.getOrCreateMethod(EntityCursorConverterWriter(entity))
+        val indexColumns = MirrorLookup.indexColumnsOf(entity)
+        val reader = TypeSpec.anonymousClassBuilder(
+            CodeBlock.join(indexColumns.map { CodeBlock.of(S, it) }, ", ")
+        ).apply {
+            superclass(type)
+            addMethod(
+                MethodSpec.methodBuilder("read").apply {
+                    addAnnotation(Override::class.java)
+                    addModifiers(PROTECTED)
+                    returns(entity.typeName)
+                    addParameter(AndroidTypeNames.CURSOR, "cursor")
+                    addStatement("return $N(cursor)", converter)
+                }.build()
+            )
+        }.build()
+        builder.addModifiers(PRIVATE, FINAL)
+        builder.initializer("$L", reader)
+    }
+}
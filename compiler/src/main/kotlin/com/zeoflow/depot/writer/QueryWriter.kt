@@ -27,6 +27,7 @@ import com.zeoflow.depot.parser.Section
 import com.zeoflow.depot.solver.CodeGenScope
 import com.zeoflow.depot.vo.QueryMethod
 import com.zeoflow.depot.vo.QueryParameter
+import com.zeoflow.depot.vo.ReadQueryMethod
 import com.squareup.javapoet.ClassName
 import com.squareup.javapoet.TypeName
 
@@ -36,12 +37,14 @@ import com.squareup.javapoet.TypeName
 class QueryWriter constructor(
     val parameters: List<QueryParameter>,
     val sectionToParamMapping: List<Pair<Section, QueryParameter?>>,
-    val query: ParsedQuery
+    val query: ParsedQuery,
+    val resultCacheTables: List<String>? = null
 ) {
 
     constructor(queryMethod: QueryMethod) : this(
         queryMethod.parameters,
-        queryMethod.sectionToParamMapping, queryMethod.query
+        queryMethod.sectionToParamMapping, queryMethod.query,
+        (queryMethod as? ReadQueryMethod)?.resultCacheTables
     )
 
     fun prepareReadAndBind(
@@ -51,6 +54,12 @@ class QueryWriter constructor(
     ) {
         val listSizeVars = createSqlQueryAndArgs(outSqlQueryName, outDepotSQLiteQueryVar, scope)
         bindArgs(outDepotSQLiteQueryVar, listSizeVars, scope)
+        if (resultCacheTables != null) {
+            scope.builder().addStatement(
+                "$L.setResultCacheTables(${resultCacheTables.joinToString(", ") { S }})",
+                outDepotSQLiteQueryVar, *resultCacheTables.toTypedArray()
+            )
+        }
     }
 
     fun prepareQuery(
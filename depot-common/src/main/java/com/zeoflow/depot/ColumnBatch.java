@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class as a columnar query result. Each field of the class is an array that receives one
+ * selected column, with one element per row.
+ * <p>
+ * A {@link Query} method that returns a {@code ColumnBatch} class reads the cursor straight into
+ * primitive arrays, so scanning a large aggregate does not allocate an object, or box a value,
+ * per row.
+ * <pre>
+ * {@literal @}ColumnBatch
+ * public class DailyTotals {
+ *     public long[] day;
+ *     {@literal @}ColumnInfo(name = "total_cents")
+ *     public long[] total;
+ * }
+ *
+ * {@literal @}Dao
+ * public interface ReportDao {
+ *     {@literal @}Query("SELECT day, SUM(cents) AS total_cents FROM sale GROUP BY day")
+ *     DailyTotals dailyTotals();
+ * }
+ * </pre>
+ * Fields can be {@code long[]}, {@code int[]}, {@code short[]}, {@code double[]},
+ * {@code float[]}, {@code boolean[]}, {@code String[]} or {@code byte[][]}. They are matched to
+ * the result columns by name, which can be changed with {@link ColumnInfo#name()}. NULL values are
+ * read as 0 (or false) in primitive arrays. The class must have a non-private no-argument
+ * constructor and its fields must be non-private and non-final; in Kotlin, use {@code @JvmField}.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+public @interface ColumnBatch {
+}
@@ -141,4 +141,36 @@ public @interface Entity {
      * @return The list of field names.
      */
     String[] ignoredColumns() default {};
+
+    /**
+     * Whether instances of this entity loaded by their primary key are kept in the entity cache of
+     * the database.
+     * <p>
+     * A {@link Query} method that selects this entity with a
+     * {@code WHERE primaryKey = :key} clause first looks the key up in the cache and only runs
+     * the query on a miss. The cache holds the least recently used instances up to the size set
+     * with {@code DepotDatabase.Builder#setEntityCacheSize(int)} and is cleared whenever the
+     * table changes. Cached instances are shared between callers, so they must not be modified.
+     * <p>
+     * Defaults to {@code false}.
+     *
+     * @return True if instances of this entity are cached by primary key.
+     */
+    boolean cached() default false;
+
+    /**
+     * Whether the whole table of this entity is mirrored in memory.
+     * <p>
+     * This is meant for small reference tables that are read far more often than they change.
+     * Blocking {@link Query} methods that return this entity, or a list of it, and are either a
+     * plain {@code SELECT * FROM table} or select rows with {@code WHERE column = :value} on the
+     * primary key or on a single column {@link Index} are answered from the mirror without
+     * running SQL. The mirror is loaded on first use and reloaded after the table changes.
+     * Mirrored instances are shared between callers, so they must not be modified.
+     * <p>
+     * Defaults to {@code false}.
+     *
+     * @return True if the table of this entity is mirrored in memory.
+     */
+    boolean mirrored() default false;
 }
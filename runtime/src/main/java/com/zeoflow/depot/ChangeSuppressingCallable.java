@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.database.CursorWrapper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+
+import java.util.concurrent.Callable;
+
+/**
+ * A function computing the value of an observed query that can tell when the query returned the
+ * same rows as the last time, so the value is not computed nor emitted again.
+ * <p>
+ * The rows are compared by a 64 bit hash of their raw column values, read before any object of
+ * the result is created. The cursor is then moved back to its start, which is only free when
+ * every row is in memory: a result that does not fit in the first window of its cursor would be
+ * queried again from its first row, so such results are never hashed and always computed.
+ *
+ * @param <T> The return type
+ * @hide
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+public abstract class ChangeSuppressingCallable<T> implements Callable<T> {
+    // Only read and written by the function, which never runs on two threads at once.
+    private boolean mHasResult;
+    private long mResultHash;
+    private boolean mUnchanged;
+
+    /**
+     * Hashes the rows of the cursor and moves it back before its first row, unless the result
+     * does not fit in the first window of the cursor.
+     *
+     * @param cursor The cursor of the query, before its first row.
+     * @return True if the rows are the same as the last time, in which case the function should
+     * return null without reading the cursor.
+     */
+    protected final boolean isUnchanged(@NonNull Cursor cursor) {
+        if (!isInMemory(cursor)) {
+            mUnchanged = false;
+            mHasResult = false;
+            return false;
+        }
+        final long hash = hash(cursor);
+        cursor.moveToPosition(-1);
+        mUnchanged = mHasResult && hash == mResultHash;
+        mHasResult = true;
+        mResultHash = hash;
+        return mUnchanged;
+    }
+
+    /**
+     * @return True if the last call of the function returned no value because the rows were
+     * unchanged.
+     */
+    boolean wasUnchanged() {
+        return mUnchanged;
+    }
+
+    /**
+     * @return True if every row of the cursor can be read again without running its query again.
+     */
+    private static boolean isInMemory(@NonNull Cursor cursor) {
+        // the database may wrap the cursor of the connection, e.g. to time it.
+        Cursor wrappedCursor = cursor;
+        while (wrappedCursor instanceof CursorWrapper) {
+            wrappedCursor = ((CursorWrapper) wrappedCursor).getWrappedCursor();
+        }
+        if (!(wrappedCursor instanceof AbstractWindowedCursor)) {
+            return true;
+        }
+        final AbstractWindowedCursor windowedCursor = (AbstractWindowedCursor) wrappedCursor;
+        // Counting runs the query and fills the first window.
+        final int count = cursor.getCount();
+        if (!windowedCursor.hasWindow()) {
+            return count == 0;
+        }
+        final CursorWindow window = windowedCursor.getWindow();
+        return window.getStartPosition() == 0 && window.getNumRows() >= count;
+    }
+
+    private static long hash(@NonNull Cursor cursor) {
+        long hash = CursorHash.mix(CursorHash.SEED, cursor.getColumnCount());
+        while (cursor.moveToNext()) {
+            hash = CursorHash.mixRow(hash, cursor);
+        }
+        return CursorHash.mix(hash, cursor.getCount());
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * An {@link Iterator} over the rows of a query that holds on to the underlying cursor until it is
+ * exhausted or closed.
+ * <p>
+ * A {@link Query} method can return a {@code CloseableIterator<T>} or a
+ * {@code java.util.stream.Stream<T>} to map rows lazily, one at a time, instead of materializing
+ * the whole result in a {@link java.util.List}. The cursor is closed automatically once the last
+ * row has been read; callers that stop early must call {@link #close()}, preferably with a
+ * try-with-resources block. A plain {@link Iterator} is not supported since it can't be closed,
+ * and an abandoned one would keep its cursor, and its reader connection, until it is collected.
+ * <pre>
+ * try (CloseableIterator&lt;Song&gt; songs = songDao.iterateAll()) {
+ *     while (songs.hasNext()) {
+ *         export(songs.next());
+ *     }
+ * }
+ * </pre>
+ *
+ * @param <T> The type of the rows.
+ */
+public interface CloseableIterator<T> extends Iterator<T>, Closeable {
+    /**
+     * Closes the underlying cursor. After this call {@link #hasNext()} returns false. Calling it
+     * more than once has no effect.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A point in time snapshot of the reader connection pool of a {@link DepotDatabase}.
+ *
+ * @see DepotDatabase#getConnectionPoolStats()
+ * @see DepotDatabase.Builder#setReaderConnectionPoolSize(int)
+ */
+public final class ConnectionPoolStats {
+    private final int mPoolSize;
+    private final int mIdleConnectionCount;
+    private final long mAcquireCount;
+    private final long mWaitCount;
+    private final long mTimeoutCount;
+    private final long mTotalWaitTimeNanos;
+    private final long mMaxWaitTimeNanos;
+
+    ConnectionPoolStats(int poolSize, int idleConnectionCount, long acquireCount, long waitCount,
+            long timeoutCount, long totalWaitTimeNanos, long maxWaitTimeNanos) {
+        mPoolSize = poolSize;
+        mIdleConnectionCount = idleConnectionCount;
+        mAcquireCount = acquireCount;
+        mWaitCount = waitCount;
+        mTimeoutCount = timeoutCount;
+        mTotalWaitTimeNanos = totalWaitTimeNanos;
+        mMaxWaitTimeNanos = maxWaitTimeNanos;
+    }
+
+    /**
+     * @return The number of read-only connections in the pool, 0 if the pool is disabled.
+     */
+    public int getPoolSize() {
+        return mPoolSize;
+    }
+
+    /**
+     * @return The number of read-only connections that were not running a query.
+     */
+    public int getIdleConnectionCount() {
+        return mIdleConnectionCount;
+    }
+
+    /**
+     * @return The number of queries that were routed to a read-only connection.
+     */
+    public long getAcquireCount() {
+        return mAcquireCount;
+    }
+
+    /**
+     * @return The number of queries that had to wait for a read-only connection to be released.
+     */
+    public long getWaitCount() {
+        return mWaitCount;
+    }
+
+    /**
+     * @return The number of queries that gave up waiting for a read-only connection and ran on
+     * the writer connection instead.
+     */
+    public long getTimeoutCount() {
+        return mTimeoutCount;
+    }
+
+    /**
+     * @return The total time spent waiting for read-only connections, in nanoseconds.
+     */
+    public long getTotalWaitTimeNanos() {
+        return mTotalWaitTimeNanos;
+    }
+
+    /**
+     * @return The longest time a single query waited for a read-only connection, in nanoseconds.
+     */
+    public long getMaxWaitTimeNanos() {
+        return mMaxWaitTimeNanos;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ConnectionPoolStats{"
+                + "poolSize=" + mPoolSize
+                + ", idle=" + mIdleConnectionCount
+                + ", acquired=" + mAcquireCount
+                + ", waited=" + mWaitCount
+                + ", timedOut=" + mTimeoutCount
+                + ", totalWaitNanos=" + mTotalWaitTimeNanos
+                + ", maxWaitNanos=" + mMaxWaitTimeNanos
+                + '}';
+    }
+}
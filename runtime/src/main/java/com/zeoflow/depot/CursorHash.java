@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 64 bit FNV style hashes of the raw column values of cursor rows, used to tell whether rows
+ * changed without converting them.
+ */
+final class CursorHash {
+    static final long SEED = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private CursorHash() {
+    }
+
+    /**
+     * Mixes the values of the row the cursor is positioned on into the hash.
+     *
+     * @param hash   The hash so far, {@link #SEED} for a new hash.
+     * @param cursor The cursor, positioned on a row.
+     * @return The new hash.
+     */
+    static long mixRow(long hash, @NonNull Cursor cursor) {
+        final int columnCount = cursor.getColumnCount();
+        for (int i = 0; i < columnCount; i++) {
+            final int type = cursor.getType(i);
+            hash = mix(hash, type);
+            switch (type) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    hash = mix(hash, cursor.getLong(i));
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    hash = mix(hash, Double.doubleToLongBits(cursor.getDouble(i)));
+                    break;
+                case Cursor.FIELD_TYPE_STRING:
+                    final String string = cursor.getString(i);
+                    hash = mix(hash, string.length());
+                    for (int c = 0; c < string.length(); c++) {
+                        hash = mix(hash, string.charAt(c));
+                    }
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    final byte[] blob = cursor.getBlob(i);
+                    hash = mix(hash, blob.length);
+                    for (byte b : blob) {
+                        hash = mix(hash, b);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return hash;
+    }
+
+    static long mix(long hash, long value) {
+        final long mixed = (hash ^ value) * FNV_PRIME;
+        // multiplying only carries bits upwards, fold the high half back down.
+        return mixed ^ (mixed >>> 32);
+    }
+}
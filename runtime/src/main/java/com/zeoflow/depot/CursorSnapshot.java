@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * An immutable copy of the rows of a cursor that can be read through any number of cursors.
+ */
+final class CursorSnapshot {
+    // Rough per snapshot and per value costs, in bytes, used to estimate the size of a snapshot.
+    private static final int SNAPSHOT_OVERHEAD_BYTES = 128;
+    private static final int VALUE_OVERHEAD_BYTES = 16;
+
+    private final String[] mColumnNames;
+    private final Object[][] mRows;
+    private final long mSizeBytes;
+
+    private CursorSnapshot(String[] columnNames, Object[][] rows, long sizeBytes) {
+        mColumnNames = columnNames;
+        mRows = rows;
+        mSizeBytes = sizeBytes;
+    }
+
+    /**
+     * Copies the remaining rows of the cursor. The cursor is not closed.
+     *
+     * @param cursor The cursor to copy.
+     * @return The snapshot of the cursor.
+     */
+    @NonNull
+    static CursorSnapshot copyOf(@NonNull Cursor cursor) {
+        return copyOf(cursor, Long.MAX_VALUE);
+    }
+
+    /**
+     * Copies the remaining rows of the cursor, unless they take more than the given size. The
+     * cursor is not closed.
+     *
+     * @param cursor       The cursor to copy.
+     * @param maxSizeBytes The size the snapshot may take, estimated as by {@link #getSizeBytes()}.
+     * @return The snapshot of the cursor, or null if it would be larger than the given size. The
+     * cursor is then left wherever the copy stopped.
+     */
+    @Nullable
+    static CursorSnapshot copyOf(@NonNull Cursor cursor, long maxSizeBytes) {
+        final String[] columnNames = cursor.getColumnNames();
+        final Object[][] rows = new Object[Math.max(cursor.getCount(), 0)][];
+        long sizeBytes = SNAPSHOT_OVERHEAD_BYTES;
+        int position = 0;
+        while (cursor.moveToNext() && position < rows.length) {
+            final Object[] row = new Object[columnNames.length];
+            for (int i = 0; i < row.length; i++) {
+                switch (cursor.getType(i)) {
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        row[i] = cursor.getLong(i);
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        row[i] = cursor.getDouble(i);
+                        break;
+                    case Cursor.FIELD_TYPE_STRING:
+                        final String string = cursor.getString(i);
+                        row[i] = string;
+                        sizeBytes += 2L * string.length();
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        final byte[] blob = cursor.getBlob(i);
+                        row[i] = blob;
+                        sizeBytes += blob.length;
+                        break;
+                    default:
+                        break;
+                }
+                sizeBytes += VALUE_OVERHEAD_BYTES;
+            }
+            if (sizeBytes > maxSizeBytes) {
+                return null;
+            }
+            rows[position++] = row;
+        }
+        return new CursorSnapshot(columnNames, rows, sizeBytes);
+    }
+
+    /**
+     * Returns the estimated size of the snapshot in memory.
+     */
+    long getSizeBytes() {
+        return mSizeBytes;
+    }
+
+    /**
+     * Returns a new cursor over the rows of the snapshot.
+     * <p>
+     * Blobs are copied so that callers writing into them do not change the snapshot.
+     */
+    @NonNull
+    Cursor newCursor() {
+        final MatrixCursor cursor = new MatrixCursor(mColumnNames, mRows.length);
+        for (Object[] row : mRows) {
+            if (row == null) {
+                break;
+            }
+            final Object[] values = row.clone();
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] instanceof byte[]) {
+                    values[i] = ((byte[]) values[i]).clone();
+                }
+            }
+            cursor.addRow(values);
+        }
+        return cursor;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+/**
+ * Records the latency, the number of rows and the number of bound bytes of the calls to a single
+ * DAO method.
+ * <p>
+ * Generated DAOs wrap the body of each method that runs its query before returning in a
+ * {@link #begin(DaoMethodMetrics)} and {@link #end(Call)} pair. While a call is in progress, the
+ * database attributes the rows it reads or writes and the arguments it binds to the innermost
+ * call of the current thread, so a {@link Transaction} method that calls other DAO methods
+ * accounts for everything they did as well. Rows read are those the method moves its cursors
+ * onto, counted when the cursor is closed, so rows a lazy iterator or stream reads after the
+ * method returned are not counted.
+ *
+ * @hide
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+public final class DaoMethodMetrics {
+    private static final ThreadLocal<Call> sCurrentCall = new ThreadLocal<>();
+
+    private final String mName;
+    private final LogHistogram mLatencyNanos = new LogHistogram();
+    private final LogHistogram mRows = new LogHistogram();
+    private final LogHistogram mBoundBytes = new LogHistogram();
+
+    DaoMethodMetrics(@NonNull String name) {
+        mName = name;
+    }
+
+    /**
+     * Starts measuring a call of a DAO method.
+     *
+     * @param metrics The metrics of the method or null if the database does not collect them.
+     * @return The call to pass to {@link #end(Call)} or null if nothing is measured.
+     */
+    @Nullable
+    public static Call begin(@Nullable DaoMethodMetrics metrics) {
+        if (metrics == null) {
+            return null;
+        }
+        final Call call = new Call(metrics, sCurrentCall.get());
+        sCurrentCall.set(call);
+        call.mStartNanos = SystemClock.elapsedRealtimeNanos();
+        return call;
+    }
+
+    /**
+     * Finishes measuring a call of a DAO method, whether it returned or threw.
+     *
+     * @param call The call returned by {@link #begin(DaoMethodMetrics)}.
+     */
+    public static void end(@Nullable Call call) {
+        if (call == null) {
+            return;
+        }
+        final long duration = SystemClock.elapsedRealtimeNanos() - call.mStartNanos;
+        final DaoMethodMetrics metrics = call.mMetrics;
+        metrics.mLatencyNanos.record(duration);
+        metrics.mRows.record(call.mRows);
+        metrics.mBoundBytes.record(call.mBoundBytes);
+        final Call parent = call.mParent;
+        if (parent == null) {
+            sCurrentCall.remove();
+        } else {
+            parent.mRows += call.mRows;
+            parent.mBoundBytes += call.mBoundBytes;
+            sCurrentCall.set(parent);
+        }
+    }
+
+    /**
+     * Attributes rows read or written on the current thread to the DAO method being measured, if
+     * any.
+     */
+    static void recordRows(long rows) {
+        final Call call = sCurrentCall.get();
+        if (call != null && rows > 0) {
+            call.mRows += rows;
+        }
+    }
+
+    /**
+     * Wraps a cursor returned to a DAO method so that the rows it reads are attributed to the
+     * method being measured on the current thread, if any, when the cursor is closed.
+     *
+     * @param cursor The cursor to count the rows of.
+     * @return The cursor to read from.
+     */
+    @NonNull
+    public static Cursor countRows(@NonNull Cursor cursor) {
+        final Call call = sCurrentCall.get();
+        return call == null ? cursor : new RowCountingCursor(cursor, call);
+    }
+
+    /**
+     * Attributes bytes bound to a statement on the current thread to the DAO method being
+     * measured, if any.
+     */
+    static void recordBoundBytes(long bytes) {
+        final Call call = sCurrentCall.get();
+        if (call != null && bytes > 0) {
+            call.mBoundBytes += bytes;
+        }
+    }
+
+    @NonNull
+    String getName() {
+        return mName;
+    }
+
+    @NonNull
+    DaoMethodStats snapshot() {
+        return new DaoMethodStats(mName, mLatencyNanos.snapshot(), mRows.snapshot(),
+                mBoundBytes.snapshot());
+    }
+
+    /**
+     * A DAO method call in progress. Only used by the thread that started it.
+     */
+    public static final class Call {
+        final DaoMethodMetrics mMetrics;
+        @Nullable
+        final Call mParent;
+        long mStartNanos;
+        long mRows;
+        long mBoundBytes;
+
+        private Call(DaoMethodMetrics metrics, @Nullable Call parent) {
+            mMetrics = metrics;
+            mParent = parent;
+        }
+    }
+
+    /**
+     * Counts the rows a cursor is moved onto and attributes them to a call when it is closed on
+     * the thread of the call, before the call ended.
+     */
+    private static final class RowCountingCursor extends CursorWrapper {
+        private final Call mCall;
+        // the furthest position the cursor was moved onto, -1 if none.
+        private int mMaxPosition = -1;
+        private boolean mClosed;
+
+        RowCountingCursor(@NonNull Cursor cursor, @NonNull Call call) {
+            super(cursor);
+            mCall = call;
+        }
+
+        private boolean moved(boolean moved) {
+            if (moved) {
+                mMaxPosition = Math.max(mMaxPosition, getPosition());
+            }
+            return moved;
+        }
+
+        @Override
+        public boolean move(int offset) {
+            return moved(super.move(offset));
+        }
+
+        @Override
+        public boolean moveToPosition(int position) {
+            return moved(super.moveToPosition(position));
+        }
+
+        @Override
+        public boolean moveToFirst() {
+            return moved(super.moveToFirst());
+        }
+
+        @Override
+        public boolean moveToLast() {
+            return moved(super.moveToLast());
+        }
+
+        @Override
+        public boolean moveToNext() {
+            return moved(super.moveToNext());
+        }
+
+        @Override
+        public boolean moveToPrevious() {
+            return moved(super.moveToPrevious());
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            if (!mClosed) {
+                mClosed = true;
+                if (sCurrentCall.get() == mCall) {
+                    mCall.mRows += mMaxPosition + 1;
+                }
+            }
+        }
+    }
+}
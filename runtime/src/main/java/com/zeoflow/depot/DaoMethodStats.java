@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A point in time snapshot of the metrics of a single DAO method.
+ * <p>
+ * Rows are the rows returned by queries plus the rows inserted, updated or deleted, and bound
+ * bytes are the size of the arguments bound to statements, counting 8 bytes per number and the
+ * length of strings and blobs. Both include the work done by the DAO methods it called.
+ *
+ * @see DaoMetrics
+ */
+public final class DaoMethodStats {
+    private final String mName;
+    private final HistogramSnapshot mLatencyNanos;
+    private final HistogramSnapshot mRows;
+    private final HistogramSnapshot mBoundBytes;
+
+    DaoMethodStats(@NonNull String name, @NonNull HistogramSnapshot latencyNanos,
+            @NonNull HistogramSnapshot rows, @NonNull HistogramSnapshot boundBytes) {
+        mName = name;
+        mLatencyNanos = latencyNanos;
+        mRows = rows;
+        mBoundBytes = boundBytes;
+    }
+
+    /**
+     * @return The name of the method, as {@code DaoName.methodName(ParameterType, ...)} so that
+     * overloads are told apart. Parameter types are given without their packages.
+     */
+    @NonNull
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @return The number of completed calls, including the ones that threw.
+     */
+    public long getCallCount() {
+        return mLatencyNanos.getCount();
+    }
+
+    /**
+     * @return The duration of the calls, in nanoseconds.
+     */
+    @NonNull
+    public HistogramSnapshot getLatencyNanos() {
+        return mLatencyNanos;
+    }
+
+    /**
+     * @return The number of rows read or written per call.
+     */
+    @NonNull
+    public HistogramSnapshot getRows() {
+        return mRows;
+    }
+
+    /**
+     * @return The number of bytes bound to statements per call.
+     */
+    @NonNull
+    public HistogramSnapshot getBoundBytes() {
+        return mBoundBytes;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "DaoMethodStats{"
+                + "name=" + mName
+                + ", calls=" + getCallCount()
+                + ", latencyNanos=" + mLatencyNanos
+                + ", rows=" + mRows
+                + ", boundBytes=" + mBoundBytes
+                + '}';
+    }
+}
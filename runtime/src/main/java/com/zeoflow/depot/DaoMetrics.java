@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A point in time snapshot of the DAO metrics of a {@link DepotDatabase}.
+ *
+ * @see DepotDatabase#getMetrics()
+ * @see DepotDatabase.Builder#setDaoMetricsEnabled(boolean)
+ */
+public final class DaoMetrics {
+    private final Map<String, DaoMethodStats> mMethodStats;
+
+    DaoMetrics(@NonNull Map<String, DaoMethodStats> methodStats) {
+        mMethodStats = Collections.unmodifiableMap(methodStats);
+    }
+
+    /**
+     * @return The stats of each DAO method that was called, keyed and sorted by
+     * {@code DaoName.methodName(ParameterType, ...)}.
+     */
+    @NonNull
+    public Map<String, DaoMethodStats> getMethodStats() {
+        return mMethodStats;
+    }
+
+    /**
+     * @param name The name of the method, as {@code DaoName.methodName(ParameterType, ...)}.
+     * @return The stats of the method or null if it was never called.
+     */
+    @Nullable
+    public DaoMethodStats getMethodStats(@NonNull String name) {
+        return mMethodStats.get(name);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "DaoMetrics{"
+                + "methods=" + mMethodStats.values()
+                + '}';
+    }
+}
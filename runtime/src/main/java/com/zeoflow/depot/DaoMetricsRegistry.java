@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the {@link DaoMethodMetrics} of a database, one per DAO method name.
+ */
+final class DaoMetricsRegistry {
+    private final ConcurrentHashMap<String, DaoMethodMetrics> mMetrics =
+            new ConcurrentHashMap<>();
+
+    @NonNull
+    DaoMethodMetrics get(@NonNull String name) {
+        DaoMethodMetrics metrics = mMetrics.get(name);
+        if (metrics == null) {
+            final DaoMethodMetrics created = new DaoMethodMetrics(name);
+            metrics = mMetrics.putIfAbsent(name, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    @NonNull
+    DaoMetrics snapshot() {
+        final Map<String, DaoMethodStats> stats = new TreeMap<>();
+        for (DaoMethodMetrics metrics : mMetrics.values()) {
+            stats.put(metrics.getName(), metrics.snapshot());
+        }
+        return new DaoMetrics(stats);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+import com.zeoflow.sqlite.db.SupportSQLiteStatement;
+
+import java.io.IOException;
+
+/**
+ * Wraps a {@link SupportSQLiteStatement} to attribute the arguments it binds and the rows it
+ * writes to the DAO method being measured on the current thread.
+ */
+final class DaoMetricsStatement implements SupportSQLiteStatement {
+
+    private final SupportSQLiteStatement mDelegate;
+
+    DaoMetricsStatement(@NonNull SupportSQLiteStatement delegate) {
+        mDelegate = delegate;
+    }
+
+    @Override
+    public void execute() {
+        mDelegate.execute();
+    }
+
+    @Override
+    public int executeUpdateDelete() {
+        final int count = mDelegate.executeUpdateDelete();
+        DaoMethodMetrics.recordRows(count);
+        return count;
+    }
+
+    @Override
+    public long executeInsert() {
+        final long rowId = mDelegate.executeInsert();
+        if (rowId != -1) {
+            DaoMethodMetrics.recordRows(1);
+        }
+        return rowId;
+    }
+
+    @Override
+    public long simpleQueryForLong() {
+        final long result = mDelegate.simpleQueryForLong();
+        DaoMethodMetrics.recordRows(1);
+        return result;
+    }
+
+    @Override
+    public String simpleQueryForString() {
+        final String result = mDelegate.simpleQueryForString();
+        DaoMethodMetrics.recordRows(1);
+        return result;
+    }
+
+    @Override
+    public void bindNull(int index) {
+        mDelegate.bindNull(index);
+    }
+
+    @Override
+    public void bindLong(int index, long value) {
+        DaoMethodMetrics.recordBoundBytes(8);
+        mDelegate.bindLong(index, value);
+    }
+
+    @Override
+    public void bindDouble(int index, double value) {
+        DaoMethodMetrics.recordBoundBytes(8);
+        mDelegate.bindDouble(index, value);
+    }
+
+    @Override
+    public void bindString(int index, String value) {
+        DaoMethodMetrics.recordBoundBytes(value == null ? 0 : value.length());
+        mDelegate.bindString(index, value);
+    }
+
+    @Override
+    public void bindBlob(int index, byte[] value) {
+        DaoMethodMetrics.recordBoundBytes(value == null ? 0 : value.length);
+        mDelegate.bindBlob(index, value);
+    }
+
+    @Override
+    public void clearBindings() {
+        mDelegate.clearBindings();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mDelegate.close();
+    }
+}
@@ -137,13 +137,75 @@ public class DatabaseConfiguration {
     @Nullable
     public final Callable<InputStream> copyFromInputStream;
 
+    /**
+     * The number of read-only connections used to run queries outside of transactions, 0 if all
+     * queries run on the writer connection.
+     */
+    public final int readerConnectionPoolSize;
+
+    /**
+     * The maximum number of idle prepared statements cached for the writer connection, 0 if
+     * statements are not cached.
+     */
+    public final int statementCacheSize;
+
+    /**
+     * How long the invalidation tracker waits after a commit to merge the invalidations of the
+     * following commits into a single refresh, 0 to refresh after every commit.
+     */
+    public final long invalidationCoalescingWindowMillis;
+
+    /**
+     * The maximum number of commits whose invalidations are merged into a single refresh, 0 for no
+     * limit.
+     */
+    public final int invalidationMaxBatchSize;
+
+    /**
+     * How long the group commit writer waits for more writes before it runs them in a single
+     * transaction.
+     */
+    public final long groupCommitWindowMillis;
+
+    /**
+     * The maximum number of queued transactions the transaction executor runs before it hands the
+     * thread back to its delegate executor.
+     */
+    public final int maxTransactionsPerHandoff;
+
+    /**
+     * The maximum number of results kept by the query result cache, 0 if it is disabled.
+     */
+    public final int queryResultCacheMaxEntries;
+
+    /**
+     * The maximum estimated size of the results kept by the query result cache, in bytes.
+     */
+    public final long queryResultCacheMaxSizeBytes;
+
+    /**
+     * The maximum number of instances kept per cached entity, 0 if entities are not cached.
+     */
+    public final int entityCacheSize;
+
+    /**
+     * Whether identical queries issued at the same time run only once.
+     */
+    public final boolean queryDeduplicationEnabled;
+
+    /**
+     * Whether the latency, rows and bound bytes of DAO method calls are recorded.
+     */
+    public final boolean daoMetricsEnabled;
+
     /**
      * Creates a database configuration with the given values.
      *
      * @deprecated Use {@link #DatabaseConfiguration(Context, String,
      * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
      * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
-     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>)}
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
      *
      * @param context The application context.
      * @param name Name of the database, can be null if it is in memory.
@@ -183,7 +245,8 @@ public class DatabaseConfiguration {
      * @deprecated Use {@link #DatabaseConfiguration(Context, String,
      * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
      * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
-     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>)}
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
      *
      * @param context The application context.
      * @param name Name of the database, can be null if it is in memory.
@@ -229,7 +292,8 @@ public class DatabaseConfiguration {
      * @deprecated Use {@link #DatabaseConfiguration(Context, String,
      * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
      * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
-     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>)}
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
      *
      * @param context The application context.
      * @param name Name of the database, can be null if it is in memory.
@@ -279,7 +343,8 @@ public class DatabaseConfiguration {
      * @deprecated Use {@link #DatabaseConfiguration(Context, String,
      * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
      * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
-     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>)}
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
      *
      * @param context The application context.
      * @param name Name of the database, can be null if it is in memory.
@@ -333,7 +398,8 @@ public class DatabaseConfiguration {
      * @deprecated Use {@link #DatabaseConfiguration(Context, String,
      * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
      * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
-     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>)}
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
      *
      * @param context The application context.
      * @param name Name of the database, can be null if it is in memory.
@@ -390,7 +456,8 @@ public class DatabaseConfiguration {
      * @deprecated Use {@link #DatabaseConfiguration(Context, String,
      * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
      * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
-     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>)}
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
      *
      * @param context The application context.
      * @param name Name of the database, can be null if it is in memory.
@@ -446,6 +513,12 @@ public class DatabaseConfiguration {
     /**
      * Creates a database configuration with the given values.
      *
+     * @deprecated Use {@link #DatabaseConfiguration(Context, String,
+     * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
+     * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
+     *
      * @param context The application context.
      * @param name Name of the database, can be null if it is in memory.
      * @param sqliteOpenHelperFactory The open helper factory to use.
@@ -471,6 +544,7 @@ public class DatabaseConfiguration {
      *
      * @hide
      */
+    @Deprecated
     @SuppressLint("LambdaLast")
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
     public DatabaseConfiguration(@NonNull Context context, @Nullable String name,
@@ -491,6 +565,879 @@ public class DatabaseConfiguration {
             @Nullable DepotDatabase.PrepackagedDatabaseCallback prepackagedDatabaseCallback,
             @Nullable List<Object> typeConverters,
             @Nullable List<AutoMigrationSpec> autoMigrationSpecs) {
+        this(context, name, sqliteOpenHelperFactory, migrationContainer, callbacks,
+                allowMainThreadQueries, journalMode, queryExecutor, transactionExecutor,
+                multiInstanceInvalidation, requireMigration, allowDestructiveMigrationOnDowngrade,
+                migrationNotRequiredFrom, copyFromAssetPath, copyFromFile, copyFromInputStream,
+                prepackagedDatabaseCallback, typeConverters, autoMigrationSpecs, 0);
+    }
+
+    /**
+     * Creates a database configuration with the given values.
+     *
+     * @deprecated Use {@link #DatabaseConfiguration(Context, String,
+     * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
+     * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
+     *
+     * @param context The application context.
+     * @param name Name of the database, can be null if it is in memory.
+     * @param sqliteOpenHelperFactory The open helper factory to use.
+     * @param migrationContainer The migration container for migrations.
+     * @param callbacks The list of callbacks for database events.
+     * @param allowMainThreadQueries Whether to allow main thread reads/writes or not.
+     * @param journalMode The journal mode. This has to be either TRUNCATE or WRITE_AHEAD_LOGGING.
+     * @param queryExecutor The Executor used to execute asynchronous queries.
+     * @param transactionExecutor The Executor used to execute asynchronous transactions.
+     * @param multiInstanceInvalidation True if Depot should perform multi-instance invalidation.
+     * @param requireMigration True if Depot should require a valid migration if version changes,
+     * @param allowDestructiveMigrationOnDowngrade True if Depot should recreate tables if no
+     *                                             migration is supplied during a downgrade.
+     * @param migrationNotRequiredFrom The collection of schema versions from which migrations
+     *                                 aren't required.
+     * @param copyFromAssetPath The assets path to the pre-packaged database.
+     * @param copyFromFile The pre-packaged database file.
+     * @param copyFromInputStream The callable to get the input stream from which a
+     *                            pre-package database file will be copied from.
+     * @param prepackagedDatabaseCallback The pre-packaged callback.
+     * @param typeConverters The type converters.
+     * @param autoMigrationSpecs The auto migration specs.
+     * @param readerConnectionPoolSize The number of read-only connections used to run queries
+     *                                 outside of transactions.
+     *
+     * @hide
+     */
+    @Deprecated
+    @SuppressLint("LambdaLast")
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public DatabaseConfiguration(@NonNull Context context, @Nullable String name,
+            @NonNull SupportSQLiteOpenHelper.Factory sqliteOpenHelperFactory,
+            @NonNull DepotDatabase.MigrationContainer migrationContainer,
+            @Nullable List<DepotDatabase.Callback> callbacks,
+            boolean allowMainThreadQueries,
+            @NonNull DepotDatabase.JournalMode journalMode,
+            @NonNull Executor queryExecutor,
+            @NonNull Executor transactionExecutor,
+            boolean multiInstanceInvalidation,
+            boolean requireMigration,
+            boolean allowDestructiveMigrationOnDowngrade,
+            @Nullable Set<Integer> migrationNotRequiredFrom,
+            @Nullable String copyFromAssetPath,
+            @Nullable File copyFromFile,
+            @Nullable Callable<InputStream> copyFromInputStream,
+            @Nullable DepotDatabase.PrepackagedDatabaseCallback prepackagedDatabaseCallback,
+            @Nullable List<Object> typeConverters,
+            @Nullable List<AutoMigrationSpec> autoMigrationSpecs,
+            int readerConnectionPoolSize) {
+        this(context, name, sqliteOpenHelperFactory, migrationContainer, callbacks,
+                allowMainThreadQueries, journalMode, queryExecutor, transactionExecutor,
+                multiInstanceInvalidation, requireMigration, allowDestructiveMigrationOnDowngrade,
+                migrationNotRequiredFrom, copyFromAssetPath, copyFromFile, copyFromInputStream,
+                prepackagedDatabaseCallback, typeConverters, autoMigrationSpecs,
+                readerConnectionPoolSize, DepotDatabase.DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a database configuration with the given values.
+     *
+     * @deprecated Use {@link #DatabaseConfiguration(Context, String,
+     * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
+     * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
+     *
+     * @param context The application context.
+     * @param name Name of the database, can be null if it is in memory.
+     * @param sqliteOpenHelperFactory The open helper factory to use.
+     * @param migrationContainer The migration container for migrations.
+     * @param callbacks The list of callbacks for database events.
+     * @param allowMainThreadQueries Whether to allow main thread reads/writes or not.
+     * @param journalMode The journal mode. This has to be either TRUNCATE or WRITE_AHEAD_LOGGING.
+     * @param queryExecutor The Executor used to execute asynchronous queries.
+     * @param transactionExecutor The Executor used to execute asynchronous transactions.
+     * @param multiInstanceInvalidation True if Depot should perform multi-instance invalidation.
+     * @param requireMigration True if Depot should require a valid migration if version changes,
+     * @param allowDestructiveMigrationOnDowngrade True if Depot should recreate tables if no
+     *                                             migration is supplied during a downgrade.
+     * @param migrationNotRequiredFrom The collection of schema versions from which migrations
+     *                                 aren't required.
+     * @param copyFromAssetPath The assets path to the pre-packaged database.
+     * @param copyFromFile The pre-packaged database file.
+     * @param copyFromInputStream The callable to get the input stream from which a
+     *                            pre-package database file will be copied from.
+     * @param prepackagedDatabaseCallback The pre-packaged callback.
+     * @param typeConverters The type converters.
+     * @param autoMigrationSpecs The auto migration specs.
+     * @param readerConnectionPoolSize The number of read-only connections used to run queries
+     *                                 outside of transactions.
+     * @param statementCacheSize The maximum number of idle prepared statements cached for the
+     *                           writer connection.
+     *
+     * @hide
+     */
+    @Deprecated
+    @SuppressLint("LambdaLast")
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public DatabaseConfiguration(@NonNull Context context, @Nullable String name,
+            @NonNull SupportSQLiteOpenHelper.Factory sqliteOpenHelperFactory,
+            @NonNull DepotDatabase.MigrationContainer migrationContainer,
+            @Nullable List<DepotDatabase.Callback> callbacks,
+            boolean allowMainThreadQueries,
+            @NonNull DepotDatabase.JournalMode journalMode,
+            @NonNull Executor queryExecutor,
+            @NonNull Executor transactionExecutor,
+            boolean multiInstanceInvalidation,
+            boolean requireMigration,
+            boolean allowDestructiveMigrationOnDowngrade,
+            @Nullable Set<Integer> migrationNotRequiredFrom,
+            @Nullable String copyFromAssetPath,
+            @Nullable File copyFromFile,
+            @Nullable Callable<InputStream> copyFromInputStream,
+            @Nullable DepotDatabase.PrepackagedDatabaseCallback prepackagedDatabaseCallback,
+            @Nullable List<Object> typeConverters,
+            @Nullable List<AutoMigrationSpec> autoMigrationSpecs,
+            int readerConnectionPoolSize,
+            int statementCacheSize) {
+        this(context, name, sqliteOpenHelperFactory, migrationContainer, callbacks,
+                allowMainThreadQueries, journalMode, queryExecutor, transactionExecutor,
+                multiInstanceInvalidation, requireMigration, allowDestructiveMigrationOnDowngrade,
+                migrationNotRequiredFrom, copyFromAssetPath, copyFromFile, copyFromInputStream,
+                prepackagedDatabaseCallback, typeConverters, autoMigrationSpecs,
+                readerConnectionPoolSize, statementCacheSize, 0);
+    }
+
+    /**
+     * Creates a database configuration with the given values.
+     *
+     * @deprecated Use {@link #DatabaseConfiguration(Context, String,
+     * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
+     * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
+     *
+     * @param context The application context.
+     * @param name Name of the database, can be null if it is in memory.
+     * @param sqliteOpenHelperFactory The open helper factory to use.
+     * @param migrationContainer The migration container for migrations.
+     * @param callbacks The list of callbacks for database events.
+     * @param allowMainThreadQueries Whether to allow main thread reads/writes or not.
+     * @param journalMode The journal mode. This has to be either TRUNCATE or WRITE_AHEAD_LOGGING.
+     * @param queryExecutor The Executor used to execute asynchronous queries.
+     * @param transactionExecutor The Executor used to execute asynchronous transactions.
+     * @param multiInstanceInvalidation True if Depot should perform multi-instance invalidation.
+     * @param requireMigration True if Depot should require a valid migration if version changes,
+     * @param allowDestructiveMigrationOnDowngrade True if Depot should recreate tables if no
+     *                                             migration is supplied during a downgrade.
+     * @param migrationNotRequiredFrom The collection of schema versions from which migrations
+     *                                 aren't required.
+     * @param copyFromAssetPath The assets path to the pre-packaged database.
+     * @param copyFromFile The pre-packaged database file.
+     * @param copyFromInputStream The callable to get the input stream from which a
+     *                            pre-package database file will be copied from.
+     * @param prepackagedDatabaseCallback The pre-packaged callback.
+     * @param typeConverters The type converters.
+     * @param autoMigrationSpecs The auto migration specs.
+     * @param readerConnectionPoolSize The number of read-only connections used to run queries
+     *                                 outside of transactions.
+     * @param statementCacheSize The maximum number of idle prepared statements cached for the
+     *                           writer connection.
+     * @param invalidationCoalescingWindowMillis How long invalidations are coalesced, in
+     *                                           milliseconds.
+     *
+     * @hide
+     */
+    @Deprecated
+    @SuppressLint("LambdaLast")
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public DatabaseConfiguration(@NonNull Context context, @Nullable String name,
+            @NonNull SupportSQLiteOpenHelper.Factory sqliteOpenHelperFactory,
+            @NonNull DepotDatabase.MigrationContainer migrationContainer,
+            @Nullable List<DepotDatabase.Callback> callbacks,
+            boolean allowMainThreadQueries,
+            @NonNull DepotDatabase.JournalMode journalMode,
+            @NonNull Executor queryExecutor,
+            @NonNull Executor transactionExecutor,
+            boolean multiInstanceInvalidation,
+            boolean requireMigration,
+            boolean allowDestructiveMigrationOnDowngrade,
+            @Nullable Set<Integer> migrationNotRequiredFrom,
+            @Nullable String copyFromAssetPath,
+            @Nullable File copyFromFile,
+            @Nullable Callable<InputStream> copyFromInputStream,
+            @Nullable DepotDatabase.PrepackagedDatabaseCallback prepackagedDatabaseCallback,
+            @Nullable List<Object> typeConverters,
+            @Nullable List<AutoMigrationSpec> autoMigrationSpecs,
+            int readerConnectionPoolSize,
+            int statementCacheSize,
+            long invalidationCoalescingWindowMillis) {
+        this(context, name, sqliteOpenHelperFactory, migrationContainer, callbacks,
+                allowMainThreadQueries, journalMode, queryExecutor, transactionExecutor,
+                multiInstanceInvalidation, requireMigration, allowDestructiveMigrationOnDowngrade,
+                migrationNotRequiredFrom, copyFromAssetPath, copyFromFile, copyFromInputStream,
+                prepackagedDatabaseCallback, typeConverters, autoMigrationSpecs,
+                readerConnectionPoolSize, statementCacheSize, invalidationCoalescingWindowMillis,
+                0);
+    }
+
+    /**
+     * Creates a database configuration with the given values.
+     *
+     * @deprecated Use {@link #DatabaseConfiguration(Context, String,
+     * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
+     * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
+     *
+     * @param context The application context.
+     * @param name Name of the database, can be null if it is in memory.
+     * @param sqliteOpenHelperFactory The open helper factory to use.
+     * @param migrationContainer The migration container for migrations.
+     * @param callbacks The list of callbacks for database events.
+     * @param allowMainThreadQueries Whether to allow main thread reads/writes or not.
+     * @param journalMode The journal mode. This has to be either TRUNCATE or WRITE_AHEAD_LOGGING.
+     * @param queryExecutor The Executor used to execute asynchronous queries.
+     * @param transactionExecutor The Executor used to execute asynchronous transactions.
+     * @param multiInstanceInvalidation True if Depot should perform multi-instance invalidation.
+     * @param requireMigration True if Depot should require a valid migration if version changes,
+     * @param allowDestructiveMigrationOnDowngrade True if Depot should recreate tables if no
+     *                                             migration is supplied during a downgrade.
+     * @param migrationNotRequiredFrom The collection of schema versions from which migrations
+     *                                 aren't required.
+     * @param copyFromAssetPath The assets path to the pre-packaged database.
+     * @param copyFromFile The pre-packaged database file.
+     * @param copyFromInputStream The callable to get the input stream from which a
+     *                            pre-package database file will be copied from.
+     * @param prepackagedDatabaseCallback The pre-packaged callback.
+     * @param typeConverters The type converters.
+     * @param autoMigrationSpecs The auto migration specs.
+     * @param readerConnectionPoolSize The number of read-only connections used to run queries
+     *                                 outside of transactions.
+     * @param statementCacheSize The maximum number of idle prepared statements cached for the
+     *                           writer connection.
+     * @param invalidationCoalescingWindowMillis How long invalidations are coalesced, in
+     *                                           milliseconds.
+     * @param invalidationMaxBatchSize The maximum number of commits merged into a refresh.
+     *
+     * @hide
+     */
+    @Deprecated
+    @SuppressLint("LambdaLast")
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public DatabaseConfiguration(@NonNull Context context, @Nullable String name,
+            @NonNull SupportSQLiteOpenHelper.Factory sqliteOpenHelperFactory,
+            @NonNull DepotDatabase.MigrationContainer migrationContainer,
+            @Nullable List<DepotDatabase.Callback> callbacks,
+            boolean allowMainThreadQueries,
+            @NonNull DepotDatabase.JournalMode journalMode,
+            @NonNull Executor queryExecutor,
+            @NonNull Executor transactionExecutor,
+            boolean multiInstanceInvalidation,
+            boolean requireMigration,
+            boolean allowDestructiveMigrationOnDowngrade,
+            @Nullable Set<Integer> migrationNotRequiredFrom,
+            @Nullable String copyFromAssetPath,
+            @Nullable File copyFromFile,
+            @Nullable Callable<InputStream> copyFromInputStream,
+            @Nullable DepotDatabase.PrepackagedDatabaseCallback prepackagedDatabaseCallback,
+            @Nullable List<Object> typeConverters,
+            @Nullable List<AutoMigrationSpec> autoMigrationSpecs,
+            int readerConnectionPoolSize,
+            int statementCacheSize,
+            long invalidationCoalescingWindowMillis,
+            int invalidationMaxBatchSize) {
+        this(context, name, sqliteOpenHelperFactory, migrationContainer, callbacks,
+                allowMainThreadQueries, journalMode, queryExecutor, transactionExecutor,
+                multiInstanceInvalidation, requireMigration, allowDestructiveMigrationOnDowngrade,
+                migrationNotRequiredFrom, copyFromAssetPath, copyFromFile, copyFromInputStream,
+                prepackagedDatabaseCallback, typeConverters, autoMigrationSpecs,
+                readerConnectionPoolSize, statementCacheSize, invalidationCoalescingWindowMillis,
+                invalidationMaxBatchSize, 0);
+    }
+
+    /**
+     * Creates a database configuration with the given values.
+     *
+     * @deprecated Use {@link #DatabaseConfiguration(Context, String,
+     * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
+     * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
+     *
+     * @param context The application context.
+     * @param name Name of the database, can be null if it is in memory.
+     * @param sqliteOpenHelperFactory The open helper factory to use.
+     * @param migrationContainer The migration container for migrations.
+     * @param callbacks The list of callbacks for database events.
+     * @param allowMainThreadQueries Whether to allow main thread reads/writes or not.
+     * @param journalMode The journal mode. This has to be either TRUNCATE or WRITE_AHEAD_LOGGING.
+     * @param queryExecutor The Executor used to execute asynchronous queries.
+     * @param transactionExecutor The Executor used to execute asynchronous transactions.
+     * @param multiInstanceInvalidation True if Depot should perform multi-instance invalidation.
+     * @param requireMigration True if Depot should require a valid migration if version changes,
+     * @param allowDestructiveMigrationOnDowngrade True if Depot should recreate tables if no
+     *                                             migration is supplied during a downgrade.
+     * @param migrationNotRequiredFrom The collection of schema versions from which migrations
+     *                                 aren't required.
+     * @param copyFromAssetPath The assets path to the pre-packaged database.
+     * @param copyFromFile The pre-packaged database file.
+     * @param copyFromInputStream The callable to get the input stream from which a
+     *                            pre-package database file will be copied from.
+     * @param prepackagedDatabaseCallback The pre-packaged callback.
+     * @param typeConverters The type converters.
+     * @param autoMigrationSpecs The auto migration specs.
+     * @param readerConnectionPoolSize The number of read-only connections used to run queries
+     *                                 outside of transactions.
+     * @param statementCacheSize The maximum number of idle prepared statements cached for the
+     *                           writer connection.
+     * @param invalidationCoalescingWindowMillis How long invalidations are coalesced, in
+     *                                           milliseconds.
+     * @param invalidationMaxBatchSize The maximum number of commits merged into a refresh.
+     * @param groupCommitWindowMillis How long grouped writes are collected, in milliseconds.
+     *
+     * @hide
+     */
+    @Deprecated
+    @SuppressLint("LambdaLast")
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public DatabaseConfiguration(@NonNull Context context, @Nullable String name,
+            @NonNull SupportSQLiteOpenHelper.Factory sqliteOpenHelperFactory,
+            @NonNull DepotDatabase.MigrationContainer migrationContainer,
+            @Nullable List<DepotDatabase.Callback> callbacks,
+            boolean allowMainThreadQueries,
+            @NonNull DepotDatabase.JournalMode journalMode,
+            @NonNull Executor queryExecutor,
+            @NonNull Executor transactionExecutor,
+            boolean multiInstanceInvalidation,
+            boolean requireMigration,
+            boolean allowDestructiveMigrationOnDowngrade,
+            @Nullable Set<Integer> migrationNotRequiredFrom,
+            @Nullable String copyFromAssetPath,
+            @Nullable File copyFromFile,
+            @Nullable Callable<InputStream> copyFromInputStream,
+            @Nullable DepotDatabase.PrepackagedDatabaseCallback prepackagedDatabaseCallback,
+            @Nullable List<Object> typeConverters,
+            @Nullable List<AutoMigrationSpec> autoMigrationSpecs,
+            int readerConnectionPoolSize,
+            int statementCacheSize,
+            long invalidationCoalescingWindowMillis,
+            int invalidationMaxBatchSize,
+            long groupCommitWindowMillis) {
+        this(context, name, sqliteOpenHelperFactory, migrationContainer, callbacks,
+                allowMainThreadQueries, journalMode, queryExecutor, transactionExecutor,
+                multiInstanceInvalidation, requireMigration, allowDestructiveMigrationOnDowngrade,
+                migrationNotRequiredFrom, copyFromAssetPath, copyFromFile, copyFromInputStream,
+                prepackagedDatabaseCallback, typeConverters, autoMigrationSpecs,
+                readerConnectionPoolSize, statementCacheSize, invalidationCoalescingWindowMillis,
+                invalidationMaxBatchSize, groupCommitWindowMillis,
+                DepotDatabase.DEFAULT_MAX_TRANSACTIONS_PER_HANDOFF);
+    }
+
+    /**
+     * Creates a database configuration with the given values.
+     *
+     * @deprecated Use {@link #DatabaseConfiguration(Context, String,
+     * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
+     * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
+     *
+     * @param context The application context.
+     * @param name Name of the database, can be null if it is in memory.
+     * @param sqliteOpenHelperFactory The open helper factory to use.
+     * @param migrationContainer The migration container for migrations.
+     * @param callbacks The list of callbacks for database events.
+     * @param allowMainThreadQueries Whether to allow main thread reads/writes or not.
+     * @param journalMode The journal mode. This has to be either TRUNCATE or WRITE_AHEAD_LOGGING.
+     * @param queryExecutor The Executor used to execute asynchronous queries.
+     * @param transactionExecutor The Executor used to execute asynchronous transactions.
+     * @param multiInstanceInvalidation True if Depot should perform multi-instance invalidation.
+     * @param requireMigration True if Depot should require a valid migration if version changes,
+     * @param allowDestructiveMigrationOnDowngrade True if Depot should recreate tables if no
+     *                                             migration is supplied during a downgrade.
+     * @param migrationNotRequiredFrom The collection of schema versions from which migrations
+     *                                 aren't required.
+     * @param copyFromAssetPath The assets path to the pre-packaged database.
+     * @param copyFromFile The pre-packaged database file.
+     * @param copyFromInputStream The callable to get the input stream from which a
+     *                            pre-package database file will be copied from.
+     * @param prepackagedDatabaseCallback The pre-packaged callback.
+     * @param typeConverters The type converters.
+     * @param autoMigrationSpecs The auto migration specs.
+     * @param readerConnectionPoolSize The number of read-only connections used to run queries
+     *                                 outside of transactions.
+     * @param statementCacheSize The maximum number of idle prepared statements cached for the
+     *                           writer connection.
+     * @param invalidationCoalescingWindowMillis How long invalidations are coalesced, in
+     *                                           milliseconds.
+     * @param invalidationMaxBatchSize The maximum number of commits merged into a refresh.
+     * @param groupCommitWindowMillis How long grouped writes are collected, in milliseconds.
+     * @param maxTransactionsPerHandoff The maximum number of transactions run per thread handoff.
+     *
+     * @hide
+     */
+    @Deprecated
+    @SuppressLint("LambdaLast")
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public DatabaseConfiguration(@NonNull Context context, @Nullable String name,
+            @NonNull SupportSQLiteOpenHelper.Factory sqliteOpenHelperFactory,
+            @NonNull DepotDatabase.MigrationContainer migrationContainer,
+            @Nullable List<DepotDatabase.Callback> callbacks,
+            boolean allowMainThreadQueries,
+            @NonNull DepotDatabase.JournalMode journalMode,
+            @NonNull Executor queryExecutor,
+            @NonNull Executor transactionExecutor,
+            boolean multiInstanceInvalidation,
+            boolean requireMigration,
+            boolean allowDestructiveMigrationOnDowngrade,
+            @Nullable Set<Integer> migrationNotRequiredFrom,
+            @Nullable String copyFromAssetPath,
+            @Nullable File copyFromFile,
+            @Nullable Callable<InputStream> copyFromInputStream,
+            @Nullable DepotDatabase.PrepackagedDatabaseCallback prepackagedDatabaseCallback,
+            @Nullable List<Object> typeConverters,
+            @Nullable List<AutoMigrationSpec> autoMigrationSpecs,
+            int readerConnectionPoolSize,
+            int statementCacheSize,
+            long invalidationCoalescingWindowMillis,
+            int invalidationMaxBatchSize,
+            long groupCommitWindowMillis,
+            int maxTransactionsPerHandoff) {
+        this(context, name, sqliteOpenHelperFactory, migrationContainer, callbacks,
+                allowMainThreadQueries, journalMode, queryExecutor, transactionExecutor,
+                multiInstanceInvalidation, requireMigration, allowDestructiveMigrationOnDowngrade,
+                migrationNotRequiredFrom, copyFromAssetPath, copyFromFile, copyFromInputStream,
+                prepackagedDatabaseCallback, typeConverters, autoMigrationSpecs,
+                readerConnectionPoolSize, statementCacheSize, invalidationCoalescingWindowMillis,
+                invalidationMaxBatchSize, groupCommitWindowMillis, maxTransactionsPerHandoff, 0);
+    }
+
+    /**
+     * Creates a database configuration with the given values.
+     *
+     * @deprecated Use {@link #DatabaseConfiguration(Context, String,
+     * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
+     * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
+     *
+     * @param context The application context.
+     * @param name Name of the database, can be null if it is in memory.
+     * @param sqliteOpenHelperFactory The open helper factory to use.
+     * @param migrationContainer The migration container for migrations.
+     * @param callbacks The list of callbacks for database events.
+     * @param allowMainThreadQueries Whether to allow main thread reads/writes or not.
+     * @param journalMode The journal mode. This has to be either TRUNCATE or WRITE_AHEAD_LOGGING.
+     * @param queryExecutor The Executor used to execute asynchronous queries.
+     * @param transactionExecutor The Executor used to execute asynchronous transactions.
+     * @param multiInstanceInvalidation True if Depot should perform multi-instance invalidation.
+     * @param requireMigration True if Depot should require a valid migration if version changes,
+     * @param allowDestructiveMigrationOnDowngrade True if Depot should recreate tables if no
+     *                                             migration is supplied during a downgrade.
+     * @param migrationNotRequiredFrom The collection of schema versions from which migrations
+     *                                 aren't required.
+     * @param copyFromAssetPath The assets path to the pre-packaged database.
+     * @param copyFromFile The pre-packaged database file.
+     * @param copyFromInputStream The callable to get the input stream from which a
+     *                            pre-package database file will be copied from.
+     * @param prepackagedDatabaseCallback The pre-packaged callback.
+     * @param typeConverters The type converters.
+     * @param autoMigrationSpecs The auto migration specs.
+     * @param readerConnectionPoolSize The number of read-only connections used to run queries
+     *                                 outside of transactions.
+     * @param statementCacheSize The maximum number of idle prepared statements cached for the
+     *                           writer connection.
+     * @param invalidationCoalescingWindowMillis How long invalidations are coalesced, in
+     *                                           milliseconds.
+     * @param invalidationMaxBatchSize The maximum number of commits merged into a refresh.
+     * @param groupCommitWindowMillis How long grouped writes are collected, in milliseconds.
+     * @param maxTransactionsPerHandoff The maximum number of transactions run per thread handoff.
+     * @param queryResultCacheMaxEntries The maximum number of results kept by the query result
+     *                                   cache.
+     *
+     * @hide
+     */
+    @Deprecated
+    @SuppressLint("LambdaLast")
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public DatabaseConfiguration(@NonNull Context context, @Nullable String name,
+            @NonNull SupportSQLiteOpenHelper.Factory sqliteOpenHelperFactory,
+            @NonNull DepotDatabase.MigrationContainer migrationContainer,
+            @Nullable List<DepotDatabase.Callback> callbacks,
+            boolean allowMainThreadQueries,
+            @NonNull DepotDatabase.JournalMode journalMode,
+            @NonNull Executor queryExecutor,
+            @NonNull Executor transactionExecutor,
+            boolean multiInstanceInvalidation,
+            boolean requireMigration,
+            boolean allowDestructiveMigrationOnDowngrade,
+            @Nullable Set<Integer> migrationNotRequiredFrom,
+            @Nullable String copyFromAssetPath,
+            @Nullable File copyFromFile,
+            @Nullable Callable<InputStream> copyFromInputStream,
+            @Nullable DepotDatabase.PrepackagedDatabaseCallback prepackagedDatabaseCallback,
+            @Nullable List<Object> typeConverters,
+            @Nullable List<AutoMigrationSpec> autoMigrationSpecs,
+            int readerConnectionPoolSize,
+            int statementCacheSize,
+            long invalidationCoalescingWindowMillis,
+            int invalidationMaxBatchSize,
+            long groupCommitWindowMillis,
+            int maxTransactionsPerHandoff,
+            int queryResultCacheMaxEntries) {
+        this(context, name, sqliteOpenHelperFactory, migrationContainer, callbacks,
+                allowMainThreadQueries, journalMode, queryExecutor, transactionExecutor,
+                multiInstanceInvalidation, requireMigration, allowDestructiveMigrationOnDowngrade,
+                migrationNotRequiredFrom, copyFromAssetPath, copyFromFile, copyFromInputStream,
+                prepackagedDatabaseCallback, typeConverters, autoMigrationSpecs,
+                readerConnectionPoolSize, statementCacheSize, invalidationCoalescingWindowMillis,
+                invalidationMaxBatchSize, groupCommitWindowMillis, maxTransactionsPerHandoff,
+                queryResultCacheMaxEntries, 0);
+    }
+
+    /**
+     * Creates a database configuration with the given values.
+     *
+     * @deprecated Use {@link #DatabaseConfiguration(Context, String,
+     * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
+     * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
+     *
+     * @param context The application context.
+     * @param name Name of the database, can be null if it is in memory.
+     * @param sqliteOpenHelperFactory The open helper factory to use.
+     * @param migrationContainer The migration container for migrations.
+     * @param callbacks The list of callbacks for database events.
+     * @param allowMainThreadQueries Whether to allow main thread reads/writes or not.
+     * @param journalMode The journal mode. This has to be either TRUNCATE or WRITE_AHEAD_LOGGING.
+     * @param queryExecutor The Executor used to execute asynchronous queries.
+     * @param transactionExecutor The Executor used to execute asynchronous transactions.
+     * @param multiInstanceInvalidation True if Depot should perform multi-instance invalidation.
+     * @param requireMigration True if Depot should require a valid migration if version changes,
+     * @param allowDestructiveMigrationOnDowngrade True if Depot should recreate tables if no
+     *                                             migration is supplied during a downgrade.
+     * @param migrationNotRequiredFrom The collection of schema versions from which migrations
+     *                                 aren't required.
+     * @param copyFromAssetPath The assets path to the pre-packaged database.
+     * @param copyFromFile The pre-packaged database file.
+     * @param copyFromInputStream The callable to get the input stream from which a
+     *                            pre-package database file will be copied from.
+     * @param prepackagedDatabaseCallback The pre-packaged callback.
+     * @param typeConverters The type converters.
+     * @param autoMigrationSpecs The auto migration specs.
+     * @param readerConnectionPoolSize The number of read-only connections used to run queries
+     *                                 outside of transactions.
+     * @param statementCacheSize The maximum number of idle prepared statements cached for the
+     *                           writer connection.
+     * @param invalidationCoalescingWindowMillis How long invalidations are coalesced, in
+     *                                           milliseconds.
+     * @param invalidationMaxBatchSize The maximum number of commits merged into a refresh.
+     * @param groupCommitWindowMillis How long grouped writes are collected, in milliseconds.
+     * @param maxTransactionsPerHandoff The maximum number of transactions run per thread handoff.
+     * @param queryResultCacheMaxEntries The maximum number of results kept by the query result
+     *                                   cache.
+     * @param queryResultCacheMaxSizeBytes The maximum estimated size of the cached results, in
+     *                                     bytes.
+     *
+     * @hide
+     */
+    @Deprecated
+    @SuppressLint("LambdaLast")
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public DatabaseConfiguration(@NonNull Context context, @Nullable String name,
+            @NonNull SupportSQLiteOpenHelper.Factory sqliteOpenHelperFactory,
+            @NonNull DepotDatabase.MigrationContainer migrationContainer,
+            @Nullable List<DepotDatabase.Callback> callbacks,
+            boolean allowMainThreadQueries,
+            @NonNull DepotDatabase.JournalMode journalMode,
+            @NonNull Executor queryExecutor,
+            @NonNull Executor transactionExecutor,
+            boolean multiInstanceInvalidation,
+            boolean requireMigration,
+            boolean allowDestructiveMigrationOnDowngrade,
+            @Nullable Set<Integer> migrationNotRequiredFrom,
+            @Nullable String copyFromAssetPath,
+            @Nullable File copyFromFile,
+            @Nullable Callable<InputStream> copyFromInputStream,
+            @Nullable DepotDatabase.PrepackagedDatabaseCallback prepackagedDatabaseCallback,
+            @Nullable List<Object> typeConverters,
+            @Nullable List<AutoMigrationSpec> autoMigrationSpecs,
+            int readerConnectionPoolSize,
+            int statementCacheSize,
+            long invalidationCoalescingWindowMillis,
+            int invalidationMaxBatchSize,
+            long groupCommitWindowMillis,
+            int maxTransactionsPerHandoff,
+            int queryResultCacheMaxEntries,
+            long queryResultCacheMaxSizeBytes) {
+        this(context, name, sqliteOpenHelperFactory, migrationContainer, callbacks,
+                allowMainThreadQueries, journalMode, queryExecutor, transactionExecutor,
+                multiInstanceInvalidation, requireMigration, allowDestructiveMigrationOnDowngrade,
+                migrationNotRequiredFrom, copyFromAssetPath, copyFromFile, copyFromInputStream,
+                prepackagedDatabaseCallback, typeConverters, autoMigrationSpecs,
+                readerConnectionPoolSize, statementCacheSize, invalidationCoalescingWindowMillis,
+                invalidationMaxBatchSize, groupCommitWindowMillis, maxTransactionsPerHandoff,
+                queryResultCacheMaxEntries, queryResultCacheMaxSizeBytes,
+                DepotDatabase.DEFAULT_ENTITY_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a database configuration with the given values.
+     *
+     * @deprecated Use {@link #DatabaseConfiguration(Context, String,
+     * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
+     * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
+     *
+     * @param context The application context.
+     * @param name Name of the database, can be null if it is in memory.
+     * @param sqliteOpenHelperFactory The open helper factory to use.
+     * @param migrationContainer The migration container for migrations.
+     * @param callbacks The list of callbacks for database events.
+     * @param allowMainThreadQueries Whether to allow main thread reads/writes or not.
+     * @param journalMode The journal mode. This has to be either TRUNCATE or WRITE_AHEAD_LOGGING.
+     * @param queryExecutor The Executor used to execute asynchronous queries.
+     * @param transactionExecutor The Executor used to execute asynchronous transactions.
+     * @param multiInstanceInvalidation True if Depot should perform multi-instance invalidation.
+     * @param requireMigration True if Depot should require a valid migration if version changes,
+     * @param allowDestructiveMigrationOnDowngrade True if Depot should recreate tables if no
+     *                                             migration is supplied during a downgrade.
+     * @param migrationNotRequiredFrom The collection of schema versions from which migrations
+     *                                 aren't required.
+     * @param copyFromAssetPath The assets path to the pre-packaged database.
+     * @param copyFromFile The pre-packaged database file.
+     * @param copyFromInputStream The callable to get the input stream from which a
+     *                            pre-package database file will be copied from.
+     * @param prepackagedDatabaseCallback The pre-packaged callback.
+     * @param typeConverters The type converters.
+     * @param autoMigrationSpecs The auto migration specs.
+     * @param readerConnectionPoolSize The number of read-only connections used to run queries
+     *                                 outside of transactions.
+     * @param statementCacheSize The maximum number of idle prepared statements cached for the
+     *                           writer connection.
+     * @param invalidationCoalescingWindowMillis How long invalidations are coalesced, in
+     *                                           milliseconds.
+     * @param invalidationMaxBatchSize The maximum number of commits merged into a refresh.
+     * @param groupCommitWindowMillis How long grouped writes are collected, in milliseconds.
+     * @param maxTransactionsPerHandoff The maximum number of transactions run per thread handoff.
+     * @param queryResultCacheMaxEntries The maximum number of results kept by the query result
+     *                                   cache.
+     * @param queryResultCacheMaxSizeBytes The maximum estimated size of the cached results, in
+     *                                     bytes.
+     * @param entityCacheSize The maximum number of instances kept per cached entity.
+     *
+     * @hide
+     */
+    @Deprecated
+    @SuppressLint("LambdaLast")
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public DatabaseConfiguration(@NonNull Context context, @Nullable String name,
+            @NonNull SupportSQLiteOpenHelper.Factory sqliteOpenHelperFactory,
+            @NonNull DepotDatabase.MigrationContainer migrationContainer,
+            @Nullable List<DepotDatabase.Callback> callbacks,
+            boolean allowMainThreadQueries,
+            @NonNull DepotDatabase.JournalMode journalMode,
+            @NonNull Executor queryExecutor,
+            @NonNull Executor transactionExecutor,
+            boolean multiInstanceInvalidation,
+            boolean requireMigration,
+            boolean allowDestructiveMigrationOnDowngrade,
+            @Nullable Set<Integer> migrationNotRequiredFrom,
+            @Nullable String copyFromAssetPath,
+            @Nullable File copyFromFile,
+            @Nullable Callable<InputStream> copyFromInputStream,
+            @Nullable DepotDatabase.PrepackagedDatabaseCallback prepackagedDatabaseCallback,
+            @Nullable List<Object> typeConverters,
+            @Nullable List<AutoMigrationSpec> autoMigrationSpecs,
+            int readerConnectionPoolSize,
+            int statementCacheSize,
+            long invalidationCoalescingWindowMillis,
+            int invalidationMaxBatchSize,
+            long groupCommitWindowMillis,
+            int maxTransactionsPerHandoff,
+            int queryResultCacheMaxEntries,
+            long queryResultCacheMaxSizeBytes,
+            int entityCacheSize) {
+        this(context, name, sqliteOpenHelperFactory, migrationContainer, callbacks,
+                allowMainThreadQueries, journalMode, queryExecutor, transactionExecutor,
+                multiInstanceInvalidation, requireMigration, allowDestructiveMigrationOnDowngrade,
+                migrationNotRequiredFrom, copyFromAssetPath, copyFromFile, copyFromInputStream,
+                prepackagedDatabaseCallback, typeConverters, autoMigrationSpecs,
+                readerConnectionPoolSize, statementCacheSize, invalidationCoalescingWindowMillis,
+                invalidationMaxBatchSize, groupCommitWindowMillis, maxTransactionsPerHandoff,
+                queryResultCacheMaxEntries, queryResultCacheMaxSizeBytes, entityCacheSize, false);
+    }
+
+    /**
+     * Creates a database configuration with the given values.
+     *
+     * @deprecated Use {@link #DatabaseConfiguration(Context, String,
+     * SupportSQLiteOpenHelper.Factory, DepotDatabase.MigrationContainer, List, boolean,
+     * DepotDatabase.JournalMode, Executor, Executor, boolean, boolean, boolean, Set, String, File,
+     * Callable, DepotDatabase.PrepackagedDatabaseCallback, List<Object>, List<AutoMigrationSpec>,
+     * int, int, long, int, long, int, int, long, int, boolean, boolean)}
+     *
+     * @param context The application context.
+     * @param name Name of the database, can be null if it is in memory.
+     * @param sqliteOpenHelperFactory The open helper factory to use.
+     * @param migrationContainer The migration container for migrations.
+     * @param callbacks The list of callbacks for database events.
+     * @param allowMainThreadQueries Whether to allow main thread reads/writes or not.
+     * @param journalMode The journal mode. This has to be either TRUNCATE or WRITE_AHEAD_LOGGING.
+     * @param queryExecutor The Executor used to execute asynchronous queries.
+     * @param transactionExecutor The Executor used to execute asynchronous transactions.
+     * @param multiInstanceInvalidation True if Depot should perform multi-instance invalidation.
+     * @param requireMigration True if Depot should require a valid migration if version changes,
+     * @param allowDestructiveMigrationOnDowngrade True if Depot should recreate tables if no
+     *                                             migration is supplied during a downgrade.
+     * @param migrationNotRequiredFrom The collection of schema versions from which migrations
+     *                                 aren't required.
+     * @param copyFromAssetPath The assets path to the pre-packaged database.
+     * @param copyFromFile The pre-packaged database file.
+     * @param copyFromInputStream The callable to get the input stream from which a
+     *                            pre-package database file will be copied from.
+     * @param prepackagedDatabaseCallback The pre-packaged callback.
+     * @param typeConverters The type converters.
+     * @param autoMigrationSpecs The auto migration specs.
+     * @param readerConnectionPoolSize The number of read-only connections used to run queries
+     *                                 outside of transactions.
+     * @param statementCacheSize The maximum number of idle prepared statements cached for the
+     *                           writer connection.
+     * @param invalidationCoalescingWindowMillis How long invalidations are coalesced, in
+     *                                           milliseconds.
+     * @param invalidationMaxBatchSize The maximum number of commits merged into a refresh.
+     * @param groupCommitWindowMillis How long grouped writes are collected, in milliseconds.
+     * @param maxTransactionsPerHandoff The maximum number of transactions run per thread handoff.
+     * @param queryResultCacheMaxEntries The maximum number of results kept by the query result
+     *                                   cache.
+     * @param queryResultCacheMaxSizeBytes The maximum estimated size of the cached results, in
+     *                                     bytes.
+     * @param entityCacheSize The maximum number of instances kept per cached entity.
+     * @param queryDeduplicationEnabled Whether identical queries issued at the same time run only
+     *                                  once.
+     *
+     * @hide
+     */
+    @Deprecated
+    @SuppressLint("LambdaLast")
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public DatabaseConfiguration(@NonNull Context context, @Nullable String name,
+            @NonNull SupportSQLiteOpenHelper.Factory sqliteOpenHelperFactory,
+            @NonNull DepotDatabase.MigrationContainer migrationContainer,
+            @Nullable List<DepotDatabase.Callback> callbacks,
+            boolean allowMainThreadQueries,
+            @NonNull DepotDatabase.JournalMode journalMode,
+            @NonNull Executor queryExecutor,
+            @NonNull Executor transactionExecutor,
+            boolean multiInstanceInvalidation,
+            boolean requireMigration,
+            boolean allowDestructiveMigrationOnDowngrade,
+            @Nullable Set<Integer> migrationNotRequiredFrom,
+            @Nullable String copyFromAssetPath,
+            @Nullable File copyFromFile,
+            @Nullable Callable<InputStream> copyFromInputStream,
+            @Nullable DepotDatabase.PrepackagedDatabaseCallback prepackagedDatabaseCallback,
+            @Nullable List<Object> typeConverters,
+            @Nullable List<AutoMigrationSpec> autoMigrationSpecs,
+            int readerConnectionPoolSize,
+            int statementCacheSize,
+            long invalidationCoalescingWindowMillis,
+            int invalidationMaxBatchSize,
+            long groupCommitWindowMillis,
+            int maxTransactionsPerHandoff,
+            int queryResultCacheMaxEntries,
+            long queryResultCacheMaxSizeBytes,
+            int entityCacheSize,
+            boolean queryDeduplicationEnabled) {
+        this(context, name, sqliteOpenHelperFactory, migrationContainer, callbacks,
+                allowMainThreadQueries, journalMode, queryExecutor, transactionExecutor,
+                multiInstanceInvalidation, requireMigration, allowDestructiveMigrationOnDowngrade,
+                migrationNotRequiredFrom, copyFromAssetPath, copyFromFile, copyFromInputStream,
+                prepackagedDatabaseCallback, typeConverters, autoMigrationSpecs,
+                readerConnectionPoolSize, statementCacheSize, invalidationCoalescingWindowMillis,
+                invalidationMaxBatchSize, groupCommitWindowMillis, maxTransactionsPerHandoff,
+                queryResultCacheMaxEntries, queryResultCacheMaxSizeBytes, entityCacheSize,
+                queryDeduplicationEnabled, false);
+    }
+
+    /**
+     * Creates a database configuration with the given values.
+     *
+     * @param context The application context.
+     * @param name Name of the database, can be null if it is in memory.
+     * @param sqliteOpenHelperFactory The open helper factory to use.
+     * @param migrationContainer The migration container for migrations.
+     * @param callbacks The list of callbacks for database events.
+     * @param allowMainThreadQueries Whether to allow main thread reads/writes or not.
+     * @param journalMode The journal mode. This has to be either TRUNCATE or WRITE_AHEAD_LOGGING.
+     * @param queryExecutor The Executor used to execute asynchronous queries.
+     * @param transactionExecutor The Executor used to execute asynchronous transactions.
+     * @param multiInstanceInvalidation True if Depot should perform multi-instance invalidation.
+     * @param requireMigration True if Depot should require a valid migration if version changes,
+     * @param allowDestructiveMigrationOnDowngrade True if Depot should recreate tables if no
+     *                                             migration is supplied during a downgrade.
+     * @param migrationNotRequiredFrom The collection of schema versions from which migrations
+     *                                 aren't required.
+     * @param copyFromAssetPath The assets path to the pre-packaged database.
+     * @param copyFromFile The pre-packaged database file.
+     * @param copyFromInputStream The callable to get the input stream from which a
+     *                            pre-package database file will be copied from.
+     * @param prepackagedDatabaseCallback The pre-packaged callback.
+     * @param typeConverters The type converters.
+     * @param autoMigrationSpecs The auto migration specs.
+     * @param readerConnectionPoolSize The number of read-only connections used to run queries
+     *                                 outside of transactions.
+     * @param statementCacheSize The maximum number of idle prepared statements cached for the
+     *                           writer connection.
+     * @param invalidationCoalescingWindowMillis How long invalidations are coalesced, in
+     *                                           milliseconds.
+     * @param invalidationMaxBatchSize The maximum number of commits merged into a refresh.
+     * @param groupCommitWindowMillis How long grouped writes are collected, in milliseconds.
+     * @param maxTransactionsPerHandoff The maximum number of transactions run per thread handoff.
+     * @param queryResultCacheMaxEntries The maximum number of results kept by the query result
+     *                                   cache.
+     * @param queryResultCacheMaxSizeBytes The maximum estimated size of the cached results, in
+     *                                     bytes.
+     * @param entityCacheSize The maximum number of instances kept per cached entity.
+     * @param queryDeduplicationEnabled Whether identical queries issued at the same time run only
+     *                                  once.
+     * @param daoMetricsEnabled Whether DAO method metrics are recorded.
+     *
+     * @hide
+     */
+    @SuppressLint("LambdaLast")
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public DatabaseConfiguration(@NonNull Context context, @Nullable String name,
+            @NonNull SupportSQLiteOpenHelper.Factory sqliteOpenHelperFactory,
+            @NonNull DepotDatabase.MigrationContainer migrationContainer,
+            @Nullable List<DepotDatabase.Callback> callbacks,
+            boolean allowMainThreadQueries,
+            @NonNull DepotDatabase.JournalMode journalMode,
+            @NonNull Executor queryExecutor,
+            @NonNull Executor transactionExecutor,
+            boolean multiInstanceInvalidation,
+            boolean requireMigration,
+            boolean allowDestructiveMigrationOnDowngrade,
+            @Nullable Set<Integer> migrationNotRequiredFrom,
+            @Nullable String copyFromAssetPath,
+            @Nullable File copyFromFile,
+            @Nullable Callable<InputStream> copyFromInputStream,
+            @Nullable DepotDatabase.PrepackagedDatabaseCallback prepackagedDatabaseCallback,
+            @Nullable List<Object> typeConverters,
+            @Nullable List<AutoMigrationSpec> autoMigrationSpecs,
+            int readerConnectionPoolSize,
+            int statementCacheSize,
+            long invalidationCoalescingWindowMillis,
+            int invalidationMaxBatchSize,
+            long groupCommitWindowMillis,
+            int maxTransactionsPerHandoff,
+            int queryResultCacheMaxEntries,
+            long queryResultCacheMaxSizeBytes,
+            int entityCacheSize,
+            boolean queryDeduplicationEnabled,
+            boolean daoMetricsEnabled) {
         this.sqliteOpenHelperFactory = sqliteOpenHelperFactory;
         this.context = context;
         this.name = name;
@@ -511,6 +1458,17 @@ public class DatabaseConfiguration {
         this.typeConverters = typeConverters == null ? Collections.emptyList() : typeConverters;
         this.autoMigrationSpecs = autoMigrationSpecs == null
                 ? Collections.emptyList() : autoMigrationSpecs;
+        this.readerConnectionPoolSize = readerConnectionPoolSize;
+        this.statementCacheSize = statementCacheSize;
+        this.invalidationCoalescingWindowMillis = invalidationCoalescingWindowMillis;
+        this.invalidationMaxBatchSize = invalidationMaxBatchSize;
+        this.groupCommitWindowMillis = groupCommitWindowMillis;
+        this.maxTransactionsPerHandoff = maxTransactionsPerHandoff;
+        this.queryResultCacheMaxEntries = queryResultCacheMaxEntries;
+        this.queryResultCacheMaxSizeBytes = queryResultCacheMaxSizeBytes;
+        this.entityCacheSize = entityCacheSize;
+        this.queryDeduplicationEnabled = queryDeduplicationEnabled;
+        this.daoMetricsEnabled = daoMetricsEnabled;
     }
 
     /**
@@ -99,6 +99,17 @@ public class Depot {
         return new DepotDatabase.Builder<>(context, klass, null);
     }
 
+    /**
+     * Returns a snapshot of the statistics of the pool that holds the arguments of generated
+     * {@link Query} methods. The pool is shared by every database in the process.
+     *
+     * @return The current query pool statistics.
+     */
+    @NonNull
+    public static QueryPoolStats getQueryPoolStats() {
+        return DepotSQLiteQuery.getPoolStats();
+    }
+
     @SuppressWarnings({"TypeParameterUnusedInFormals", "ClassNewInstance"})
     @NonNull
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
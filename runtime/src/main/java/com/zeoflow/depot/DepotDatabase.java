@@ -57,6 +57,10 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -79,6 +83,25 @@ public abstract class DepotDatabase {
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
     public static final int MAX_BIND_PARAMETER_CNT = 999;
+    /**
+     * The default number of idle prepared statements cached for the writer connection.
+     *
+     * @see Builder#setStatementCacheSize(int)
+     */
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 25;
+    /**
+     * The default number of queued transactions run per handoff to the transaction executor.
+     *
+     * @see Builder#setMaxTransactionsPerHandoff(int)
+     */
+    public static final int DEFAULT_MAX_TRANSACTIONS_PER_HANDOFF = 16;
+    /**
+     * The default number of instances kept per entity annotated with
+     * {@code @Entity(cached = true)}.
+     *
+     * @see Builder#setEntityCacheSize(int)
+     */
+    public static final int DEFAULT_ENTITY_CACHE_SIZE = 256;
     /**
      * Set by the generated open helper.
      *
@@ -87,7 +110,16 @@ public abstract class DepotDatabase {
     @Deprecated
     protected volatile SupportSQLiteDatabase mDatabase;
     private Executor mQueryExecutor;
-    private Executor mTransactionExecutor;
+    private TransactionExecutor mTransactionExecutor;
+
+    private static final long SCHEDULER_KEEP_ALIVE_SECONDS = 10;
+
+    // Lazily created, runs the delayed hand-offs of invalidation coalescing and group commits.
+    @Nullable
+    private ScheduledThreadPoolExecutor mScheduler;
+    // guarded by mSchedulerLock
+    private boolean mSchedulerClosed;
+    private final Object mSchedulerLock = new Object();
     private SupportSQLiteOpenHelper mOpenHelper;
     private final InvalidationTracker mInvalidationTracker;
     private boolean mAllowMainThreadQueries;
@@ -115,6 +147,29 @@ public abstract class DepotDatabase {
     @Nullable
     private AutoCloser mAutoCloser;
 
+    @Nullable
+    private ReaderConnectionPool mReaderConnectionPool;
+
+    private StatementCache mStatementCache;
+
+    @Nullable
+    private GroupCommitWriter mGroupCommitWriter;
+
+    @Nullable
+    private QueryResultCache mQueryResultCache;
+
+    private int mEntityCacheSize = DEFAULT_ENTITY_CACHE_SIZE;
+    @Nullable
+    private QueryDeduplicator mQueryDeduplicator;
+    @Nullable
+    private DaoMetricsRegistry mDaoMetrics;
+    @Nullable
+    private SlowQueryLog mSlowQueryLog;
+    // guarded by itself
+    private final Map<String, EntityCache<?>> mEntityCaches = new HashMap<>();
+    // guarded by itself
+    private final Map<String, TableMirror<?>> mTableMirrors = new HashMap<>();
+
     /**
      * {@link InvalidationTracker} uses this lock to prevent the database from closing while it is
      * querying database updates.
@@ -186,6 +241,7 @@ public abstract class DepotDatabase {
         mInvalidationTracker = createInvalidationTracker();
         mTypeConverters = new HashMap<>();
         mAutoMigrationSpecs = new HashMap<>();
+        mStatementCache = new StatementCache(this, DEFAULT_STATEMENT_CACHE_SIZE);
     }
 
     /**
@@ -253,6 +309,12 @@ public abstract class DepotDatabase {
             mInvalidationTracker.setAutoCloser(mAutoCloser);
         }
 
+        SlowQueryOpenHelper slowQueryOpenHelper =
+                unwrapOpenHelper(SlowQueryOpenHelper.class, mOpenHelper);
+        if (slowQueryOpenHelper != null) {
+            mSlowQueryLog = slowQueryOpenHelper.getLog();
+        }
+
 
         boolean wal = false;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
@@ -261,13 +323,40 @@ public abstract class DepotDatabase {
         }
         mCallbacks = configuration.callbacks;
         mQueryExecutor = configuration.queryExecutor;
-        mTransactionExecutor = new TransactionExecutor(configuration.transactionExecutor);
+        mTransactionExecutor = new TransactionExecutor(configuration.transactionExecutor,
+                configuration.maxTransactionsPerHandoff);
         mAllowMainThreadQueries = configuration.allowMainThreadQueries;
         mWriteAheadLoggingEnabled = wal;
+        mInvalidationTracker.setCoalescingPolicy(configuration.invalidationCoalescingWindowMillis,
+                configuration.invalidationMaxBatchSize);
         if (configuration.multiInstanceInvalidation) {
             mInvalidationTracker.startMultiInstanceInvalidation(configuration.context,
                     configuration.name);
         }
+        // Reader connections only help in WAL mode and can't share an in-memory database. The
+        // auto closer only knows about the writer connection so it can't be used with a pool.
+        if (configuration.readerConnectionPoolSize > 0 && wal && configuration.name != null
+                && mAutoCloser == null) {
+            mReaderConnectionPool = new ReaderConnectionPool(
+                    configuration.sqliteOpenHelperFactory, configuration.context,
+                    configuration.name, mOpenHelper, configuration.readerConnectionPoolSize);
+        }
+
+        mStatementCache = new StatementCache(this, configuration.statementCacheSize);
+        mGroupCommitWriter = new GroupCommitWriter(this, configuration.groupCommitWindowMillis);
+        if (configuration.queryResultCacheMaxEntries > 0
+                && configuration.queryResultCacheMaxSizeBytes > 0) {
+            mQueryResultCache = new QueryResultCache(this,
+                    configuration.queryResultCacheMaxEntries,
+                    configuration.queryResultCacheMaxSizeBytes);
+        }
+        mEntityCacheSize = configuration.entityCacheSize;
+        if (configuration.queryDeduplicationEnabled) {
+            mQueryDeduplicator = new QueryDeduplicator(this);
+        }
+        if (configuration.daoMetricsEnabled) {
+            mDaoMetrics = new DaoMetricsRegistry();
+        }
 
         Map<Class<?>, List<Class<?>>> requiredFactories = getRequiredTypeConverters();
         // indices for each converter on whether it is used or not so that we can throw an exception
@@ -446,6 +535,14 @@ public abstract class DepotDatabase {
             closeLock.lock();
             try {
                 mInvalidationTracker.stopMultiInstanceInvalidation();
+                if (mReaderConnectionPool != null) {
+                    mReaderConnectionPool.close();
+                }
+                mStatementCache.close();
+                if (mGroupCommitWriter != null) {
+                    mGroupCommitWriter.close();
+                }
+                closeScheduler();
                 mOpenHelper.close();
             } finally {
                 closeLock.unlock();
@@ -499,7 +596,7 @@ public abstract class DepotDatabase {
      */
     @NonNull
     public Cursor query(@NonNull String query, @Nullable Object[] args) {
-        return mOpenHelper.getWritableDatabase().query(new SimpleSQLiteQuery(query, args));
+        return internalQuery(new SimpleSQLiteQuery(query, args), null);
     }
 
     /**
@@ -524,13 +621,238 @@ public abstract class DepotDatabase {
     public Cursor query(@NonNull SupportSQLiteQuery query, @Nullable CancellationSignal signal) {
         assertNotMainThread();
         assertNotSuspendingTransaction();
+        return internalQuery(query, signal);
+    }
+
+    private Cursor internalQuery(@NonNull SupportSQLiteQuery query,
+            @Nullable CancellationSignal signal) {
+        if (mDaoMetrics != null && query instanceof DepotSQLiteQuery) {
+            DaoMethodMetrics.recordBoundBytes(((DepotSQLiteQuery) query).getBoundByteCount());
+        }
+        return dispatchQuery(query, signal);
+    }
+
+    private Cursor dispatchQuery(@NonNull SupportSQLiteQuery query,
+            @Nullable CancellationSignal signal) {
+        if (mQueryResultCache != null && query instanceof DepotSQLiteQuery) {
+            final DepotSQLiteQuery depotQuery = (DepotSQLiteQuery) query;
+            final String[] tables = depotQuery.getResultCacheTables();
+            if (tables != null) {
+                return mQueryResultCache.query(depotQuery, tables, signal);
+            }
+        }
+        if (mQueryDeduplicator != null && query instanceof DepotSQLiteQuery) {
+            return mQueryDeduplicator.query((DepotSQLiteQuery) query, signal);
+        }
+        return runQuery(query, signal);
+    }
+
+    /**
+     * Runs the query on a reader connection if one is free, on the writer otherwise.
+     */
+    Cursor runQuery(@NonNull SupportSQLiteQuery query, @Nullable CancellationSignal signal) {
+        final SupportSQLiteDatabase writer = mOpenHelper.getWritableDatabase();
+        // Queries inside a transaction must see its uncommitted changes so they always run on
+        // the writer connection.
+        if (mReaderConnectionPool != null && !writer.inTransaction()) {
+            final Cursor cursor = mReaderConnectionPool.query(query, signal);
+            if (cursor != null) {
+                return cursor;
+            }
+        }
         if (signal != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-            return mOpenHelper.getWritableDatabase().query(query, signal);
+            return writer.query(query, signal);
         } else {
-            return mOpenHelper.getWritableDatabase().query(query);
+            return writer.query(query);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the reader connection pool statistics.
+     * <p>
+     * If the pool is disabled, the returned stats have a pool size of 0.
+     *
+     * @return The current reader connection pool statistics.
+     * @see Builder#setReaderConnectionPoolSize(int)
+     */
+    @NonNull
+    public ConnectionPoolStats getConnectionPoolStats() {
+        final ReaderConnectionPool pool = mReaderConnectionPool;
+        if (pool == null) {
+            return new ConnectionPoolStats(0, 0, 0, 0, 0, 0, 0);
+        }
+        return pool.getStats();
+    }
+
+    /**
+     * Returns a snapshot of the prepared statement cache statistics.
+     *
+     * @return The current prepared statement cache statistics.
+     * @see Builder#setStatementCacheSize(int)
+     */
+    @NonNull
+    public StatementCacheStats getStatementCacheStats() {
+        return mStatementCache.getStats();
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the serial executor that runs asynchronous
+     * transactions.
+     *
+     * @return The current transaction executor statistics.
+     * @see Builder#setMaxTransactionsPerHandoff(int)
+     */
+    @NonNull
+    public TransactionExecutorStats getTransactionExecutorStats() {
+        final TransactionExecutor executor = mTransactionExecutor;
+        if (executor == null) {
+            return new TransactionExecutorStats(0, 0, 0, 0, 0);
+        }
+        return executor.getStats();
+    }
+
+    /**
+     * Returns a snapshot of the query result cache statistics.
+     * <p>
+     * If the cache is disabled, every count of the returned stats is 0.
+     *
+     * @return The current query result cache statistics.
+     * @see Builder#setQueryResultCache(int, long)
+     */
+    @NonNull
+    public QueryCacheStats getQueryCacheStats() {
+        final QueryResultCache cache = mQueryResultCache;
+        if (cache == null) {
+            return new QueryCacheStats(0, 0, 0, 0, 0, 0, 0);
+        }
+        return cache.getStats();
+    }
+
+    /**
+     * Returns the metrics of a DAO method, creating them the first time they are requested.
+     * Generated DAOs call this once per method when they are created.
+     *
+     * @param name The name of the method, as {@code DaoName.methodName(ParameterType, ...)}.
+     * @return The metrics of the method or null if the database does not collect them.
+     * @hide
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    @Nullable
+    public DaoMethodMetrics getDaoMethodMetrics(@NonNull String name) {
+        final DaoMetricsRegistry registry = mDaoMetrics;
+        return registry == null ? null : registry.get(name);
+    }
+
+    /**
+     * Returns a snapshot of the latency, row count and bound bytes histograms of every DAO method
+     * called so far.
+     * <p>
+     * If DAO metrics are disabled, the returned snapshot has no methods.
+     *
+     * @return The current DAO method metrics.
+     * @see Builder#setDaoMetricsEnabled(boolean)
+     */
+    @NonNull
+    public DaoMetrics getMetrics() {
+        final DaoMetricsRegistry registry = mDaoMetrics;
+        if (registry == null) {
+            return new DaoMetrics(Collections.<String, DaoMethodStats>emptyMap());
+        }
+        return registry.snapshot();
+    }
+
+    /**
+     * Returns the statements that ran longer than the slow query threshold, oldest first.
+     * <p>
+     * Only the most recent ones are kept, up to the capacity of the log. If the log is disabled,
+     * the returned list is empty.
+     *
+     * @return The recorded slow statements.
+     * @see Builder#setSlowQueryLog(long, int)
+     */
+    @NonNull
+    public List<SlowQuery> getSlowQueries() {
+        final SlowQueryLog log = mSlowQueryLog;
+        if (log == null) {
+            return Collections.emptyList();
+        }
+        return log.getEntries();
+    }
+
+    /**
+     * Returns the number of statements that ran longer than the slow query threshold since the
+     * database was opened, including the ones no longer returned by {@link #getSlowQueries()}.
+     *
+     * @return The number of slow statements, 0 if the log is disabled.
+     * @see Builder#setSlowQueryLog(long, int)
+     */
+    public long getSlowQueryCount() {
+        final SlowQueryLog log = mSlowQueryLog;
+        return log == null ? 0 : log.getTotalCount();
+    }
+
+    /**
+     * Removes the recorded slow statements, for instance after they were reported. Query plans
+     * that were already captured are kept.
+     */
+    public void clearSlowQueries() {
+        final SlowQueryLog log = mSlowQueryLog;
+        if (log != null) {
+            log.clear();
+        }
+    }
+
+    /**
+     * Returns the cache of an entity annotated with {@code @Entity(cached = true)}.
+     *
+     * @param tableName The table of the entity.
+     * @param <E>       The type of the entity.
+     * @return The entity cache.
+     * @hide
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public <E> EntityCache<E> getEntityCache(@NonNull String tableName) {
+        synchronized (mEntityCaches) {
+            EntityCache<?> cache = mEntityCaches.get(tableName);
+            if (cache == null) {
+                cache = new EntityCache<E>(this, tableName, mEntityCacheSize);
+                mEntityCaches.put(tableName, cache);
+            }
+            return (EntityCache<E>) cache;
+        }
+    }
+
+    /**
+     * Returns the in-memory mirror of the table of an entity annotated with
+     * {@code @Entity(mirrored = true)}.
+     *
+     * @param tableName The table of the entity.
+     * @param reader    Converts the rows of the table, used if the mirror is created by this call.
+     * @param <E>       The type of the entity.
+     * @return The table mirror.
+     * @hide
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public <E> TableMirror<E> getTableMirror(@NonNull String tableName,
+            @NonNull TableMirror.RowReader<E> reader) {
+        synchronized (mTableMirrors) {
+            TableMirror<?> mirror = mTableMirrors.get(tableName);
+            if (mirror == null) {
+                mirror = new TableMirror<>(this, tableName, reader);
+                mTableMirrors.put(tableName, mirror);
+            }
+            return (TableMirror<E>) mirror;
         }
     }
 
+    StatementCache getStatementCache() {
+        return mStatementCache;
+    }
+
     /**
      * Wrapper for {@link SupportSQLiteDatabase#compileStatement(String)}.
      *
@@ -540,7 +862,9 @@ public abstract class DepotDatabase {
     public SupportSQLiteStatement compileStatement(@NonNull String sql) {
         assertNotMainThread();
         assertNotSuspendingTransaction();
-        return mOpenHelper.getWritableDatabase().compileStatement(sql);
+        final SupportSQLiteStatement statement =
+                mOpenHelper.getWritableDatabase().compileStatement(sql);
+        return mDaoMetrics == null ? statement : new DaoMetricsStatement(statement);
     }
 
     /**
@@ -615,6 +939,64 @@ public abstract class DepotDatabase {
         return mTransactionExecutor;
     }
 
+    /**
+     * Runs the given task after a delay on a background thread of this database, so that it does
+     * not depend on the main thread being responsive. Tasks must be short, they are meant to hand
+     * work off to an executor.
+     * <p>
+     * Once the database is closed, tasks run right away on the calling thread.
+     *
+     * @param task        The task to run.
+     * @param delayMillis The delay, in milliseconds.
+     * @return The future to cancel the task with or null if it already ran.
+     */
+    @Nullable
+    ScheduledFuture<?> schedule(@NonNull Runnable task, long delayMillis) {
+        final ScheduledThreadPoolExecutor scheduler;
+        synchronized (mSchedulerLock) {
+            if (mSchedulerClosed) {
+                scheduler = null;
+            } else {
+                if (mScheduler == null) {
+                    mScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                        final Thread thread = new Thread(runnable, "depot-scheduler");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    // The thread only lives while tasks are pending.
+                    mScheduler.setKeepAliveTime(SCHEDULER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+                    mScheduler.allowCoreThreadTimeOut(true);
+                    mScheduler.setRemoveOnCancelPolicy(true);
+                }
+                scheduler = mScheduler;
+            }
+        }
+        if (scheduler != null) {
+            try {
+                return scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // closed concurrently
+            }
+        }
+        task.run();
+        return null;
+    }
+
+    private void closeScheduler() {
+        final ScheduledThreadPoolExecutor scheduler;
+        synchronized (mSchedulerLock) {
+            mSchedulerClosed = true;
+            scheduler = mScheduler;
+            mScheduler = null;
+        }
+        if (scheduler != null) {
+            // the pending hand-offs run now rather than being dropped
+            for (Runnable task : scheduler.shutdownNow()) {
+                task.run();
+            }
+        }
+    }
+
     /**
      * Wrapper for {@link SupportSQLiteDatabase#setTransactionSuccessful()}.
      *
@@ -671,6 +1053,29 @@ public abstract class DepotDatabase {
         }
     }
 
+    /**
+     * Submits a write that runs in a transaction shared with the writes other threads submit
+     * around the same time.
+     * <p>
+     * Writes are collected for the {@link Builder#setGroupCommitWindow(long, TimeUnit) group
+     * commit window} and then run, in submission order, in a single transaction on the
+     * {@link #getTransactionExecutor() transaction executor}, so they share the cost of a commit.
+     * A write that throws doesn't affect the others: its future fails with the exception while
+     * the other writes are committed. To allow that, the {@code write} may run more than once
+     * and must not have side effects outside of the database.
+     *
+     * @param write The write to run.
+     * @param <V>   The type of the result of the write.
+     * @return A future that completes with the result of the write once it is committed.
+     */
+    @NonNull
+    public <V> Future<V> submitGroupedWrite(@NonNull Callable<V> write) {
+        if (mGroupCommitWriter == null) {
+            throw new IllegalStateException("The database is not initialized.");
+        }
+        return mGroupCommitWriter.submit(write);
+    }
+
     /**
      * Called by the generated code when database is open.
      * <p>
@@ -773,6 +1178,7 @@ public abstract class DepotDatabase {
         private PrepackagedDatabaseCallback mPrepackagedDatabaseCallback;
         private QueryCallback mQueryCallback;
         private Executor mQueryCallbackExecutor;
+        private Tracer mTracer;
         private List<Object> mTypeConverters;
         private List<AutoMigrationSpec> mAutoMigrationSpecs;
 
@@ -790,6 +1196,20 @@ public abstract class DepotDatabase {
         private long mAutoCloseTimeout = -1L;
         private TimeUnit mAutoCloseTimeUnit;
 
+        private int mReaderConnectionPoolSize;
+        private int mStatementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+        private long mInvalidationCoalescingWindowMillis;
+        private long mGroupCommitWindowMillis;
+        private int mMaxTransactionsPerHandoff = DEFAULT_MAX_TRANSACTIONS_PER_HANDOFF;
+        private int mInvalidationMaxBatchSize;
+        private int mQueryResultCacheMaxEntries;
+        private long mQueryResultCacheMaxSizeBytes;
+        private int mEntityCacheSize = DEFAULT_ENTITY_CACHE_SIZE;
+        private boolean mQueryDeduplicationEnabled;
+        private boolean mDaoMetricsEnabled;
+        private long mSlowQueryThresholdMillis = -1;
+        private int mSlowQueryLogCapacity;
+
         /**
          * Migrations, mapped by from-to pairs.
          */
@@ -1102,6 +1522,264 @@ public abstract class DepotDatabase {
             return this;
         }
 
+        /**
+         * Sets the number of read-only connections used to run queries that are not part of a
+         * transaction.
+         * <p>
+         * In {@link JournalMode#WRITE_AHEAD_LOGGING} mode, readers don't block each other nor the
+         * writer. With a pool, queries run concurrently on up to {@code size} read-only
+         * connections while transactions and all writes stay on the writer connection. A query
+         * that cannot get a free reader in time runs on the writer.
+         * <p>
+         * The pool is not used for in-memory databases, when the resolved journal mode is not
+         * write-ahead logging or when an auto close timeout is set.
+         * <p>
+         * The default value is 0, which runs every query on the writer connection.
+         *
+         * @param size The number of read-only connections.
+         * @return This {@link Builder} instance.
+         * @see DepotDatabase#getConnectionPoolStats()
+         */
+        @NonNull
+        public Builder<T> setReaderConnectionPoolSize(@IntRange(from = 0) int size) {
+            if (size < 0) {
+                throw new IllegalArgumentException("Reader connection pool size must be >= 0");
+            }
+            mReaderConnectionPoolSize = size;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of idle prepared statements kept for the writer connection.
+         * <p>
+         * Inserts, updates, deletes and write queries of generated DAOs check out a compiled
+         * statement for their SQL and hand it back once done, so concurrent calls to the same
+         * method each reuse a statement instead of compiling a new one. The least recently used
+         * statements are closed once more than {@code size} of them are idle.
+         * <p>
+         * The default value is {@link DepotDatabase#DEFAULT_STATEMENT_CACHE_SIZE}. Setting it to 0
+         * compiles a new statement for every call.
+         *
+         * @param size The maximum number of idle statements.
+         * @return This {@link Builder} instance.
+         * @see DepotDatabase#getStatementCacheStats()
+         */
+        @NonNull
+        public Builder<T> setStatementCacheSize(@IntRange(from = 0) int size) {
+            if (size < 0) {
+                throw new IllegalArgumentException("Statement cache size must be >= 0");
+            }
+            mStatementCacheSize = size;
+            return this;
+        }
+
+        /**
+         * Sets how invalidations of consecutive transactions are coalesced.
+         * <p>
+         * By default, the {@link InvalidationTracker} checks the updated tables after every
+         * transaction, so a sync that commits thousands of small transactions re-runs the observed
+         * queries thousands of times. With a coalescing window, the tracker waits up to
+         * {@code window} after a commit and notifies every observer once for all the tables
+         * invalidated in the meantime. Once {@code maxBatchSize} commits are merged, the
+         * notification is sent without waiting for the end of the window.
+         * <p>
+         * Observers can choose their own window by overriding
+         * {@link InvalidationTracker.Observer#getCoalescingWindowMillis()}.
+         *
+         * @param window       The longest time a notification is delayed, 0 to disable coalescing.
+         * @param timeUnit     The time unit of {@code window}.
+         * @param maxBatchSize The maximum number of commits merged into a single notification, 0
+         *                     for no limit.
+         * @return This {@link Builder} instance.
+         * @see InvalidationTracker#getMergedRefreshCount()
+         */
+        @NonNull
+        public Builder<T> setInvalidationCoalescing(@IntRange(from = 0) long window,
+                @NonNull TimeUnit timeUnit, @IntRange(from = 0) int maxBatchSize) {
+            if (window < 0) {
+                throw new IllegalArgumentException("Coalescing window must be >= 0");
+            }
+            if (maxBatchSize < 0) {
+                throw new IllegalArgumentException("Max batch size must be >= 0");
+            }
+            mInvalidationCoalescingWindowMillis = timeUnit.toMillis(window);
+            mInvalidationMaxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets how long {@link DepotDatabase#submitGroupedWrite(Callable)} collects writes before
+         * running them in a single transaction.
+         * <p>
+         * A longer window groups more writes into each commit at the cost of their latency. The
+         * default value is 0: writes submitted while a group transaction is queued or running
+         * join the next one, without waiting.
+         *
+         * @param window   How long writes are collected.
+         * @param timeUnit The time unit of {@code window}.
+         * @return This {@link Builder} instance.
+         */
+        @NonNull
+        public Builder<T> setGroupCommitWindow(@IntRange(from = 0) long window,
+                @NonNull TimeUnit timeUnit) {
+            if (window < 0) {
+                throw new IllegalArgumentException("Group commit window must be >= 0");
+            }
+            mGroupCommitWindowMillis = timeUnit.toMillis(window);
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of queued transactions that run before the transaction executor
+         * hands its thread back to the executor set with {@link #setTransactionExecutor(Executor)}.
+         * <p>
+         * Transactions still run one at a time and in order. Running several of them per handoff
+         * saves a thread handoff for each transaction of a burst, while a lower value lets other
+         * tasks of a shared executor run in between.
+         * <p>
+         * The default value is {@link DepotDatabase#DEFAULT_MAX_TRANSACTIONS_PER_HANDOFF}.
+         *
+         * @param maxTransactions The maximum number of transactions run per handoff.
+         * @return This {@link Builder} instance.
+         * @see DepotDatabase#getTransactionExecutorStats()
+         */
+        @NonNull
+        public Builder<T> setMaxTransactionsPerHandoff(@IntRange(from = 1) int maxTransactions) {
+            if (maxTransactions < 1) {
+                throw new IllegalArgumentException("Max transactions per handoff must be >= 1");
+            }
+            mMaxTransactionsPerHandoff = maxTransactions;
+            return this;
+        }
+
+        /**
+         * Enables the query result cache used by query methods annotated with
+         * {@link CacheResult}.
+         * <p>
+         * Calls of those methods with the same arguments share a copy of the result until one of
+         * the tables the query reads is invalidated. The least recently used results are evicted
+         * once there are more than {@code maxEntries} of them or their estimated size exceeds
+         * {@code maxSizeBytes}.
+         * <p>
+         * The cache is disabled by default.
+         *
+         * @param maxEntries   The maximum number of cached results.
+         * @param maxSizeBytes The maximum estimated size of the cached results, in bytes.
+         * @return This {@link Builder} instance.
+         * @see DepotDatabase#getQueryCacheStats()
+         */
+        @NonNull
+        public Builder<T> setQueryResultCache(@IntRange(from = 1) int maxEntries,
+                @IntRange(from = 1) long maxSizeBytes) {
+            if (maxEntries < 1) {
+                throw new IllegalArgumentException("Max entries must be >= 1");
+            }
+            if (maxSizeBytes < 1) {
+                throw new IllegalArgumentException("Max size must be >= 1");
+            }
+            mQueryResultCacheMaxEntries = maxEntries;
+            mQueryResultCacheMaxSizeBytes = maxSizeBytes;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of instances kept per entity annotated with
+         * {@code @Entity(cached = true)}.
+         * <p>
+         * The least recently used instances are evicted first. The default value is
+         * {@link DepotDatabase#DEFAULT_ENTITY_CACHE_SIZE}. Setting it to 0 disables the entity
+         * caches, so lookups by primary key always run their query.
+         *
+         * @param size The maximum number of cached instances per entity.
+         * @return This {@link Builder} instance.
+         */
+        @NonNull
+        public Builder<T> setEntityCacheSize(@IntRange(from = 0) int size) {
+            if (size < 0) {
+                throw new IllegalArgumentException("Entity cache size must be >= 0");
+            }
+            mEntityCacheSize = size;
+            return this;
+        }
+
+        /**
+         * Sets whether identical queries issued at the same time run only once.
+         * <p>
+         * When enabled, a query that is issued while the same query, with the same arguments, is
+         * already running waits for it and reads its result instead of running again. This
+         * helps when several observers of the same query re-run it after the same commit. The
+         * result is copied once for all the callers that share it, so each of them gets its own
+         * cursor. Queries inside a transaction are never shared.
+         * <p>
+         * This only applies to the queries of generated DAO methods. It is disabled by default.
+         *
+         * @param enabled Whether identical concurrent queries are deduplicated.
+         * @return This {@link Builder} instance.
+         */
+        @NonNull
+        public Builder<T> setQueryDeduplicationEnabled(boolean enabled) {
+            mQueryDeduplicationEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * Sets whether the calls to generated DAO methods are measured.
+         * <p>
+         * When enabled, the database records the latency of every DAO method call along with the
+         * number of rows it read or wrote and the number of bytes it bound to statements, in
+         * histograms that {@link DepotDatabase#getMetrics()} returns. Calls made inside another
+         * DAO method, such as a {@link Transaction} method, are also counted in the outer call.
+         * <p>
+         * Only methods that run their query before returning are measured, not the ones returning
+         * an observable or deferred result. The rows a query read are counted as its cursor is
+         * moved and attributed to the call when the cursor is closed, so rows a lazy iterator or
+         * stream reads after the method returned are not counted. It is disabled by default.
+         *
+         * @param enabled Whether DAO method metrics are recorded.
+         * @return This {@link Builder} instance.
+         * @see DepotDatabase#getMetrics()
+         */
+        @NonNull
+        public Builder<T> setDaoMetricsEnabled(boolean enabled) {
+            mDaoMetricsEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * Enables the slow query log.
+         * <p>
+         * Every statement that runs for at least {@code thresholdMillis}, on the writer or on a
+         * reader connection, is recorded with its SQL, bound arguments, duration and row count
+         * in a ring buffer that keeps the last {@code capacity} of them. The first time a given
+         * SQL is slow, its {@code EXPLAIN QUERY PLAN} output is captured as well, which makes
+         * full table scans and temporary B-trees easy to spot. The buffer can be dumped with
+         * {@link DepotDatabase#getSlowQueries()}, for instance when users report jank.
+         * <p>
+         * Queries are timed until their first window of rows is read and a slow one is recorded
+         * when its cursor is closed. Capturing a plan runs an extra query on the thread that
+         * recorded the slow statement, once per distinct SQL.
+         * <p>
+         * The log is disabled by default.
+         *
+         * @param thresholdMillis The minimum duration of a recorded statement, in milliseconds.
+         * @param capacity        The maximum number of recorded statements.
+         * @return This {@link Builder} instance.
+         * @see DepotDatabase#getSlowQueries()
+         */
+        @NonNull
+        public Builder<T> setSlowQueryLog(@IntRange(from = 0) long thresholdMillis,
+                @IntRange(from = 1) int capacity) {
+            if (thresholdMillis < 0) {
+                throw new IllegalArgumentException("Slow query threshold must be >= 0");
+            }
+            if (capacity < 1) {
+                throw new IllegalArgumentException("Slow query log capacity must be >= 1");
+            }
+            mSlowQueryThresholdMillis = thresholdMillis;
+            mSlowQueryLogCapacity = capacity;
+            return this;
+        }
+
         /**
          * Sets the {@link Executor} that will be used to execute all non-blocking asynchronous
          * queries and tasks, including {@code LiveData} invalidation, {@code Flowable} scheduling
@@ -1270,7 +1948,9 @@ public abstract class DepotDatabase {
          * Sets a {@link QueryCallback} to be invoked when queries are executed.
          * <p>
          * The callback is invoked whenever a query is executed, note that adding this callback
-         * has a small cost and should be avoided in production builds unless needed.
+         * has a small cost and should be avoided in production builds unless needed. Every
+         * argument is copied to a list for the callback, a {@link Tracer} set with
+         * {@link #setTracer(Tracer)} is cheaper to leave enabled.
          * <p>
          * A use case for providing a callback is to allow logging executed queries. When the
          * callback implementation logs then it is recommended to use an immediate executor.
@@ -1287,6 +1967,23 @@ public abstract class DepotDatabase {
             return this;
         }
 
+        /**
+         * Sets a {@link Tracer} to be notified when transactions, statements, queries and cursor
+         * reads begin and end, on the writer and on the reader connections.
+         * <p>
+         * Hooks run synchronously and, unless the tracer asks for them, no arguments are recorded,
+         * so a cheap tracer such as {@link SystraceTracer} can be left enabled.
+         *
+         * @param tracer The tracer.
+         * @return This {@link Builder} instance.
+         */
+        @SuppressWarnings("MissingGetterMatchingBuilder")
+        @NonNull
+        public Builder<T> setTracer(@NonNull Tracer tracer) {
+            mTracer = tracer;
+            return this;
+        }
+
         /**
          * Adds a type converter instance to this database.
          *
@@ -1432,9 +2129,18 @@ public abstract class DepotDatabase {
                         mCopyFromInputStream, factory);
             }
 
+            if (mSlowQueryThresholdMillis >= 0) {
+                factory = new SlowQueryOpenHelperFactory(factory,
+                        new SlowQueryLog(mSlowQueryThresholdMillis, mSlowQueryLogCapacity));
+            }
+
+            if (mTracer != null) {
+                factory = new TracingOpenHelperFactory(factory, mTracer);
+            }
+
             if (mQueryCallback != null) {
-                factory = new QueryInterceptorOpenHelperFactory(factory, mQueryCallback,
-                        mQueryCallbackExecutor);
+                factory = new TracingOpenHelperFactory(factory,
+                        new QueryCallbackTracer(mQueryCallback, mQueryCallbackExecutor));
             }
 
             DatabaseConfiguration configuration =
@@ -1457,7 +2163,18 @@ public abstract class DepotDatabase {
                             mCopyFromInputStream,
                             mPrepackagedDatabaseCallback,
                             mTypeConverters,
-                            mAutoMigrationSpecs);
+                            mAutoMigrationSpecs,
+                            mReaderConnectionPoolSize,
+                            mStatementCacheSize,
+                            mInvalidationCoalescingWindowMillis,
+                            mInvalidationMaxBatchSize,
+                            mGroupCommitWindowMillis,
+                            mMaxTransactionsPerHandoff,
+                            mQueryResultCacheMaxEntries,
+                            mQueryResultCacheMaxSizeBytes,
+                            mEntityCacheSize,
+                            mQueryDeduplicationEnabled,
+                            mDaoMetricsEnabled);
             T db = Depot.getGeneratedImplementation(mDatabaseClass, DB_IMPL_SUFFIX);
             db.init(configuration);
             return db;
@@ -1634,6 +2351,111 @@ public abstract class DepotDatabase {
         }
     }
 
+    /**
+     * Receives begin and end hooks for the transactions, statements, queries and cursor reads of
+     * a database, to trace or profile them.
+     * <p>
+     * Hooks are called synchronously on the thread that runs the operation, on the writer and on
+     * the reader connections, so they must be fast and must not use the database. Every begin
+     * hook is followed by its end hook, even if the operation fails, and transactions and
+     * statements nest on their thread. Cursor reads start when the cursor is first counted or
+     * moved, which runs the query, and end when it is closed, possibly on another thread, so they
+     * are matched by a cookie.
+     * <p>
+     * Arguments are only recorded if {@link #isBindingsEnabled()} returns true, in which case
+     * they are passed as {@link StatementBindings}, without boxing or copying numbers.
+     *
+     * @see DepotDatabase.Builder#setTracer(Tracer)
+     * @see SystraceTracer
+     */
+    public abstract static class Tracer {
+
+        /**
+         * Returns whether the begin hooks of statements and queries receive their arguments.
+         * Recording them has a small cost, so it is disabled by default.
+         *
+         * @return True to receive the arguments, false to receive empty bindings.
+         */
+        public boolean isBindingsEnabled() {
+            return false;
+        }
+
+        /**
+         * Called before a transaction starts.
+         *
+         * @param exclusive Whether the transaction is exclusive or deferred.
+         */
+        public void onBeginTransaction(boolean exclusive) {
+        }
+
+        /**
+         * Called when the current transaction is marked as successful.
+         */
+        public void onSetTransactionSuccessful() {
+        }
+
+        /**
+         * Called after a transaction ended, whether it committed or rolled back.
+         */
+        public void onEndTransaction() {
+        }
+
+        /**
+         * Called before a statement that is not a query runs.
+         *
+         * @param sql      The SQL of the statement.
+         * @param bindings The arguments bound to the statement, only valid during this call.
+         */
+        public void onBeginStatement(@NonNull String sql, @NonNull StatementBindings bindings) {
+        }
+
+        /**
+         * Called after a statement that is not a query ran.
+         *
+         * @param sql The SQL of the statement.
+         */
+        public void onEndStatement(@NonNull String sql) {
+        }
+
+        /**
+         * Called before a query runs.
+         *
+         * @param sql      The SQL of the query.
+         * @param bindings The arguments bound to the query, only valid during this call.
+         */
+        public void onBeginQuery(@NonNull String sql, @NonNull StatementBindings bindings) {
+        }
+
+        /**
+         * Called after a query was prepared, whether that succeeded or failed. The query runs
+         * when its cursor is first read, inside the cursor read hooks.
+         *
+         * @param sql The SQL of the query.
+         */
+        public void onEndQuery(@NonNull String sql) {
+        }
+
+        /**
+         * Called when the cursor of a query is first counted or moved, before it runs the query.
+         *
+         * @param sql    The SQL of the query.
+         * @param cookie A number identifying the read, passed to
+         *               {@link #onEndCursorRead(String, int, int)}.
+         */
+        public void onBeginCursorRead(@NonNull String sql, int cookie) {
+        }
+
+        /**
+         * Called when the cursor of a query that was moved is closed.
+         *
+         * @param sql      The SQL of the query.
+         * @param cookie   The number passed to {@link #onBeginCursorRead(String, int)}.
+         * @param rowsRead The number of times the cursor was moved to a row.
+         */
+        public void onEndCursorRead(@NonNull String sql, int cookie, int rowsRead) {
+        }
+    }
+
     /**
      * Callback interface for when SQLite queries are executed.
      *
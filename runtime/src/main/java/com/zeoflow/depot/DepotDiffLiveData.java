@@ -0,0 +1,410 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import android.annotation.SuppressLint;
+import android.database.Cursor;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.arch.core.executor.ArchTaskExecutor;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+
+import com.zeoflow.sqlite.db.SimpleSQLiteQuery;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A LiveData that emits the {@link ListDiff changes} of the result of a list query over a single
+ * entity rather than the whole result.
+ * <p>
+ * It keeps a hash of the raw values of every row of the result, keyed by the
+ * {@code INTEGER PRIMARY KEY} of the entity, so only the rows whose values changed are converted.
+ * When the query is incremental, the invalidation tracker logs the rowids each commit touches
+ * and only those rows are read again, through the query restricted to their keys. Queries whose
+ * result also depends on rows that did not change, like those with a {@code LIMIT}, read the
+ * whole result again on every invalidation and are compared row by row.
+ * <p>
+ * Every diff is delivered in order. Since LiveData only hands the last value to an observer that
+ * starts observing, or that starts again after having been stopped, every observer is wrapped and
+ * tracks the diffs it got: one that missed a diff is given an initial diff of the whole result,
+ * rebuilt from the diffs delivered so far, instead.
+ * <p>
+ * Like {@link DepotTrackingLiveData}, it is strongly held by the {@link InvalidationTracker} as
+ * long as it is active.
+ *
+ * @param <T> The type of the entity.
+ */
+class DepotDiffLiveData<T> extends LiveData<ListDiff<T>> {
+    // Rowids read per restricted query, well below the bound argument limit of SQLite.
+    private static final int MAX_KEYS_PER_QUERY = 256;
+
+    @SuppressWarnings("WeakerAccess")
+    final DepotDatabase mDatabase;
+
+    private final InvalidationLiveDataContainer mContainer;
+    private final DepotSQLiteQuery mQuery;
+    private final String mKeyColumn;
+    private final TableMirror.RowReader<T> mReader;
+
+    @SuppressWarnings("WeakerAccess")
+    final InvalidationTracker.Observer mObserver;
+
+    @SuppressWarnings("WeakerAccess")
+    final AtomicBoolean mComputing = new AtomicBoolean(false);
+
+    @SuppressWarnings("WeakerAccess")
+    final AtomicBoolean mRegisteredObserver = new AtomicBoolean(false);
+
+    private final Object mPendingLock = new Object();
+    // guarded by mPendingLock, what has to be read again at the next refresh.
+    private boolean mPending = true;
+    private boolean mPendingInitial = true;
+    private boolean mPendingAll = true;
+    private final HashSet<Long> mPendingRowIds = new HashSet<>();
+
+    // Only used by the refresh, which never runs on two threads at once. The hash of every row of
+    // the result, by key.
+    private HashMap<Long, Long> mRowHashes = new HashMap<>();
+
+    // Only used on the main thread. The result as of the last delivered diff, the number of diffs
+    // delivered so far and the wrappers of the observers, by the observer they wrap.
+    @SuppressWarnings("WeakerAccess")
+    final LinkedHashMap<Long, T> mRows = new LinkedHashMap<>();
+    @SuppressWarnings("WeakerAccess")
+    int mDiffCount;
+    private final HashMap<Observer<? super ListDiff<T>>, DiffObserver> mDiffObservers =
+            new HashMap<>();
+
+    @SuppressWarnings("WeakerAccess")
+    final Runnable mRefreshRunnable = new Runnable() {
+        @WorkerThread
+        @Override
+        public void run() {
+            if (mRegisteredObserver.compareAndSet(false, true)) {
+                mDatabase.getInvalidationTracker().addWeakObserver(mObserver);
+            }
+            boolean computed;
+            do {
+                computed = false;
+                if (mComputing.compareAndSet(false, true)) {
+                    try {
+                        computed = refresh();
+                    } finally {
+                        mComputing.set(false);
+                    }
+                }
+                // see DepotTrackingLiveData, a pending change may have been skipped while the
+                // compute lock was held.
+            } while (computed && isPending());
+        }
+    };
+
+    @SuppressWarnings("WeakerAccess")
+    final Runnable mInvalidationRunnable = new Runnable() {
+        @MainThread
+        @Override
+        public void run() {
+            if (hasActiveObservers()) {
+                mDatabase.getQueryExecutor().execute(mRefreshRunnable);
+            }
+        }
+    };
+
+    DepotDiffLiveData(
+            DepotDatabase database,
+            InvalidationLiveDataContainer container,
+            DepotSQLiteQuery query,
+            String tableName,
+            String keyColumn,
+            boolean incremental,
+            TableMirror.RowReader<T> reader) {
+        mDatabase = database;
+        mContainer = container;
+        mQuery = query;
+        mKeyColumn = keyColumn;
+        mReader = reader;
+        // Observing the table as a keyed table with no rowids reports the rows every change
+        // touched.
+        mObserver = new InvalidationTracker.Observer(new String[]{tableName},
+                incremental ? tableName : null, null, null, false) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                onInvalidated(tables, null);
+            }
+
+            @Override
+            void onInvalidated(@NonNull Set<String> tables, @Nullable long[] keyedRowIds) {
+                invalidate(keyedRowIds);
+            }
+        };
+    }
+
+    @SuppressLint("RestrictedApi")
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    void invalidate(@Nullable long[] rowIds) {
+        synchronized (mPendingLock) {
+            mPending = true;
+            if (rowIds == null || mPendingRowIds.size() + rowIds.length
+                    > InvalidationTracker.MAX_TRACKED_ROWS_PER_TABLE) {
+                mPendingAll = true;
+                mPendingRowIds.clear();
+            } else if (!mPendingAll) {
+                for (long rowId : rowIds) {
+                    mPendingRowIds.add(rowId);
+                }
+            }
+        }
+        ArchTaskExecutor.getInstance().executeOnMainThread(mInvalidationRunnable);
+    }
+
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    boolean isPending() {
+        synchronized (mPendingLock) {
+            return mPending;
+        }
+    }
+
+    /**
+     * Reads the pending changes and delivers their diffs.
+     *
+     * @return True if anything was read.
+     */
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    boolean refresh() {
+        boolean computed = false;
+        while (true) {
+            final boolean initial;
+            final long[] rowIds;
+            synchronized (mPendingLock) {
+                if (!mPending) {
+                    return computed;
+                }
+                initial = mPendingInitial;
+                if (mPendingAll) {
+                    rowIds = null;
+                } else {
+                    rowIds = new long[mPendingRowIds.size()];
+                    int index = 0;
+                    for (Long rowId : mPendingRowIds) {
+                        rowIds[index++] = rowId;
+                    }
+                }
+                mPending = false;
+                mPendingInitial = false;
+                mPendingAll = false;
+                mPendingRowIds.clear();
+            }
+            computed = true;
+            final ListDiff<T> diff = rowIds == null ? diffAll(initial) : diffRows(rowIds);
+            if (initial || !diff.isEmpty()) {
+                deliver(diff);
+            }
+        }
+    }
+
+    @SuppressLint("RestrictedApi")
+    private void deliver(@NonNull final ListDiff<T> diff) {
+        // Unlike postValue, posting every diff on its own never drops one.
+        ArchTaskExecutor.getInstance().postToMainThread(new Runnable() {
+            @Override
+            public void run() {
+                apply(diff);
+                setValue(diff);
+            }
+        });
+    }
+
+    @MainThread
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    void apply(@NonNull ListDiff<T> diff) {
+        if (diff.isInitial()) {
+            mRows.clear();
+        }
+        for (Long key : diff.getRemoved()) {
+            mRows.remove(key);
+        }
+        mRows.putAll(diff.getInserted());
+        mRows.putAll(diff.getChanged());
+        mDiffCount++;
+    }
+
+    @MainThread
+    @Override
+    public void observe(@NonNull LifecycleOwner owner,
+            @NonNull Observer<? super ListDiff<T>> observer) {
+        super.observe(owner, wrap(observer));
+    }
+
+    @MainThread
+    @Override
+    public void observeForever(@NonNull Observer<? super ListDiff<T>> observer) {
+        super.observeForever(wrap(observer));
+    }
+
+    @MainThread
+    @Override
+    @SuppressWarnings("unchecked")
+    public void removeObserver(@NonNull Observer<? super ListDiff<T>> observer) {
+        // removeObservers(LifecycleOwner) removes the wrappers themselves.
+        final DiffObserver wrapper = observer instanceof DepotDiffLiveData.DiffObserver
+                ? mDiffObservers.remove(((DiffObserver) observer).mObserver)
+                : mDiffObservers.remove(observer);
+        if (wrapper != null) {
+            super.removeObserver(wrapper);
+        }
+    }
+
+    @NonNull
+    private DiffObserver wrap(@NonNull Observer<? super ListDiff<T>> observer) {
+        DiffObserver wrapper = mDiffObservers.get(observer);
+        if (wrapper == null) {
+            wrapper = new DiffObserver(observer);
+            mDiffObservers.put(observer, wrapper);
+        }
+        // An observer added twice keeps its wrapper so that LiveData still checks its owner.
+        return wrapper;
+    }
+
+    private ListDiff<T> diffAll(boolean initial) {
+        final Map<Long, Long> previous = initial ? Collections.<Long, Long>emptyMap() : mRowHashes;
+        final HashMap<Long, Long> hashes = new HashMap<>();
+        final Map<Long, T> inserted = new LinkedHashMap<>();
+        final Map<Long, T> changed = new LinkedHashMap<>();
+        final Cursor cursor = mDatabase.query(mQuery);
+        try {
+            final int keyIndex = cursor.getColumnIndexOrThrow(mKeyColumn);
+            while (cursor.moveToNext()) {
+                final long key = cursor.getLong(keyIndex);
+                final long hash = CursorHash.mixRow(CursorHash.SEED, cursor);
+                hashes.put(key, hash);
+                final Long previousHash = previous.get(key);
+                if (previousHash == null) {
+                    inserted.put(key, mReader.read(cursor));
+                } else if (previousHash != hash) {
+                    changed.put(key, mReader.read(cursor));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        final Set<Long> removed = new HashSet<>();
+        for (Long key : previous.keySet()) {
+            if (!hashes.containsKey(key)) {
+                removed.add(key);
+            }
+        }
+        mRowHashes = hashes;
+        return new ListDiff<>(initial, inserted, changed, removed);
+    }
+
+    private ListDiff<T> diffRows(@NonNull long[] rowIds) {
+        Arrays.sort(rowIds);
+        final Map<Long, T> inserted = new LinkedHashMap<>();
+        final Map<Long, T> changed = new LinkedHashMap<>();
+        final Set<Long> found = new HashSet<>();
+        final Object[] queryArgs = mQuery.getBindArgs();
+        final String sql = "SELECT * FROM (" + mQuery.getSql() + ") WHERE `"
+                + mKeyColumn.replace("`", "``") + "` IN (";
+        for (int start = 0; start < rowIds.length; start += MAX_KEYS_PER_QUERY) {
+            final int end = Math.min(rowIds.length, start + MAX_KEYS_PER_QUERY);
+            final StringBuilder builder = new StringBuilder(sql);
+            final Object[] args = Arrays.copyOf(queryArgs, queryArgs.length + end - start);
+            for (int i = start; i < end; i++) {
+                builder.append(i == start ? "?" : ", ?");
+                args[queryArgs.length + i - start] = rowIds[i];
+            }
+            builder.append(")");
+            final Cursor cursor = mDatabase.query(new SimpleSQLiteQuery(builder.toString(), args));
+            try {
+                final int keyIndex = cursor.getColumnIndexOrThrow(mKeyColumn);
+                while (cursor.moveToNext()) {
+                    final long key = cursor.getLong(keyIndex);
+                    final long hash = CursorHash.mixRow(CursorHash.SEED, cursor);
+                    found.add(key);
+                    final Long previousHash = mRowHashes.put(key, hash);
+                    if (previousHash == null) {
+                        inserted.put(key, mReader.read(cursor));
+                    } else if (previousHash != hash) {
+                        changed.put(key, mReader.read(cursor));
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        final Set<Long> removed = new HashSet<>();
+        for (long rowId : rowIds) {
+            if (!found.contains(rowId) && mRowHashes.remove(rowId) != null) {
+                removed.add(rowId);
+            }
+        }
+        return new ListDiff<>(false, inserted, changed, removed);
+    }
+
+    @Override
+    protected void onActive() {
+        super.onActive();
+        mContainer.onActive(this);
+        if (isPending()) {
+            mDatabase.getQueryExecutor().execute(mRefreshRunnable);
+        }
+    }
+
+    @Override
+    protected void onInactive() {
+        super.onInactive();
+        mContainer.onInactive(this);
+    }
+
+    /**
+     * Hands an observer the diffs it missed as an initial diff of the whole result.
+     */
+    private final class DiffObserver implements Observer<ListDiff<T>> {
+        final Observer<? super ListDiff<T>> mObserver;
+        // The number of diffs delivered when this observer was last given one.
+        private int mSeenDiffCount;
+
+        DiffObserver(@NonNull Observer<? super ListDiff<T>> observer) {
+            mObserver = observer;
+        }
+
+        @MainThread
+        @Override
+        public void onChanged(ListDiff<T> diff) {
+            if (diff.isInitial() || mSeenDiffCount == mDiffCount - 1) {
+                mObserver.onChanged(diff);
+            } else {
+                mObserver.onChanged(new ListDiff<>(true, new LinkedHashMap<>(mRows),
+                        Collections.<Long, T>emptyMap(), Collections.<Long>emptySet()));
+            }
+            mSeenDiffCount = mDiffCount;
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package com.zeoflow.depot;
 
 import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.VisibleForTesting;
 import com.zeoflow.sqlite.db.SupportSQLiteProgram;
@@ -25,30 +26,58 @@ import com.zeoflow.sqlite.db.SupportSQLiteQuery;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * This class is used as an intermediate place to keep binding arguments so that we can run
  * Cursor queries with correct types rather than passing everything as a string.
  * <p>
  * Because it is relatively a big object, they are pooled and must be released after each use.
+ * The pool is bucketed by argument count, rounded up to a power of two. Each thread first uses
+ * its own slot for the bucket and then a small set of shared slots, so neither acquiring nor
+ * releasing a query takes a lock.
  *
  * @hide
  */
 @SuppressWarnings("unused")
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
 public class DepotSQLiteQuery implements SupportSQLiteQuery, SupportSQLiteProgram {
+    // Queries are pooled by capacity class: class 0 holds queries without arguments and class n
+    // holds queries with a capacity of 2^(n - 1) arguments.
     @SuppressWarnings("WeakerAccess")
     @VisibleForTesting
-    // Maximum number of queries we'll keep cached.
-    static final int POOL_LIMIT = 15;
+    static final int CAPACITY_CLASS_COUNT = 12;
+    // Largest capacity class kept per thread, bigger queries are only pooled in the shared slots.
     @SuppressWarnings("WeakerAccess")
     @VisibleForTesting
-    // Once we hit POOL_LIMIT, we'll bring the pool size back to the desired number. We always
-    // clear the bigger queries (# of arguments).
-    static final int DESIRED_POOL_SIZE = 10;
+    static final int MAX_THREAD_LOCAL_CAPACITY_CLASS = 6;
+    // Number of shared slots per capacity class, a power of two.
+    @SuppressWarnings("WeakerAccess")
+    @VisibleForTesting
+    static final int SHARED_STRIPES = sharedStripeCount();
+    // How many shared slots acquire and release look at before giving up.
+    private static final int SHARED_PROBES = 2;
+
+    private static final ThreadLocal<DepotSQLiteQuery[]> sThreadPool =
+            new ThreadLocal<DepotSQLiteQuery[]>() {
+                @Override
+                protected DepotSQLiteQuery[] initialValue() {
+                    return new DepotSQLiteQuery[MAX_THREAD_LOCAL_CAPACITY_CLASS + 1];
+                }
+            };
+
+    // Queries released on a thread whose own slot is taken, mostly because they were acquired on
+    // another thread, e.g. by an observable query.
+    @SuppressWarnings("WeakerAccess")
+    @VisibleForTesting
+    static final AtomicReferenceArray<DepotSQLiteQuery> sSharedPool =
+            new AtomicReferenceArray<>(CAPACITY_CLASS_COUNT * SHARED_STRIPES);
+
+    private static final AtomicLong sSharedHitCount = new AtomicLong();
+    private static final AtomicLong sAllocationCount = new AtomicLong();
+    private static final AtomicLong sDropCount = new AtomicLong();
+
     private volatile String mQuery;
     @SuppressWarnings("WeakerAccess")
     @VisibleForTesting
@@ -72,11 +101,11 @@ public class DepotSQLiteQuery implements SupportSQLiteQuery, SupportSQLiteProgra
     @SuppressWarnings("WeakerAccess")
     @VisibleForTesting
     int mArgCount;
-
-
-    @SuppressWarnings("WeakerAccess")
-    @VisibleForTesting
-    static final TreeMap<Integer, DepotSQLiteQuery> sQueryPool = new TreeMap<>();
+    // tables the result depends on if it can be served from the query result cache
+    @Nullable
+    private String[] mResultCacheTables;
+    // whether the result is read lazily, one row at a time
+    private boolean mStreaming;
 
     /**
      * Copies the given SupportSQLiteQuery and converts it into DepotSQLiteQuery.
@@ -138,19 +167,72 @@ public class DepotSQLiteQuery implements SupportSQLiteQuery, SupportSQLiteProgra
      */
     @SuppressWarnings("WeakerAccess")
     public static DepotSQLiteQuery acquire(String query, int argumentCount) {
-        synchronized (sQueryPool) {
-            final Map.Entry<Integer, DepotSQLiteQuery> entry =
-                    sQueryPool.ceilingEntry(argumentCount);
-            if (entry != null) {
-                sQueryPool.remove(entry.getKey());
-                final DepotSQLiteQuery sqliteQuery = entry.getValue();
-                sqliteQuery.init(query, argumentCount);
-                return sqliteQuery;
+        final int capacityClass = capacityClassOf(argumentCount);
+        DepotSQLiteQuery sqliteQuery = null;
+        if (capacityClass <= MAX_THREAD_LOCAL_CAPACITY_CLASS) {
+            final DepotSQLiteQuery[] threadPool = sThreadPool.get();
+            sqliteQuery = threadPool[capacityClass];
+            threadPool[capacityClass] = null;
+        }
+        if (sqliteQuery == null && capacityClass < CAPACITY_CLASS_COUNT) {
+            final int base = capacityClass * SHARED_STRIPES;
+            final int probe = probe();
+            for (int i = 0; i < SHARED_PROBES && sqliteQuery == null; i++) {
+                final int slot = base + ((probe + i) & (SHARED_STRIPES - 1));
+                if (sSharedPool.get(slot) != null) {
+                    sqliteQuery = sSharedPool.getAndSet(slot, null);
+                }
             }
+            if (sqliteQuery != null) {
+                sSharedHitCount.incrementAndGet();
+            }
+        }
+        if (sqliteQuery == null) {
+            sAllocationCount.incrementAndGet();
+            sqliteQuery = new DepotSQLiteQuery(capacityClass < CAPACITY_CLASS_COUNT
+                    ? capacityOf(capacityClass) : argumentCount);
+        }
+        sqliteQuery.init(query, argumentCount);
+        return sqliteQuery;
+    }
+
+    private static int capacityClassOf(int argumentCount) {
+        if (argumentCount <= 0) {
+            return 0;
         }
-        DepotSQLiteQuery sqLiteQuery = new DepotSQLiteQuery(argumentCount);
-        sqLiteQuery.init(query, argumentCount);
-        return sqLiteQuery;
+        return 33 - Integer.numberOfLeadingZeros(argumentCount - 1);
+    }
+
+    private static int capacityOf(int capacityClass) {
+        return capacityClass == 0 ? 0 : 1 << (capacityClass - 1);
+    }
+
+    private static int sharedStripeCount() {
+        final int processors = Math.min(Runtime.getRuntime().availableProcessors(), 32);
+        return Integer.highestOneBit(Math.max(processors, 1)) << 1;
+    }
+
+    private static int probe() {
+        final long id = Thread.currentThread().getId();
+        final int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the pool that {@link #acquire(String, int)} and
+     * {@link #release()} use.
+     *
+     * @return The current pool statistics.
+     */
+    public static QueryPoolStats getPoolStats() {
+        int idle = 0;
+        for (int i = 0; i < sSharedPool.length(); i++) {
+            if (sSharedPool.get(i) != null) {
+                idle++;
+            }
+        }
+        return new QueryPoolStats(sSharedPool.length(), idle, sSharedHitCount.get(),
+                sAllocationCount.get(), sDropCount.get());
     }
 
     private DepotSQLiteQuery(int capacity) {
@@ -169,6 +251,8 @@ public class DepotSQLiteQuery implements SupportSQLiteQuery, SupportSQLiteProgra
     void init(String query, int argCount) {
         mQuery = query;
         mArgCount = argCount;
+        mResultCacheTables = null;
+        mStreaming = false;
     }
 
     /**
@@ -179,21 +263,27 @@ public class DepotSQLiteQuery implements SupportSQLiteQuery, SupportSQLiteProgra
      */
     @SuppressWarnings("WeakerAccess")
     public void release() {
-        synchronized (sQueryPool) {
-            sQueryPool.put(mCapacity, this);
-            prunePoolLocked();
+        final int capacityClass = capacityClassOf(mCapacity);
+        if (capacityClass >= CAPACITY_CLASS_COUNT || capacityOf(capacityClass) != mCapacity) {
+            // not a pooled size.
+            return;
         }
-    }
-
-    private static void prunePoolLocked() {
-        if (sQueryPool.size() > POOL_LIMIT) {
-            int toBeRemoved = sQueryPool.size() - DESIRED_POOL_SIZE;
-            final Iterator<Integer> iterator = sQueryPool.descendingKeySet().iterator();
-            while (toBeRemoved-- > 0) {
-                iterator.next();
-                iterator.remove();
+        if (capacityClass <= MAX_THREAD_LOCAL_CAPACITY_CLASS) {
+            final DepotSQLiteQuery[] threadPool = sThreadPool.get();
+            if (threadPool[capacityClass] == null) {
+                threadPool[capacityClass] = this;
+                return;
+            }
+        }
+        final int base = capacityClass * SHARED_STRIPES;
+        final int probe = probe();
+        for (int i = 0; i < SHARED_PROBES; i++) {
+            final int slot = base + ((probe + i) & (SHARED_STRIPES - 1));
+            if (sSharedPool.get(slot) == null && sSharedPool.compareAndSet(slot, null, this)) {
+                return;
             }
         }
+        sDropCount.incrementAndGet();
     }
 
     @Override
@@ -263,6 +353,112 @@ public class DepotSQLiteQuery implements SupportSQLiteQuery, SupportSQLiteProgra
         // no-op. not calling release because it is internal API.
     }
 
+    /**
+     * Returns the argument bound at the given index as the rowids an observer of this query
+     * should track.
+     *
+     * @param index The 1-based index of the argument.
+     * @return The bound value if it is an integer, an empty array if it is null, since it matches
+     * no row, or null if the argument is of another type and rows can't be tracked.
+     */
+    @Nullable
+    public long[] getBoundRowIds(int index) {
+        if (index < 1 || index > mArgCount) {
+            return null;
+        }
+        switch (mBindingTypes[index]) {
+            case LONG:
+                return new long[]{mLongBindings[index]};
+            case NULL:
+                return new long[0];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Allows the result of this query to be served from the query result cache of the database,
+     * if it has one. Generated code calls this for methods annotated with {@link CacheResult}.
+     *
+     * @param tables The tables the result depends on. The cached result is evicted when one of
+     *               them is invalidated.
+     */
+    public void setResultCacheTables(@Nullable String... tables) {
+        mResultCacheTables = tables;
+    }
+
+    @Nullable
+    String[] getResultCacheTables() {
+        return mResultCacheTables;
+    }
+
+    /**
+     * Marks the result of this query as read lazily, one row at a time, so that the database
+     * never copies it as a whole, e.g. to share it with identical queries. Generated code calls
+     * this, through {@code DBUtil}, for methods returning a {@link CloseableIterator} or a
+     * stream.
+     *
+     * @param streaming Whether the result is read lazily.
+     */
+    public void setStreaming(boolean streaming) {
+        mStreaming = streaming;
+    }
+
+    boolean isStreaming() {
+        return mStreaming;
+    }
+
+    /**
+     * @return The size of the bound arguments, counting 8 bytes per number and the length of
+     * strings and blobs.
+     */
+    long getBoundByteCount() {
+        long bytes = 0;
+        for (int index = 1; index <= mArgCount; index++) {
+            switch (mBindingTypes[index]) {
+                case LONG:
+                case DOUBLE:
+                    bytes += 8;
+                    break;
+                case STRING:
+                    final String string = mStringBindings[index];
+                    bytes += string == null ? 0 : string.length();
+                    break;
+                case BLOB:
+                    final byte[] blob = mBlobBindings[index];
+                    bytes += blob == null ? 0 : blob.length;
+                    break;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return The bound arguments as Long, Double, String, byte[] or null values.
+     */
+    Object[] getBindArgs() {
+        final Object[] args = new Object[mArgCount];
+        for (int index = 1; index <= mArgCount; index++) {
+            switch (mBindingTypes[index]) {
+                case LONG:
+                    args[index - 1] = mLongBindings[index];
+                    break;
+                case DOUBLE:
+                    args[index - 1] = mDoubleBindings[index];
+                    break;
+                case STRING:
+                    args[index - 1] = mStringBindings[index];
+                    break;
+                case BLOB:
+                    args[index - 1] = mBlobBindings[index];
+                    break;
+                default:
+                    break;
+            }
+        }
+        return args;
+    }
+
     /**
      * Copies arguments from another DepotSQLiteQuery into this query.
      *
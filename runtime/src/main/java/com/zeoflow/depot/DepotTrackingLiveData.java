@@ -21,6 +21,7 @@ import android.annotation.SuppressLint;
 
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 import androidx.arch.core.executor.ArchTaskExecutor;
 import androidx.lifecycle.LiveData;
@@ -84,16 +85,25 @@ class DepotTrackingLiveData<T> extends LiveData<T> {
                     // as long as it is invalid, keep computing.
                     try {
                         T value = null;
+                        boolean changed = false;
                         while (mInvalid.compareAndSet(true, false)) {
                             computed = true;
+                            final T next;
                             try {
-                                value = mComputeFunction.call();
+                                next = mComputeFunction.call();
                             } catch (Exception e) {
                                 throw new RuntimeException("Exception while computing database"
                                         + " live data.", e);
                             }
+                            // rows identical to the last ones are not posted again.
+                            if (!(mComputeFunction instanceof ChangeSuppressingCallable)
+                                    || !((ChangeSuppressingCallable<T>) mComputeFunction)
+                                    .wasUnchanged()) {
+                                value = next;
+                                changed = true;
+                            }
                         }
-                        if (computed) {
+                        if (changed) {
                             postValue(value);
                         }
                     } finally {
@@ -131,12 +141,16 @@ class DepotTrackingLiveData<T> extends LiveData<T> {
             InvalidationLiveDataContainer container,
             boolean inTransaction,
             Callable<T> computeFunction,
-            String[] tableNames) {
+            String[] tableNames,
+            @Nullable String keyedTable,
+            @Nullable long[] rowIds,
+            @Nullable String[][] observedColumns) {
         mDatabase = database;
         mInTransaction = inTransaction;
         mComputeFunction = computeFunction;
         mContainer = container;
-        mObserver = new InvalidationTracker.Observer(tableNames) {
+        mObserver = new InvalidationTracker.Observer(tableNames, keyedTable, rowIds,
+                observedColumns, true) {
             @Override
             public void onInvalidated(@NonNull Set<String> tables) {
                 ArchTaskExecutor.getInstance().executeOnMainThread(mInvalidationRunnable);
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the instances of an entity annotated with {@code @Entity(cached = true)} that were loaded
+ * by their primary key, up to a maximum number of them in least recently used order.
+ * <p>
+ * Generated code looks the argument of a {@code WHERE primaryKey = :key} query up before running
+ * it and stores its result afterwards. The cache observes its table through the
+ * {@link InvalidationTracker} and is cleared whenever the table is invalidated. Lookups miss
+ * inside transactions and while a commit has not been checked by the tracker yet, so callers
+ * never see an instance older than their own writes.
+ *
+ * @param <T> The type of the entity.
+ * @hide
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+public final class EntityCache<T> {
+    private final DepotDatabase mDatabase;
+    private final String mTableName;
+    private final int mMaxSize;
+    private final Object mObserverLock = new Object();
+
+    // guarded by this, in access order.
+    private final LinkedHashMap<Object, T> mEntities;
+    // guarded by this, incremented whenever the table is invalidated so that an instance loaded
+    // while it changed is not stored.
+    private long mGeneration;
+    // guarded by this
+    private boolean mObserving;
+
+    EntityCache(@NonNull DepotDatabase database, @NonNull String tableName, int maxSize) {
+        mDatabase = database;
+        mTableName = tableName;
+        mMaxSize = maxSize;
+        mEntities = new LinkedHashMap<Object, T>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, T> eldest) {
+                return size() > mMaxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached instance whose primary key is the only argument of the query.
+     *
+     * @param query The lookup query, with its argument bound.
+     * @return The cached instance or null if it has to be loaded.
+     */
+    @Nullable
+    public T get(@NonNull DepotSQLiteQuery query) {
+        final Object key = keyOf(query);
+        if (key == null || !isReadable()) {
+            return null;
+        }
+        synchronized (this) {
+            return mEntities.get(key);
+        }
+    }
+
+    /**
+     * Starts loading an instance that is not cached. The returned token must be passed to
+     * {@link #put(DepotSQLiteQuery, Object, long)} once the query has run.
+     *
+     * @return The token of the load.
+     */
+    public long beginLoad() {
+        synchronized (this) {
+            if (mObserving || mMaxSize == 0) {
+                return mGeneration;
+            }
+        }
+        // The trigger must be in place before the query runs, otherwise a commit made in between
+        // would never clear the loaded instance.
+        synchronized (mObserverLock) {
+            synchronized (this) {
+                if (mObserving) {
+                    return mGeneration;
+                }
+            }
+            mDatabase.getInvalidationTracker().addObserver(new TableObserver());
+            synchronized (this) {
+                mObserving = true;
+                return mGeneration;
+            }
+        }
+    }
+
+    /**
+     * Stores an instance loaded by its primary key, unless the table changed since
+     * {@link #beginLoad()} returned the given token.
+     *
+     * @param query  The lookup query, with its argument bound.
+     * @param entity The loaded instance, null if there is no such row.
+     * @param token  The token returned by {@link #beginLoad()}.
+     */
+    public void put(@NonNull DepotSQLiteQuery query, @Nullable T entity, long token) {
+        final Object key = keyOf(query);
+        if (key == null || entity == null || !isReadable()) {
+            return;
+        }
+        synchronized (this) {
+            if (mObserving && token == mGeneration) {
+                mEntities.put(key, entity);
+            }
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    synchronized void clear() {
+        mGeneration++;
+        mEntities.clear();
+    }
+
+    private boolean isReadable() {
+        return mMaxSize > 0 && !mDatabase.inTransaction()
+                && !mDatabase.getInvalidationTracker().isRefreshPending();
+    }
+
+    @Nullable
+    private static Object keyOf(@NonNull DepotSQLiteQuery query) {
+        final Object[] args = query.getBindArgs();
+        if (args.length != 1 || args[0] instanceof byte[]) {
+            return null;
+        }
+        return args[0];
+    }
+
+    /**
+     * Clears the cache when its table is invalidated.
+     */
+    private final class TableObserver extends InvalidationTracker.Observer {
+        TableObserver() {
+            super(mTableName);
+        }
+
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            clear();
+        }
+    }
+}
@@ -16,16 +16,26 @@
 
 package com.zeoflow.depot;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import com.zeoflow.sqlite.db.SupportSQLiteStatement;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implementations of this class knows how to insert a particular entity.
  * <p>
+ * Inserts of multiple entities are sent to SQLite as multi-row {@code INSERT ... VALUES (...),
+ * (...)} statements that carry as many rows as fit in {@link DepotDatabase#MAX_BIND_PARAMETER_CNT}
+ * bind arguments. Full chunks use the largest statement and the remainder is split into power of
+ * two sized statements, so only a handful of distinct statements exist per adapter. They are
+ * checked out of the statement cache of the database like any other statement.
+ * <p>
  * This is an internal library class and all of its implementations are auto-generated.
  *
  * @param <T> The type parameter of the entity to be inserted
@@ -34,6 +44,20 @@ import java.util.List;
 @SuppressWarnings({"WeakerAccess", "unused"})
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
 public abstract class EntityInsertionAdapter<T> extends SharedSQLiteStatement {
+    /**
+     * Returned by {@link #getRowIdBindIndex()} when the adapter does not know which argument is
+     * bound to the rowid.
+     */
+    protected static final int ROW_ID_BIND_INDEX_UNKNOWN = -1;
+
+    // SQLite versions before 3.8.8 count each row of a multi-row VALUES clause as a compound
+    // SELECT term, which is limited to 500 by default.
+    private static final int MAX_ROWS_PER_STATEMENT = 500;
+
+    private final DepotDatabase mDatabase;
+
+    private volatile BulkQuery mBulkQuery;
+
     /**
      * Creates an InsertionAdapter that can insert the entity type T into the given database.
      *
@@ -41,6 +65,7 @@ public abstract class EntityInsertionAdapter<T> extends SharedSQLiteStatement {
      */
     public EntityInsertionAdapter(DepotDatabase database) {
         super(database);
+        mDatabase = database;
     }
 
     /**
@@ -52,6 +77,21 @@ public abstract class EntityInsertionAdapter<T> extends SharedSQLiteStatement {
      */
     protected abstract void bind(SupportSQLiteStatement statement, T entity);
 
+    /**
+     * Returns the 1-based index of the argument that {@link #bind(SupportSQLiteStatement, Object)}
+     * binds to the rowid of the table, 0 if the rowid is never bound or
+     * {@link #ROW_ID_BIND_INDEX_UNKNOWN} if it is not known.
+     * <p>
+     * A multi-row insert only reports the rowid of its last row. The rowids of the other rows can
+     * be derived from it as long as SQLite generated all of them, so this is used to decide if
+     * the row ids of a bulk insert can be returned without inserting rows one by one.
+     *
+     * @return The index of the rowid argument.
+     */
+    protected int getRowIdBindIndex() {
+        return ROW_ID_BIND_INDEX_UNKNOWN;
+    }
+
     /**
      * Inserts the entity into the database.
      *
@@ -73,15 +113,7 @@ public abstract class EntityInsertionAdapter<T> extends SharedSQLiteStatement {
      * @param entities Entities to insert
      */
     public final void insert(T[] entities) {
-        final SupportSQLiteStatement stmt = acquire();
-        try {
-            for (T entity : entities) {
-                bind(stmt, entity);
-                stmt.executeInsert();
-            }
-        } finally {
-            release(stmt);
-        }
+        insertAll(Arrays.asList(entities), null);
     }
 
     /**
@@ -90,15 +122,7 @@ public abstract class EntityInsertionAdapter<T> extends SharedSQLiteStatement {
      * @param entities Entities to insert
      */
     public final void insert(Iterable<? extends T> entities) {
-        final SupportSQLiteStatement stmt = acquire();
-        try {
-            for (T entity : entities) {
-                bind(stmt, entity);
-                stmt.executeInsert();
-            }
-        } finally {
-            release(stmt);
-        }
+        insertAll(entities, null);
     }
 
     /**
@@ -124,19 +148,9 @@ public abstract class EntityInsertionAdapter<T> extends SharedSQLiteStatement {
      * @return The SQLite row ids, for entities that are not inserted the row id returned will be -1
      */
     public final long[] insertAndReturnIdsArray(Collection<? extends T> entities) {
-        final SupportSQLiteStatement stmt = acquire();
-        try {
-            final long[] result = new long[entities.size()];
-            int index = 0;
-            for (T entity : entities) {
-                bind(stmt, entity);
-                result[index] = stmt.executeInsert();
-                index++;
-            }
-            return result;
-        } finally {
-            release(stmt);
-        }
+        final long[] result = new long[entities.size()];
+        insertAll(entities, result);
+        return result;
     }
 
     /**
@@ -146,19 +160,9 @@ public abstract class EntityInsertionAdapter<T> extends SharedSQLiteStatement {
      * @return The SQLite row ids, for entities that are not inserted the row id returned will be -1
      */
     public final long[] insertAndReturnIdsArray(T[] entities) {
-        final SupportSQLiteStatement stmt = acquire();
-        try {
-            final long[] result = new long[entities.length];
-            int index = 0;
-            for (T entity : entities) {
-                bind(stmt, entity);
-                result[index] = stmt.executeInsert();
-                index++;
-            }
-            return result;
-        } finally {
-            release(stmt);
-        }
+        final long[] result = new long[entities.length];
+        insertAll(Arrays.asList(entities), result);
+        return result;
     }
 
     /**
@@ -168,19 +172,7 @@ public abstract class EntityInsertionAdapter<T> extends SharedSQLiteStatement {
      * @return The SQLite row ids, for entities that are not inserted the row id returned will be -1
      */
     public final Long[] insertAndReturnIdsArrayBox(Collection<? extends T> entities) {
-        final SupportSQLiteStatement stmt = acquire();
-        try {
-            final Long[] result = new Long[entities.size()];
-            int index = 0;
-            for (T entity : entities) {
-                bind(stmt, entity);
-                result[index] = stmt.executeInsert();
-                index++;
-            }
-            return result;
-        } finally {
-            release(stmt);
-        }
+        return box(insertAndReturnIdsArray(entities));
     }
 
     /**
@@ -190,19 +182,7 @@ public abstract class EntityInsertionAdapter<T> extends SharedSQLiteStatement {
      * @return The SQLite row ids, for entities that are not inserted the row id returned will be -1
      */
     public final Long[] insertAndReturnIdsArrayBox(T[] entities) {
-        final SupportSQLiteStatement stmt = acquire();
-        try {
-            final Long[] result = new Long[entities.length];
-            int index = 0;
-            for (T entity : entities) {
-                bind(stmt, entity);
-                result[index] = stmt.executeInsert();
-                index++;
-            }
-            return result;
-        } finally {
-            release(stmt);
-        }
+        return box(insertAndReturnIdsArray(entities));
     }
 
     /**
@@ -212,19 +192,7 @@ public abstract class EntityInsertionAdapter<T> extends SharedSQLiteStatement {
      * @return The SQLite row ids, for entities that are not inserted the row id returned will be -1
      */
     public final List<Long> insertAndReturnIdsList(T[] entities) {
-        final SupportSQLiteStatement stmt = acquire();
-        try {
-            final List<Long> result = new ArrayList<>(entities.length);
-            int index = 0;
-            for (T entity : entities) {
-                bind(stmt, entity);
-                result.add(index, stmt.executeInsert());
-                index++;
-            }
-            return result;
-        } finally {
-            release(stmt);
-        }
+        return Arrays.asList(insertAndReturnIdsArrayBox(entities));
     }
 
     /**
@@ -234,18 +202,302 @@ public abstract class EntityInsertionAdapter<T> extends SharedSQLiteStatement {
      * @return The SQLite row ids, for entities that are not inserted the row id returned will be -1
      */
     public final List<Long> insertAndReturnIdsList(Collection<? extends T> entities) {
+        return Arrays.asList(insertAndReturnIdsArrayBox(entities));
+    }
+
+    private static Long[] box(long[] ids) {
+        final Long[] result = new Long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = ids[i];
+        }
+        return result;
+    }
+
+    /**
+     * Inserts the entities, in chunks when possible.
+     *
+     * @param entities The entities to insert.
+     * @param ids      If not null, receives the row id of each inserted entity.
+     */
+    private void insertAll(Iterable<? extends T> entities, @Nullable long[] ids) {
+        final BulkQuery bulkQuery = getBulkQuery();
+        if (bulkQuery == null || (ids != null && !bulkQuery.mCanReturnRowIds)) {
+            insertEachRow(entities.iterator(), Integer.MAX_VALUE, ids, 0);
+            return;
+        }
+        assertNotMainThread();
+        final Object[] chunk = new Object[bulkQuery.mMaxRows];
+        int count = 0;
+        int index = 0;
+        for (T entity : entities) {
+            chunk[count++] = entity;
+            if (count == chunk.length) {
+                insertChunk(bulkQuery, chunk, 0, count, ids, index);
+                index += count;
+                count = 0;
+            }
+        }
+        // Split the remainder in power of two sized chunks so that we don't compile and
+        // cache a statement for every possible row count.
+        int offset = 0;
+        while (count > 0) {
+            final int rows = Integer.highestOneBit(count);
+            insertChunk(bulkQuery, chunk, offset, rows, ids, index);
+            offset += rows;
+            index += rows;
+            count -= rows;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void insertChunk(BulkQuery bulkQuery, Object[] chunk, int offset, int rows,
+            @Nullable long[] ids, int index) {
+        if (rows == 1) {
+            insertEachRow(Collections.singletonList((T) chunk[offset]).iterator(), 1, ids, index);
+            return;
+        }
+        final String sql = bulkQuery.getSql(rows);
+        final StatementCache statementCache = mDatabase.getStatementCache();
+        final SupportSQLiteStatement stmt = statementCache.acquire(sql);
+        try {
+            final OffsetBindingStatement binder = new OffsetBindingStatement(stmt, bulkQuery);
+            for (int row = 0; row < rows; row++) {
+                binder.moveToRow(row);
+                bind(binder, (T) chunk[offset + row]);
+            }
+            if (ids != null && !binder.areAllRowIdsGenerated()) {
+                // Some rows carry their own rowid so we can't derive the ids from the last one.
+                stmt.clearBindings();
+                insertEachRow(Arrays.asList(chunk).subList(offset, offset + rows).iterator(),
+                        rows, ids, index);
+                return;
+            }
+            final long lastRowId = stmt.executeInsert();
+            if (ids != null) {
+                final long firstRowId = lastRowId - rows + 1;
+                for (int row = 0; row < rows; row++) {
+                    ids[index + row] = firstRowId + row;
+                }
+            }
+        } finally {
+            statementCache.release(sql, stmt);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void insertEachRow(Iterator<?> entities, int limit, @Nullable long[] ids,
+            int index) {
         final SupportSQLiteStatement stmt = acquire();
         try {
-            final List<Long> result = new ArrayList<>(entities.size());
-            int index = 0;
-            for (T entity : entities) {
-                bind(stmt, entity);
-                result.add(index, stmt.executeInsert());
-                index++;
+            for (int i = 0; i < limit && entities.hasNext(); i++) {
+                bind(stmt, (T) entities.next());
+                final long rowId = stmt.executeInsert();
+                if (ids != null) {
+                    ids[index + i] = rowId;
+                }
             }
-            return result;
         } finally {
             release(stmt);
         }
     }
+
+    /**
+     * @return The parsed insert query or null if it can't be turned into a multi-row insert.
+     */
+    @Nullable
+    private BulkQuery getBulkQuery() {
+        BulkQuery bulkQuery = mBulkQuery;
+        if (bulkQuery == null) {
+            bulkQuery = BulkQuery.parse(createQuery(), getRowIdBindIndex());
+            mBulkQuery = bulkQuery;
+        }
+        return bulkQuery == BulkQuery.UNSUPPORTED ? null : bulkQuery;
+    }
+
+    /**
+     * The insert query split into the part that precedes the VALUES clause and a single row.
+     */
+    static final class BulkQuery {
+        static final BulkQuery UNSUPPORTED = new BulkQuery("", "", 0, 0, false, 0, false);
+
+        private static final String VALUES = " VALUES ";
+
+        final String mPrefix;
+        final String mRow;
+        final int mArgsPerRow;
+        final int mMaxRows;
+        final boolean mCanReturnRowIds;
+        // 1-based index of the rowid argument in a row, 0 if none.
+        final int mRowIdBindIndex;
+        // true if a bound rowid of 0 is turned into NULL by the query.
+        final boolean mRowIdZeroIsGenerated;
+        // The SQL of each row count, so that it isn't rebuilt to look up the cached statement.
+        private final ConcurrentHashMap<Integer, String> mSql = new ConcurrentHashMap<>();
+
+        private BulkQuery(String prefix, String row, int argsPerRow, int maxRows,
+                boolean canReturnRowIds, int rowIdBindIndex, boolean rowIdZeroIsGenerated) {
+            mPrefix = prefix;
+            mRow = row;
+            mArgsPerRow = argsPerRow;
+            mMaxRows = maxRows;
+            mCanReturnRowIds = canReturnRowIds;
+            mRowIdBindIndex = rowIdBindIndex;
+            mRowIdZeroIsGenerated = rowIdZeroIsGenerated;
+        }
+
+        static BulkQuery parse(String query, int rowIdBindIndex) {
+            final int valuesIndex = query.lastIndexOf(VALUES);
+            if (valuesIndex < 0 || !query.endsWith(")")) {
+                return UNSUPPORTED;
+            }
+            final String prefix = query.substring(0, valuesIndex + VALUES.length());
+            final String row = query.substring(valuesIndex + VALUES.length());
+            if (!row.startsWith("(")) {
+                return UNSUPPORTED;
+            }
+            int argsPerRow = 0;
+            boolean rowIdZeroIsGenerated = false;
+            for (int i = 0; i < row.length(); i++) {
+                if (row.charAt(i) == '?') {
+                    argsPerRow++;
+                    if (argsPerRow == rowIdBindIndex) {
+                        rowIdZeroIsGenerated = row.startsWith("nullif(", i - "nullif(".length());
+                    }
+                }
+            }
+            if (argsPerRow == 0) {
+                return UNSUPPORTED;
+            }
+            final int maxRows = Math.min(MAX_ROWS_PER_STATEMENT,
+                    DepotDatabase.MAX_BIND_PARAMETER_CNT / argsPerRow);
+            if (maxRows < 2) {
+                return UNSUPPORTED;
+            }
+            // Ignored rows don't get a rowid and replaced rows may reuse one, either way the
+            // rowids of a chunk are no longer consecutive.
+            final boolean consecutiveRowIds = !query.startsWith("INSERT OR IGNORE")
+                    && !query.startsWith("INSERT OR REPLACE");
+            final boolean canReturnRowIds = consecutiveRowIds
+                    && rowIdBindIndex != ROW_ID_BIND_INDEX_UNKNOWN
+                    && rowIdBindIndex <= argsPerRow;
+            return new BulkQuery(prefix, row, argsPerRow, maxRows, canReturnRowIds,
+                    rowIdBindIndex, rowIdZeroIsGenerated);
+        }
+
+        String getSql(int rows) {
+            String sql = mSql.get(rows);
+            if (sql == null) {
+                sql = createSql(rows);
+                mSql.put(rows, sql);
+            }
+            return sql;
+        }
+
+        private String createSql(int rows) {
+            final StringBuilder builder = new StringBuilder(
+                    mPrefix.length() + (mRow.length() + 1) * rows);
+            builder.append(mPrefix);
+            for (int i = 0; i < rows; i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(mRow);
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Binds a single entity into one row of a multi-row insert statement by shifting the bind
+     * indices, and keeps track of whether SQLite will generate the rowid of every bound row.
+     */
+    private static final class OffsetBindingStatement implements SupportSQLiteStatement {
+        private final SupportSQLiteStatement mDelegate;
+        private final BulkQuery mBulkQuery;
+        private int mOffset;
+        private boolean mAllRowIdsGenerated = true;
+
+        OffsetBindingStatement(SupportSQLiteStatement delegate, BulkQuery bulkQuery) {
+            mDelegate = delegate;
+            mBulkQuery = bulkQuery;
+        }
+
+        void moveToRow(int row) {
+            mOffset = row * mBulkQuery.mArgsPerRow;
+        }
+
+        boolean areAllRowIdsGenerated() {
+            return mAllRowIdsGenerated;
+        }
+
+        private void onRowIdBound(int index, boolean generated) {
+            if (!generated && index == mBulkQuery.mRowIdBindIndex) {
+                mAllRowIdsGenerated = false;
+            }
+        }
+
+        @Override
+        public void bindNull(int index) {
+            mDelegate.bindNull(mOffset + index);
+        }
+
+        @Override
+        public void bindLong(int index, long value) {
+            onRowIdBound(index, value == 0 && mBulkQuery.mRowIdZeroIsGenerated);
+            mDelegate.bindLong(mOffset + index, value);
+        }
+
+        @Override
+        public void bindDouble(int index, double value) {
+            onRowIdBound(index, false);
+            mDelegate.bindDouble(mOffset + index, value);
+        }
+
+        @Override
+        public void bindString(int index, String value) {
+            onRowIdBound(index, false);
+            mDelegate.bindString(mOffset + index, value);
+        }
+
+        @Override
+        public void bindBlob(int index, byte[] value) {
+            onRowIdBound(index, false);
+            mDelegate.bindBlob(mOffset + index, value);
+        }
+
+        @Override
+        public void clearBindings() {
+            mDelegate.clearBindings();
+        }
+
+        @Override
+        public void close() {
+            // the delegate is owned by the adapter.
+        }
+
+        @Override
+        public void execute() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int executeUpdateDelete() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long executeInsert() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long simpleQueryForLong() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String simpleQueryForString() {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
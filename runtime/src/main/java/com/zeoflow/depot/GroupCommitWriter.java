@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Runs the writes that threads submit within a short window together, in a single transaction on
+ * the transaction executor of a {@link DepotDatabase}.
+ * <p>
+ * A small write mostly pays for its transaction: the journal sync on commit costs far more than
+ * the statements. Grouping unrelated writes makes them share that cost.
+ * <p>
+ * Writes are isolated from each other's failures. A failed nested transaction of a DAO method
+ * marks the enclosing transaction for rollback, so a savepoint can't undo a failed write on its
+ * own. Instead, when a write throws, the whole transaction is rolled back and the writes before
+ * it run again, once, in a new transaction. The failed write completes with its exception and the
+ * writes after it run in the next transaction. A write therefore runs at most twice, its changes
+ * are committed at most once and its future only completes once they are. If a write that ran
+ * fine the first time throws when it runs again, every write it was retried with fails too.
+ */
+class GroupCommitWriter {
+    // The most writes run in a single transaction, the rest go to the next one.
+    static final int MAX_BATCH_SIZE = 256;
+
+    private final DepotDatabase mDatabase;
+    private final long mWindowMillis;
+
+    // guarded by this
+    private final ArrayDeque<GroupedWrite<?>> mPendingWrites = new ArrayDeque<>();
+    // guarded by this, true from the first pending write until its batch is handed to the
+    // transaction executor.
+    private boolean mScheduled;
+
+    // guarded by this, the end of the current window
+    @Nullable
+    private ScheduledFuture<?> mScheduledBatch;
+
+    private final Runnable mExecuteBatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mDatabase.getTransactionExecutor().execute(mBatchRunnable);
+        }
+    };
+
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    final Runnable mBatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            runBatch();
+        }
+    };
+
+    GroupCommitWriter(@NonNull DepotDatabase database, long windowMillis) {
+        mDatabase = database;
+        mWindowMillis = windowMillis;
+    }
+
+    /**
+     * Queues the given write to run in the next group transaction.
+     *
+     * @param write The write to run.
+     * @param <V>   The type of the result of the write.
+     * @return The future of the result, completed once the transaction of the write committed.
+     */
+    @NonNull
+    <V> FutureTask<V> submit(@NonNull Callable<V> write) {
+        final GroupedWrite<V> groupedWrite = new GroupedWrite<>(write);
+        final boolean schedule;
+        final boolean full;
+        synchronized (this) {
+            mPendingWrites.add(groupedWrite);
+            schedule = !mScheduled;
+            mScheduled = true;
+            full = mPendingWrites.size() == MAX_BATCH_SIZE;
+        }
+        if (mWindowMillis == 0) {
+            if (schedule) {
+                mExecuteBatchRunnable.run();
+            }
+        } else if (schedule) {
+            final ScheduledFuture<?> future =
+                    mDatabase.schedule(mExecuteBatchRunnable, mWindowMillis);
+            synchronized (this) {
+                mScheduledBatch = future;
+            }
+        } else if (full) {
+            // No need to wait for the end of the window, the batch can't grow anymore. If the
+            // window ends anyway, the extra batch finds no writes.
+            final ScheduledFuture<?> scheduledBatch;
+            synchronized (this) {
+                scheduledBatch = mScheduledBatch;
+                mScheduledBatch = null;
+            }
+            if (scheduledBatch != null) {
+                scheduledBatch.cancel(false);
+            }
+            mExecuteBatchRunnable.run();
+        }
+        return groupedWrite;
+    }
+
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    void runBatch() {
+        final List<GroupedWrite<?>> batch = new ArrayList<>();
+        final boolean more;
+        synchronized (this) {
+            while (batch.size() < MAX_BATCH_SIZE && !mPendingWrites.isEmpty()) {
+                batch.add(mPendingWrites.poll());
+            }
+            more = !mPendingWrites.isEmpty();
+            mScheduled = more;
+        }
+        if (more) {
+            // The transaction executor is serial, the rest runs right after this batch.
+            mDatabase.getTransactionExecutor().execute(mBatchRunnable);
+        }
+        // Empty when an earlier full batch already took the writes of this window.
+        if (!batch.isEmpty()) {
+            runInTransaction(batch);
+        }
+    }
+
+    private void runInTransaction(List<GroupedWrite<?>> batch) {
+        int start = 0;
+        while (start < batch.size()) {
+            final WriteFailure failure;
+            try {
+                failure = runWrites(batch, start, batch.size());
+            } catch (RuntimeException e) {
+                // The transaction itself failed, none of the writes were committed.
+                failWrites(batch, start, batch.size(), e);
+                return;
+            }
+            if (failure == null) {
+                completeWrites(batch, start, batch.size());
+                return;
+            }
+            // The failure rolled back the writes before it, they run once more on their own.
+            if (failure.mIndex > start) {
+                WriteFailure retryFailure;
+                try {
+                    retryFailure = runWrites(batch, start, failure.mIndex);
+                } catch (RuntimeException e) {
+                    retryFailure = new WriteFailure(failure.mIndex, e);
+                }
+                if (retryFailure == null) {
+                    completeWrites(batch, start, failure.mIndex);
+                } else {
+                    // They already ran twice, a write that fails only now fails them all.
+                    failWrites(batch, start, failure.mIndex, retryFailure.mThrowable);
+                }
+            }
+            batch.get(failure.mIndex).fail(failure.mThrowable);
+            start = failure.mIndex + 1;
+        }
+    }
+
+    /**
+     * Runs the writes of the batch from {@code start} to {@code end} in a transaction, up to the
+     * first one that throws, and commits them if none did.
+     *
+     * @return The write that threw, or null if the writes were committed.
+     */
+    @Nullable
+    @SuppressWarnings("deprecation")
+    private WriteFailure runWrites(List<GroupedWrite<?>> batch, int start, int end) {
+        mDatabase.beginTransaction();
+        try {
+            for (int i = start; i < end; i++) {
+                final GroupedWrite<?> write = batch.get(i);
+                if (write.isCancelled()) {
+                    continue;
+                }
+                try {
+                    write.runWrite();
+                } catch (Throwable t) {
+                    return new WriteFailure(i, t);
+                }
+            }
+            mDatabase.setTransactionSuccessful();
+            return null;
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    private static void completeWrites(List<GroupedWrite<?>> batch, int start, int end) {
+        for (int i = start; i < end; i++) {
+            batch.get(i).complete();
+        }
+    }
+
+    private static void failWrites(List<GroupedWrite<?>> batch, int start, int end, Throwable t) {
+        for (int i = start; i < end; i++) {
+            batch.get(i).fail(t);
+        }
+    }
+
+    /**
+     * Fails the writes that did not start yet, called when the database is closed.
+     */
+    void close() {
+        final List<GroupedWrite<?>> dropped;
+        synchronized (this) {
+            dropped = new ArrayList<>(mPendingWrites);
+            mPendingWrites.clear();
+        }
+        final IllegalStateException exception = new IllegalStateException(
+                "The database was closed before the write could run.");
+        for (GroupedWrite<?> write : dropped) {
+            write.fail(exception);
+        }
+    }
+
+    /**
+     * A write of a batch that threw.
+     */
+    private static final class WriteFailure {
+        final int mIndex;
+        final Throwable mThrowable;
+
+        WriteFailure(int index, Throwable throwable) {
+            mIndex = index;
+            mThrowable = throwable;
+        }
+    }
+
+    /**
+     * A write and its future. The result is only published once the transaction committed.
+     */
+    private static final class GroupedWrite<V> extends FutureTask<V> {
+        private final Callable<V> mWrite;
+        @Nullable
+        private V mResult;
+
+        GroupedWrite(Callable<V> write) {
+            super(write);
+            mWrite = write;
+        }
+
+        void runWrite() throws Exception {
+            mResult = mWrite.call();
+        }
+
+        void complete() {
+            set(mResult);
+            mResult = null;
+        }
+
+        void fail(Throwable t) {
+            setException(t);
+        }
+
+        @Override
+        public void run() {
+            throw new UnsupportedOperationException("Grouped writes run in a group transaction.");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A point in time snapshot of a histogram recorded by the DAO metrics of a
+ * {@link DepotDatabase}.
+ * <p>
+ * Values are counted in power of two buckets, so percentiles are upper bounds that are at most
+ * twice the actual value.
+ *
+ * @see DaoMethodStats
+ */
+public final class HistogramSnapshot {
+    private final long mCount;
+    private final long mSum;
+    private final long mMax;
+    private final long[] mBuckets;
+
+    HistogramSnapshot(long count, long sum, long max, @NonNull long[] buckets) {
+        mCount = count;
+        mSum = sum;
+        mMax = max;
+        mBuckets = buckets;
+    }
+
+    static HistogramSnapshot empty() {
+        return new HistogramSnapshot(0, 0, 0, new long[LogHistogram.BUCKET_COUNT]);
+    }
+
+    /**
+     * @return The number of recorded values.
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return The sum of the recorded values.
+     */
+    public long getSum() {
+        return mSum;
+    }
+
+    /**
+     * @return The largest recorded value, 0 if there were none.
+     */
+    public long getMax() {
+        return mMax;
+    }
+
+    /**
+     * @return The mean of the recorded values, 0 if there were none.
+     */
+    public double getMean() {
+        return mCount == 0 ? 0 : (double) mSum / mCount;
+    }
+
+    /**
+     * Returns an upper bound of the value below which the given percentage of the recorded values
+     * fall.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The upper bound of the bucket the percentile falls in, capped at {@link #getMax()},
+     * or 0 if there were no values.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        final double clamped = Math.max(0, Math.min(100, percentile));
+        final long rank = Math.max(1, (long) Math.ceil(clamped / 100 * mCount));
+        long seen = 0;
+        for (int i = 0; i < mBuckets.length; i++) {
+            seen += mBuckets[i];
+            if (seen >= rank) {
+                return Math.min(LogHistogram.upperBoundOf(i), mMax);
+            }
+        }
+        return mMax;
+    }
+
+    /**
+     * Returns the number of values in each bucket. Bucket 0 counts zeros and bucket {@code i}
+     * counts the values from {@code 2^(i-1)} inclusive to {@code 2^i} exclusive.
+     *
+     * @return A copy of the bucket counts.
+     */
+    @NonNull
+    public long[] getBucketCounts() {
+        return mBuckets.clone();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "HistogramSnapshot{"
+                + "count=" + mCount
+                + ", mean=" + getMean()
+                + ", p50=" + getValueAtPercentile(50)
+                + ", p99=" + getValueAtPercentile(99)
+                + ", max=" + mMax
+                + '}';
+    }
+}
@@ -16,11 +16,17 @@
 
 package com.zeoflow.depot;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.lifecycle.LiveData;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 
@@ -30,6 +36,11 @@ import java.util.concurrent.Callable;
  * <p>
  * We keep a strong reference to active LiveData instances to avoid garbage collection in case
  * developer does not hold onto the returned LiveData.
+ * <p>
+ * LiveData instances of generated queries are shared: as long as a LiveData for the same DAO
+ * method, SQL and arguments is referenced, it is handed out again instead of creating another one
+ * that would run the same query on every invalidation. Each shared instance is only referenced
+ * weakly here, so it is dropped once its last observer and holder are gone.
  */
 class InvalidationLiveDataContainer {
     @SuppressWarnings("WeakerAccess")
@@ -39,14 +50,55 @@ class InvalidationLiveDataContainer {
     );
     private final DepotDatabase mDatabase;
 
+    // guarded by itself
+    private final Map<SharedKey, SharedReference> mSharedLiveData = new HashMap<>();
+    // guarded by mSharedLiveData, the references of the shared LiveData that were collected.
+    private final ReferenceQueue<LiveData> mCollectedLiveData = new ReferenceQueue<>();
+
     InvalidationLiveDataContainer(DepotDatabase database) {
         mDatabase = database;
     }
 
     <T> LiveData<T> create(String[] tableNames, boolean inTransaction,
-            Callable<T> computeFunction) {
+            Callable<T> computeFunction, @Nullable String keyedTable, @Nullable long[] rowIds,
+            @Nullable String[][] observedColumns) {
         return new DepotTrackingLiveData<>(mDatabase, this, inTransaction, computeFunction,
-                tableNames);
+                tableNames, keyedTable, rowIds, observedColumns);
+    }
+
+    <T> LiveData<ListDiff<T>> createDiff(@NonNull DepotSQLiteQuery query, String tableName,
+            String keyColumn, boolean incremental, TableMirror.RowReader<T> reader) {
+        return new DepotDiffLiveData<>(mDatabase, this, query, tableName, keyColumn, incremental,
+                reader);
+    }
+
+    /**
+     * Returns the LiveData of an identical query if one is still referenced, or creates it.
+     * <p>
+     * Queries are identical when they are computed by the same class of function, which is
+     * generated per DAO method, and have the same SQL and arguments.
+     */
+    @SuppressWarnings("unchecked")
+    <T> LiveData<T> getOrCreateShared(@NonNull DepotSQLiteQuery query, String[] tableNames,
+            boolean inTransaction, Callable<T> computeFunction, @Nullable String keyedTable,
+            @Nullable long[] rowIds, @Nullable String[][] observedColumns) {
+        final SharedKey key = new SharedKey(computeFunction.getClass(), QueryKey.of(query));
+        synchronized (mSharedLiveData) {
+            SharedReference collected;
+            while ((collected = (SharedReference) mCollectedLiveData.poll()) != null) {
+                if (mSharedLiveData.get(collected.mKey) == collected) {
+                    mSharedLiveData.remove(collected.mKey);
+                }
+            }
+            final SharedReference reference = mSharedLiveData.get(key);
+            LiveData<T> liveData = reference == null ? null : (LiveData<T>) reference.get();
+            if (liveData == null) {
+                liveData = create(tableNames, inTransaction, computeFunction, keyedTable, rowIds,
+                        observedColumns);
+                mSharedLiveData.put(key, new SharedReference(key, liveData, mCollectedLiveData));
+            }
+            return liveData;
+        }
     }
 
     void onActive(LiveData liveData) {
@@ -56,4 +108,47 @@ class InvalidationLiveDataContainer {
     void onInactive(LiveData liveData) {
         mLiveDataSet.remove(liveData);
     }
+
+    /**
+     * Identifies the shared LiveData of a query.
+     */
+    private static final class SharedKey {
+        private final Class<?> mFunctionClass;
+        private final QueryKey mQueryKey;
+
+        SharedKey(@NonNull Class<?> functionClass, @NonNull QueryKey queryKey) {
+            mFunctionClass = functionClass;
+            mQueryKey = queryKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SharedKey)) {
+                return false;
+            }
+            final SharedKey other = (SharedKey) o;
+            return mFunctionClass == other.mFunctionClass && mQueryKey.equals(other.mQueryKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mFunctionClass.hashCode() + mQueryKey.hashCode();
+        }
+    }
+
+    /**
+     * A weak reference to a shared LiveData that remembers its key.
+     */
+    private static final class SharedReference extends WeakReference<LiveData> {
+        final SharedKey mKey;
+
+        SharedReference(@NonNull SharedKey key, @NonNull LiveData liveData,
+                @NonNull ReferenceQueue<LiveData> queue) {
+            super(liveData, queue);
+            mKey = key;
+        }
+    }
 }
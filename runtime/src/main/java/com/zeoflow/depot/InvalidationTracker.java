@@ -28,7 +28,6 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
-import androidx.arch.core.internal.SafeIterableMap;
 import androidx.lifecycle.LiveData;
 import com.zeoflow.sqlite.db.SimpleSQLiteQuery;
 import com.zeoflow.sqlite.db.SupportSQLiteDatabase;
@@ -39,11 +38,15 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 
 /**
@@ -61,10 +64,30 @@ import java.util.concurrent.locks.Lock;
 // memory table table, flipping the invalidated flag ON.
 // * When multi-instance invalidation is turned on, MultiInstanceInvalidationClient will be created.
 // It works as an Observer, and notifies other instances of table invalidation.
+// * Each table has several tracking ids, one row each in the memory table: the table id, flipped by
+// inserts and deletes, an update id, flipped by any update, and one id per column, flipped by
+// updates of that column through an UPDATE OF trigger. Observers that know which columns their
+// query reads watch the table id and their column ids, other observers watch the table id and the
+// update id. Tracking ids are laid out as [tables][updates][columns of each table].
+// * Tables observed by at least one keyed Observer get a second set of triggers that log the
+// rowids they change into another in memory table, (table_id, row_id). A keyed observer is only
+// notified for such a table when one of its rowids was logged. Rows are only known to be logged
+// once a refresh ran after the row triggers were created, until then keyed observers are notified
+// for every change, like other observers.
+// * With a coalescing window, the refresh that follows a commit is posted with a delay and the
+// commits of the window only flip more bits in the memory table, so a single refresh notifies
+// observers for all of them. Observers with a longer window than the refresh delay merge the
+// tables of several refreshes before they are notified.
 public class InvalidationTracker {
 
     private static final String[] TRIGGERS = new String[]{"UPDATE", "DELETE", "INSERT"};
 
+    private static final String[] TABLE_TRIGGERS = new String[]{"DELETE", "INSERT"};
+
+    private static final String[] UPDATE_TRIGGERS = new String[]{"UPDATE"};
+
+    private static final String[] UPDATE_OF_TRIGGERS = new String[]{"UPDATE_OF"};
+
     private static final String UPDATE_TABLE_NAME = "depot_table_modification_log";
 
     private static final String TABLE_ID_COLUMN_NAME = "table_id";
@@ -83,10 +106,38 @@ public class InvalidationTracker {
     static final String SELECT_UPDATED_TABLES_SQL = "SELECT * FROM " + UPDATE_TABLE_NAME
             + " WHERE " + INVALIDATED_COLUMN_NAME + " = 1;";
 
+    private static final String ROW_UPDATE_TABLE_NAME = "depot_row_modification_log";
+
+    private static final String ROW_ID_COLUMN_NAME = "row_id";
+
+    private static final String CREATE_ROW_TRACKING_TABLE_SQL = "CREATE TEMP TABLE "
+            + ROW_UPDATE_TABLE_NAME + "(" + TABLE_ID_COLUMN_NAME + " INTEGER NOT NULL, "
+            + ROW_ID_COLUMN_NAME + " INTEGER NOT NULL, "
+            + "PRIMARY KEY(" + TABLE_ID_COLUMN_NAME + ", " + ROW_ID_COLUMN_NAME + "))";
+
+    @VisibleForTesting
+    static final String SELECT_UPDATED_ROWS_SQL = "SELECT " + TABLE_ID_COLUMN_NAME + ", "
+            + ROW_ID_COLUMN_NAME + " FROM " + ROW_UPDATE_TABLE_NAME;
+
+    @VisibleForTesting
+    static final String RESET_UPDATED_ROWS_SQL = "DELETE FROM " + ROW_UPDATE_TABLE_NAME;
+
+    // Past this many changed rows in a table, keyed observers of the table are notified as if the
+    // whole table changed rather than keeping every rowid in memory.
+    @VisibleForTesting
+    static final int MAX_TRACKED_ROWS_PER_TABLE = 512;
+
     @NonNull
     final HashMap<String, Integer> mTableIdLookup;
     final String[] mTableNames;
 
+    // For each tracking id, the id of its table.
+    private final int[] mTrackingTableIds;
+    // For each tracking id, the column it tracks updates of, null for table and update ids.
+    private final String[] mTrackingColumns;
+    // For each table id, the tracking ids of its columns by lower case column name.
+    private final HashMap<String, Integer>[] mColumnIdLookup;
+
     @NonNull
     private Map<String, Set<String>> mViewTables;
 
@@ -98,19 +149,54 @@ public class InvalidationTracker {
 
     AtomicBoolean mPendingRefresh = new AtomicBoolean(false);
 
+    // Every call to refreshVersionsAsync and the last of them that a completed refresh covers.
+    // While they differ, observers may not have been told about a commit yet.
+    private final AtomicLong mRefreshRequestCount = new AtomicLong();
+    private final AtomicLong mRefreshedRequestCount = new AtomicLong();
+
+    // The coalescing window and max batch size of the database.
+    private long mCoalescingWindowMillis;
+    private int mMaxBatchSize;
+
+    // The shortest coalescing window of the database and its observers, the delay of a refresh.
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    volatile long mRefreshDelayMillis;
+
+    // The number of commits since the delayed refresh was posted.
+    private final AtomicInteger mCoalescedCommitCount = new AtomicInteger();
+
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    final AtomicBoolean mRefreshScheduled = new AtomicBoolean(false);
+
+    private final AtomicLong mMergedRefreshCount = new AtomicLong();
+
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    final AtomicLong mMergedNotificationCount = new AtomicLong();
+
+    // the delayed refresh of the current coalescing window, if any
+    @Nullable
+    private volatile ScheduledFuture<?> mScheduledRefresh;
+
     private volatile boolean mInitialized = false;
 
     @SuppressWarnings("WeakerAccess") /* synthetic access */
     volatile SupportSQLiteStatement mCleanupStatement;
 
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    volatile SupportSQLiteStatement mRowCleanupStatement;
+
     private ObservedTableTracker mObservedTableTracker;
 
     private final InvalidationLiveDataContainer mInvalidationLiveDataContainer;
 
-    // should be accessed with synchronization only.
+    // should be accessed with synchronization only, in insertion order.
     @VisibleForTesting
-    @SuppressLint("RestrictedApi")
-    final SafeIterableMap<Observer, ObserverWrapper> mObserverMap = new SafeIterableMap<>();
+    final LinkedHashMap<Observer, ObserverWrapper> mObserverMap = new LinkedHashMap<>();
+
+    // Copy of the values of mObserverMap, replaced whenever it changes so that observers can be
+    // notified without holding a lock.
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    volatile ObserverWrapper[] mObservers = new ObserverWrapper[0];
 
     private MultiInstanceInvalidationClient mMultiInstanceInvalidationClient;
 
@@ -135,8 +221,50 @@ public class InvalidationTracker {
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
     public InvalidationTracker(DepotDatabase database, Map<String, String> shadowTablesMap,
                                Map<String, Set<String>> viewTables, String... tableNames) {
+        this(database, shadowTablesMap, viewTables, Collections.<String, String[]>emptyMap(),
+                tableNames);
+    }
+
+    /**
+     * Used by the generated code.
+     *
+     * @param tableColumns The columns of each table whose updates can be tracked per column.
+     * @hide
+     */
+    @SuppressWarnings({"WeakerAccess", "unchecked"})
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public InvalidationTracker(DepotDatabase database, Map<String, String> shadowTablesMap,
+                               Map<String, Set<String>> viewTables,
+                               Map<String, String[]> tableColumns, String... tableNames) {
         mDatabase = database;
-        mObservedTableTracker = new ObservedTableTracker(tableNames.length);
+        final int tableCount = tableNames.length;
+        int trackingIdCount = tableCount * 2;
+        for (String tableName : tableNames) {
+            final String[] columns = tableColumns.get(tableName);
+            if (columns != null) {
+                trackingIdCount += columns.length;
+            }
+        }
+        mTrackingTableIds = new int[trackingIdCount];
+        mTrackingColumns = new String[trackingIdCount];
+        mColumnIdLookup = new HashMap[tableCount];
+        int trackingId = tableCount * 2;
+        for (int id = 0; id < tableCount; id++) {
+            mTrackingTableIds[id] = id;
+            mTrackingTableIds[tableCount + id] = id;
+            final String[] columns = tableColumns.get(tableNames[id]);
+            if (columns == null) {
+                continue;
+            }
+            mColumnIdLookup[id] = new HashMap<>();
+            for (String column : columns) {
+                mTrackingTableIds[trackingId] = id;
+                mTrackingColumns[trackingId] = column;
+                mColumnIdLookup[id].put(column.toLowerCase(Locale.US), trackingId);
+                trackingId++;
+            }
+        }
+        mObservedTableTracker = new ObservedTableTracker(trackingIdCount);
         mTableIdLookup = new HashMap<>();
         mViewTables = viewTables;
         mInvalidationLiveDataContainer = new InvalidationLiveDataContainer(mDatabase);
@@ -180,6 +308,34 @@ public class InvalidationTracker {
         mAutoCloser.setAutoCloseCallback(this::onAutoCloseCallback);
     }
 
+    /**
+     * Sets the coalescing policy of the database.
+     *
+     * @param windowMillis How long a refresh may be delayed to merge the invalidations of the
+     *                     following commits, 0 to refresh after every commit.
+     * @param maxBatchSize The maximum number of commits merged into a refresh, 0 for no limit.
+     */
+    void setCoalescingPolicy(long windowMillis, int maxBatchSize) {
+        synchronized (mObserverMap) {
+            mCoalescingWindowMillis = windowMillis;
+            mMaxBatchSize = maxBatchSize;
+            publishObserversLocked();
+        }
+    }
+
+    /**
+     * Returns the number of refreshes that were merged into another one, either because their
+     * commit happened while a refresh was pending or because an observer with a longer coalescing
+     * window received them as a single notification.
+     *
+     * @return The number of merged refreshes since the database was created.
+     * @see DepotDatabase.Builder#setInvalidationCoalescing(long, java.util.concurrent.TimeUnit,
+     * int)
+     */
+    public long getMergedRefreshCount() {
+        return mMergedRefreshCount.get() + mMergedNotificationCount.get();
+    }
+
     /**
      * Internal method to initialize table tracking.
      * <p>
@@ -197,8 +353,10 @@ public class InvalidationTracker {
             database.execSQL("PRAGMA temp_store = MEMORY;");
             database.execSQL("PRAGMA recursive_triggers='ON';");
             database.execSQL(CREATE_TRACKING_TABLE_SQL);
+            database.execSQL(CREATE_ROW_TRACKING_TABLE_SQL);
             syncTriggers(database);
             mCleanupStatement = database.compileStatement(RESET_UPDATED_TABLES_SQL);
+            mRowCleanupStatement = database.compileStatement(RESET_UPDATED_ROWS_SQL);
             mInitialized = true;
         }
     }
@@ -232,34 +390,111 @@ public class InvalidationTracker {
                 .append("`");
     }
 
-    private void stopTrackingTable(SupportSQLiteDatabase writableDb, int tableId) {
+    /**
+     * @return The trigger types of the given tracking id, a column id has a single UPDATE OF
+     * trigger.
+     */
+    private String[] getTriggerTypes(int trackingId) {
+        if (trackingId < mTableNames.length) {
+            return TABLE_TRIGGERS;
+        } else if (trackingId < mTableNames.length * 2) {
+            return UPDATE_TRIGGERS;
+        }
+        return UPDATE_OF_TRIGGERS;
+    }
+
+    private void appendTrackingTriggerName(StringBuilder builder, int trackingId,
+            String triggerType) {
+        final String tableName = mTableNames[mTrackingTableIds[trackingId]];
+        final String column = mTrackingColumns[trackingId];
+        appendTriggerName(builder, tableName,
+                column == null ? triggerType : triggerType + "_" + column.replace("`", "``"));
+    }
+
+    private void stopTrackingTable(SupportSQLiteDatabase writableDb, int trackingId) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (String trigger : getTriggerTypes(trackingId)) {
+            stringBuilder.setLength(0);
+            stringBuilder.append("DROP TRIGGER IF EXISTS ");
+            appendTrackingTriggerName(stringBuilder, trackingId, trigger);
+            writableDb.execSQL(stringBuilder.toString());
+        }
+    }
+
+    private static void appendRowTriggerName(StringBuilder builder, String tableName,
+            String triggerType) {
+        builder.append("`")
+                .append("depot_row_modification_trigger_")
+                .append(tableName)
+                .append("_")
+                .append(triggerType)
+                .append("`");
+    }
+
+    private void stopTrackingRows(SupportSQLiteDatabase writableDb, int tableId) {
         final String tableName = mTableNames[tableId];
         StringBuilder stringBuilder = new StringBuilder();
         for (String trigger : TRIGGERS) {
             stringBuilder.setLength(0);
             stringBuilder.append("DROP TRIGGER IF EXISTS ");
-            appendTriggerName(stringBuilder, tableName, trigger);
+            appendRowTriggerName(stringBuilder, tableName, trigger);
             writableDb.execSQL(stringBuilder.toString());
         }
     }
 
-    private void startTrackingTable(SupportSQLiteDatabase writableDb, int tableId) {
-        writableDb.execSQL(
-                "INSERT OR IGNORE INTO " + UPDATE_TABLE_NAME + " VALUES(" + tableId + ", 0)");
+    private void startTrackingRows(SupportSQLiteDatabase writableDb, int tableId) {
         final String tableName = mTableNames[tableId];
         StringBuilder stringBuilder = new StringBuilder();
         for (String trigger : TRIGGERS) {
             stringBuilder.setLength(0);
             stringBuilder.append("CREATE TEMP TRIGGER IF NOT EXISTS ");
-            appendTriggerName(stringBuilder, tableName, trigger);
+            appendRowTriggerName(stringBuilder, tableName, trigger);
             stringBuilder.append(" AFTER ")
                     .append(trigger)
                     .append(" ON `")
+                    .append(tableName)
+                    .append("` BEGIN ");
+            // An update may change the rowid itself, so both the old and the new one are logged.
+            if (!"INSERT".equals(trigger)) {
+                appendLogRow(stringBuilder, tableId, "OLD");
+            }
+            if (!"DELETE".equals(trigger)) {
+                appendLogRow(stringBuilder, tableId, "NEW");
+            }
+            stringBuilder.append("END");
+            writableDb.execSQL(stringBuilder.toString());
+        }
+    }
+
+    private static void appendLogRow(StringBuilder builder, int tableId, String row) {
+        builder.append("INSERT OR IGNORE INTO ")
+                .append(ROW_UPDATE_TABLE_NAME)
+                .append(" VALUES(").append(tableId).append(", ").append(row).append(".rowid); ");
+    }
+
+    private void startTrackingTable(SupportSQLiteDatabase writableDb, int trackingId) {
+        writableDb.execSQL(
+                "INSERT OR IGNORE INTO " + UPDATE_TABLE_NAME + " VALUES(" + trackingId + ", 0)");
+        final String tableName = mTableNames[mTrackingTableIds[trackingId]];
+        final String column = mTrackingColumns[trackingId];
+        StringBuilder stringBuilder = new StringBuilder();
+        for (String trigger : getTriggerTypes(trackingId)) {
+            stringBuilder.setLength(0);
+            stringBuilder.append("CREATE TEMP TRIGGER IF NOT EXISTS ");
+            appendTrackingTriggerName(stringBuilder, trackingId, trigger);
+            stringBuilder.append(" AFTER ");
+            if (column == null) {
+                stringBuilder.append(trigger);
+            } else {
+                stringBuilder.append("UPDATE OF `").append(column.replace("`", "``")).append("`");
+            }
+            stringBuilder.append(" ON `")
                     .append(tableName)
                     .append("` BEGIN UPDATE ")
                     .append(UPDATE_TABLE_NAME)
                     .append(" SET ").append(INVALIDATED_COLUMN_NAME).append(" = 1")
-                    .append(" WHERE ").append(TABLE_ID_COLUMN_NAME).append(" = ").append(tableId)
+                    .append(" WHERE ").append(TABLE_ID_COLUMN_NAME).append(" = ")
+                    .append(trackingId)
                     .append(" AND ").append(INVALIDATED_COLUMN_NAME).append(" = 0")
                     .append("; END");
             writableDb.execSQL(stringBuilder.toString());
@@ -297,16 +532,113 @@ public class InvalidationTracker {
             }
             tableIds[i] = tableId;
         }
-        ObserverWrapper wrapper = new ObserverWrapper(observer, tableIds, tableNames);
+        final int keyedTableId = resolveKeyedTableId(observer);
+        final int[] trackingIds = resolveTrackingIds(observer, tableIds, tableNames);
+        final int[] trackingTableIndices = new int[trackingIds.length];
+        for (int i = 0; i < trackingIds.length; i++) {
+            final int tableId = mTrackingTableIds[trackingIds[i]];
+            for (int index = 0; index < size; index++) {
+                if (tableIds[index] == tableId) {
+                    trackingTableIndices[i] = index;
+                    break;
+                }
+            }
+        }
+        ObserverWrapper wrapper;
+        if (observer.getCoalescingWindowMillis() == Observer.COALESCING_DEFAULT) {
+            wrapper = new ObserverWrapper(observer, tableIds, tableNames, keyedTableId,
+                    trackingIds, trackingTableIndices);
+        } else {
+            wrapper = new CoalescingObserverWrapper(observer, tableIds, tableNames, keyedTableId,
+                    trackingIds, trackingTableIndices);
+        }
         ObserverWrapper currentObserver;
         synchronized (mObserverMap) {
-            currentObserver = mObserverMap.putIfAbsent(observer, wrapper);
+            currentObserver = mObserverMap.get(observer);
+            if (currentObserver == null) {
+                mObserverMap.put(observer, wrapper);
+                publishObserversLocked();
+            }
         }
-        if (currentObserver == null && mObservedTableTracker.onAdded(tableIds)) {
+        if (currentObserver == null
+                && mObservedTableTracker.onAdded(trackingIds, keyedTableId)) {
             syncTriggers();
         }
     }
 
+    /**
+     * Picks the tracking ids of an observer: the id of each table, for inserts and deletes, plus
+     * either the ids of the observed columns or the update id of the table.
+     */
+    private int[] resolveTrackingIds(Observer observer, int[] tableIds, String[] tableNames) {
+        int[] trackingIds = new int[tableIds.length * 2];
+        int count = 0;
+        for (int index = 0; index < tableIds.length; index++) {
+            final int tableId = tableIds[index];
+            final int[] columnIds = resolveColumnIds(observer, tableId, tableNames[index]);
+            final int needed = 1 + (columnIds == null ? 1 : columnIds.length);
+            if (count + needed > trackingIds.length) {
+                trackingIds = Arrays.copyOf(trackingIds, (count + needed) * 2);
+            }
+            trackingIds[count++] = tableId;
+            if (columnIds == null) {
+                trackingIds[count++] = mTableNames.length + tableId;
+            } else {
+                System.arraycopy(columnIds, 0, trackingIds, count, columnIds.length);
+                count += columnIds.length;
+            }
+        }
+        return Arrays.copyOf(trackingIds, count);
+    }
+
+    /**
+     * @return The tracking ids of the columns the observer reads from the table or null if it
+     * needs to be notified for any update of the table.
+     */
+    @Nullable
+    private int[] resolveColumnIds(Observer observer, int tableId, String tableName) {
+        final HashMap<String, Integer> columnIdLookup = mColumnIdLookup[tableId];
+        if (observer.mObservedColumns == null || columnIdLookup == null) {
+            return null;
+        }
+        for (String[] tableColumns : observer.mObservedColumns) {
+            if (!tableColumns[0].equalsIgnoreCase(tableName)) {
+                continue;
+            }
+            final int[] columnIds = new int[tableColumns.length - 1];
+            for (int i = 1; i < tableColumns.length; i++) {
+                final Integer columnId = columnIdLookup.get(
+                        tableColumns[i].toLowerCase(Locale.US));
+                if (columnId == null) {
+                    return null;
+                }
+                columnIds[i - 1] = columnId;
+            }
+            return columnIds;
+        }
+        return null;
+    }
+
+    /**
+     * @return The id of the table the observer tracks rows of or -1 if it tracks whole tables,
+     * which is also the case when the keyed table is a view.
+     */
+    private int resolveKeyedTableId(Observer observer) {
+        if (observer.mKeyedTable == null) {
+            return -1;
+        }
+        final String keyedTable = observer.mKeyedTable.toLowerCase(Locale.US);
+        if (mViewTables.containsKey(keyedTable)) {
+            return -1;
+        }
+        final Integer tableId = mTableIdLookup.get(keyedTable);
+        if (tableId == null) {
+            throw new IllegalArgumentException("There is no table with name "
+                    + observer.mKeyedTable);
+        }
+        return tableId;
+    }
+
     private String[] validateAndResolveTableNames(String[] tableNames) {
         String[] resolved = resolveViews(tableNames);
         for (String tableName : resolved) {
@@ -375,12 +707,31 @@ public class InvalidationTracker {
         ObserverWrapper wrapper;
         synchronized (mObserverMap) {
             wrapper = mObserverMap.remove(observer);
+            if (wrapper != null) {
+                publishObserversLocked();
+            }
+        }
+        if (wrapper instanceof CoalescingObserverWrapper) {
+            ((CoalescingObserverWrapper) wrapper).cancel();
         }
-        if (wrapper != null && mObservedTableTracker.onRemoved(wrapper.mTableIds)) {
+        if (wrapper != null
+                && mObservedTableTracker.onRemoved(wrapper.mTrackingIds, wrapper.mKeyedTableId)) {
             syncTriggers();
         }
     }
 
+    private void publishObserversLocked() {
+        mObservers = mObserverMap.values().toArray(new ObserverWrapper[0]);
+        long refreshDelayMillis = mCoalescingWindowMillis;
+        for (Observer observer : mObserverMap.keySet()) {
+            final long windowMillis = observer.getCoalescingWindowMillis();
+            if (windowMillis != Observer.COALESCING_DEFAULT) {
+                refreshDelayMillis = Math.min(refreshDelayMillis, windowMillis);
+            }
+        }
+        mRefreshDelayMillis = refreshDelayMillis;
+    }
+
     @SuppressWarnings("WeakerAccess") /* synthetic access */
     boolean ensureInitialization() {
         if (!mDatabase.isOpen()) {
@@ -402,7 +753,9 @@ public class InvalidationTracker {
         @Override
         public void run() {
             final Lock closeLock = mDatabase.getCloseLock();
-            Set<Integer> invalidatedTableIds = null;
+            long[] invalidatedTableIds = null;
+            long[][] changedRowIds = null;
+            long coveredRequestCount = -1;
             closeLock.lock();
             try {
 
@@ -424,11 +777,16 @@ public class InvalidationTracker {
 
                 // This transaction has to be on the underlying DB rather than the DepotDatabase
                 // in order to avoid a recursive loop after endTransaction.
+                // Every commit counted so far has flipped its invalidated flags already.
+                final long requestCount = mRefreshRequestCount.get();
                 SupportSQLiteDatabase db = mDatabase.getOpenHelper().getWritableDatabase();
                 db.beginTransactionNonExclusive();
                 try {
+                    final boolean[] preciseRows = mObservedTableTracker.onRefresh();
                     invalidatedTableIds = checkUpdatedTable();
+                    changedRowIds = checkUpdatedRows(preciseRows, invalidatedTableIds);
                     db.setTransactionSuccessful();
+                    coveredRequestCount = requestCount;
                 } finally {
                     db.endTransaction();
                 }
@@ -443,34 +801,131 @@ public class InvalidationTracker {
                     mAutoCloser.decrementCountAndScheduleClose();
                 }
             }
-            if (invalidatedTableIds != null && !invalidatedTableIds.isEmpty()) {
-                synchronized (mObserverMap) {
-                    for (Map.Entry<Observer, ObserverWrapper> entry : mObserverMap) {
-                        entry.getValue().notifyByTableInvalidStatus(invalidatedTableIds);
+            if (invalidatedTableIds != null) {
+                for (ObserverWrapper observer : mObservers) {
+                    observer.notifyByTableInvalidStatus(invalidatedTableIds, changedRowIds);
+                }
+            }
+            long refreshed;
+            do {
+                refreshed = mRefreshedRequestCount.get();
+            } while (coveredRequestCount > refreshed
+                    && !mRefreshedRequestCount.compareAndSet(refreshed, coveredRequestCount));
+        }
+
+        /**
+         * Reads and clears the row log.
+         *
+         * @param preciseRows         For each table id, true if every change to the table since
+         *                            the last refresh was logged.
+         * @param invalidatedTableIds The bitset of invalidated table ids, may be null.
+         * @return For each table id, the sorted rowids that changed, or null if they are not
+         * known. Null if no rows were tracked.
+         */
+        @Nullable
+        private long[][] checkUpdatedRows(@Nullable boolean[] preciseRows,
+                @Nullable long[] invalidatedTableIds) {
+            if (preciseRows == null) {
+                return null;
+            }
+            long[][] changedRowIds = null;
+            int[] counts = null;
+            boolean logged = false;
+            Cursor cursor = mDatabase.query(new SimpleSQLiteQuery(SELECT_UPDATED_ROWS_SQL));
+            //noinspection TryFinallyCanBeTryWithResources
+            try {
+                while (cursor.moveToNext()) {
+                    logged = true;
+                    final int tableId = cursor.getInt(0);
+                    if (!preciseRows[tableId]) {
+                        continue;
+                    }
+                    if (changedRowIds == null) {
+                        changedRowIds = new long[mTableNames.length][];
+                        counts = new int[mTableNames.length];
+                    }
+                    long[] rowIds = changedRowIds[tableId];
+                    if (rowIds == null) {
+                        rowIds = new long[8];
+                        changedRowIds[tableId] = rowIds;
+                    } else if (counts[tableId] == rowIds.length) {
+                        if (rowIds.length >= MAX_TRACKED_ROWS_PER_TABLE) {
+                            // too many rows, forget them and treat the whole table as changed.
+                            preciseRows[tableId] = false;
+                            changedRowIds[tableId] = null;
+                            continue;
+                        }
+                        rowIds = Arrays.copyOf(rowIds, rowIds.length * 2);
+                        changedRowIds[tableId] = rowIds;
                     }
+                    rowIds[counts[tableId]++] = cursor.getLong(1);
+                }
+            } finally {
+                cursor.close();
+            }
+            if (logged) {
+                mRowCleanupStatement.executeUpdateDelete();
+            }
+            if (invalidatedTableIds == null) {
+                return null;
+            }
+            for (int tableId = 0; tableId < mTableNames.length; tableId++) {
+                if (!preciseRows[tableId]) {
+                    continue;
+                }
+                if (changedRowIds == null) {
+                    changedRowIds = new long[mTableNames.length][];
+                    counts = new int[mTableNames.length];
+                }
+                final long[] rowIds = changedRowIds[tableId];
+                if (rowIds == null) {
+                    changedRowIds[tableId] = new long[0];
+                } else {
+                    changedRowIds[tableId] = Arrays.copyOf(rowIds, counts[tableId]);
+                    Arrays.sort(changedRowIds[tableId]);
                 }
             }
+            return changedRowIds;
         }
 
-        private Set<Integer> checkUpdatedTable() {
-            HashSet<Integer> invalidatedTableIds = new HashSet<>();
+        /**
+         * @return A bitset of the invalidated table ids or null if no table was invalidated.
+         */
+        @Nullable
+        private long[] checkUpdatedTable() {
+            long[] invalidatedTableIds = null;
             Cursor cursor = mDatabase.query(new SimpleSQLiteQuery(SELECT_UPDATED_TABLES_SQL));
             //noinspection TryFinallyCanBeTryWithResources
             try {
                 while (cursor.moveToNext()) {
                     final int tableId = cursor.getInt(0);
-                    invalidatedTableIds.add(tableId);
+                    if (invalidatedTableIds == null) {
+                        invalidatedTableIds = new long[wordCount(mTrackingTableIds.length)];
+                    }
+                    invalidatedTableIds[tableId >>> 6] |= 1L << tableId;
                 }
             } finally {
                 cursor.close();
             }
-            if (!invalidatedTableIds.isEmpty()) {
+            if (invalidatedTableIds != null) {
                 mCleanupStatement.executeUpdateDelete();
             }
             return invalidatedTableIds;
         }
     };
 
+    /**
+     * Posted to run the refresh once the coalescing window of a commit has elapsed.
+     */
+    private final Runnable mScheduledRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mRefreshScheduled.compareAndSet(true, false)) {
+                mDatabase.getQueryExecutor().execute(mRefreshRunnable);
+            }
+        }
+    };
+
     /**
      * Enqueues a task to refresh the list of updated tables.
      * <p>
@@ -481,6 +936,7 @@ public class InvalidationTracker {
     @SuppressWarnings("WeakerAccess")
     public void refreshVersionsAsync() {
         // TODO we should consider doing this sync instead of async.
+        mRefreshRequestCount.incrementAndGet();
         if (mPendingRefresh.compareAndSet(false, true)) {
             if (mAutoCloser != null) {
                 // refreshVersionsAsync is called with the ref count incremented from
@@ -489,10 +945,48 @@ public class InvalidationTracker {
                 // matched with a corresponding call in mRefreshRunnable.
                 mAutoCloser.incrementCountAndEnsureDbIsOpen();
             }
-            mDatabase.getQueryExecutor().execute(mRefreshRunnable);
+            final long delayMillis = mRefreshDelayMillis;
+            if (delayMillis > 0) {
+                // The commits of the window only flip more invalidated flags, the refresh reads
+                // them all at once.
+                mCoalescedCommitCount.set(1);
+                mRefreshScheduled.set(true);
+                mScheduledRefresh = mDatabase.schedule(mScheduledRefreshRunnable, delayMillis);
+            } else {
+                mDatabase.getQueryExecutor().execute(mRefreshRunnable);
+            }
+        } else {
+            mMergedRefreshCount.incrementAndGet();
+            if (mMaxBatchSize > 0 && mRefreshScheduled.get()
+                    && mCoalescedCommitCount.incrementAndGet() >= mMaxBatchSize) {
+                cancel(mScheduledRefresh);
+                mScheduledRefreshRunnable.run();
+            }
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    static void cancel(@Nullable ScheduledFuture<?> future) {
+        // the task may run anyway if it already started, which the tasks tolerate
+        if (future != null) {
+            future.cancel(false);
         }
     }
 
+    /**
+     * @return True if a commit was made that observers have not been notified about yet.
+     */
+    boolean isRefreshPending() {
+        return mRefreshRequestCount.get() != mRefreshedRequestCount.get();
+    }
+
+    /**
+     * @return The number of refreshes requested so far, which changes after every commit.
+     */
+    long getRefreshRequestCount() {
+        return mRefreshRequestCount.get();
+    }
+
     /**
      * Check versions for tables, and run observers synchronously if tables have been updated.
      *
@@ -521,15 +1015,20 @@ public class InvalidationTracker {
     @RestrictTo(RestrictTo.Scope.LIBRARY)
     @VisibleForTesting(otherwise = VisibleForTesting.PACKAGE_PRIVATE)
     public void notifyObserversByTableNames(String... tables) {
-        synchronized (mObserverMap) {
-            for (Map.Entry<Observer, ObserverWrapper> entry : mObserverMap) {
-                if (!entry.getKey().isRemote()) {
-                    entry.getValue().notifyByTableNames(tables);
-                }
+        for (ObserverWrapper observer : mObservers) {
+            if (!observer.mObserver.isRemote()) {
+                observer.notifyByTableNames(tables);
             }
         }
     }
 
+    /**
+     * @return The number of longs needed to hold one bit per table.
+     */
+    static int wordCount(int tableCount) {
+        return (tableCount + 63) >>> 6;
+    }
+
     void syncTriggers(SupportSQLiteDatabase database) {
         if (database.inTransaction()) {
             // we won't run this inside another transaction.
@@ -561,6 +1060,17 @@ public class InvalidationTracker {
                                     break;
                             }
                         }
+                        final int[] rowsToSync = mObservedTableTracker.mRowTriggerStateChanges;
+                        for (int tableId = 0; tableId < limit; tableId++) {
+                            switch (rowsToSync[tableId]) {
+                                case ObservedTableTracker.ADD:
+                                    startTrackingRows(database, tableId);
+                                    break;
+                                case ObservedTableTracker.REMOVE:
+                                    stopTrackingRows(database, tableId);
+                                    break;
+                            }
+                        }
                         database.setTransactionSuccessful();
                     } finally {
                         database.endTransaction();
@@ -632,26 +1142,175 @@ public class InvalidationTracker {
     public <T> LiveData<T> createLiveData(String[] tableNames, boolean inTransaction,
             Callable<T> computeFunction) {
         return mInvalidationLiveDataContainer.create(
-                validateAndResolveTableNames(tableNames), inTransaction, computeFunction);
+                validateAndResolveTableNames(tableNames), inTransaction, computeFunction, null,
+                null, null);
+    }
+
+    /**
+     * Creates a LiveData that computes the given function once and for every other invalidation
+     * of the database, where changes to the keyed table only count if they touch one of the given
+     * rows.
+     * <p>
+     * Holds a strong reference to the created LiveData as long as it is active.
+     *
+     * @param tableNames      The list of tables to observe
+     * @param inTransaction   True if the computeFunction will be done in a transaction, false
+     *                        otherwise.
+     * @param computeFunction The function that calculates the value
+     * @param keyedTable      The table whose rows are observed by rowid.
+     * @param rowIds          The observed rowids of the keyed table, or null to observe the whole
+     *                        table.
+     * @param <T>             The return type
+     * @return A new LiveData that computes the given function when the given list of tables
+     * invalidates.
+     * @hide
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public <T> LiveData<T> createLiveData(String[] tableNames, boolean inTransaction,
+            Callable<T> computeFunction, String keyedTable, @Nullable long[] rowIds) {
+        return createLiveData(tableNames, inTransaction, computeFunction, keyedTable, rowIds,
+                null);
+    }
+
+    /**
+     * Creates a LiveData that computes the given function once and for every other invalidation
+     * of the database, narrowed down to the given rows and columns.
+     * <p>
+     * Holds a strong reference to the created LiveData as long as it is active.
+     *
+     * @param tableNames      The list of tables to observe
+     * @param inTransaction   True if the computeFunction will be done in a transaction, false
+     *                        otherwise.
+     * @param computeFunction The function that calculates the value
+     * @param keyedTable      The table whose rows are observed by rowid, may be null.
+     * @param rowIds          The observed rowids of the keyed table, or null to observe the whole
+     *                        table.
+     * @param observedColumns For each table whose columns are known, the table name followed by
+     *                        the columns the query reads. Updates of other columns don't
+     *                        invalidate the LiveData. May be null.
+     * @param <T>             The return type
+     * @return A new LiveData that computes the given function when the given list of tables
+     * invalidates.
+     * @hide
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public <T> LiveData<T> createLiveData(String[] tableNames, boolean inTransaction,
+            Callable<T> computeFunction, @Nullable String keyedTable, @Nullable long[] rowIds,
+            @Nullable String[][] observedColumns) {
+        return mInvalidationLiveDataContainer.create(
+                validateAndResolveTableNames(tableNames), inTransaction, computeFunction,
+                rowIds == null ? null : keyedTable, rowIds, observedColumns);
+    }
+
+    /**
+     * Returns a LiveData that computes the given function once and for every other invalidation
+     * of the database, shared with every other caller of the same query.
+     * <p>
+     * While a LiveData created by the same kind of function for the same SQL and arguments is
+     * still referenced, it is returned instead of a new one, so all its observers cost a single
+     * query per invalidation.
+     *
+     * @param query           The query the function runs.
+     * @param tableNames      The list of tables to observe
+     * @param inTransaction   True if the computeFunction will be done in a transaction, false
+     *                        otherwise.
+     * @param computeFunction The function that calculates the value
+     * @param keyedTable      The table whose rows are observed by rowid, may be null.
+     * @param rowIds          The observed rowids of the keyed table, or null to observe the whole
+     *                        table.
+     * @param observedColumns For each table whose columns are known, the table name followed by
+     *                        the columns the query reads. May be null.
+     * @param <T>             The return type
+     * @return A LiveData that computes the given function when the given list of tables
+     * invalidates.
+     * @hide
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public <T> LiveData<T> createSharedLiveData(@NonNull DepotSQLiteQuery query,
+            String[] tableNames, boolean inTransaction, Callable<T> computeFunction,
+            @Nullable String keyedTable, @Nullable long[] rowIds,
+            @Nullable String[][] observedColumns) {
+        return mInvalidationLiveDataContainer.getOrCreateShared(query,
+                validateAndResolveTableNames(tableNames), inTransaction, computeFunction,
+                rowIds == null ? null : keyedTable, rowIds, observedColumns);
+    }
+
+    /**
+     * Creates a LiveData that emits the changes of the rows of a list query over a single
+     * entity, keyed by its {@code INTEGER PRIMARY KEY}.
+     * <p>
+     * Holds a strong reference to the created LiveData as long as it is active.
+     *
+     * @param query       The query, selecting every column of the entity.
+     * @param tableName   The table of the entity.
+     * @param keyColumn   The {@code INTEGER PRIMARY KEY} column of the entity.
+     * @param incremental True if the query can be restricted to the rows that changed, false if
+     *                    its result also depends on other rows.
+     * @param reader      Converts the rows of the table.
+     * @param <T>         The type of the entity
+     * @return A new LiveData that emits the changes of the result of the query.
+     * @hide
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    public <T> LiveData<ListDiff<T>> createDiffLiveData(@NonNull DepotSQLiteQuery query,
+            @NonNull String tableName, @NonNull String keyColumn, boolean incremental,
+            @NonNull TableMirror.RowReader<T> reader) {
+        validateAndResolveTableNames(new String[]{tableName});
+        return mInvalidationLiveDataContainer.createDiff(query, tableName, keyColumn, incremental,
+                reader);
     }
 
     /**
      * Wraps an observer and keeps the table information.
      * <p>
      * Internally table ids are used which may change from database to database so the table
-     * related information is kept here rather than in the Observer.
+     * related information is kept here rather than in the Observer. The observed table ids are
+     * also kept as a mask over the words of the invalidated tables bitset, holding only the words
+     * that have at least one observed table.
      */
     @SuppressWarnings("WeakerAccess")
     static class ObserverWrapper {
         final int[] mTableIds;
+        final int[] mTrackingIds;
+        // For each tracking id, the index of its table in mTableIds.
+        private final int[] mTrackingTableIndices;
         private final String[] mTableNames;
         final Observer mObserver;
         private final Set<String> mSingleTableSet;
+        private final int[] mMaskWordIndices;
+        private final long[] mMaskWords;
+        // -1 if the observer is notified for any change in its tables.
+        final int mKeyedTableId;
 
-        ObserverWrapper(Observer observer, int[] tableIds, String[] tableNames) {
+        ObserverWrapper(Observer observer, int[] tableIds, String[] tableNames,
+                int keyedTableId, int[] trackingIds, int[] trackingTableIndices) {
             mObserver = observer;
             mTableIds = tableIds;
             mTableNames = tableNames;
+            mKeyedTableId = keyedTableId;
+            mTrackingIds = trackingIds;
+            mTrackingTableIndices = trackingTableIndices;
+            int maxTableId = -1;
+            for (int tableId : trackingIds) {
+                maxTableId = Math.max(maxTableId, tableId);
+            }
+            final long[] mask = new long[wordCount(maxTableId + 1)];
+            int wordCount = 0;
+            for (int tableId : trackingIds) {
+                if (mask[tableId >>> 6] == 0) {
+                    wordCount++;
+                }
+                mask[tableId >>> 6] |= 1L << tableId;
+            }
+            mMaskWordIndices = new int[wordCount];
+            mMaskWords = new long[wordCount];
+            for (int word = 0, index = 0; word < mask.length; word++) {
+                if (mask[word] != 0) {
+                    mMaskWordIndices[index] = word;
+                    mMaskWords[index] = mask[word];
+                    index++;
+                }
+            }
             if (tableIds.length == 1) {
                 HashSet<String> set = new HashSet<>();
                 set.add(mTableNames[0]);
@@ -665,14 +1324,26 @@ public class InvalidationTracker {
          * Notifies the underlying {@link #mObserver} if any of the observed tables are invalidated
          * based on the given invalid status set.
          *
-         * @param invalidatedTablesIds The table ids of the tables that are invalidated.
+         * @param invalidatedTablesIds The bitset of the tracking ids that are invalidated.
+         * @param changedRowIds        For each table id, the sorted rowids that changed or null
+         *                             if they are not known.
          */
-        void notifyByTableInvalidStatus(Set<Integer> invalidatedTablesIds) {
+        void notifyByTableInvalidStatus(long[] invalidatedTablesIds,
+                @Nullable long[][] changedRowIds) {
+            boolean matches = false;
+            for (int i = 0; i < mMaskWords.length && !matches; i++) {
+                matches = (invalidatedTablesIds[mMaskWordIndices[i]] & mMaskWords[i]) != 0;
+            }
+            if (!matches) {
+                return;
+            }
             Set<String> invalidatedTables = null;
             final int size = mTableIds.length;
-            for (int index = 0; index < size; index++) {
-                final int tableId = mTableIds[index];
-                if (invalidatedTablesIds.contains(tableId)) {
+            for (int i = 0; i < mTrackingIds.length; i++) {
+                final int trackingId = mTrackingIds[i];
+                final int index = mTrackingTableIndices[i];
+                if ((invalidatedTablesIds[trackingId >>> 6] & (1L << trackingId)) != 0
+                        && !isUnchangedKeyedTable(mTableIds[index], changedRowIds)) {
                     if (size == 1) {
                         // Optimization for a single-table observer
                         invalidatedTables = mSingleTableSet;
@@ -685,8 +1356,36 @@ public class InvalidationTracker {
                 }
             }
             if (invalidatedTables != null) {
-                mObserver.onInvalidated(invalidatedTables);
+                dispatch(invalidatedTables, mKeyedTableId < 0 || changedRowIds == null
+                        ? null : changedRowIds[mKeyedTableId]);
+            }
+        }
+
+        /**
+         * Delivers the tables invalidated by a refresh to the observer.
+         *
+         * @param invalidatedTables The invalidated tables.
+         * @param keyedRowIds       The sorted rowids of the keyed table that changed, or null if
+         *                          they are not known.
+         */
+        void dispatch(Set<String> invalidatedTables, @Nullable long[] keyedRowIds) {
+            mObserver.onInvalidated(invalidatedTables, keyedRowIds);
+        }
+
+        private boolean isUnchangedKeyedTable(int tableId, @Nullable long[][] changedRowIds) {
+            if (tableId != mKeyedTableId || changedRowIds == null || mObserver.mRowIds == null) {
+                return false;
+            }
+            final long[] changed = changedRowIds[tableId];
+            if (changed == null) {
+                return false;
             }
+            for (long rowId : mObserver.mRowIds) {
+                if (Arrays.binarySearch(changed, rowId) >= 0) {
+                    return false;
+                }
+            }
+            return true;
         }
 
         /**
@@ -725,11 +1424,117 @@ public class InvalidationTracker {
         }
     }
 
+    /**
+     * Wraps an observer with its own coalescing window. When the window is longer than the delay
+     * of refreshes, the tables of several refreshes are merged into a single notification.
+     */
+    final class CoalescingObserverWrapper extends ObserverWrapper implements Runnable {
+        private final long mWindowMillis;
+        private final int mMaxCoalescedRefreshes;
+        // guarded by this, null when no notification is pending.
+        @Nullable
+        private HashSet<String> mPendingTables;
+        private int mPendingRefreshCount;
+        // guarded by this
+        @Nullable
+        private ScheduledFuture<?> mScheduledFlush;
+
+        CoalescingObserverWrapper(Observer observer, int[] tableIds, String[] tableNames,
+                int keyedTableId, int[] trackingIds, int[] trackingTableIndices) {
+            super(observer, tableIds, tableNames, keyedTableId, trackingIds,
+                    trackingTableIndices);
+            mWindowMillis = observer.getCoalescingWindowMillis();
+            mMaxCoalescedRefreshes = observer.getMaxCoalescedRefreshes();
+        }
+
+        @Override
+        void dispatch(Set<String> invalidatedTables, @Nullable long[] keyedRowIds) {
+            // the rows of merged refreshes are not kept, the observer gets the tables only.
+            final boolean first;
+            final boolean flush;
+            final ScheduledFuture<?> scheduledFlush;
+            synchronized (this) {
+                first = mPendingTables == null;
+                if (first) {
+                    mPendingTables = new HashSet<>(invalidatedTables);
+                } else {
+                    mPendingTables.addAll(invalidatedTables);
+                    mMergedNotificationCount.incrementAndGet();
+                }
+                mPendingRefreshCount++;
+                // The refresh may already be delayed by at least the window of the observer.
+                flush = mWindowMillis <= mRefreshDelayMillis
+                        || (mMaxCoalescedRefreshes > 0
+                        && mPendingRefreshCount >= mMaxCoalescedRefreshes);
+                scheduledFlush = mScheduledFlush;
+                if (flush) {
+                    mScheduledFlush = null;
+                }
+            }
+            if (flush) {
+                InvalidationTracker.cancel(scheduledFlush);
+                flush();
+            } else if (first) {
+                final ScheduledFuture<?> future = mDatabase.schedule(this, mWindowMillis);
+                synchronized (this) {
+                    mScheduledFlush = future;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            mDatabase.getQueryExecutor().execute(this::flush);
+        }
+
+        @SuppressWarnings("WeakerAccess") /* synthetic access */
+        void flush() {
+            final Set<String> pendingTables;
+            synchronized (this) {
+                pendingTables = mPendingTables;
+                mPendingTables = null;
+                mPendingRefreshCount = 0;
+                mScheduledFlush = null;
+            }
+            if (pendingTables != null) {
+                mObserver.onInvalidated(pendingTables);
+            }
+        }
+
+        /**
+         * Drops the pending notification of a removed observer.
+         */
+        void cancel() {
+            final ScheduledFuture<?> scheduledFlush;
+            synchronized (this) {
+                mPendingTables = null;
+                mPendingRefreshCount = 0;
+                scheduledFlush = mScheduledFlush;
+                mScheduledFlush = null;
+            }
+            InvalidationTracker.cancel(scheduledFlush);
+        }
+    }
+
     /**
      * An observer that can listen for changes in the database.
      */
     public abstract static class Observer {
+        /**
+         * Value of {@link #getCoalescingWindowMillis()} for observers that use the coalescing
+         * window of the database.
+         */
+        public static final long COALESCING_DEFAULT = -1;
+
         final String[] mTables;
+        @Nullable
+        final String mKeyedTable;
+        // sorted, null if whole tables are observed.
+        @Nullable
+        final long[] mRowIds;
+        // table name followed by its read columns, null if every column is observed.
+        @Nullable
+        final String[][] mObservedColumns;
 
         /**
          * Observes the given list of tables and views.
@@ -741,6 +1546,9 @@ public class InvalidationTracker {
         protected Observer(@NonNull String firstTable, String... rest) {
             mTables = Arrays.copyOf(rest, rest.length + 1);
             mTables[rest.length] = firstTable;
+            mKeyedTable = null;
+            mRowIds = null;
+            mObservedColumns = null;
         }
 
         /**
@@ -751,6 +1559,40 @@ public class InvalidationTracker {
         public Observer(@NonNull String[] tables) {
             // copy tables in case user modifies them afterwards
             mTables = Arrays.copyOf(tables, tables.length);
+            mKeyedTable = null;
+            mRowIds = null;
+            mObservedColumns = null;
+        }
+
+        /**
+         * Observes the given list of tables and views, but only the given rows of the keyed table.
+         * <p>
+         * Changes to the keyed table only invalidate this observer if they insert, update or
+         * delete one of the given rowids. This is meant for queries that select rows of the keyed
+         * table by its {@code INTEGER PRIMARY KEY}, which is an alias for the rowid. Changes to
+         * the other tables invalidate this observer as usual. If the keyed table is a view, the
+         * rowids are ignored.
+         *
+         * @param tables     The list of tables or views to observe for changes.
+         * @param keyedTable The table, part of {@code tables}, whose rows are observed.
+         * @param rowIds     The observed rowids.
+         */
+        public Observer(@NonNull String[] tables, @NonNull String keyedTable,
+                @NonNull long[] rowIds) {
+            this(tables, keyedTable, rowIds, null, true);
+        }
+
+        Observer(@NonNull String[] tables, @Nullable String keyedTable, @Nullable long[] rowIds,
+                @Nullable String[][] observedColumns, boolean copy) {
+            mTables = copy ? Arrays.copyOf(tables, tables.length) : tables;
+            mKeyedTable = keyedTable;
+            mObservedColumns = observedColumns;
+            if (rowIds != null && copy) {
+                mRowIds = Arrays.copyOf(rowIds, rowIds.length);
+                Arrays.sort(mRowIds);
+            } else {
+                mRowIds = rowIds;
+            }
         }
 
         /**
@@ -762,6 +1604,46 @@ public class InvalidationTracker {
          */
         public abstract void onInvalidated(@NonNull Set<String> tables);
 
+        /**
+         * Called when one of the observed tables is invalidated by a refresh that knows which
+         * rows of the keyed table changed.
+         * <p>
+         * Observers of a keyed table without rowids get every change of the table here, along
+         * with the rows it touched.
+         *
+         * @param tables      A set of invalidated tables.
+         * @param keyedRowIds The sorted rowids of the keyed table that changed, or null if they
+         *                    are not known.
+         */
+        void onInvalidated(@NonNull Set<String> tables, @Nullable long[] keyedRowIds) {
+            onInvalidated(tables);
+        }
+
+        /**
+         * Returns how long the notifications of this observer may be delayed to merge the tables
+         * invalidated by consecutive transactions into a single {@link #onInvalidated(Set)} call.
+         * <p>
+         * Observers use the coalescing window of the database by default.
+         *
+         * @return The window in milliseconds, 0 to be notified after every transaction, or
+         * {@link #COALESCING_DEFAULT} to use the window of the database.
+         * @see DepotDatabase.Builder#setInvalidationCoalescing(long,
+         * java.util.concurrent.TimeUnit, int)
+         */
+        public long getCoalescingWindowMillis() {
+            return COALESCING_DEFAULT;
+        }
+
+        /**
+         * Returns the maximum number of refreshes merged into a single notification of this
+         * observer when it has its own {@link #getCoalescingWindowMillis() coalescing window}.
+         *
+         * @return The maximum number of merged refreshes, 0 for no limit.
+         */
+        public int getMaxCoalescedRefreshes() {
+            return 0;
+        }
+
         boolean isRemote() {
             return false;
         }
@@ -786,6 +1668,17 @@ public class InvalidationTracker {
         // when sync is called, this field is returned. It includes actions as ADD, REMOVE, NO_OP
         final int[] mTriggerStateChanges;
 
+        // number of keyed observers per table
+        final long[] mKeyedTableObservers;
+        // row trigger state for each table at last sync
+        final boolean[] mRowTriggerStates;
+        // row trigger actions of the last sync, valid until onSyncCompleted is called.
+        final int[] mRowTriggerStateChanges;
+        // true once the row triggers of the table are created
+        final boolean[] mRowTriggersInstalled;
+        // true if every change to the table since the last refresh was logged
+        final boolean[] mPreciseRows;
+
         boolean mNeedsSync;
 
         /**
@@ -799,6 +1692,11 @@ public class InvalidationTracker {
             mTableObservers = new long[tableCount];
             mTriggerStates = new boolean[tableCount];
             mTriggerStateChanges = new int[tableCount];
+            mKeyedTableObservers = new long[tableCount];
+            mRowTriggerStates = new boolean[tableCount];
+            mRowTriggerStateChanges = new int[tableCount];
+            mRowTriggersInstalled = new boolean[tableCount];
+            mPreciseRows = new boolean[tableCount];
             Arrays.fill(mTableObservers, 0);
             Arrays.fill(mTriggerStates, false);
         }
@@ -807,6 +1705,14 @@ public class InvalidationTracker {
          * @return true if # of triggers is affected.
          */
         boolean onAdded(int... tableIds) {
+            return onAdded(tableIds, -1);
+        }
+
+        /**
+         * @param keyedTableId The table whose rows are tracked by the observer, or -1.
+         * @return true if # of triggers is affected.
+         */
+        boolean onAdded(int[] tableIds, int keyedTableId) {
             boolean needTriggerSync = false;
             synchronized (this) {
                 for (int tableId : tableIds) {
@@ -817,6 +1723,10 @@ public class InvalidationTracker {
                         needTriggerSync = true;
                     }
                 }
+                if (keyedTableId >= 0 && mKeyedTableObservers[keyedTableId]++ == 0) {
+                    mNeedsSync = true;
+                    needTriggerSync = true;
+                }
             }
             return needTriggerSync;
         }
@@ -825,6 +1735,14 @@ public class InvalidationTracker {
          * @return true if # of triggers is affected.
          */
         boolean onRemoved(int... tableIds) {
+            return onRemoved(tableIds, -1);
+        }
+
+        /**
+         * @param keyedTableId The table whose rows are tracked by the observer, or -1.
+         * @return true if # of triggers is affected.
+         */
+        boolean onRemoved(int[] tableIds, int keyedTableId) {
             boolean needTriggerSync = false;
             synchronized (this) {
                 for (int tableId : tableIds) {
@@ -835,10 +1753,40 @@ public class InvalidationTracker {
                         needTriggerSync = true;
                     }
                 }
+                if (keyedTableId >= 0 && --mKeyedTableObservers[keyedTableId] == 0) {
+                    mNeedsSync = true;
+                    needTriggerSync = true;
+                }
             }
             return needTriggerSync;
         }
 
+        /**
+         * Called by a refresh, within the transaction that reads the logs.
+         *
+         * @return For each table, true if all of its changes since the previous refresh were
+         * logged, or null if no table has row triggers.
+         */
+        @Nullable
+        boolean[] onRefresh() {
+            synchronized (this) {
+                boolean anyInstalled = false;
+                for (boolean installed : mRowTriggersInstalled) {
+                    anyInstalled |= installed;
+                }
+                if (!anyInstalled) {
+                    Arrays.fill(mPreciseRows, false);
+                    return null;
+                }
+                final boolean[] preciseRows = mPreciseRows.clone();
+                // Changes made before the row triggers existed are consumed by this refresh, so
+                // the rows of the next one are complete.
+                System.arraycopy(mRowTriggersInstalled, 0, mPreciseRows, 0,
+                        mPreciseRows.length);
+                return preciseRows;
+            }
+        }
+
         /**
          * If we are re-opening the db we'll need to add all the triggers that we need so change
          * the current state to false for all.
@@ -846,6 +1794,9 @@ public class InvalidationTracker {
         void resetTriggerState() {
             synchronized (this) {
                 Arrays.fill(mTriggerStates, false);
+                Arrays.fill(mRowTriggerStates, false);
+                Arrays.fill(mRowTriggersInstalled, false);
+                Arrays.fill(mPreciseRows, false);
                 mNeedsSync = true;
             }
         }
@@ -871,6 +1822,17 @@ public class InvalidationTracker {
                         mTriggerStateChanges[i] = NO_OP;
                     }
                     mTriggerStates[i] = newState;
+                    final boolean newRowState = mKeyedTableObservers[i] > 0;
+                    if (newRowState != mRowTriggerStates[i]) {
+                        mRowTriggerStateChanges[i] = newRowState ? ADD : REMOVE;
+                        // rows are not reliable until the triggers are created and a refresh
+                        // ran after that.
+                        mRowTriggersInstalled[i] = false;
+                        mPreciseRows[i] = false;
+                    } else {
+                        mRowTriggerStateChanges[i] = NO_OP;
+                    }
+                    mRowTriggerStates[i] = newRowState;
                 }
                 mPendingSync = true;
                 mNeedsSync = false;
@@ -884,6 +1846,12 @@ public class InvalidationTracker {
          */
         void onSyncCompleted() {
             synchronized (this) {
+                for (int i = 0; i < mRowTriggerStateChanges.length; i++) {
+                    if (mRowTriggerStateChanges[i] == ADD) {
+                        mRowTriggersInstalled[i] = true;
+                    }
+                    mRowTriggerStateChanges[i] = NO_OP;
+                }
                 mPendingSync = false;
             }
         }
@@ -897,11 +1865,26 @@ public class InvalidationTracker {
     static class WeakObserver extends Observer {
         final InvalidationTracker mTracker;
         final WeakReference<Observer> mDelegateRef;
+        private final long mCoalescingWindowMillis;
+        private final int mMaxCoalescedRefreshes;
 
         WeakObserver(InvalidationTracker tracker, Observer delegate) {
-            super(delegate.mTables);
+            super(delegate.mTables, delegate.mKeyedTable, delegate.mRowIds,
+                    delegate.mObservedColumns, false);
             mTracker = tracker;
             mDelegateRef = new WeakReference<>(delegate);
+            mCoalescingWindowMillis = delegate.getCoalescingWindowMillis();
+            mMaxCoalescedRefreshes = delegate.getMaxCoalescedRefreshes();
+        }
+
+        @Override
+        public long getCoalescingWindowMillis() {
+            return mCoalescingWindowMillis;
+        }
+
+        @Override
+        public int getMaxCoalescedRefreshes() {
+            return mMaxCoalescedRefreshes;
         }
 
         @Override
@@ -913,5 +1896,15 @@ public class InvalidationTracker {
                 observer.onInvalidated(tables);
             }
         }
+
+        @Override
+        void onInvalidated(@NonNull Set<String> tables, @Nullable long[] keyedRowIds) {
+            final Observer observer = mDelegateRef.get();
+            if (observer == null) {
+                mTracker.removeObserver(this);
+            } else {
+                observer.onInvalidated(tables, keyedRowIds);
+            }
+        }
     }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The changes of the rows of an observed list query, keyed by the {@code INTEGER PRIMARY KEY} of
+ * its entity.
+ * <p>
+ * DAO methods returning a {@code LiveData<ListDiff<Entity>>} emit an initial diff where every
+ * row of the result is inserted, then one diff per change of the result. Applying the diffs in
+ * order to a map of the rows keeps it equal to the result of the query. An observer that missed
+ * diffs, e.g. while it was stopped, gets a new initial diff instead. The order of the query is
+ * only kept by the first initial diff.
+ *
+ * @param <T> The type of the entity.
+ */
+public final class ListDiff<T> {
+    private final boolean mInitial;
+    private final Map<Long, T> mInserted;
+    private final Map<Long, T> mChanged;
+    private final Set<Long> mRemoved;
+
+    ListDiff(boolean initial, @NonNull Map<Long, T> inserted, @NonNull Map<Long, T> changed,
+            @NonNull Set<Long> removed) {
+        mInitial = initial;
+        mInserted = Collections.unmodifiableMap(inserted);
+        mChanged = Collections.unmodifiableMap(changed);
+        mRemoved = Collections.unmodifiableSet(removed);
+    }
+
+    /**
+     * @return True if this diff holds every row of the result, any row known before should be
+     * dropped.
+     */
+    public boolean isInitial() {
+        return mInitial;
+    }
+
+    /**
+     * @return The rows that entered the result, by primary key.
+     */
+    @NonNull
+    public Map<Long, T> getInserted() {
+        return mInserted;
+    }
+
+    /**
+     * @return The rows of the result whose values changed, by primary key.
+     */
+    @NonNull
+    public Map<Long, T> getChanged() {
+        return mChanged;
+    }
+
+    /**
+     * @return The primary keys of the rows that left the result.
+     */
+    @NonNull
+    public Set<Long> getRemoved() {
+        return mRemoved;
+    }
+
+    /**
+     * @return True if no row was inserted, changed or removed.
+     */
+    public boolean isEmpty() {
+        return mInserted.isEmpty() && mChanged.isEmpty() && mRemoved.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ListDiff{"
+                + "initial=" + mInitial
+                + ", inserted=" + mInserted.size()
+                + ", changed=" + mChanged.size()
+                + ", removed=" + mRemoved.size()
+                + '}';
+    }
+}
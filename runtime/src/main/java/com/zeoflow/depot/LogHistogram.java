@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of non negative values with power of two buckets.
+ * <p>
+ * Bucket 0 counts zeros and bucket {@code i} counts the values in {@code [2^(i-1), 2^i)}, so
+ * recording is a couple of atomic increments and percentiles are accurate within a factor of two,
+ * which is enough to tell a 1ms call from a 100ms one.
+ */
+final class LogHistogram {
+    static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mBuckets.incrementAndGet(bucketOf(value));
+        mCount.incrementAndGet();
+        mSum.addAndGet(value);
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) {
+            max = mMax.get();
+        }
+    }
+
+    HistogramSnapshot snapshot() {
+        final long[] buckets = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = mBuckets.get(i);
+            count += buckets[i];
+        }
+        // the buckets are the source of truth for the count so that percentiles add up even if
+        // values are recorded while the snapshot is taken
+        return new HistogramSnapshot(count, mSum.get(), mMax.get(), buckets);
+    }
+
+    static int bucketOf(long value) {
+        // 63 is the highest bucket a non negative long can land in
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * @return The largest value counted by the given bucket.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket == 0) {
+            return 0;
+        }
+        return bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+}
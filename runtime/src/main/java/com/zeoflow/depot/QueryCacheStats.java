@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A point in time snapshot of the query result cache of a {@link DepotDatabase}.
+ *
+ * @see DepotDatabase#getQueryCacheStats()
+ * @see DepotDatabase.Builder#setQueryResultCache(int, long)
+ */
+public final class QueryCacheStats {
+    private final int mEntryCount;
+    private final long mSizeBytes;
+    private final long mHitCount;
+    private final long mMissCount;
+    private final long mBypassCount;
+    private final long mEvictionCount;
+    private final long mInvalidationCount;
+
+    QueryCacheStats(int entryCount, long sizeBytes, long hitCount, long missCount,
+            long bypassCount, long evictionCount, long invalidationCount) {
+        mEntryCount = entryCount;
+        mSizeBytes = sizeBytes;
+        mHitCount = hitCount;
+        mMissCount = missCount;
+        mBypassCount = bypassCount;
+        mEvictionCount = evictionCount;
+        mInvalidationCount = invalidationCount;
+    }
+
+    /**
+     * @return The number of cached results.
+     */
+    public int getEntryCount() {
+        return mEntryCount;
+    }
+
+    /**
+     * @return The estimated size of the cached results, in bytes.
+     */
+    public long getSizeBytes() {
+        return mSizeBytes;
+    }
+
+    /**
+     * @return The number of queries that were served from the cache.
+     */
+    public long getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return The number of queries that were not cached and ran on the database.
+     */
+    public long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return The number of queries that skipped the cache because they ran in a transaction or
+     * right after a commit that observers had not been notified about.
+     */
+    public long getBypassCount() {
+        return mBypassCount;
+    }
+
+    /**
+     * @return The number of results evicted to stay within the entry count and size limits.
+     */
+    public long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * @return The number of results evicted because one of their tables was invalidated.
+     */
+    public long getInvalidationCount() {
+        return mInvalidationCount;
+    }
+
+    /**
+     * @return The ratio of hits to cache lookups, 0 if there were none.
+     */
+    public double getHitRatio() {
+        final long lookups = mHitCount + mMissCount;
+        return lookups == 0 ? 0 : (double) mHitCount / lookups;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "QueryCacheStats{"
+                + "entries=" + mEntryCount
+                + ", sizeBytes=" + mSizeBytes
+                + ", hits=" + mHitCount
+                + ", misses=" + mMissCount
+                + ", bypassed=" + mBypassCount
+                + ", evicted=" + mEvictionCount
+                + ", invalidated=" + mInvalidationCount
+                + '}';
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Adapts a {@link DepotDatabase.QueryCallback} to the tracing hooks of the database. The callback
+ * receives a copy of the arguments of every statement, on its executor, before it runs.
+ */
+final class QueryCallbackTracer extends DepotDatabase.Tracer {
+
+    private final DepotDatabase.QueryCallback mQueryCallback;
+    private final Executor mQueryCallbackExecutor;
+
+    QueryCallbackTracer(@NonNull DepotDatabase.QueryCallback queryCallback,
+            @NonNull Executor queryCallbackExecutor) {
+        mQueryCallback = queryCallback;
+        mQueryCallbackExecutor = queryCallbackExecutor;
+    }
+
+    @Override
+    public boolean isBindingsEnabled() {
+        return true;
+    }
+
+    @Override
+    public void onBeginTransaction(boolean exclusive) {
+        onQuery(exclusive ? "BEGIN EXCLUSIVE TRANSACTION" : "BEGIN DEFERRED TRANSACTION",
+                Collections.emptyList());
+    }
+
+    @Override
+    public void onSetTransactionSuccessful() {
+        onQuery("TRANSACTION SUCCESSFUL", Collections.emptyList());
+    }
+
+    @Override
+    public void onEndTransaction() {
+        onQuery("END TRANSACTION", Collections.emptyList());
+    }
+
+    @Override
+    public void onBeginStatement(@NonNull String sql, @NonNull StatementBindings bindings) {
+        onQuery(sql, bindings.toList());
+    }
+
+    @Override
+    public void onBeginQuery(@NonNull String sql, @NonNull StatementBindings bindings) {
+        onQuery(sql, bindings.toList());
+    }
+
+    private void onQuery(String sql, List<Object> bindArgs) {
+        mQueryCallbackExecutor.execute(() -> mQueryCallback.onQuery(sql, bindArgs));
+    }
+}
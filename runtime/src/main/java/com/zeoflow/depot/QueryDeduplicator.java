@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import android.database.Cursor;
+import android.os.CancellationSignal;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs identical queries that are issued at the same time only once.
+ * <p>
+ * The first caller of a query, keyed by its SQL and bound arguments, runs it. Callers that ask
+ * for the same query while it runs wait for it instead of running their own. If nobody waited,
+ * the first caller gets the cursor of the query as is; otherwise the rows are copied once into an
+ * immutable {@link CursorSnapshot} and every caller gets its own cursor over it. Results larger
+ * than {@link #MAX_SNAPSHOT_SIZE_BYTES} are not copied: the first caller keeps its cursor and
+ * the waiting callers run the query on their own. Streamed results, which are read one row at a
+ * time so as not to be held in memory, are never shared.
+ * <p>
+ * A caller only joins a query that started after the last commit, so an observer re-running its
+ * query because of a commit always sees that commit. Queries inside a transaction are never
+ * shared since they have to see its uncommitted changes.
+ */
+class QueryDeduplicator {
+    // The estimated size of the largest result that is shared.
+    static final long MAX_SNAPSHOT_SIZE_BYTES = 1024 * 1024;
+
+    private final DepotDatabase mDatabase;
+
+    // guarded by this
+    private final Map<QueryKey, Flight> mFlights = new HashMap<>();
+
+    QueryDeduplicator(@NonNull DepotDatabase database) {
+        mDatabase = database;
+    }
+
+    /**
+     * Runs the query, or waits for an identical query that is already running.
+     *
+     * @param query  The query to run.
+     * @param signal The cancellation signal to be attached to the query, if any.
+     * @return A cursor over the result.
+     */
+    @NonNull
+    Cursor query(@NonNull DepotSQLiteQuery query, @Nullable CancellationSignal signal) {
+        if (query.isStreaming() || mDatabase.inTransaction()) {
+            return mDatabase.runQuery(query, signal);
+        }
+        final QueryKey key = QueryKey.of(query);
+        final long requestCount = mDatabase.getInvalidationTracker().getRefreshRequestCount();
+        Flight flight;
+        final boolean leader;
+        synchronized (this) {
+            flight = mFlights.get(key);
+            leader = flight == null || flight.mRequestCount != requestCount;
+            if (!leader) {
+                flight.mWaiterCount++;
+            } else {
+                // A running query that started before a commit is left to its own callers.
+                flight = new Flight(requestCount);
+                mFlights.put(key, flight);
+            }
+        }
+        if (leader) {
+            return lead(key, flight, query, signal);
+        }
+        final CursorSnapshot snapshot = flight.await();
+        if (snapshot == null) {
+            // The query failed or the wait was interrupted, the caller runs it on its own.
+            return mDatabase.runQuery(query, signal);
+        }
+        return snapshot.newCursor();
+    }
+
+    private Cursor lead(@NonNull QueryKey key, @NonNull Flight flight,
+            @NonNull DepotSQLiteQuery query, @Nullable CancellationSignal signal) {
+        Cursor cursor = null;
+        try {
+            cursor = mDatabase.runQuery(query, signal);
+            // Cursors run their query lazily, when they are first moved or counted.
+            cursor.getCount();
+        } catch (RuntimeException e) {
+            if (cursor != null) {
+                cursor.close();
+            }
+            land(key, flight);
+            flight.complete(null);
+            throw e;
+        }
+        if (!land(key, flight)) {
+            return cursor;
+        }
+        CursorSnapshot snapshot = null;
+        boolean copied = false;
+        try {
+            snapshot = CursorSnapshot.copyOf(cursor, MAX_SNAPSHOT_SIZE_BYTES);
+            copied = true;
+        } finally {
+            if (snapshot != null || !copied) {
+                cursor.close();
+            }
+            flight.complete(snapshot);
+        }
+        if (snapshot == null) {
+            // Too large to share, the waiting callers run the query on their own.
+            cursor.moveToPosition(-1);
+            return cursor;
+        }
+        return snapshot.newCursor();
+    }
+
+    /**
+     * Stops other callers from joining the flight.
+     *
+     * @return True if another caller is waiting for the flight.
+     */
+    private synchronized boolean land(@NonNull QueryKey key, @NonNull Flight flight) {
+        if (mFlights.get(key) == flight) {
+            mFlights.remove(key);
+        }
+        return flight.mWaiterCount > 0;
+    }
+
+    /**
+     * A running query and the callers waiting for it.
+     */
+    private static final class Flight {
+        final long mRequestCount;
+        // guarded by the deduplicator
+        int mWaiterCount;
+
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+        private volatile CursorSnapshot mSnapshot;
+
+        Flight(long requestCount) {
+            mRequestCount = requestCount;
+        }
+
+        void complete(@Nullable CursorSnapshot snapshot) {
+            mSnapshot = snapshot;
+            mLatch.countDown();
+        }
+
+        /**
+         * @return The snapshot of the result, or null if the query failed.
+         */
+        @Nullable
+        CursorSnapshot await() {
+            try {
+                mLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            return mSnapshot;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * The SQL and bound arguments of a query, used to recognize identical queries.
+ * <p>
+ * The arguments are compared by value, including the contents of blobs.
+ */
+final class QueryKey {
+    private final String mSql;
+    private final Object[] mArgs;
+    private final int mHashCode;
+
+    QueryKey(@NonNull String sql, @NonNull Object[] args) {
+        mSql = sql;
+        mArgs = args;
+        mHashCode = 31 * sql.hashCode() + Arrays.deepHashCode(args);
+    }
+
+    /**
+     * Returns the key of the SQL and current bound arguments of the query.
+     *
+     * @param query The query.
+     * @return The key of the query.
+     */
+    @NonNull
+    static QueryKey of(@NonNull DepotSQLiteQuery query) {
+        return new QueryKey(query.getSql(), query.getBindArgs());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof QueryKey)) {
+            return false;
+        }
+        final QueryKey other = (QueryKey) o;
+        return mHashCode == other.mHashCode && mSql.equals(other.mSql)
+                && Arrays.deepEquals(mArgs, other.mArgs);
+    }
+
+    @Override
+    public int hashCode() {
+        return mHashCode;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A point in time snapshot of the process wide pool of query argument holders used by generated
+ * {@link Query} methods.
+ * <p>
+ * Each thread keeps one idle holder per argument count class, those are not visible here. Queries
+ * that miss the thread's own holder look at the shared slots before allocating a new holder.
+ *
+ * @see Depot#getQueryPoolStats()
+ */
+public final class QueryPoolStats {
+    private final int mSharedSlotCount;
+    private final int mSharedIdleCount;
+    private final long mSharedHitCount;
+    private final long mAllocationCount;
+    private final long mDropCount;
+
+    QueryPoolStats(int sharedSlotCount, int sharedIdleCount, long sharedHitCount,
+            long allocationCount, long dropCount) {
+        mSharedSlotCount = sharedSlotCount;
+        mSharedIdleCount = sharedIdleCount;
+        mSharedHitCount = sharedHitCount;
+        mAllocationCount = allocationCount;
+        mDropCount = dropCount;
+    }
+
+    /**
+     * @return The number of shared slots in the pool.
+     */
+    public int getSharedSlotCount() {
+        return mSharedSlotCount;
+    }
+
+    /**
+     * @return The number of shared slots holding an idle query.
+     */
+    public int getSharedIdleCount() {
+        return mSharedIdleCount;
+    }
+
+    /**
+     * @return The number of queries taken from a shared slot.
+     */
+    public long getSharedHitCount() {
+        return mSharedHitCount;
+    }
+
+    /**
+     * @return The number of queries that had to be allocated because the pool had none to reuse.
+     */
+    public long getAllocationCount() {
+        return mAllocationCount;
+    }
+
+    /**
+     * @return The number of released queries left to the garbage collector because the pool was
+     * full.
+     */
+    public long getDropCount() {
+        return mDropCount;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "QueryPoolStats{"
+                + "sharedSlots=" + mSharedSlotCount
+                + ", sharedIdle=" + mSharedIdleCount
+                + ", sharedHits=" + mSharedHitCount
+                + ", allocations=" + mAllocationCount
+                + ", drops=" + mDropCount
+                + '}';
+    }
+}
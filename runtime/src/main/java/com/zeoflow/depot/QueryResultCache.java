@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import android.database.Cursor;
+import android.os.CancellationSignal;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps copies of the results of queries annotated with {@link CacheResult}, keyed by their SQL
+ * and bound arguments.
+ * <p>
+ * Each entry remembers the tables its query reads. The cache observes those tables through the
+ * {@link InvalidationTracker} and evicts the entries of a table as soon as it is invalidated. The
+ * least recently used entries are evicted once the cache holds more than its maximum number of
+ * entries or its estimated size exceeds the maximum number of bytes.
+ * <p>
+ * Results are never served, or stored, inside a transaction, where the query has to see
+ * uncommitted changes, nor while a commit has not been checked by the tracker yet, so a query
+ * that follows a write on the same thread never sees a stale result.
+ */
+class QueryResultCache {
+    private final DepotDatabase mDatabase;
+    private final int mMaxEntries;
+    private final long mMaxSizeBytes;
+
+    // guarded by this, in access order.
+    private final LinkedHashMap<QueryKey, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    // guarded by this, the keys of the entries that read each table.
+    private final Map<String, Set<QueryKey>> mKeysByTable = new HashMap<>();
+    // guarded by this
+    private long mSizeBytes;
+    // guarded by this, incremented on every invalidation so that a result read while one of its
+    // tables changed is not stored.
+    private long mGeneration;
+
+    // guarded by itself, the observed tables.
+    private final Set<String> mObservedTables = new HashSet<>();
+
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mBypassCount = new AtomicLong();
+    private final AtomicLong mEvictionCount = new AtomicLong();
+    private final AtomicLong mInvalidationCount = new AtomicLong();
+
+    QueryResultCache(@NonNull DepotDatabase database, int maxEntries, long maxSizeBytes) {
+        mDatabase = database;
+        mMaxEntries = maxEntries;
+        mMaxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Returns the cached result of the query or runs it and caches its result.
+     *
+     * @param query  The query to run.
+     * @param tables The tables the result depends on.
+     * @param signal The cancellation signal to be attached to the query, if any.
+     * @return A cursor over the result.
+     */
+    @NonNull
+    Cursor query(@NonNull DepotSQLiteQuery query, @NonNull String[] tables,
+            @Nullable CancellationSignal signal) {
+        final InvalidationTracker tracker = mDatabase.getInvalidationTracker();
+        if (mDatabase.inTransaction() || tracker.isRefreshPending()) {
+            mBypassCount.incrementAndGet();
+            return mDatabase.runQuery(query, signal);
+        }
+        final QueryKey key = QueryKey.of(query);
+        synchronized (this) {
+            final Entry entry = mEntries.get(key);
+            if (entry != null) {
+                mHitCount.incrementAndGet();
+                return entry.mSnapshot.newCursor();
+            }
+        }
+        mMissCount.incrementAndGet();
+        // The triggers must be in place before the query runs, otherwise a commit made in
+        // between would never evict its result.
+        observe(tables);
+        final long generation;
+        synchronized (this) {
+            generation = mGeneration;
+        }
+        final Entry entry;
+        final Cursor cursor = mDatabase.runQuery(query, signal);
+        try {
+            entry = new Entry(CursorSnapshot.copyOf(cursor), tables);
+        } finally {
+            cursor.close();
+        }
+        synchronized (this) {
+            if (generation == mGeneration && !tracker.isRefreshPending()
+                    && entry.mSizeBytes <= mMaxSizeBytes) {
+                put(key, entry);
+            }
+        }
+        return entry.mSnapshot.newCursor();
+    }
+
+    private void observe(@NonNull String[] tables) {
+        synchronized (mObservedTables) {
+            for (String table : tables) {
+                final String name = table.toLowerCase(Locale.US);
+                if (mObservedTables.add(name)) {
+                    mDatabase.getInvalidationTracker().addObserver(new TableObserver(name));
+                }
+            }
+        }
+    }
+
+    // guarded by this
+    private void put(@NonNull QueryKey key, @NonNull Entry entry) {
+        final Entry previous = mEntries.remove(key);
+        if (previous != null) {
+            removeFromTables(key, previous);
+        }
+        mEntries.put(key, entry);
+        mSizeBytes += entry.mSizeBytes;
+        for (String table : entry.mTables) {
+            final String name = table.toLowerCase(Locale.US);
+            Set<QueryKey> keys = mKeysByTable.get(name);
+            if (keys == null) {
+                keys = new HashSet<>();
+                mKeysByTable.put(name, keys);
+            }
+            keys.add(key);
+        }
+        final Iterator<Map.Entry<QueryKey, Entry>> eldest = mEntries.entrySet().iterator();
+        while (eldest.hasNext() && (mEntries.size() > mMaxEntries || mSizeBytes > mMaxSizeBytes)) {
+            final Map.Entry<QueryKey, Entry> evicted = eldest.next();
+            eldest.remove();
+            removeFromTables(evicted.getKey(), evicted.getValue());
+            mEvictionCount.incrementAndGet();
+        }
+    }
+
+    // guarded by this
+    private void removeFromTables(@NonNull QueryKey key, @NonNull Entry entry) {
+        mSizeBytes -= entry.mSizeBytes;
+        for (String table : entry.mTables) {
+            final Set<QueryKey> keys = mKeysByTable.get(table.toLowerCase(Locale.US));
+            if (keys != null) {
+                keys.remove(key);
+            }
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    synchronized void invalidate(@NonNull String table) {
+        mGeneration++;
+        final Set<QueryKey> keys = mKeysByTable.remove(table);
+        if (keys == null) {
+            return;
+        }
+        for (QueryKey key : new ArrayList<>(keys)) {
+            final Entry entry = mEntries.remove(key);
+            if (entry != null) {
+                removeFromTables(key, entry);
+                mInvalidationCount.incrementAndGet();
+            }
+        }
+    }
+
+    @NonNull
+    synchronized QueryCacheStats getStats() {
+        return new QueryCacheStats(mEntries.size(), mSizeBytes, mHitCount.get(),
+                mMissCount.get(), mBypassCount.get(), mEvictionCount.get(),
+                mInvalidationCount.get());
+    }
+
+    /**
+     * Evicts the entries of a table when it is invalidated.
+     */
+    private final class TableObserver extends InvalidationTracker.Observer {
+        private final String mTable;
+
+        TableObserver(@NonNull String table) {
+            super(table);
+            mTable = table;
+        }
+
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            invalidate(mTable);
+        }
+    }
+
+    /**
+     * A cached result and the tables it was read from.
+     */
+    private static final class Entry {
+        final CursorSnapshot mSnapshot;
+        final String[] mTables;
+        final long mSizeBytes;
+
+        Entry(@NonNull CursorSnapshot snapshot, @NonNull String[] tables) {
+            mSnapshot = snapshot;
+            mTables = tables;
+            mSizeBytes = snapshot.getSizeBytes();
+        }
+    }
+}
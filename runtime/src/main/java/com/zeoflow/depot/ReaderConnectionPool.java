@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zeoflow.depot;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.os.Build;
+import android.os.CancellationSignal;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.zeoflow.sqlite.db.SupportSQLiteDatabase;
+import com.zeoflow.sqlite.db.SupportSQLiteOpenHelper;
+import com.zeoflow.sqlite.db.SupportSQLiteQuery;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of read-only connections that {@link DepotDatabase} uses to run queries that are not part
+ * of a transaction.
+ * <p>
+ * In write-ahead logging mode, readers never block the writer and vice versa, but a single
+ * connection still serializes every statement that runs on it. The pool keeps N additional
+ * connections to the same database file so that N queries can step concurrently while the writer
+ * connection is reserved for transactions.
+ * <p>
+ * Connections are opened lazily, once the writer connection has created or migrated the database.
+ * A query that cannot get a reader within {@link #ACQUIRE_TIMEOUT_MS} returns {@code null} from
+ * {@link #query(SupportSQLiteQuery, CancellationSignal)} so the caller can fall back to the
+ * writer connection instead of waiting on a leaked cursor.
+ */
+class ReaderConnectionPool {
+    // How long a query waits for a free reader before falling back to the writer connection.
+    static final long ACQUIRE_TIMEOUT_MS = 250;
+
+    private final SupportSQLiteOpenHelper.Factory mFactory;
+    private final Context mContext;
+    private final String mName;
+    private final SupportSQLiteOpenHelper mWriterOpenHelper;
+    private final Reader[] mReaders;
+    private final ArrayBlockingQueue<Reader> mIdleReaders;
+
+    private final AtomicLong mAcquireCount = new AtomicLong();
+    private final AtomicLong mWaitCount = new AtomicLong();
+    private final AtomicLong mTimeoutCount = new AtomicLong();
+    private final AtomicLong mTotalWaitNanos = new AtomicLong();
+    private final AtomicLong mMaxWaitNanos = new AtomicLong();
+
+    private volatile boolean mClosed;
+
+    ReaderConnectionPool(@NonNull SupportSQLiteOpenHelper.Factory factory,
+            @NonNull Context context, @NonNull String name,
+            @NonNull SupportSQLiteOpenHelper writerOpenHelper, int size) {
+        mFactory = factory;
+        mContext = context;
+        mName = name;
+        mWriterOpenHelper = writerOpenHelper;
+        mReaders = new Reader[size];
+        mIdleReaders = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            mReaders[i] = new Reader();
+            mIdleReaders.offer(mReaders[i]);
+        }
+    }
+
+    /**
+     * Runs the given query on a free reader connection. The connection is returned to the pool
+     * when the returned cursor is closed.
+     *
+     * @param query  The query to run.
+     * @param signal The cancellation signal to be attached to the query, if any.
+     * @return The cursor or null if no reader could be acquired in time.
+     */
+    @Nullable
+    Cursor query(@NonNull SupportSQLiteQuery query, @Nullable CancellationSignal signal) {
+        final Reader reader = acquire();
+        if (reader == null) {
+            return null;
+        }
+        boolean handedOff = false;
+        try {
+            final SupportSQLiteDatabase db = reader.getDatabase();
+            final Cursor cursor;
+            if (signal != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                cursor = db.query(query, signal);
+            } else {
+                cursor = db.query(query);
+            }
+            handedOff = true;
+            return new ReaderCursor(cursor, reader);
+        } finally {
+            if (!handedOff) {
+                release(reader);
+            }
+        }
+    }
+
+    @Nullable
+    private Reader acquire() {
+        if (mClosed) {
+            return null;
+        }
+        Reader reader = mIdleReaders.poll();
+        if (reader == null) {
+            mWaitCount.incrementAndGet();
+            final long start = System.nanoTime();
+            try {
+                reader = mIdleReaders.poll(ACQUIRE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            recordWait(System.nanoTime() - start);
+            if (reader == null) {
+                mTimeoutCount.incrementAndGet();
+                return null;
+            }
+        }
+        mAcquireCount.incrementAndGet();
+        return reader;
+    }
+
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    void release(@NonNull Reader reader) {
+        mIdleReaders.offer(reader);
+    }
+
+    private void recordWait(long waitNanos) {
+        mTotalWaitNanos.addAndGet(waitNanos);
+        long max;
+        do {
+            max = mMaxWaitNanos.get();
+        } while (waitNanos > max && !mMaxWaitNanos.compareAndSet(max, waitNanos));
+    }
+
+    @NonNull
+    ConnectionPoolStats getStats() {
+        return new ConnectionPoolStats(mReaders.length, mIdleReaders.size(),
+                mAcquireCount.get(), mWaitCount.get(), mTimeoutCount.get(),
+                mTotalWaitNanos.get(), mMaxWaitNanos.get());
+    }
+
+    /**
+     * Closes every reader connection. Queries started after this call run on the writer.
+     */
+    void close() {
+        mClosed = true;
+        for (Reader reader : mReaders) {
+            reader.close();
+        }
+    }
+
+    /**
+     * A lazily opened read-only connection.
+     */
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    final class Reader {
+        @Nullable
+        private SupportSQLiteOpenHelper mOpenHelper;
+
+        synchronized SupportSQLiteDatabase getDatabase() {
+            if (mOpenHelper == null) {
+                // The writer has already created or migrated the file so the reader only needs
+                // to match its version.
+                final int version = mWriterOpenHelper.getWritableDatabase().getVersion();
+                mOpenHelper = mFactory.create(SupportSQLiteOpenHelper.Configuration
+                        .builder(mContext)
+                        .name(mName)
+                        .callback(new ReaderCallback(version))
+                        .build());
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                    mOpenHelper.setWriteAheadLoggingEnabled(true);
+                }
+            }
+            return mOpenHelper.getReadableDatabase();
+        }
+
+        synchronized void close() {
+            if (mOpenHelper != null) {
+                try {
+                    mOpenHelper.close();
+                } catch (RuntimeException e) {
+                    Log.w(Depot.LOG_TAG, "Failed to close reader connection.", e);
+                }
+                mOpenHelper = null;
+            }
+        }
+    }
+
+    /**
+     * Callback for reader connections. Readers never own the schema, so any attempt to create or
+     * migrate the database from one of them is a bug.
+     */
+    private static final class ReaderCallback extends SupportSQLiteOpenHelper.Callback {
+        ReaderCallback(int version) {
+            super(version);
+        }
+
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            throw new IllegalStateException("A reader connection cannot create the database.");
+        }
+
+        @Override
+        public void onUpgrade(@NonNull SupportSQLiteDatabase db, int oldVersion,
+                int newVersion) {
+            throw new IllegalStateException("A reader connection cannot migrate the database"
+                    + " from " + oldVersion + " to " + newVersion + ".");
+        }
+
+        @Override
+        public void onDowngrade(@NonNull SupportSQLiteDatabase db, int oldVersion,
+                int newVersion) {
+            onUpgrade(db, oldVersion, newVersion);
+        }
+
+        @Override
+        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("PRAGMA query_only = 1");
+        }
+    }
+
+    /**
+     * Returns the reader to the pool once the cursor is closed.
+     */
+    private final class ReaderCursor extends CursorWrapper {
+        private final Reader mReader;
+        private final AtomicBoolean mReleased = new AtomicBoolean(false);
+
+        ReaderCursor(Cursor cursor, Reader reader) {
+            super(cursor);
+            mReader = reader;
+        }
+
+        @Override
+        public void close() {
+            try {
+                super.close();
+            } finally {
+                if (mReleased.compareAndSet(false, true)) {
+                    release(mReader);
+                }
+            }
+        }
+    }
+}
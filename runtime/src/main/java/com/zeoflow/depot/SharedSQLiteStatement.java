@@ -18,26 +18,22 @@ package com.zeoflow.depot;
 import androidx.annotation.RestrictTo;
 import com.zeoflow.sqlite.db.SupportSQLiteStatement;
 
-import java.util.concurrent.atomic.AtomicBoolean;
-
 /**
  * Represents a prepared SQLite state that can be re-used multiple times.
  * <p>
  * This class is used by generated code. After it is used, {@code release} must be called so that
  * it can be used by other threads.
  * <p>
- * To avoid re-entry even within the same thread, this class allows only 1 time access to the shared
- * statement until it is released.
+ * Statements are checked out of the statement cache of the database, keyed by their SQL, so each
+ * caller, even within the same thread, gets a statement of its own until it is released.
  *
  * @hide
  */
 @SuppressWarnings({"WeakerAccess", "unused"})
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
 public abstract class SharedSQLiteStatement {
-    private final AtomicBoolean mLock = new AtomicBoolean(false);
-
     private final DepotDatabase mDatabase;
-    private volatile SupportSQLiteStatement mStmt;
+    private volatile String mQuery;
 
     /**
      * Creates an SQLite prepared statement that can be re-used across threads. If it is in use,
@@ -60,23 +56,13 @@ public abstract class SharedSQLiteStatement {
         mDatabase.assertNotMainThread();
     }
 
-    private SupportSQLiteStatement createNewStatement() {
-        String query = createQuery();
-        return mDatabase.compileStatement(query);
-    }
-
-    private SupportSQLiteStatement getStmt(boolean canUseCached) {
-        final SupportSQLiteStatement stmt;
-        if (canUseCached) {
-            if (mStmt == null) {
-                mStmt = createNewStatement();
-            }
-            stmt = mStmt;
-        } else {
-            // it is in use, create a one off statement
-            stmt = createNewStatement();
+    private String getQuery() {
+        String query = mQuery;
+        if (query == null) {
+            query = createQuery();
+            mQuery = query;
         }
-        return stmt;
+        return query;
     }
 
     /**
@@ -84,7 +70,7 @@ public abstract class SharedSQLiteStatement {
      */
     public SupportSQLiteStatement acquire() {
         assertNotMainThread();
-        return getStmt(mLock.compareAndSet(false, true));
+        return mDatabase.getStatementCache().acquire(getQuery());
     }
 
     /**
@@ -93,8 +79,6 @@ public abstract class SharedSQLiteStatement {
      * @param statement The statement that was returned from acquire.
      */
     public void release(SupportSQLiteStatement statement) {
-        if (statement == mStmt) {
-            mLock.set(false);
-        }
+        mDatabase.getStatementCache().release(getQuery(), statement);
     }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A statement that took longer than the slow query threshold of a {@link DepotDatabase}.
+ *
+ * @see DepotDatabase#getSlowQueries()
+ * @see DepotDatabase.Builder#setSlowQueryLog(long, int)
+ */
+public final class SlowQuery {
+    private final String mSql;
+    private final List<Object> mBindArgs;
+    private final long mDurationNanos;
+    private final long mRowCount;
+    @Nullable
+    private final String mQueryPlan;
+    private final long mTimestampMillis;
+    private final String mThreadName;
+
+    SlowQuery(@NonNull String sql, @NonNull Object[] bindArgs, long durationNanos, long rowCount,
+            @Nullable String queryPlan, long timestampMillis, @NonNull String threadName) {
+        mSql = sql;
+        mBindArgs = Collections.unmodifiableList(Arrays.asList(bindArgs));
+        mDurationNanos = durationNanos;
+        mRowCount = rowCount;
+        mQueryPlan = queryPlan;
+        mTimestampMillis = timestampMillis;
+        mThreadName = threadName;
+    }
+
+    /**
+     * @return The SQL of the statement.
+     */
+    @NonNull
+    public String getSql() {
+        return mSql;
+    }
+
+    /**
+     * @return The arguments bound to the statement, as Long, Double, String, byte[] or null
+     * values.
+     */
+    @NonNull
+    public List<Object> getBindArgs() {
+        return mBindArgs;
+    }
+
+    /**
+     * @return How long the statement ran, in nanoseconds. For a query this includes reading its
+     * first window of rows.
+     */
+    public long getDurationNanos() {
+        return mDurationNanos;
+    }
+
+    /**
+     * @return The number of rows the query returned or the statement changed, -1 if it is
+     * unknown. For a query whose caller did not count its rows, this is the number of rows it
+     * read before closing the cursor.
+     */
+    public long getRowCount() {
+        return mRowCount;
+    }
+
+    /**
+     * Returns the output of {@code EXPLAIN QUERY PLAN} for the statement, one step per line.
+     * <p>
+     * Plans are captured the first time a given SQL is slow and shared by its later entries, so
+     * they may not reflect indices created since.
+     *
+     * @return The query plan or null if the statement has none, such as a plain insert or a
+     * schema change.
+     */
+    @Nullable
+    public String getQueryPlan() {
+        return mQueryPlan;
+    }
+
+    /**
+     * @return The wall clock time when the statement finished, in milliseconds since the epoch.
+     */
+    public long getTimestampMillis() {
+        return mTimestampMillis;
+    }
+
+    /**
+     * @return The name of the thread that ran the statement.
+     */
+    @NonNull
+    public String getThreadName() {
+        return mThreadName;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("SlowQuery{")
+                .append("durationMillis=")
+                .append(TimeUnit.NANOSECONDS.toMillis(mDurationNanos))
+                .append(", rows=").append(mRowCount)
+                .append(", thread=").append(mThreadName)
+                .append(", sql=").append(mSql)
+                .append(", args=").append(mBindArgs);
+        if (mQueryPlan != null) {
+            builder.append(", plan=\n").append(mQueryPlan).append('\n');
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.zeoflow.sqlite.db.SupportSQLiteDatabase;
+import com.zeoflow.sqlite.db.SupportSQLiteQuery;
+
+/**
+ * Wraps the cursor of a query timed by {@link SlowQueryDatabase}.
+ * <p>
+ * Android cursors run their query when they are first counted or moved, so the query is timed
+ * from its preparation until that first read returns, which fills the first window. Arguments
+ * are only collected once the query turns out to be slow, and a slow query is recorded when its
+ * cursor is closed, along with the number of rows it returned if the caller counted them, or the
+ * number of rows it read otherwise.
+ */
+final class SlowQueryCursor extends CursorWrapper {
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final SupportSQLiteDatabase mDatabase;
+    private final SlowQueryLog mLog;
+    private final String mSql;
+    @Nullable
+    private final SupportSQLiteQuery mQuery;
+    @Nullable
+    private final Object[] mBindArgs;
+    private final long mStartNanos;
+
+    // -1 until the query ran
+    private long mDurationNanos = -1;
+    // the arguments of the query once it turned out to be slow, null otherwise
+    @Nullable
+    private Object[] mSlowBindArgs;
+    private int mCount = -1;
+    private int mMaxPosition = -1;
+    private boolean mClosed;
+
+    /**
+     * @param startNanos When the query started to be prepared.
+     * @param query      The query, to collect its arguments from, or null if it is given as SQL.
+     * @param bindArgs   The arguments of the SQL, if the query is given as SQL.
+     */
+    SlowQueryCursor(@NonNull Cursor cursor, @NonNull SupportSQLiteDatabase database,
+            @NonNull SlowQueryLog log, long startNanos, @NonNull String sql,
+            @Nullable SupportSQLiteQuery query, @Nullable Object[] bindArgs) {
+        super(cursor);
+        mDatabase = database;
+        mLog = log;
+        mStartNanos = startNanos;
+        mSql = sql;
+        mQuery = query;
+        mBindArgs = bindArgs;
+    }
+
+    private boolean isFirstRead() {
+        return mDurationNanos < 0;
+    }
+
+    private void onRead(boolean first) {
+        if (!first) {
+            return;
+        }
+        mDurationNanos = System.nanoTime() - mStartNanos;
+        if (mLog.isSlow(mDurationNanos)) {
+            mSlowBindArgs = collectBindArgs();
+        }
+    }
+
+    private boolean onMove(boolean first, boolean moved) {
+        onRead(first);
+        if (moved) {
+            mMaxPosition = Math.max(mMaxPosition, getPosition());
+        }
+        return moved;
+    }
+
+    @NonNull
+    private Object[] collectBindArgs() {
+        if (mQuery != null) {
+            final StatementBindings bindings = new StatementBindings();
+            mQuery.bindTo(bindings.asProgram());
+            return bindings.toArray();
+        }
+        return mBindArgs == null ? NO_ARGS : mBindArgs.clone();
+    }
+
+    @Override
+    public int getCount() {
+        final boolean first = isFirstRead();
+        final int count = super.getCount();
+        onRead(first);
+        mCount = count;
+        return count;
+    }
+
+    @Override
+    public boolean move(int offset) {
+        return onMove(isFirstRead(), super.move(offset));
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        return onMove(isFirstRead(), super.moveToPosition(position));
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        return onMove(isFirstRead(), super.moveToFirst());
+    }
+
+    @Override
+    public boolean moveToLast() {
+        return onMove(isFirstRead(), super.moveToLast());
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return onMove(isFirstRead(), super.moveToNext());
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        return onMove(isFirstRead(), super.moveToPrevious());
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        if (isFirstRead()) {
+            // never read, only its preparation was timed.
+            onRead(true);
+        }
+        if (mSlowBindArgs != null) {
+            final long rows = mCount >= 0 ? mCount : mMaxPosition + 1;
+            mLog.record(mDatabase, mSql, mSlowBindArgs, mDurationNanos, rows);
+        }
+    }
+}
@@ -31,79 +31,70 @@ import com.zeoflow.sqlite.db.SupportSQLiteQuery;
 import com.zeoflow.sqlite.db.SupportSQLiteStatement;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.Executor;
-
 
 /**
- * Implements {@link SupportSQLiteDatabase} for SQLite queries.
+ * Implements {@link SupportSQLiteDatabase} to time the statements run on a connection and record
+ * the slow ones.
+ * <p>
+ * Queries are timed by their cursor, a {@link SlowQueryCursor}, until it is first read, which on
+ * Android means the query ran and filled its first window, so the time spent in SQLite is not
+ * hidden behind a lazy cursor. Arguments are only collected once a query turns out to be slow.
  */
-final class QueryInterceptorDatabase implements SupportSQLiteDatabase {
+final class SlowQueryDatabase implements SupportSQLiteDatabase {
+
+    private static final Object[] NO_ARGS = new Object[0];
 
     private final SupportSQLiteDatabase mDelegate;
-    private final DepotDatabase.QueryCallback mQueryCallback;
-    private final Executor mQueryCallbackExecutor;
+    private final SlowQueryLog mLog;
 
-    QueryInterceptorDatabase(@NonNull SupportSQLiteDatabase supportSQLiteDatabase,
-                             @NonNull DepotDatabase.QueryCallback queryCallback, @NonNull Executor
-            queryCallbackExecutor) {
+    SlowQueryDatabase(@NonNull SupportSQLiteDatabase supportSQLiteDatabase,
+            @NonNull SlowQueryLog log) {
         mDelegate = supportSQLiteDatabase;
-        mQueryCallback = queryCallback;
-        mQueryCallbackExecutor = queryCallbackExecutor;
+        mLog = log;
+    }
+
+    @NonNull
+    SupportSQLiteDatabase getDelegate() {
+        return mDelegate;
     }
 
     @NonNull
     @Override
     public SupportSQLiteStatement compileStatement(@NonNull String sql) {
-        return new QueryInterceptorStatement(mDelegate.compileStatement(sql),
-                mQueryCallback, sql, mQueryCallbackExecutor);
+        return new SlowQueryStatement(mDelegate, mDelegate.compileStatement(sql), sql, mLog);
     }
 
     @Override
     public void beginTransaction() {
-        mQueryCallbackExecutor.execute(() -> mQueryCallback.onQuery("BEGIN EXCLUSIVE TRANSACTION",
-                Collections.emptyList()));
         mDelegate.beginTransaction();
     }
 
     @Override
     public void beginTransactionNonExclusive() {
-        mQueryCallbackExecutor.execute(() -> mQueryCallback.onQuery("BEGIN DEFERRED TRANSACTION",
-                Collections.emptyList()));
         mDelegate.beginTransactionNonExclusive();
     }
 
     @Override
     public void beginTransactionWithListener(@NonNull SQLiteTransactionListener
             transactionListener) {
-        mQueryCallbackExecutor.execute(() -> mQueryCallback.onQuery("BEGIN EXCLUSIVE TRANSACTION",
-                Collections.emptyList()));
         mDelegate.beginTransactionWithListener(transactionListener);
     }
 
     @Override
     public void beginTransactionWithListenerNonExclusive(
             @NonNull SQLiteTransactionListener transactionListener) {
-        mQueryCallbackExecutor.execute(() -> mQueryCallback.onQuery("BEGIN DEFERRED TRANSACTION",
-                Collections.emptyList()));
         mDelegate.beginTransactionWithListenerNonExclusive(transactionListener);
     }
 
     @Override
     public void endTransaction() {
-        mQueryCallbackExecutor.execute(() -> mQueryCallback.onQuery("END TRANSACTION",
-                Collections.emptyList()));
         mDelegate.endTransaction();
     }
 
     @Override
     public void setTransactionSuccessful() {
-        mQueryCallbackExecutor.execute(() -> mQueryCallback.onQuery("TRANSACTION SUCCESSFUL",
-                Collections.emptyList()));
         mDelegate.setTransactionSuccessful();
     }
 
@@ -160,40 +151,35 @@ final class QueryInterceptorDatabase implements SupportSQLiteDatabase {
     @NonNull
     @Override
     public Cursor query(@NonNull String query) {
-        mQueryCallbackExecutor.execute(() -> mQueryCallback.onQuery(query,
-                Collections.emptyList()));
-        return mDelegate.query(query);
+        final long start = System.nanoTime();
+        final Cursor cursor = mDelegate.query(query);
+        return new SlowQueryCursor(cursor, mDelegate, mLog, start, query, null, null);
     }
 
     @NonNull
     @Override
     public Cursor query(@NonNull String query, @NonNull Object[] bindArgs) {
-        List<Object> inputArguments = new ArrayList<>();
-        inputArguments.addAll(Arrays.asList(bindArgs));
-        mQueryCallbackExecutor.execute(() -> mQueryCallback.onQuery(query,
-                inputArguments));
-        return mDelegate.query(query, bindArgs);
+        final long start = System.nanoTime();
+        final Cursor cursor = mDelegate.query(query, bindArgs);
+        return new SlowQueryCursor(cursor, mDelegate, mLog, start, query, null, bindArgs);
     }
 
     @NonNull
     @Override
     public Cursor query(@NonNull SupportSQLiteQuery query) {
-        QueryInterceptorProgram queryInterceptorProgram = new QueryInterceptorProgram();
-        query.bindTo(queryInterceptorProgram);
-        mQueryCallbackExecutor.execute(() -> mQueryCallback.onQuery(query.getSql(),
-                queryInterceptorProgram.getBindArgs()));
-        return mDelegate.query(query);
+        final long start = System.nanoTime();
+        final Cursor cursor = mDelegate.query(query);
+        return new SlowQueryCursor(cursor, mDelegate, mLog, start, query.getSql(), query, null);
     }
 
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
     @NonNull
     @Override
     public Cursor query(@NonNull SupportSQLiteQuery query,
             @NonNull CancellationSignal cancellationSignal) {
-        QueryInterceptorProgram queryInterceptorProgram = new QueryInterceptorProgram();
-        query.bindTo(queryInterceptorProgram);
-        mQueryCallbackExecutor.execute(() -> mQueryCallback.onQuery(query.getSql(),
-                queryInterceptorProgram.getBindArgs()));
-        return mDelegate.query(query);
+        final long start = System.nanoTime();
+        final Cursor cursor = mDelegate.query(query, cancellationSignal);
+        return new SlowQueryCursor(cursor, mDelegate, mLog, start, query.getSql(), query, null);
     }
 
     @Override
@@ -218,16 +204,22 @@ final class QueryInterceptorDatabase implements SupportSQLiteDatabase {
 
     @Override
     public void execSQL(@NonNull String sql) throws SQLException {
-        mQueryCallbackExecutor.execute(() -> mQueryCallback.onQuery(sql, new ArrayList<>(0)));
+        final long start = System.nanoTime();
         mDelegate.execSQL(sql);
+        final long duration = System.nanoTime() - start;
+        if (mLog.isSlow(duration)) {
+            mLog.record(mDelegate, sql, NO_ARGS, duration, -1);
+        }
     }
 
     @Override
     public void execSQL(@NonNull String sql, @NonNull Object[] bindArgs) throws SQLException {
-        List<Object> inputArguments = new ArrayList<>();
-        inputArguments.addAll(Arrays.asList(bindArgs));
-        mQueryCallbackExecutor.execute(() -> mQueryCallback.onQuery(sql, inputArguments));
-        mDelegate.execSQL(sql, inputArguments.toArray());
+        final long start = System.nanoTime();
+        mDelegate.execSQL(sql, bindArgs);
+        final long duration = System.nanoTime() - start;
+        if (mLog.isSlow(duration)) {
+            mLog.record(mDelegate, sql, bindArgs.clone(), duration, -1);
+        }
     }
 
     @Override
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.zeoflow.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded ring buffer of the statements that ran longer than a threshold, shared by the writer
+ * and reader connections of a database.
+ * <p>
+ * The first time a given SQL is slow, its {@code EXPLAIN QUERY PLAN} output is captured on the
+ * connection that ran it, on the calling thread, and reused for its later entries.
+ */
+final class SlowQueryLog {
+    // Raw queries may inline their arguments so the number of distinct SQL is unbounded.
+    private static final int MAX_PLANS = 256;
+    private static final String[] EXPLAINABLE = {"SELECT", "INSERT", "UPDATE", "DELETE",
+            "REPLACE", "WITH", "VALUES"};
+
+    private final long mThresholdNanos;
+    // guarded by this
+    private final SlowQuery[] mEntries;
+    // guarded by this
+    private int mNext;
+    // guarded by this
+    private long mTotalCount;
+    // guarded by itself, null values are statements without a plan
+    private final Map<String, String> mPlans =
+            new LinkedHashMap<String, String>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > MAX_PLANS;
+                }
+            };
+
+    SlowQueryLog(long thresholdMillis, int capacity) {
+        mThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        mEntries = new SlowQuery[capacity];
+    }
+
+    boolean isSlow(long durationNanos) {
+        return durationNanos >= mThresholdNanos;
+    }
+
+    /**
+     * Records a statement that was slow, capturing its plan if it's the first time.
+     *
+     * @param db The connection the statement ran on, used to explain it.
+     */
+    void record(@NonNull SupportSQLiteDatabase db, @NonNull String sql, @NonNull Object[] bindArgs,
+            long durationNanos, long rowCount) {
+        final String plan = getPlan(db, sql, bindArgs);
+        final SlowQuery entry = new SlowQuery(sql, bindArgs, durationNanos, rowCount, plan,
+                System.currentTimeMillis(), Thread.currentThread().getName());
+        synchronized (this) {
+            mEntries[mNext] = entry;
+            mNext = (mNext + 1) % mEntries.length;
+            mTotalCount++;
+        }
+    }
+
+    /**
+     * @return The recorded statements, oldest first.
+     */
+    @NonNull
+    synchronized List<SlowQuery> getEntries() {
+        final List<SlowQuery> entries = new ArrayList<>(mEntries.length);
+        for (int i = 0; i < mEntries.length; i++) {
+            final SlowQuery entry = mEntries[(mNext + i) % mEntries.length];
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return The number of slow statements recorded so far, including the ones that were
+     * overwritten.
+     */
+    synchronized long getTotalCount() {
+        return mTotalCount;
+    }
+
+    synchronized void clear() {
+        for (int i = 0; i < mEntries.length; i++) {
+            mEntries[i] = null;
+        }
+        mNext = 0;
+    }
+
+    @Nullable
+    private String getPlan(SupportSQLiteDatabase db, String sql, Object[] bindArgs) {
+        if (!isExplainable(sql)) {
+            return null;
+        }
+        synchronized (mPlans) {
+            if (mPlans.containsKey(sql)) {
+                return mPlans.get(sql);
+            }
+        }
+        // explained outside of the lock, two threads may capture the same plan at worst
+        final String plan = explain(db, sql, bindArgs);
+        synchronized (mPlans) {
+            mPlans.put(sql, plan);
+        }
+        return plan;
+    }
+
+    private static boolean isExplainable(String sql) {
+        final String trimmed = sql.trim();
+        for (String keyword : EXPLAINABLE) {
+            if (trimmed.regionMatches(true, 0, keyword, 0, keyword.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private static String explain(SupportSQLiteDatabase db, String sql, Object[] bindArgs) {
+        final StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = db.query("EXPLAIN QUERY PLAN " + sql, bindArgs)) {
+            final int detailIndex = cursor.getColumnIndex("detail");
+            final int column = detailIndex >= 0 ? detailIndex : cursor.getColumnCount() - 1;
+            while (cursor.moveToNext()) {
+                if (plan.length() > 0) {
+                    plan.append('\n');
+                }
+                plan.append(cursor.getString(column));
+            }
+        } catch (RuntimeException e) {
+            return String.format(Locale.US, "EXPLAIN QUERY PLAN failed: %s", e.getMessage());
+        }
+        return plan.length() == 0 ? null : plan.toString();
+    }
+}
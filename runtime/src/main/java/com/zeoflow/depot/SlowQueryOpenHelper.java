@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import com.zeoflow.sqlite.db.SupportSQLiteDatabase;
+import com.zeoflow.sqlite.db.SupportSQLiteOpenHelper;
+
+final class SlowQueryOpenHelper implements SupportSQLiteOpenHelper, DelegatingOpenHelper {
+
+    private final SupportSQLiteOpenHelper mDelegate;
+    private final SlowQueryLog mLog;
+    // the wrapper of the last database returned by the delegate, which returns the same one
+    // until it is closed
+    @Nullable
+    private volatile SlowQueryDatabase mDatabase;
+
+    SlowQueryOpenHelper(@NonNull SupportSQLiteOpenHelper supportSQLiteOpenHelper,
+            @NonNull SlowQueryLog log) {
+        mDelegate = supportSQLiteOpenHelper;
+        mLog = log;
+    }
+
+    @NonNull
+    SlowQueryLog getLog() {
+        return mLog;
+    }
+
+    @Nullable
+    @Override
+    public String getDatabaseName() {
+        return mDelegate.getDatabaseName();
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    @Override
+    public void setWriteAheadLoggingEnabled(boolean enabled) {
+        mDelegate.setWriteAheadLoggingEnabled(enabled);
+    }
+
+    @Override
+    public SupportSQLiteDatabase getWritableDatabase() {
+        return wrap(mDelegate.getWritableDatabase());
+    }
+
+    @Override
+    public SupportSQLiteDatabase getReadableDatabase() {
+        return wrap(mDelegate.getReadableDatabase());
+    }
+
+    private SupportSQLiteDatabase wrap(SupportSQLiteDatabase db) {
+        SlowQueryDatabase wrapper = mDatabase;
+        if (wrapper == null || wrapper.getDelegate() != db) {
+            wrapper = new SlowQueryDatabase(db, mLog);
+            mDatabase = wrapper;
+        }
+        return wrapper;
+    }
+
+    @Override
+    public void close() {
+        mDelegate.close();
+        mDatabase = null;
+    }
+
+    @Override
+    @NonNull
+    public SupportSQLiteOpenHelper getDelegate() {
+        return mDelegate;
+    }
+}
@@ -14,37 +14,31 @@
  * limitations under the License.
  */
 
+
 package com.zeoflow.depot;
 
 import androidx.annotation.NonNull;
 import com.zeoflow.sqlite.db.SupportSQLiteOpenHelper;
 
-import java.util.concurrent.Executor;
-
 /**
- * Implements {@link SupportSQLiteOpenHelper.Factory} to wrap QueryInterceptorOpenHelper.
+ * Implements {@link SupportSQLiteOpenHelper.Factory} to wrap SlowQueryOpenHelper. Every helper it
+ * creates, including the ones of reader connections, records into the same log.
  */
-@SuppressWarnings("AcronymName")
-final class QueryInterceptorOpenHelperFactory implements SupportSQLiteOpenHelper.Factory {
+final class SlowQueryOpenHelperFactory implements SupportSQLiteOpenHelper.Factory {
 
     private final SupportSQLiteOpenHelper.Factory mDelegate;
-    private final DepotDatabase.QueryCallback mQueryCallback;
-    private final Executor mQueryCallbackExecutor;
+    private final SlowQueryLog mLog;
 
-    @SuppressWarnings("LambdaLast")
-    QueryInterceptorOpenHelperFactory(@NonNull SupportSQLiteOpenHelper.Factory factory,
-            @NonNull DepotDatabase.QueryCallback queryCallback,
-            @NonNull Executor queryCallbackExecutor) {
+    SlowQueryOpenHelperFactory(@NonNull SupportSQLiteOpenHelper.Factory factory,
+            @NonNull SlowQueryLog log) {
         mDelegate = factory;
-        mQueryCallback = queryCallback;
-        mQueryCallbackExecutor = queryCallbackExecutor;
+        mLog = log;
     }
 
     @NonNull
     @Override
     public SupportSQLiteOpenHelper create(
             @NonNull SupportSQLiteOpenHelper.Configuration configuration) {
-        return new QueryInterceptorOpenHelper(mDelegate.create(configuration), mQueryCallback,
-                mQueryCallbackExecutor);
+        return new SlowQueryOpenHelper(mDelegate.create(configuration), mLog);
     }
 }
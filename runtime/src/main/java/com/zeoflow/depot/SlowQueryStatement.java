@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+import com.zeoflow.sqlite.db.SupportSQLiteDatabase;
+import com.zeoflow.sqlite.db.SupportSQLiteStatement;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Implements {@link SupportSQLiteStatement} to time each execution and record the slow ones along
+ * with the arguments they were bound to.
+ */
+final class SlowQueryStatement implements SupportSQLiteStatement {
+
+    private final SupportSQLiteDatabase mDatabase;
+    private final SupportSQLiteStatement mDelegate;
+    private final String mSql;
+    private final SlowQueryLog mLog;
+    // Arguments are kept by index, statements are re-bound for every execution so this is
+    // sized once.
+    private Object[] mBindArgs = new Object[0];
+    private int mArgCount;
+
+    SlowQueryStatement(@NonNull SupportSQLiteDatabase database,
+            @NonNull SupportSQLiteStatement compileStatement, @NonNull String sql,
+            @NonNull SlowQueryLog log) {
+        mDatabase = database;
+        mDelegate = compileStatement;
+        mSql = sql;
+        mLog = log;
+    }
+
+    @Override
+    public void execute() {
+        final long start = System.nanoTime();
+        mDelegate.execute();
+        recordIfSlow(start, -1);
+    }
+
+    @Override
+    public int executeUpdateDelete() {
+        final long start = System.nanoTime();
+        final int count = mDelegate.executeUpdateDelete();
+        recordIfSlow(start, count);
+        return count;
+    }
+
+    @Override
+    public long executeInsert() {
+        final long start = System.nanoTime();
+        final long rowId = mDelegate.executeInsert();
+        recordIfSlow(start, rowId == -1 ? 0 : 1);
+        return rowId;
+    }
+
+    @Override
+    public long simpleQueryForLong() {
+        final long start = System.nanoTime();
+        final long result = mDelegate.simpleQueryForLong();
+        recordIfSlow(start, 1);
+        return result;
+    }
+
+    @Override
+    public String simpleQueryForString() {
+        final long start = System.nanoTime();
+        final String result = mDelegate.simpleQueryForString();
+        recordIfSlow(start, 1);
+        return result;
+    }
+
+    private void recordIfSlow(long start, long rows) {
+        final long duration = System.nanoTime() - start;
+        if (mLog.isSlow(duration)) {
+            mLog.record(mDatabase, mSql, Arrays.copyOf(mBindArgs, mArgCount), duration, rows);
+        }
+    }
+
+    @Override
+    public void bindNull(int index) {
+        saveArg(index, null);
+        mDelegate.bindNull(index);
+    }
+
+    @Override
+    public void bindLong(int index, long value) {
+        saveArg(index, value);
+        mDelegate.bindLong(index, value);
+    }
+
+    @Override
+    public void bindDouble(int index, double value) {
+        saveArg(index, value);
+        mDelegate.bindDouble(index, value);
+    }
+
+    @Override
+    public void bindString(int index, String value) {
+        saveArg(index, value);
+        mDelegate.bindString(index, value);
+    }
+
+    @Override
+    public void bindBlob(int index, byte[] value) {
+        saveArg(index, value);
+        mDelegate.bindBlob(index, value);
+    }
+
+    @Override
+    public void clearBindings() {
+        Arrays.fill(mBindArgs, null);
+        mArgCount = 0;
+        mDelegate.clearBindings();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mDelegate.close();
+    }
+
+    private void saveArg(int bindIndex, Object value) {
+        if (bindIndex > mBindArgs.length) {
+            mBindArgs = Arrays.copyOf(mBindArgs, bindIndex);
+        }
+        mBindArgs[bindIndex - 1] = value;
+        mArgCount = Math.max(mArgCount, bindIndex);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.zeoflow.sqlite.db.SupportSQLiteProgram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The arguments bound to a statement, as seen by a {@link DepotDatabase.Tracer}.
+ * <p>
+ * Arguments are kept in primitive arrays indexed like SQLite bind parameters, from 1 to
+ * {@link #getCount()}, so numbers are neither boxed nor copied into a list. An instance belongs to
+ * the statement that is being traced and is only valid until the tracer's begin hook returns.
+ */
+public final class StatementBindings {
+    static final StatementBindings EMPTY = new StatementBindings();
+
+    private int[] mTypes = new int[0];
+    private long[] mLongs = new long[0];
+    private double[] mDoubles = new double[0];
+    private Object[] mObjects = new Object[0];
+    private int mCount;
+
+    StatementBindings() {
+    }
+
+    static StatementBindings of(@NonNull Object[] args) {
+        final StatementBindings bindings = new StatementBindings();
+        // bound from the last one so that the arrays are only allocated once
+        for (int i = args.length; i >= 1; i--) {
+            final Object arg = args[i - 1];
+            if (arg == null) {
+                bindings.bindNull(i);
+            } else if (arg instanceof byte[]) {
+                bindings.bindBlob(i, (byte[]) arg);
+            } else if (arg instanceof Float || arg instanceof Double) {
+                bindings.bindDouble(i, ((Number) arg).doubleValue());
+            } else if (arg instanceof Number) {
+                bindings.bindLong(i, ((Number) arg).longValue());
+            } else if (arg instanceof Boolean) {
+                bindings.bindLong(i, (Boolean) arg ? 1 : 0);
+            } else {
+                bindings.bindString(i, arg.toString());
+            }
+        }
+        return bindings;
+    }
+
+    /**
+     * @return The highest bound index, 0 if no argument is bound.
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @param index The 1-based index of the argument.
+     * @return The type of the argument as one of the {@code Cursor.FIELD_TYPE_*} constants,
+     * {@link Cursor#FIELD_TYPE_NULL} if it is not bound.
+     */
+    public int getType(int index) {
+        return index < 1 || index > mCount ? Cursor.FIELD_TYPE_NULL : mTypes[index - 1];
+    }
+
+    /**
+     * @param index The 1-based index of an {@link Cursor#FIELD_TYPE_INTEGER} argument.
+     * @return The value of the argument.
+     */
+    public long getLong(int index) {
+        return mLongs[index - 1];
+    }
+
+    /**
+     * @param index The 1-based index of a {@link Cursor#FIELD_TYPE_FLOAT} argument.
+     * @return The value of the argument.
+     */
+    public double getDouble(int index) {
+        return mDoubles[index - 1];
+    }
+
+    /**
+     * @param index The 1-based index of a {@link Cursor#FIELD_TYPE_STRING} argument.
+     * @return The value of the argument.
+     */
+    @Nullable
+    public String getString(int index) {
+        return (String) mObjects[index - 1];
+    }
+
+    /**
+     * @param index The 1-based index of a {@link Cursor#FIELD_TYPE_BLOB} argument.
+     * @return The value of the argument, which is not copied and must not be modified.
+     */
+    @Nullable
+    public byte[] getBlob(int index) {
+        return (byte[]) mObjects[index - 1];
+    }
+
+    void bindNull(int index) {
+        set(index, Cursor.FIELD_TYPE_NULL);
+        mObjects[index - 1] = null;
+    }
+
+    void bindLong(int index, long value) {
+        set(index, Cursor.FIELD_TYPE_INTEGER);
+        mLongs[index - 1] = value;
+        mObjects[index - 1] = null;
+    }
+
+    void bindDouble(int index, double value) {
+        set(index, Cursor.FIELD_TYPE_FLOAT);
+        mDoubles[index - 1] = value;
+        mObjects[index - 1] = null;
+    }
+
+    void bindString(int index, String value) {
+        set(index, Cursor.FIELD_TYPE_STRING);
+        mObjects[index - 1] = value;
+    }
+
+    void bindBlob(int index, byte[] value) {
+        set(index, Cursor.FIELD_TYPE_BLOB);
+        mObjects[index - 1] = value;
+    }
+
+    void clear() {
+        Arrays.fill(mTypes, Cursor.FIELD_TYPE_NULL);
+        Arrays.fill(mObjects, null);
+        mCount = 0;
+    }
+
+    private void set(int index, int type) {
+        if (index > mTypes.length) {
+            // statements are bound the same way every time they run so this only grows once
+            mTypes = Arrays.copyOf(mTypes, index);
+            mLongs = Arrays.copyOf(mLongs, index);
+            mDoubles = Arrays.copyOf(mDoubles, index);
+            mObjects = Arrays.copyOf(mObjects, index);
+        }
+        mTypes[index - 1] = type;
+        mCount = Math.max(mCount, index);
+    }
+
+    /**
+     * @return A program that binds into these bindings, to read the arguments of a query.
+     */
+    @NonNull
+    SupportSQLiteProgram asProgram() {
+        return new SupportSQLiteProgram() {
+            @Override
+            public void bindNull(int index) {
+                StatementBindings.this.bindNull(index);
+            }
+
+            @Override
+            public void bindLong(int index, long value) {
+                StatementBindings.this.bindLong(index, value);
+            }
+
+            @Override
+            public void bindDouble(int index, double value) {
+                StatementBindings.this.bindDouble(index, value);
+            }
+
+            @Override
+            public void bindString(int index, String value) {
+                StatementBindings.this.bindString(index, value);
+            }
+
+            @Override
+            public void bindBlob(int index, byte[] value) {
+                StatementBindings.this.bindBlob(index, value);
+            }
+
+            @Override
+            public void clearBindings() {
+                clear();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * @return The arguments as Long, Double, String, byte[] or null values.
+     */
+    @NonNull
+    Object[] toArray() {
+        final Object[] args = new Object[mCount];
+        for (int i = 0; i < mCount; i++) {
+            switch (mTypes[i]) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    args[i] = mLongs[i];
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    args[i] = mDoubles[i];
+                    break;
+                default:
+                    args[i] = mObjects[i];
+                    break;
+            }
+        }
+        return args;
+    }
+
+    @NonNull
+    List<Object> toList() {
+        return new ArrayList<>(Arrays.asList(toArray()));
+    }
+}
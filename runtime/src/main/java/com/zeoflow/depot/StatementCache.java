@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+import com.zeoflow.sqlite.db.SupportSQLiteStatement;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A SQL keyed, least recently used cache of idle prepared statements compiled on the writer
+ * connection of a {@link DepotDatabase}.
+ * <p>
+ * A statement is checked out of the cache by {@link #acquire(String)} and belongs to the caller
+ * until it is handed back to {@link #release(String, SupportSQLiteStatement)}. When several threads
+ * run the same SQL at once, each gets its own statement and all of them are kept once released.
+ * The cache holds at most {@code maxSize} idle statements; least recently used ones are closed when
+ * it grows past that. Statements that are in use are never evicted.
+ */
+class StatementCache {
+    private final DepotDatabase mDatabase;
+    private final int mMaxSize;
+
+    // Guarded by this, in access order.
+    private final LinkedHashMap<String, List<SupportSQLiteStatement>> mIdleStatements =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private int mSize;
+    private boolean mClosed;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    StatementCache(@NonNull DepotDatabase database, int maxSize) {
+        mDatabase = database;
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Checks out a statement for the given SQL, compiling a new one if there is no idle statement.
+     *
+     * @param sql The query of the statement.
+     * @return A statement that must be handed back with
+     * {@link #release(String, SupportSQLiteStatement)}.
+     */
+    @NonNull
+    SupportSQLiteStatement acquire(@NonNull String sql) {
+        synchronized (this) {
+            final List<SupportSQLiteStatement> idle = mIdleStatements.get(sql);
+            if (idle != null && !idle.isEmpty()) {
+                mHitCount++;
+                mSize--;
+                return idle.remove(idle.size() - 1);
+            }
+            mMissCount++;
+        }
+        return mDatabase.compileStatement(sql);
+    }
+
+    /**
+     * Hands a statement back to the cache, closing it if the cache is full or closed.
+     *
+     * @param sql       The query the statement was acquired for.
+     * @param statement The statement returned from {@link #acquire(String)}.
+     */
+    void release(@NonNull String sql, @NonNull SupportSQLiteStatement statement) {
+        // Don't keep large strings or blobs alive while the statement is idle.
+        statement.clearBindings();
+        List<SupportSQLiteStatement> evicted = null;
+        synchronized (this) {
+            if (mClosed || mMaxSize == 0) {
+                evicted = new ArrayList<>(1);
+                evicted.add(statement);
+            } else {
+                List<SupportSQLiteStatement> idle = mIdleStatements.get(sql);
+                if (idle == null) {
+                    idle = new ArrayList<>(1);
+                    mIdleStatements.put(sql, idle);
+                }
+                idle.add(statement);
+                mSize++;
+                if (mSize > mMaxSize) {
+                    evicted = trimToSize(mMaxSize);
+                    mEvictionCount += evicted.size();
+                }
+            }
+        }
+        closeAll(evicted);
+    }
+
+    private List<SupportSQLiteStatement> trimToSize(int maxSize) {
+        final List<SupportSQLiteStatement> evicted = new ArrayList<>();
+        final Iterator<Map.Entry<String, List<SupportSQLiteStatement>>> iterator =
+                mIdleStatements.entrySet().iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            final List<SupportSQLiteStatement> idle = iterator.next().getValue();
+            while (mSize > maxSize && !idle.isEmpty()) {
+                evicted.add(idle.remove(0));
+                mSize--;
+            }
+            if (idle.isEmpty()) {
+                iterator.remove();
+            }
+        }
+        return evicted;
+    }
+
+    @NonNull
+    synchronized StatementCacheStats getStats() {
+        return new StatementCacheStats(mMaxSize, mSize, mHitCount, mMissCount, mEvictionCount);
+    }
+
+    /**
+     * Closes every idle statement. Statements released after this call are closed right away.
+     */
+    void close() {
+        final List<SupportSQLiteStatement> idle;
+        synchronized (this) {
+            mClosed = true;
+            idle = trimToSize(0);
+        }
+        closeAll(idle);
+    }
+
+    private static void closeAll(List<SupportSQLiteStatement> statements) {
+        if (statements == null) {
+            return;
+        }
+        for (SupportSQLiteStatement statement : statements) {
+            try {
+                statement.close();
+            } catch (IOException ignored) {
+                // compiled statements don't throw on close.
+            }
+        }
+    }
+}
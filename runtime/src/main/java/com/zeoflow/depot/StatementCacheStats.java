@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A point in time snapshot of the prepared statement cache of a {@link DepotDatabase}.
+ *
+ * @see DepotDatabase#getStatementCacheStats()
+ * @see DepotDatabase.Builder#setStatementCacheSize(int)
+ */
+public final class StatementCacheStats {
+    private final int mMaxSize;
+    private final int mSize;
+    private final long mHitCount;
+    private final long mMissCount;
+    private final long mEvictionCount;
+
+    StatementCacheStats(int maxSize, int size, long hitCount, long missCount,
+            long evictionCount) {
+        mMaxSize = maxSize;
+        mSize = size;
+        mHitCount = hitCount;
+        mMissCount = missCount;
+        mEvictionCount = evictionCount;
+    }
+
+    /**
+     * @return The maximum number of idle statements the cache keeps.
+     */
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * @return The number of idle statements in the cache.
+     */
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * @return The number of times an idle statement was reused.
+     */
+    public long getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return The number of times a statement had to be compiled.
+     */
+    public long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return The number of idle statements closed because the cache was full.
+     */
+    public long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "StatementCacheStats{"
+                + "maxSize=" + mMaxSize
+                + ", size=" + mSize
+                + ", hits=" + mHitCount
+                + ", misses=" + mMissCount
+                + ", evictions=" + mEvictionCount
+                + '}';
+    }
+}
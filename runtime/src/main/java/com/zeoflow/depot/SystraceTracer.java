@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import android.os.Build;
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A {@link DepotDatabase.Tracer} that emits systrace sections, which show up in Perfetto and
+ * Android Studio's CPU profiler.
+ * <p>
+ * Transactions, statements and queries are sections of the thread that runs them, named after
+ * their SQL. Cursor reads may end on another thread so they are async sections, which are only
+ * emitted on API 29 and above. Section names are truncated to the 127 characters systrace
+ * supports.
+ *
+ * @see DepotDatabase.Builder#setTracer(DepotDatabase.Tracer)
+ */
+public final class SystraceTracer extends DepotDatabase.Tracer {
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+    private static final String READ_PREFIX = "read ";
+    private static final String EXCLUSIVE_TRANSACTION = "EXCLUSIVE TRANSACTION";
+    private static final String DEFERRED_TRANSACTION = "DEFERRED TRANSACTION";
+
+    @Override
+    public void onBeginTransaction(boolean exclusive) {
+        Trace.beginSection(exclusive ? EXCLUSIVE_TRANSACTION : DEFERRED_TRANSACTION);
+    }
+
+    @Override
+    public void onEndTransaction() {
+        Trace.endSection();
+    }
+
+    @Override
+    public void onBeginStatement(@NonNull String sql, @NonNull StatementBindings bindings) {
+        Trace.beginSection(sectionName(sql));
+    }
+
+    @Override
+    public void onEndStatement(@NonNull String sql) {
+        Trace.endSection();
+    }
+
+    @Override
+    public void onBeginQuery(@NonNull String sql, @NonNull StatementBindings bindings) {
+        Trace.beginSection(sectionName(sql));
+    }
+
+    @Override
+    public void onEndQuery(@NonNull String sql) {
+        Trace.endSection();
+    }
+
+    @Override
+    public void onBeginCursorRead(@NonNull String sql, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(readSectionName(sql), cookie);
+        }
+    }
+
+    @Override
+    public void onEndCursorRead(@NonNull String sql, int cookie, int rowsRead) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(readSectionName(sql), cookie);
+        }
+    }
+
+    private static String sectionName(String sql) {
+        // most statements are short enough to be used as is, without allocating
+        return sql.length() <= MAX_SECTION_NAME_LENGTH
+                ? sql : sql.substring(0, MAX_SECTION_NAME_LENGTH);
+    }
+
+    private static String readSectionName(String sql) {
+        return sectionName(READ_PREFIX + sql);
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import com.zeoflow.sqlite.db.SimpleSQLiteQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory copy of the whole table of an entity annotated with
+ * {@code @Entity(mirrored = true)}, with hash indices on its primary key and single column
+ * indices.
+ * <p>
+ * The mirror is loaded on first use. It observes its table through the
+ * {@link InvalidationTracker}, drops its copy whenever the table is invalidated and loads it again
+ * on the next lookup. Lookups return null, so that generated code runs the query instead, inside
+ * transactions, while a commit has not been checked by the tracker yet and for keys that can't be
+ * compared in memory. Keys are converted by the affinity of their column first, as SQLite does,
+ * so that e.g. a text argument finds the rows of an INTEGER column.
+ *
+ * @param <T> The type of the entity.
+ * @hide
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+public final class TableMirror<T> {
+    private static final Pattern INTEGER_TEXT = Pattern.compile("[+-]?[0-9]{1,18}");
+
+    private final DepotDatabase mDatabase;
+    private final String mTableName;
+    private final RowReader<T> mReader;
+
+    private final Object mLoadLock = new Object();
+    // guarded by mLoadLock
+    private boolean mObserving;
+    // incremented whenever the table is invalidated so that a copy read while it changed is not
+    // kept.
+    private final AtomicLong mGeneration = new AtomicLong();
+    // null until loaded and after every invalidation.
+    @Nullable
+    private volatile Snapshot<T> mSnapshot;
+
+    TableMirror(@NonNull DepotDatabase database, @NonNull String tableName,
+            @NonNull RowReader<T> reader) {
+        mDatabase = database;
+        mTableName = tableName;
+        mReader = reader;
+    }
+
+    /**
+     * @return Every row of the table, or null if the query has to run on the database.
+     */
+    @Nullable
+    public List<T> getAll() {
+        final Snapshot<T> snapshot = snapshot();
+        if (snapshot == null) {
+            return null;
+        }
+        return new ArrayList<>(snapshot.mRows);
+    }
+
+    /**
+     * Finds the rows whose indexed column is equal to the only argument of the query.
+     *
+     * @param column   The indexed column.
+     * @param affinity The type affinity of the column, which SQLite applies to the argument.
+     * @param query    The lookup query, with its argument bound.
+     * @return The matching rows, or null if the query has to run on the database.
+     */
+    @Nullable
+    public List<T> find(@NonNull String column, @ColumnInfo.SQLiteTypeAffinity int affinity,
+            @NonNull DepotSQLiteQuery query) {
+        final Object[] args = query.getBindArgs();
+        if (args.length != 1) {
+            return null;
+        }
+        final Object key = normalize(applyAffinity(args[0], affinity));
+        if (key == null) {
+            return null;
+        }
+        final Snapshot<T> snapshot = snapshot();
+        if (snapshot == null) {
+            return null;
+        }
+        final Map<Object, List<T>> index = snapshot.mIndices.get(column);
+        if (index == null) {
+            return null;
+        }
+        final List<T> rows = index.get(key);
+        return rows == null ? new ArrayList<T>() : new ArrayList<>(rows);
+    }
+
+    @Nullable
+    private Snapshot<T> snapshot() {
+        final InvalidationTracker tracker = mDatabase.getInvalidationTracker();
+        if (mDatabase.inTransaction() || tracker.isRefreshPending()) {
+            return null;
+        }
+        Snapshot<T> snapshot = mSnapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (mLoadLock) {
+            snapshot = mSnapshot;
+            if (snapshot != null) {
+                return snapshot;
+            }
+            if (!mObserving) {
+                // The trigger must be in place before the table is read, otherwise a commit made
+                // in between would never drop the copy.
+                tracker.addObserver(new TableObserver());
+                mObserving = true;
+            }
+            final long generation = mGeneration.get();
+            snapshot = load();
+            if (generation == mGeneration.get() && !tracker.isRefreshPending()) {
+                mSnapshot = snapshot;
+            }
+            return snapshot;
+        }
+    }
+
+    @NonNull
+    private Snapshot<T> load() {
+        final String[] indexColumns = mReader.mIndexColumns;
+        final List<T> rows = new ArrayList<>();
+        final List<Map<Object, List<T>>> indices = new ArrayList<>(indexColumns.length);
+        for (int i = 0; i < indexColumns.length; i++) {
+            indices.add(new HashMap<Object, List<T>>());
+        }
+        final Cursor cursor = mDatabase.query(
+                new SimpleSQLiteQuery("SELECT * FROM `" + mTableName + "`"), null);
+        try {
+            final int[] columnIndices = new int[indexColumns.length];
+            for (int i = 0; i < indexColumns.length; i++) {
+                columnIndices[i] = cursor.getColumnIndexOrThrow(indexColumns[i]);
+            }
+            while (cursor.moveToNext()) {
+                final T row = mReader.read(cursor);
+                rows.add(row);
+                for (int i = 0; i < columnIndices.length; i++) {
+                    final Object key = readKey(cursor, columnIndices[i]);
+                    if (key == null) {
+                        continue;
+                    }
+                    final Map<Object, List<T>> index = indices.get(i);
+                    List<T> matches = index.get(key);
+                    if (matches == null) {
+                        matches = new ArrayList<>(1);
+                        index.put(key, matches);
+                    }
+                    matches.add(row);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        final Map<String, Map<Object, List<T>>> indicesByColumn = new HashMap<>();
+        for (int i = 0; i < indexColumns.length; i++) {
+            indicesByColumn.put(indexColumns[i], indices.get(i));
+        }
+        return new Snapshot<>(Collections.unmodifiableList(rows), indicesByColumn);
+    }
+
+    @Nullable
+    private static Object readKey(@NonNull Cursor cursor, int columnIndex) {
+        switch (cursor.getType(columnIndex)) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(columnIndex);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return normalize(cursor.getDouble(columnIndex));
+            case Cursor.FIELD_TYPE_STRING:
+                return cursor.getString(columnIndex);
+            default:
+                // NULL never matches and blobs are not indexed.
+                return null;
+        }
+    }
+
+    /**
+     * Converts the argument of a lookup the way SQLite does before comparing it to a column of
+     * the given affinity. Returns null for values whose conversion is left to SQLite.
+     */
+    @Nullable
+    private static Object applyAffinity(@Nullable Object value,
+            @ColumnInfo.SQLiteTypeAffinity int affinity) {
+        switch (affinity) {
+            case ColumnInfo.TEXT:
+                if (value instanceof Long) {
+                    return value.toString();
+                }
+                // reals are formatted by SQLite's own rules.
+                return value instanceof Double ? null : value;
+            case ColumnInfo.INTEGER:
+            case ColumnInfo.REAL:
+                if (!(value instanceof String)) {
+                    return value;
+                }
+                final String text = (String) value;
+                if (INTEGER_TEXT.matcher(text).matches()) {
+                    return Long.parseLong(text);
+                }
+                try {
+                    Double.parseDouble(text);
+                    return null;
+                } catch (NumberFormatException e) {
+                    // not a number, compared as text.
+                    return value;
+                }
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Maps values that SQLite considers equal to the same key: integral doubles are compared as
+     * integers. Returns null for values that can't be looked up.
+     */
+    @Nullable
+    private static Object normalize(@Nullable Object value) {
+        if (value instanceof Double) {
+            final double number = (Double) value;
+            if (number == Math.rint(number) && !Double.isInfinite(number)
+                    && Math.abs(number) < 0x1p53) {
+                return (long) number;
+            }
+            return value;
+        }
+        if (value instanceof Long || value instanceof String) {
+            return value;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    void invalidate() {
+        mGeneration.incrementAndGet();
+        mSnapshot = null;
+    }
+
+    /**
+     * Converts the rows of the table, implemented by generated code.
+     *
+     * @param <T> The type of the entity.
+     */
+    public abstract static class RowReader<T> {
+        final String[] mIndexColumns;
+
+        /**
+         * @param indexColumns The columns to index: the primary key and the single column
+         *                     indices.
+         */
+        protected RowReader(@NonNull String... indexColumns) {
+            mIndexColumns = indexColumns;
+        }
+
+        /**
+         * Converts the row the cursor is positioned on.
+         *
+         * @param cursor The cursor over the table.
+         * @return The entity.
+         */
+        @NonNull
+        protected abstract T read(@NonNull Cursor cursor);
+    }
+
+    private static final class Snapshot<T> {
+        final List<T> mRows;
+        final Map<String, Map<Object, List<T>>> mIndices;
+
+        Snapshot(List<T> rows, Map<String, Map<Object, List<T>>> indices) {
+            mRows = rows;
+            mIndices = indices;
+        }
+    }
+
+    /**
+     * Drops the copy when the table is invalidated.
+     */
+    private final class TableObserver extends InvalidationTracker.Observer {
+        TableObserver() {
+            super(mTableName);
+        }
+
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            invalidate();
+        }
+    }
+}
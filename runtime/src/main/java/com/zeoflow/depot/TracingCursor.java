@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reports the reads of a query result to a {@link DepotDatabase.Tracer}, from the first time the
+ * cursor is counted or moved, which runs the query and fills its first window, until it is
+ * closed, which may happen on another thread.
+ */
+final class TracingCursor extends CursorWrapper {
+    private static final AtomicInteger sNextCookie = new AtomicInteger();
+
+    private final String mSql;
+    private final DepotDatabase.Tracer mTracer;
+    private final int mCookie = sNextCookie.incrementAndGet();
+    private boolean mReading;
+    private int mRowsRead;
+
+    TracingCursor(@NonNull Cursor cursor, @NonNull String sql,
+            @NonNull DepotDatabase.Tracer tracer) {
+        super(cursor);
+        mSql = sql;
+        mTracer = tracer;
+    }
+
+    @Override
+    public boolean move(int offset) {
+        beginRead();
+        return onMove(super.move(offset));
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        beginRead();
+        return onMove(super.moveToPosition(position));
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        beginRead();
+        return onMove(super.moveToFirst());
+    }
+
+    @Override
+    public boolean moveToLast() {
+        beginRead();
+        return onMove(super.moveToLast());
+    }
+
+    @Override
+    public boolean moveToNext() {
+        beginRead();
+        return onMove(super.moveToNext());
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        beginRead();
+        return onMove(super.moveToPrevious());
+    }
+
+    @Override
+    public int getCount() {
+        beginRead();
+        return super.getCount();
+    }
+
+    private void beginRead() {
+        if (!mReading && !isClosed()) {
+            mReading = true;
+            mTracer.onBeginCursorRead(mSql, mCookie);
+        }
+    }
+
+    private boolean onMove(boolean moved) {
+        if (moved) {
+            mRowsRead++;
+        }
+        return moved;
+    }
+
+    @Override
+    public void close() {
+        final boolean reading = mReading;
+        mReading = false;
+        super.close();
+        if (reading) {
+            mTracer.onEndCursorRead(mSql, mCookie, mRowsRead);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zeoflow.depot;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteTransactionListener;
+import android.os.Build;
+import android.os.CancellationSignal;
+import android.util.Pair;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+import com.zeoflow.sqlite.db.SupportSQLiteDatabase;
+import com.zeoflow.sqlite.db.SupportSQLiteQuery;
+import com.zeoflow.sqlite.db.SupportSQLiteStatement;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Implements {@link SupportSQLiteDatabase} to report the transactions, statements and queries
+ * run on a connection to a {@link DepotDatabase.Tracer}.
+ * <p>
+ * A query is reported while it is prepared. Android cursors run their query when they are first
+ * read, so the time spent running it is reported by the reads of its cursor.
+ */
+final class TracingDatabase implements SupportSQLiteDatabase {
+
+    private final SupportSQLiteDatabase mDelegate;
+    private final DepotDatabase.Tracer mTracer;
+
+    TracingDatabase(@NonNull SupportSQLiteDatabase supportSQLiteDatabase,
+            @NonNull DepotDatabase.Tracer tracer) {
+        mDelegate = supportSQLiteDatabase;
+        mTracer = tracer;
+    }
+
+    @NonNull
+    SupportSQLiteDatabase getDelegate() {
+        return mDelegate;
+    }
+
+    @NonNull
+    @Override
+    public SupportSQLiteStatement compileStatement(@NonNull String sql) {
+        return new TracingStatement(mDelegate.compileStatement(sql), sql, mTracer);
+    }
+
+    @Override
+    public void beginTransaction() {
+        mTracer.onBeginTransaction(true);
+        try {
+            mDelegate.beginTransaction();
+        } catch (RuntimeException e) {
+            mTracer.onEndTransaction();
+            throw e;
+        }
+    }
+
+    @Override
+    public void beginTransactionNonExclusive() {
+        mTracer.onBeginTransaction(false);
+        try {
+            mDelegate.beginTransactionNonExclusive();
+        } catch (RuntimeException e) {
+            mTracer.onEndTransaction();
+            throw e;
+        }
+    }
+
+    @Override
+    public void beginTransactionWithListener(@NonNull SQLiteTransactionListener
+            transactionListener) {
+        mTracer.onBeginTransaction(true);
+        try {
+            mDelegate.beginTransactionWithListener(transactionListener);
+        } catch (RuntimeException e) {
+            mTracer.onEndTransaction();
+            throw e;
+        }
+    }
+
+    @Override
+    public void beginTransactionWithListenerNonExclusive(
+            @NonNull SQLiteTransactionListener transactionListener) {
+        mTracer.onBeginTransaction(false);
+        try {
+            mDelegate.beginTransactionWithListenerNonExclusive(transactionListener);
+        } catch (RuntimeException e) {
+            mTracer.onEndTransaction();
+            throw e;
+        }
+    }
+
+    @Override
+    public void endTransaction() {
+        try {
+            mDelegate.endTransaction();
+        } finally {
+            mTracer.onEndTransaction();
+        }
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        mTracer.onSetTransactionSuccessful();
+        mDelegate.setTransactionSuccessful();
+    }
+
+    @Override
+    public boolean inTransaction() {
+        return mDelegate.inTransaction();
+    }
+
+    @Override
+    public boolean isDbLockedByCurrentThread() {
+        return mDelegate.isDbLockedByCurrentThread();
+    }
+
+    @Override
+    public boolean yieldIfContendedSafely() {
+        return mDelegate.yieldIfContendedSafely();
+    }
+
+    @Override
+    public boolean yieldIfContendedSafely(long sleepAfterYieldDelay) {
+        return mDelegate.yieldIfContendedSafely(sleepAfterYieldDelay);
+    }
+
+    @Override
+    public int getVersion() {
+        return mDelegate.getVersion();
+    }
+
+    @Override
+    public void setVersion(int version) {
+        mDelegate.setVersion(version);
+    }
+
+    @Override
+    public long getMaximumSize() {
+        return mDelegate.getMaximumSize();
+    }
+
+    @Override
+    public long setMaximumSize(long numBytes) {
+        return mDelegate.setMaximumSize(numBytes);
+    }
+
+    @Override
+    public long getPageSize() {
+        return mDelegate.getPageSize();
+    }
+
+    @Override
+    public void setPageSize(long numBytes) {
+        mDelegate.setPageSize(numBytes);
+    }
+
+    @NonNull
+    @Override
+    public Cursor query(@NonNull String query) {
+        mTracer.onBeginQuery(query, StatementBindings.EMPTY);
+        final Cursor cursor;
+        try {
+            cursor = mDelegate.query(query);
+        } finally {
+            mTracer.onEndQuery(query);
+        }
+        return new TracingCursor(cursor, query, mTracer);
+    }
+
+    @NonNull
+    @Override
+    public Cursor query(@NonNull String query, @NonNull Object[] bindArgs) {
+        mTracer.onBeginQuery(query, bindings(bindArgs));
+        final Cursor cursor;
+        try {
+            cursor = mDelegate.query(query, bindArgs);
+        } finally {
+            mTracer.onEndQuery(query);
+        }
+        return new TracingCursor(cursor, query, mTracer);
+    }
+
+    @NonNull
+    @Override
+    public Cursor query(@NonNull SupportSQLiteQuery query) {
+        final String sql = query.getSql();
+        mTracer.onBeginQuery(sql, bindings(query));
+        final Cursor cursor;
+        try {
+            cursor = mDelegate.query(query);
+        } finally {
+            mTracer.onEndQuery(sql);
+        }
+        return new TracingCursor(cursor, sql, mTracer);
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    @NonNull
+    @Override
+    public Cursor query(@NonNull SupportSQLiteQuery query,
+            @NonNull CancellationSignal cancellationSignal) {
+        final String sql = query.getSql();
+        mTracer.onBeginQuery(sql, bindings(query));
+        final Cursor cursor;
+        try {
+            cursor = mDelegate.query(query, cancellationSignal);
+        } finally {
+            mTracer.onEndQuery(sql);
+        }
+        return new TracingCursor(cursor, sql, mTracer);
+    }
+
+    private StatementBindings bindings(Object[] bindArgs) {
+        return mTracer.isBindingsEnabled() ? StatementBindings.of(bindArgs)
+                : StatementBindings.EMPTY;
+    }
+
+    private StatementBindings bindings(SupportSQLiteQuery query) {
+        if (!mTracer.isBindingsEnabled()) {
+            return StatementBindings.EMPTY;
+        }
+        final StatementBindings bindings = new StatementBindings();
+        query.bindTo(bindings.asProgram());
+        return bindings;
+    }
+
+    @Override
+    public long insert(@NonNull String table, int conflictAlgorithm, @NonNull ContentValues values)
+            throws SQLException {
+        return mDelegate.insert(table, conflictAlgorithm, values);
+    }
+
+    @Override
+    public int delete(@NonNull String table, @NonNull String whereClause,
+            @NonNull Object[] whereArgs) {
+        return mDelegate.delete(table, whereClause, whereArgs);
+    }
+
+    @Override
+    public int update(@NonNull String table, int conflictAlgorithm, @NonNull ContentValues values,
+            @NonNull String whereClause,
+            @NonNull Object[] whereArgs) {
+        return mDelegate.update(table, conflictAlgorithm, values, whereClause,
+                whereArgs);
+    }
+
+    @Override
+    public void execSQL(@NonNull String sql) throws SQLException {
+        mTracer.onBeginStatement(sql, StatementBindings.EMPTY);
+        try {
+            mDelegate.execSQL(sql);
+        } finally {
+            mTracer.onEndStatement(sql);
+        }
+    }
+
+    @Override
+    public void execSQL(@NonNull String sql, @NonNull Object[] bindArgs) throws SQLException {
+        mTracer.onBeginStatement(sql, bindings(bindArgs));
+        try {
+            mDelegate.execSQL(sql, bindArgs);
+        } finally {
+            mTracer.onEndStatement(sql);
+        }
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return mDelegate.isReadOnly();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return mDelegate.isOpen();
+    }
+
+    @Override
+    public boolean needUpgrade(int newVersion) {
+        return mDelegate.needUpgrade(newVersion);
+    }
+
+    @NonNull
+    @Override
+    public String getPath() {
+        return mDelegate.getPath();
+    }
+
+    @Override
+    public void setLocale(@NonNull Locale locale) {
+        mDelegate.setLocale(locale);
+    }
+
+    @Override
+    public void setMaxSqlCacheSize(int cacheSize) {
+        mDelegate.setMaxSqlCacheSize(cacheSize);
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    @Override
+    public void setForeignKeyConstraintsEnabled(boolean enable) {
+        mDelegate.setForeignKeyConstraintsEnabled(enable);
+    }
+
+    @Override
+    public boolean enableWriteAheadLogging() {
+        return mDelegate.enableWriteAheadLogging();
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    @Override
+    public void disableWriteAheadLogging() {
+        mDelegate.disableWriteAheadLogging();
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    @Override
+    public boolean isWriteAheadLoggingEnabled() {
+        return mDelegate.isWriteAheadLoggingEnabled();
+    }
+
+    @NonNull
+    @Override
+    public List<Pair<String, String>> getAttachedDbs() {
+        return mDelegate.getAttachedDbs();
+    }
+
+    @Override
+    public boolean isDatabaseIntegrityOk() {
+        return mDelegate.isDatabaseIntegrityOk();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mDelegate.close();
+    }
+}
@@ -14,6 +14,7 @@
  * limitations under the License.
  */
 
+
 package com.zeoflow.depot;
 
 import android.os.Build;
@@ -24,20 +25,19 @@ import androidx.annotation.RequiresApi;
 import com.zeoflow.sqlite.db.SupportSQLiteDatabase;
 import com.zeoflow.sqlite.db.SupportSQLiteOpenHelper;
 
-import java.util.concurrent.Executor;
-
-final class QueryInterceptorOpenHelper implements SupportSQLiteOpenHelper, DelegatingOpenHelper {
+final class TracingOpenHelper implements SupportSQLiteOpenHelper, DelegatingOpenHelper {
 
     private final SupportSQLiteOpenHelper mDelegate;
-    private final DepotDatabase.QueryCallback mQueryCallback;
-    private final Executor mQueryCallbackExecutor;
+    private final DepotDatabase.Tracer mTracer;
+    // the wrapper of the last database returned by the delegate, which returns the same one
+    // until it is closed
+    @Nullable
+    private volatile TracingDatabase mDatabase;
 
-    QueryInterceptorOpenHelper(@NonNull SupportSQLiteOpenHelper supportSQLiteOpenHelper,
-                               @NonNull DepotDatabase.QueryCallback queryCallback, @NonNull Executor
-            queryCallbackExecutor) {
+    TracingOpenHelper(@NonNull SupportSQLiteOpenHelper supportSQLiteOpenHelper,
+            @NonNull DepotDatabase.Tracer tracer) {
         mDelegate = supportSQLiteOpenHelper;
-        mQueryCallback = queryCallback;
-        mQueryCallbackExecutor = queryCallbackExecutor;
+        mTracer = tracer;
     }
 
     @Nullable
@@ -54,19 +54,27 @@ final class QueryInterceptorOpenHelper implements SupportSQLiteOpenHelper, Deleg
 
     @Override
     public SupportSQLiteDatabase getWritableDatabase() {
-        return new QueryInterceptorDatabase(mDelegate.getWritableDatabase(), mQueryCallback,
-                mQueryCallbackExecutor);
+        return wrap(mDelegate.getWritableDatabase());
     }
 
     @Override
     public SupportSQLiteDatabase getReadableDatabase() {
-        return new QueryInterceptorDatabase(mDelegate.getReadableDatabase(), mQueryCallback,
-                mQueryCallbackExecutor);
+        return wrap(mDelegate.getReadableDatabase());
+    }
+
+    private SupportSQLiteDatabase wrap(SupportSQLiteDatabase db) {
+        TracingDatabase wrapper = mDatabase;
+        if (wrapper == null || wrapper.getDelegate() != db) {
+            wrapper = new TracingDatabase(db, mTracer);
+            mDatabase = wrapper;
+        }
+        return wrapper;
     }
 
     @Override
     public void close() {
         mDelegate.close();
+        mDatabase = null;
     }
 
     @Override
@@ -74,5 +82,4 @@ final class QueryInterceptorOpenHelper implements SupportSQLiteOpenHelper, Deleg
     public SupportSQLiteOpenHelper getDelegate() {
         return mDelegate;
     }
-
 }
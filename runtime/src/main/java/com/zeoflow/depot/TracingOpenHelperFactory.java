@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+import com.zeoflow.sqlite.db.SupportSQLiteOpenHelper;
+
+/**
+ * Implements {@link SupportSQLiteOpenHelper.Factory} to wrap TracingOpenHelper. Every helper it
+ * creates, including the ones of reader connections, reports to the same tracer.
+ */
+final class TracingOpenHelperFactory implements SupportSQLiteOpenHelper.Factory {
+
+    private final SupportSQLiteOpenHelper.Factory mDelegate;
+    private final DepotDatabase.Tracer mTracer;
+
+    TracingOpenHelperFactory(@NonNull SupportSQLiteOpenHelper.Factory factory,
+            @NonNull DepotDatabase.Tracer tracer) {
+        mDelegate = factory;
+        mTracer = tracer;
+    }
+
+    @NonNull
+    @Override
+    public SupportSQLiteOpenHelper create(
+            @NonNull SupportSQLiteOpenHelper.Configuration configuration) {
+        return new TracingOpenHelper(mDelegate.create(configuration), mTracer);
+    }
+}
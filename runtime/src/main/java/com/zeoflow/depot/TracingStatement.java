@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.zeoflow.sqlite.db.SupportSQLiteStatement;
+
+import java.io.IOException;
+
+/**
+ * Implements {@link SupportSQLiteStatement} to report each execution to a
+ * {@link DepotDatabase.Tracer}. Arguments are only recorded if the tracer reads them.
+ */
+final class TracingStatement implements SupportSQLiteStatement {
+
+    private final SupportSQLiteStatement mDelegate;
+    private final String mSql;
+    private final DepotDatabase.Tracer mTracer;
+    @Nullable
+    private final StatementBindings mBindings;
+
+    TracingStatement(@NonNull SupportSQLiteStatement compileStatement, @NonNull String sql,
+            @NonNull DepotDatabase.Tracer tracer) {
+        mDelegate = compileStatement;
+        mSql = sql;
+        mTracer = tracer;
+        mBindings = tracer.isBindingsEnabled() ? new StatementBindings() : null;
+    }
+
+    @Override
+    public void execute() {
+        begin();
+        try {
+            mDelegate.execute();
+        } finally {
+            mTracer.onEndStatement(mSql);
+        }
+    }
+
+    @Override
+    public int executeUpdateDelete() {
+        begin();
+        try {
+            return mDelegate.executeUpdateDelete();
+        } finally {
+            mTracer.onEndStatement(mSql);
+        }
+    }
+
+    @Override
+    public long executeInsert() {
+        begin();
+        try {
+            return mDelegate.executeInsert();
+        } finally {
+            mTracer.onEndStatement(mSql);
+        }
+    }
+
+    @Override
+    public long simpleQueryForLong() {
+        begin();
+        try {
+            return mDelegate.simpleQueryForLong();
+        } finally {
+            mTracer.onEndStatement(mSql);
+        }
+    }
+
+    @Override
+    public String simpleQueryForString() {
+        begin();
+        try {
+            return mDelegate.simpleQueryForString();
+        } finally {
+            mTracer.onEndStatement(mSql);
+        }
+    }
+
+    private void begin() {
+        mTracer.onBeginStatement(mSql, mBindings == null ? StatementBindings.EMPTY : mBindings);
+    }
+
+    @Override
+    public void bindNull(int index) {
+        if (mBindings != null) {
+            mBindings.bindNull(index);
+        }
+        mDelegate.bindNull(index);
+    }
+
+    @Override
+    public void bindLong(int index, long value) {
+        if (mBindings != null) {
+            mBindings.bindLong(index, value);
+        }
+        mDelegate.bindLong(index, value);
+    }
+
+    @Override
+    public void bindDouble(int index, double value) {
+        if (mBindings != null) {
+            mBindings.bindDouble(index, value);
+        }
+        mDelegate.bindDouble(index, value);
+    }
+
+    @Override
+    public void bindString(int index, String value) {
+        if (mBindings != null) {
+            mBindings.bindString(index, value);
+        }
+        mDelegate.bindString(index, value);
+    }
+
+    @Override
+    public void bindBlob(int index, byte[] value) {
+        if (mBindings != null) {
+            mBindings.bindBlob(index, value);
+        }
+        mDelegate.bindBlob(index, value);
+    }
+
+    @Override
+    public void clearBindings() {
+        if (mBindings != null) {
+            mBindings.clear();
+        }
+        mDelegate.clearBindings();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mDelegate.close();
+    }
+}
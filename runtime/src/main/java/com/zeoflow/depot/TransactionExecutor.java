@@ -14,12 +14,15 @@
  * limitations under the License.
  */
 
+
 package com.zeoflow.depot;
 
 import androidx.annotation.NonNull;
 
-import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Executor wrapper for performing database transactions serially.
@@ -27,38 +30,98 @@ import java.util.concurrent.Executor;
  * Since database transactions are exclusive, this executor ensures that transactions are performed
  * in-order and one at a time, preventing threads from blocking each other when multiple concurrent
  * transactions are attempted.
+ * <p>
+ * Tasks are queued in a lock-free queue that any thread can add to while a single drain task
+ * runs them on the delegate executor. A drain runs up to {@code maxTasksPerHandoff} tasks before
+ * it hands the thread back to the delegate, so a burst of transactions doesn't cost a thread
+ * handoff each while other work of the delegate still gets to run.
  */
 class TransactionExecutor implements Executor {
 
     private final Executor mExecutor;
-    private final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
-    private Runnable mActive;
+    private final int mMaxTasksPerHandoff;
+    private final ConcurrentLinkedQueue<Task> mTasks = new ConcurrentLinkedQueue<>();
+    // The number of queued tasks, including the running one. The drain is scheduled by the task
+    // that moves it from 0 to 1 and only the drain moves it back to 0, so a single drain runs at a
+    // time.
+    private final AtomicInteger mQueueDepth = new AtomicInteger();
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private final AtomicLong mExecutedCount = new AtomicLong();
+    private final AtomicLong mHandoffCount = new AtomicLong();
+    private final AtomicLong mTotalWaitNanos = new AtomicLong();
+    private final AtomicLong mMaxWaitNanos = new AtomicLong();
 
-    TransactionExecutor(@NonNull Executor executor) {
+    TransactionExecutor(@NonNull Executor executor, int maxTasksPerHandoff) {
         mExecutor = executor;
+        mMaxTasksPerHandoff = Math.max(1, maxTasksPerHandoff);
     }
 
     @Override
-    public synchronized void execute(final Runnable command) {
-        mTasks.offer(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    command.run();
-                } finally {
-                    scheduleNext();
+    public void execute(final Runnable command) {
+        mTasks.offer(new Task(command));
+        if (mQueueDepth.getAndIncrement() == 0) {
+            scheduleDrain();
+        }
+    }
+
+    private void scheduleDrain() {
+        mHandoffCount.incrementAndGet();
+        mExecutor.execute(mDrain);
+    }
+
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    void drain() {
+        for (int ran = 1; ; ran++) {
+            // The task is in the queue, it was offered before the depth was incremented.
+            final Task task = mTasks.poll();
+            recordWait(System.nanoTime() - task.mEnqueueTimeNanos);
+            try {
+                task.mCommand.run();
+            } catch (RuntimeException | Error e) {
+                if (mQueueDepth.decrementAndGet() != 0) {
+                    scheduleDrain();
                 }
+                throw e;
+            } finally {
+                mExecutedCount.incrementAndGet();
+            }
+            if (mQueueDepth.decrementAndGet() == 0) {
+                return;
+            }
+            if (ran == mMaxTasksPerHandoff) {
+                scheduleDrain();
+                return;
             }
-        });
-        if (mActive == null) {
-            scheduleNext();
         }
     }
 
-    @SuppressWarnings("WeakerAccess")
-    synchronized void scheduleNext() {
-        if ((mActive = mTasks.poll()) != null) {
-            mExecutor.execute(mActive);
+    private void recordWait(long waitNanos) {
+        mTotalWaitNanos.addAndGet(waitNanos);
+        long max;
+        do {
+            max = mMaxWaitNanos.get();
+        } while (waitNanos > max && !mMaxWaitNanos.compareAndSet(max, waitNanos));
+    }
+
+    @NonNull
+    TransactionExecutorStats getStats() {
+        return new TransactionExecutorStats(mQueueDepth.get(), mExecutedCount.get(),
+                mHandoffCount.get(), mTotalWaitNanos.get(), mMaxWaitNanos.get());
+    }
+
+    private static final class Task {
+        final Runnable mCommand;
+        final long mEnqueueTimeNanos;
+
+        Task(Runnable command) {
+            mCommand = command;
+            mEnqueueTimeNanos = System.nanoTime();
         }
     }
 }
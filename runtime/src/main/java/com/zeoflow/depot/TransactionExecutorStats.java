@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A point in time snapshot of the serial executor that runs the asynchronous transactions of a
+ * {@link DepotDatabase}.
+ *
+ * @see DepotDatabase#getTransactionExecutorStats()
+ * @see DepotDatabase.Builder#setMaxTransactionsPerHandoff(int)
+ */
+public final class TransactionExecutorStats {
+    private final int mQueueDepth;
+    private final long mExecutedCount;
+    private final long mHandoffCount;
+    private final long mTotalWaitTimeNanos;
+    private final long mMaxWaitTimeNanos;
+
+    TransactionExecutorStats(int queueDepth, long executedCount, long handoffCount,
+            long totalWaitTimeNanos, long maxWaitTimeNanos) {
+        mQueueDepth = queueDepth;
+        mExecutedCount = executedCount;
+        mHandoffCount = handoffCount;
+        mTotalWaitTimeNanos = totalWaitTimeNanos;
+        mMaxWaitTimeNanos = maxWaitTimeNanos;
+    }
+
+    /**
+     * @return The number of tasks waiting to run, including the running one.
+     */
+    public int getQueueDepth() {
+        return mQueueDepth;
+    }
+
+    /**
+     * @return The number of tasks that ran.
+     */
+    public long getExecutedCount() {
+        return mExecutedCount;
+    }
+
+    /**
+     * @return The number of times tasks were handed to the delegate executor. Each handoff runs
+     * one or more queued tasks.
+     */
+    public long getHandoffCount() {
+        return mHandoffCount;
+    }
+
+    /**
+     * @return The total time tasks spent in the queue before they ran, in nanoseconds.
+     */
+    public long getTotalWaitTimeNanos() {
+        return mTotalWaitTimeNanos;
+    }
+
+    /**
+     * @return The longest time a single task spent in the queue, in nanoseconds.
+     */
+    public long getMaxWaitTimeNanos() {
+        return mMaxWaitTimeNanos;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "TransactionExecutorStats{"
+                + "queueDepth=" + mQueueDepth
+                + ", executed=" + mExecutedCount
+                + ", handoffs=" + mHandoffCount
+                + ", totalWaitNanos=" + mTotalWaitTimeNanos
+                + ", maxWaitNanos=" + mMaxWaitTimeNanos
+                + '}';
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.paging;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import com.zeoflow.depot.DepotDatabase;
+import com.zeoflow.depot.DepotSQLiteQuery;
+import com.zeoflow.depot.InvalidationTracker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A data source that pages an ordered query by seeking to the sort key of the previous page
+ * instead of skipping rows with {@code OFFSET}.
+ * <p>
+ * The generated code uses it for queries that end with an {@code ORDER BY} of non null columns
+ * of a single table. The primary key of the table is appended to the sort key so that every row
+ * has a distinct key. A page that follows or precedes an already loaded page is loaded with
+ * <pre>
+ * SELECT ... WHERE (original condition) AND (k1 &gt; ? OR (k1 = ? AND k2 &gt; ?) ...)
+ *     ORDER BY k1, k2 ... LIMIT ?
+ * </pre>
+ * which an index on the sort key answers without walking the earlier rows, so a page costs the
+ * same at any depth. Only jumps to a position next to no loaded page fall back to
+ * {@code LIMIT/OFFSET}. The rows are only counted when placeholders are enabled.
+ * <p>
+ * Like {@link LimitOffsetDataSource}, it is used for both Paging2 and Paging3, the latter
+ * registering its observer lazily.
+ *
+ * @param <T> Data type returned by the data source.
+ *
+ * @hide
+ */
+@SuppressWarnings("deprecation")
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+public abstract class KeysetDataSource<T> extends androidx.paging.PositionalDataSource<T> {
+    private final DepotSQLiteQuery mSourceQuery;
+    private final String mCountQuery;
+    private final String mOffsetQuery;
+    private final String mForwardQuery;
+    private final String mBackwardQuery;
+    private final String[] mKeyColumns;
+    private final int mSeekArgCount;
+    private final DepotDatabase mDb;
+    @SuppressWarnings("FieldCanBeLocal")
+    private final InvalidationTracker.Observer mObserver;
+    private final boolean mInTransaction;
+    private final AtomicBoolean mRegisteredObserver = new AtomicBoolean(false);
+    // The sort keys of the first and last rows of the loaded pages, by position.
+    private final ConcurrentHashMap<Integer, Object[]> mKeys = new ConcurrentHashMap<>();
+
+    /**
+     * @param orderByClause The {@code ORDER BY} clause the query ends with.
+     * @param keyColumns    The columns of the sort key, the columns of the {@code ORDER BY}
+     *                      followed by the primary key columns it doesn't contain.
+     * @param descending    For each key column, true if it is sorted in descending order.
+     */
+    protected KeysetDataSource(
+            @NonNull DepotDatabase db,
+            @NonNull DepotSQLiteQuery query,
+            boolean inTransaction,
+            boolean registerObserverImmediately,
+            @NonNull String orderByClause,
+            @NonNull String[] keyColumns,
+            @NonNull boolean[] descending,
+            @NonNull String... tables) {
+        mDb = db;
+        mSourceQuery = query;
+        mInTransaction = inTransaction;
+        mKeyColumns = keyColumns;
+        final String sql = trimQuery(query.getSql());
+        if (!sql.endsWith(orderByClause)) {
+            throw new IllegalArgumentException("The query must end with " + orderByClause);
+        }
+        final String head = sql.substring(0, sql.length() - orderByClause.length()).trim();
+        final String orderBy = createOrderBy(keyColumns, descending, false);
+        mCountQuery = "SELECT COUNT(*) FROM ( " + head + " )";
+        mOffsetQuery = head + orderBy + " LIMIT ? OFFSET ?";
+        mForwardQuery = addCondition(head, createSeekPredicate(keyColumns, descending, false))
+                + orderBy + " LIMIT ?";
+        mBackwardQuery = addCondition(head, createSeekPredicate(keyColumns, descending, true))
+                + createOrderBy(keyColumns, descending, true) + " LIMIT ?";
+        mSeekArgCount = keyColumns.length * (keyColumns.length + 1) / 2;
+        mObserver = new InvalidationTracker.Observer(tables) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                invalidate();
+            }
+        };
+        if (registerObserverImmediately) {
+            registerObserverIfNecessary();
+        }
+    }
+
+    private static String trimQuery(String sql) {
+        int end = sql.length();
+        while (end > 0 && (Character.isWhitespace(sql.charAt(end - 1))
+                || sql.charAt(end - 1) == ';')) {
+            end--;
+        }
+        return sql.substring(0, end);
+    }
+
+    private static String createOrderBy(String[] keyColumns, boolean[] descending,
+            boolean reverse) {
+        final StringBuilder builder = new StringBuilder(" ORDER BY ");
+        for (int i = 0; i < keyColumns.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            appendColumn(builder, keyColumns[i]);
+            builder.append(descending[i] != reverse ? " DESC" : " ASC");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Creates {@code k1 > ? OR (k1 = ? AND k2 > ?) OR ...}, with {@code <} for the columns that
+     * are sorted the other way.
+     */
+    private static String createSeekPredicate(String[] keyColumns, boolean[] descending,
+            boolean reverse) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < keyColumns.length; i++) {
+            if (i > 0) {
+                builder.append(" OR ");
+            }
+            builder.append('(');
+            for (int j = 0; j < i; j++) {
+                appendColumn(builder, keyColumns[j]);
+                builder.append(" = ? AND ");
+            }
+            appendColumn(builder, keyColumns[i]);
+            builder.append(descending[i] != reverse ? " < ?" : " > ?");
+            builder.append(')');
+        }
+        return builder.toString();
+    }
+
+    private static void appendColumn(StringBuilder builder, String column) {
+        builder.append('`').append(column.replace("`", "``")).append('`');
+    }
+
+    /**
+     * Adds the condition to the top level {@code WHERE} clause of the query, wrapping the
+     * original condition so that its {@code OR}s don't bind the new condition.
+     */
+    private static String addCondition(String head, String condition) {
+        final int where = findTopLevelWhere(head);
+        if (where < 0) {
+            return head + " WHERE " + condition;
+        }
+        final int conditionStart = where + "WHERE".length();
+        return head.substring(0, conditionStart) + " (" + head.substring(conditionStart)
+                + ") AND (" + condition + ")";
+    }
+
+    /**
+     * @return The index of the {@code WHERE} keyword that is not in parentheses, a literal or a
+     * quoted identifier, or -1 if there is none.
+     */
+    private static int findTopLevelWhere(String sql) {
+        int depth = 0;
+        int index = 0;
+        while (index < sql.length()) {
+            final char c = sql.charAt(index);
+            if (c == '\'' || c == '"' || c == '`' || c == '[') {
+                final int end = sql.indexOf(c == '[' ? ']' : c, index + 1);
+                index = end < 0 ? sql.length() : end + 1;
+            } else if (c == '(') {
+                depth++;
+                index++;
+            } else if (c == ')') {
+                depth--;
+                index++;
+            } else if (Character.isLetter(c) || c == '_') {
+                final int start = index;
+                while (index < sql.length() && (Character.isLetterOrDigit(sql.charAt(index))
+                        || sql.charAt(index) == '_')) {
+                    index++;
+                }
+                if (depth == 0 && index - start == 5 && sql.regionMatches(true, start, "WHERE", 0,
+                        5)) {
+                    return start;
+                }
+            } else {
+                index++;
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    void registerObserverIfNecessary() {
+        if (mRegisteredObserver.compareAndSet(false, true)) {
+            mDb.getInvalidationTracker().addWeakObserver(mObserver);
+        }
+    }
+
+    /**
+     * Count number of rows query can return
+     *
+     * @hide
+     */
+    @SuppressWarnings("WeakerAccess")
+    public int countItems() {
+        registerObserverIfNecessary();
+        final DepotSQLiteQuery sqLiteQuery = DepotSQLiteQuery.acquire(mCountQuery,
+                mSourceQuery.getArgCount());
+        sqLiteQuery.copyArgumentsFrom(mSourceQuery);
+        Cursor cursor = mDb.query(sqLiteQuery);
+        try {
+            if (cursor.moveToFirst()) {
+                return cursor.getInt(0);
+            }
+            return 0;
+        } finally {
+            cursor.close();
+            sqLiteQuery.release();
+        }
+    }
+
+    @Override
+    public boolean isInvalid() {
+        registerObserverIfNecessary();
+        mDb.getInvalidationTracker().refreshVersionsSync();
+        return super.isInvalid();
+    }
+
+    @NonNull
+    @SuppressWarnings("WeakerAccess")
+    protected abstract List<T> convertRows(@NonNull Cursor cursor);
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void loadInitial(@NonNull LoadInitialParams params,
+            @NonNull LoadInitialCallback<T> callback) {
+        registerObserverIfNecessary();
+        if (!params.placeholdersEnabled) {
+            // Without placeholders the total count is not needed, pages are loaded until one
+            // comes back short.
+            final int position = Math.max(0, params.requestedStartPosition);
+            callback.onResult(loadRange(position, params.requestedLoadSize), position);
+            return;
+        }
+        List<T> list = Collections.emptyList();
+        int totalCount;
+        int firstLoadPosition = 0;
+        mDb.beginTransaction();
+        try {
+            totalCount = countItems();
+            if (totalCount != 0) {
+                // bound the size requested, based on known count
+                firstLoadPosition = computeInitialLoadPosition(params, totalCount);
+                int firstLoadSize = computeInitialLoadSize(params, firstLoadPosition, totalCount);
+                list = loadRange(firstLoadPosition, firstLoadSize);
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+        callback.onResult(list, firstLoadPosition, totalCount);
+    }
+
+    @Override
+    public void loadRange(@NonNull LoadRangeParams params,
+            @NonNull LoadRangeCallback<T> callback) {
+        callback.onResult(loadRange(params.startPosition, params.loadSize));
+    }
+
+    /**
+     * Return the rows from startPos to startPos + loadCount
+     *
+     * @hide
+     */
+    @SuppressWarnings("deprecation")
+    @NonNull
+    public List<T> loadRange(int startPosition, int loadCount) {
+        if (loadCount <= 0) {
+            return Collections.emptyList();
+        }
+        if (mInTransaction) {
+            mDb.beginTransaction();
+            try {
+                List<T> rows = queryRange(startPosition, loadCount);
+                mDb.setTransactionSuccessful();
+                return rows;
+            } finally {
+                mDb.endTransaction();
+            }
+        }
+        return queryRange(startPosition, loadCount);
+    }
+
+    private List<T> queryRange(int startPosition, int loadCount) {
+        final Object[] previousKey = startPosition == 0 ? null : mKeys.get(startPosition - 1);
+        final Object[] nextKey = previousKey != null ? null : mKeys.get(startPosition + loadCount);
+        final DepotSQLiteQuery sqLiteQuery;
+        final boolean backward;
+        if (previousKey != null) {
+            sqLiteQuery = acquireSeekQuery(mForwardQuery, previousKey, loadCount);
+            backward = false;
+        } else if (nextKey != null) {
+            sqLiteQuery = acquireSeekQuery(mBackwardQuery, nextKey, loadCount);
+            backward = true;
+        } else {
+            sqLiteQuery = DepotSQLiteQuery.acquire(mOffsetQuery, mSourceQuery.getArgCount() + 2);
+            sqLiteQuery.copyArgumentsFrom(mSourceQuery);
+            sqLiteQuery.bindLong(sqLiteQuery.getArgCount() - 1, loadCount);
+            sqLiteQuery.bindLong(sqLiteQuery.getArgCount(), startPosition);
+            backward = false;
+        }
+        final Cursor cursor = mDb.query(sqLiteQuery);
+        try {
+            final int count = cursor.getCount();
+            if (count == 0) {
+                return Collections.emptyList();
+            }
+            if (backward) {
+                // The rows end right before the next page.
+                final int first = startPosition + loadCount - count;
+                rememberKey(cursor, 0, first + count - 1);
+                rememberKey(cursor, count - 1, first);
+            } else {
+                rememberKey(cursor, 0, startPosition);
+                rememberKey(cursor, count - 1, startPosition + count - 1);
+            }
+            cursor.moveToPosition(-1);
+            final List<T> rows = convertRows(cursor);
+            if (!backward) {
+                return rows;
+            }
+            final List<T> reversed = new ArrayList<>(rows);
+            Collections.reverse(reversed);
+            return reversed;
+        } finally {
+            cursor.close();
+            sqLiteQuery.release();
+        }
+    }
+
+    private DepotSQLiteQuery acquireSeekQuery(String sql, Object[] key, int loadCount) {
+        final int sourceArgCount = mSourceQuery.getArgCount();
+        final DepotSQLiteQuery sqLiteQuery = DepotSQLiteQuery.acquire(sql,
+                sourceArgCount + mSeekArgCount + 1);
+        sqLiteQuery.copyArgumentsFrom(mSourceQuery);
+        int index = sourceArgCount + 1;
+        for (int i = 0; i < key.length; i++) {
+            for (int j = 0; j <= i; j++) {
+                bindKey(sqLiteQuery, index++, key[j]);
+            }
+        }
+        sqLiteQuery.bindLong(index, loadCount);
+        return sqLiteQuery;
+    }
+
+    private static void bindKey(DepotSQLiteQuery query, int index, @Nullable Object value) {
+        if (value == null) {
+            query.bindNull(index);
+        } else if (value instanceof Long) {
+            query.bindLong(index, (Long) value);
+        } else if (value instanceof Double) {
+            query.bindDouble(index, (Double) value);
+        } else if (value instanceof byte[]) {
+            query.bindBlob(index, (byte[]) value);
+        } else {
+            query.bindString(index, value.toString());
+        }
+    }
+
+    private void rememberKey(Cursor cursor, int cursorPosition, int position) {
+        cursor.moveToPosition(cursorPosition);
+        final Object[] key = new Object[mKeyColumns.length];
+        for (int i = 0; i < mKeyColumns.length; i++) {
+            final int index = cursor.getColumnIndexOrThrow(mKeyColumns[i]);
+            switch (cursor.getType(index)) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    key[i] = cursor.getLong(index);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    key[i] = cursor.getDouble(index);
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    key[i] = cursor.getBlob(index);
+                    break;
+                case Cursor.FIELD_TYPE_NULL:
+                    key[i] = null;
+                    break;
+                default:
+                    key[i] = cursor.getString(index);
+            }
+        }
+        mKeys.put(position, key);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.depot.util;
+
+import android.database.Cursor;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.RestrictTo;
+
+import com.zeoflow.depot.CloseableIterator;
+import com.zeoflow.depot.DepotSQLiteQuery;
+
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily converts the rows of a cursor. Generated code subclasses this for {@code @Query} methods
+ * that return a {@link CloseableIterator} or a {@link Stream}.
+ * <p>
+ * The cursor, and the query if it was acquired from the pool, is released as soon as the last row
+ * is read or {@link #close()} is called.
+ *
+ * @param <T> The type of the rows.
+ * @hide
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+public abstract class CursorIterator<T> implements CloseableIterator<T> {
+    private final Cursor mCursor;
+    @Nullable
+    private final DepotSQLiteQuery mQuery;
+    private boolean mAdvanced;
+    private boolean mHasNext;
+    private boolean mClosed;
+
+    protected CursorIterator(@NonNull Cursor cursor, @Nullable DepotSQLiteQuery query) {
+        mCursor = cursor;
+        mQuery = query;
+    }
+
+    /**
+     * Converts the row the cursor is positioned on.
+     *
+     * @param cursor The cursor.
+     * @return The converted row.
+     */
+    protected abstract T convert(@NonNull Cursor cursor);
+
+    @Override
+    public boolean hasNext() {
+        if (mClosed) {
+            return false;
+        }
+        if (!mAdvanced) {
+            mHasNext = mCursor.moveToNext();
+            mAdvanced = true;
+            if (!mHasNext) {
+                close();
+            }
+        }
+        return mHasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        mAdvanced = false;
+        try {
+            return convert(mCursor);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        mHasNext = false;
+        try {
+            mCursor.close();
+        } finally {
+            if (mQuery != null) {
+                mQuery.release();
+            }
+        }
+    }
+
+    /**
+     * Wraps this iterator in a sequential {@link Stream}. Closing the stream closes the cursor.
+     *
+     * @return A stream over the remaining rows.
+     */
+    @NonNull
+    @RequiresApi(api = Build.VERSION_CODES.N)
+    public Stream<T> asStream() {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+}
@@ -18,13 +18,16 @@ package com.zeoflow.depot.util;
 
 import android.database.AbstractWindowedCursor;
 import android.database.Cursor;
+import android.database.CursorWrapper;
 import android.os.Build;
 import android.os.CancellationSignal;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
+import com.zeoflow.depot.DaoMethodMetrics;
 import com.zeoflow.depot.DepotDatabase;
+import com.zeoflow.depot.DepotSQLiteQuery;
 import com.zeoflow.sqlite.db.SupportSQLiteDatabase;
 import com.zeoflow.sqlite.db.SupportSQLiteQuery;
 
@@ -81,9 +84,15 @@ public class DBUtil {
     public static Cursor query(@NonNull DepotDatabase db, @NonNull SupportSQLiteQuery sqLiteQuery,
                                boolean maybeCopy, @Nullable CancellationSignal signal) {
         final Cursor cursor = db.query(sqLiteQuery, signal);
-        if (maybeCopy && cursor instanceof AbstractWindowedCursor) {
-            AbstractWindowedCursor windowedCursor = (AbstractWindowedCursor) cursor;
-            int rowsInCursor = windowedCursor.getCount(); // Should fill the window.
+        // The database may wrap the cursor of the connection, e.g. to time it, so the window is
+        // looked up through the wrappers while the wrapper itself is read and closed.
+        Cursor wrappedCursor = cursor;
+        while (wrappedCursor instanceof CursorWrapper) {
+            wrappedCursor = ((CursorWrapper) wrappedCursor).getWrappedCursor();
+        }
+        if (maybeCopy && wrappedCursor instanceof AbstractWindowedCursor) {
+            AbstractWindowedCursor windowedCursor = (AbstractWindowedCursor) wrappedCursor;
+            int rowsInCursor = cursor.getCount(); // Should fill the window.
             int rowsInWindow;
             if (windowedCursor.hasWindow()) {
                 rowsInWindow = windowedCursor.getWindow().getNumRows();
@@ -91,11 +100,31 @@ public class DBUtil {
                 rowsInWindow = rowsInCursor;
             }
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M || rowsInWindow < rowsInCursor) {
-                return CursorUtil.copyAndClose(windowedCursor);
+                return DaoMethodMetrics.countRows(CursorUtil.copyAndClose(cursor));
             }
         }
 
-        return cursor;
+        return DaoMethodMetrics.countRows(cursor);
+    }
+
+    /**
+     * Performs a query whose result is read lazily, one row at a time, on the given database.
+     * <p>
+     * The query is marked as streaming so that the database never copies its whole result, e.g.
+     * to share it with identical queries.
+     *
+     * @param db          The database to perform the query on.
+     * @param sqLiteQuery The query to perform.
+     * @param signal      The cancellation signal to be attached to the query.
+     * @return Result of the query.
+     */
+    @NonNull
+    public static Cursor queryStreaming(@NonNull DepotDatabase db,
+            @NonNull SupportSQLiteQuery sqLiteQuery, @Nullable CancellationSignal signal) {
+        if (sqLiteQuery instanceof DepotSQLiteQuery) {
+            ((DepotSQLiteQuery) sqLiteQuery).setStreaming(true);
+        }
+        return DaoMethodMetrics.countRows(db.query(sqLiteQuery, signal));
     }
 
     /**
@@ -0,0 +1,527 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.sqlite.db.jdbc;
+
+import android.content.ContentResolver;
+import android.database.CharArrayBuffer;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.CursorIndexOutOfBoundsException;
+import android.database.DataSetObserver;
+import android.database.sqlite.SQLiteException;
+import android.net.Uri;
+import android.os.Bundle;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link Cursor} over the rows of a query, read through JDBC one window at a time.
+ * <p>
+ * Like the framework's {@code SQLiteCursor}, the cursor keeps at most one window of rows, about
+ * {@value #WINDOW_SIZE_BYTES} bytes, in memory. The first window also counts all rows of the
+ * result. Moving outside the current window runs the query again and reads the window around
+ * the new position, so the cursor never holds on to a JDBC statement or a connection between
+ * calls. Values keep their SQLite storage class and are converted on read the way a framework
+ * cursor window converts them.
+ */
+final class JdbcCursor implements Cursor {
+    // same as the framework's default cursor window size
+    static final int WINDOW_SIZE_BYTES = 2 * 1024 * 1024;
+    // approximate bytes a cursor window spends on each value besides its data
+    private static final int FIELD_OVERHEAD_BYTES = 8;
+
+    private final WindowReader mReader;
+    private String[] mColumnNames;
+    private int mCount;
+    private List<Object[]> mWindow = Collections.emptyList();
+    private int mWindowStart;
+    // number of rows that fit in the last full window, used to place the next one
+    private int mWindowCapacity;
+    private int mPosition = -1;
+    private boolean mClosed;
+    private Bundle mExtras;
+
+    private JdbcCursor(WindowReader reader) {
+        mReader = reader;
+    }
+
+    /**
+     * Runs the query and reads its first window.
+     */
+    static JdbcCursor open(WindowReader reader) {
+        JdbcCursor cursor = new JdbcCursor(reader);
+        cursor.fillWindow(0, true);
+        return cursor;
+    }
+
+    /**
+     * Reads the window that contains {@code requiredPosition} from a result set that has not
+     * been moved yet, starting at {@code startPosition} if the window is large enough.
+     *
+     * @param countAllRows Whether to step through the rest of the result set to count its rows.
+     */
+    static Window readWindow(ResultSet resultSet, int startPosition, int requiredPosition,
+            boolean countAllRows) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        String[] columnNames = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnNames[i] = metaData.getColumnLabel(i + 1);
+        }
+        List<Object[]> rows = new ArrayList<>();
+        int windowStart = startPosition;
+        int windowBytes = 0;
+        boolean full = false;
+        int position = 0;
+        while (resultSet.next()) {
+            if (position >= startPosition && !full) {
+                if (windowBytes >= WINDOW_SIZE_BYTES && !rows.isEmpty()) {
+                    if (position > requiredPosition) {
+                        full = true;
+                        if (!countAllRows) {
+                            break;
+                        }
+                    } else {
+                        // the required row does not fit, start over from it
+                        rows.clear();
+                        windowBytes = 0;
+                        windowStart = position;
+                    }
+                }
+                if (!full) {
+                    Object[] row = new Object[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        row[i] = normalize(resultSet.getObject(i + 1));
+                        windowBytes += sizeOf(row[i]);
+                    }
+                    rows.add(row);
+                }
+            }
+            position++;
+        }
+        return new Window(columnNames, rows, windowStart, countAllRows ? position : -1, full);
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Float) {
+            return ((Float) value).doubleValue();
+        }
+        return value;
+    }
+
+    private static int sizeOf(Object value) {
+        if (value instanceof String) {
+            return FIELD_OVERHEAD_BYTES + ((String) value).length() * 2;
+        }
+        if (value instanceof byte[]) {
+            return FIELD_OVERHEAD_BYTES + ((byte[]) value).length;
+        }
+        return FIELD_OVERHEAD_BYTES;
+    }
+
+    private void fillWindow(int requiredPosition, boolean countAllRows) {
+        // same placement as DatabaseUtils.cursorPickFillWindowStartPosition
+        int startPosition = Math.max(requiredPosition - mWindowCapacity / 3, 0);
+        Window window = mReader.read(startPosition, requiredPosition, countAllRows);
+        mColumnNames = window.mColumnNames;
+        mWindow = window.mRows;
+        mWindowStart = window.mStart;
+        if (window.mFull) {
+            mWindowCapacity = window.mRows.size();
+        }
+        if (countAllRows) {
+            mCount = window.mCount;
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @Override
+    public int getPosition() {
+        return mPosition;
+    }
+
+    @Override
+    public boolean move(int offset) {
+        return moveToPosition(mPosition + offset);
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        int count = mCount;
+        if (position >= count) {
+            mPosition = count;
+            return false;
+        }
+        if (position < 0) {
+            mPosition = -1;
+            return false;
+        }
+        mPosition = position;
+        return true;
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        return moveToPosition(0);
+    }
+
+    @Override
+    public boolean moveToLast() {
+        return moveToPosition(mCount - 1);
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return moveToPosition(mPosition + 1);
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        return moveToPosition(mPosition - 1);
+    }
+
+    @Override
+    public boolean isFirst() {
+        return mPosition == 0 && mCount != 0;
+    }
+
+    @Override
+    public boolean isLast() {
+        int count = mCount;
+        return mPosition == count - 1 && count != 0;
+    }
+
+    @Override
+    public boolean isBeforeFirst() {
+        return mCount == 0 || mPosition == -1;
+    }
+
+    @Override
+    public boolean isAfterLast() {
+        return mCount == 0 || mPosition == mCount;
+    }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+        // like AbstractCursor, accept qualified names such as "table.column"
+        int periodIndex = columnName.lastIndexOf('.');
+        if (periodIndex != -1) {
+            columnName = columnName.substring(periodIndex + 1);
+        }
+        for (int i = 0; i < mColumnNames.length; i++) {
+            if (mColumnNames[i].equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getColumnIndexOrThrow(String columnName) throws IllegalArgumentException {
+        int index = getColumnIndex(columnName);
+        if (index < 0) {
+            throw new IllegalArgumentException("column '" + columnName + "' does not exist");
+        }
+        return index;
+    }
+
+    @Override
+    public String getColumnName(int columnIndex) {
+        return mColumnNames[columnIndex];
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mColumnNames.clone();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return mColumnNames.length;
+    }
+
+    @Override
+    public byte[] getBlob(int columnIndex) {
+        Object value = get(columnIndex);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        }
+        if (value instanceof String) {
+            return ((String) value).getBytes(StandardCharsets.UTF_8);
+        }
+        throw new SQLiteException("Unable to convert " + storageClass(value) + " to blob");
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+        Object value = get(columnIndex);
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        if (value instanceof byte[]) {
+            throw new SQLiteException("Unable to convert BLOB to string");
+        }
+        return value.toString();
+    }
+
+    @Override
+    public void copyStringToBuffer(int columnIndex, CharArrayBuffer buffer) {
+        String value = getString(columnIndex);
+        if (value == null) {
+            buffer.sizeCopied = 0;
+            return;
+        }
+        char[] data = buffer.data;
+        int length = value.length();
+        if (data == null || data.length < length) {
+            buffer.data = value.toCharArray();
+        } else {
+            value.getChars(0, length, data, 0);
+        }
+        buffer.sizeCopied = length;
+    }
+
+    @Override
+    public short getShort(int columnIndex) {
+        return (short) getLong(columnIndex);
+    }
+
+    @Override
+    public int getInt(int columnIndex) {
+        return (int) getLong(columnIndex);
+    }
+
+    @Override
+    public long getLong(int columnIndex) {
+        Object value = get(columnIndex);
+        if (value == null) {
+            return 0L;
+        }
+        if (value instanceof Long) {
+            return (Long) value;
+        }
+        if (value instanceof Double) {
+            return ((Double) value).longValue();
+        }
+        if (value instanceof String) {
+            String string = ((String) value).trim();
+            try {
+                return Long.parseLong(string);
+            } catch (NumberFormatException e) {
+                return (long) parseDouble(string);
+            }
+        }
+        throw new SQLiteException("Unable to convert BLOB to long");
+    }
+
+    @Override
+    public float getFloat(int columnIndex) {
+        return (float) getDouble(columnIndex);
+    }
+
+    @Override
+    public double getDouble(int columnIndex) {
+        Object value = get(columnIndex);
+        if (value == null) {
+            return 0.0;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof String) {
+            return parseDouble(((String) value).trim());
+        }
+        throw new SQLiteException("Unable to convert BLOB to double");
+    }
+
+    @Override
+    public int getType(int columnIndex) {
+        Object value = get(columnIndex);
+        if (value == null) {
+            return FIELD_TYPE_NULL;
+        }
+        if (value instanceof Long) {
+            return FIELD_TYPE_INTEGER;
+        }
+        if (value instanceof Double) {
+            return FIELD_TYPE_FLOAT;
+        }
+        if (value instanceof byte[]) {
+            return FIELD_TYPE_BLOB;
+        }
+        return FIELD_TYPE_STRING;
+    }
+
+    @Override
+    public boolean isNull(int columnIndex) {
+        return get(columnIndex) == null;
+    }
+
+    @Override
+    public void deactivate() {
+        // the window is read again on the next access
+        mWindow = Collections.emptyList();
+    }
+
+    @Override
+    public boolean requery() {
+        if (mClosed) {
+            return false;
+        }
+        fillWindow(0, true);
+        mPosition = -1;
+        return true;
+    }
+
+    @Override
+    public void close() {
+        mClosed = true;
+        mWindow = Collections.emptyList();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return mClosed;
+    }
+
+    @Override
+    public void registerContentObserver(ContentObserver observer) {
+        // the cursor never changes once it is created.
+    }
+
+    @Override
+    public void unregisterContentObserver(ContentObserver observer) {
+    }
+
+    @Override
+    public void registerDataSetObserver(DataSetObserver observer) {
+        // the cursor never changes once it is created.
+    }
+
+    @Override
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+    }
+
+    @Override
+    public void setNotificationUri(ContentResolver cr, Uri uri) {
+    }
+
+    @Override
+    public Uri getNotificationUri() {
+        return null;
+    }
+
+    @Override
+    public boolean getWantsAllOnMoveCalls() {
+        return false;
+    }
+
+    @Override
+    public void setExtras(Bundle extras) {
+        mExtras = extras;
+    }
+
+    @Override
+    public Bundle getExtras() {
+        return mExtras == null ? Bundle.EMPTY : mExtras;
+    }
+
+    @Override
+    public Bundle respond(Bundle extras) {
+        return Bundle.EMPTY;
+    }
+
+    private Object get(int columnIndex) {
+        if (mClosed) {
+            throw new IllegalStateException("Cannot read from a closed cursor.");
+        }
+        if (mPosition < 0 || mPosition >= mCount) {
+            throw new CursorIndexOutOfBoundsException(mPosition, mCount);
+        }
+        if (!isInWindow(mPosition)) {
+            fillWindow(mPosition, false);
+            if (!isInWindow(mPosition)) {
+                // rows were deleted since the cursor counted them
+                throw new CursorIndexOutOfBoundsException(mPosition,
+                        mWindowStart + mWindow.size());
+            }
+        }
+        return mWindow.get(mPosition - mWindowStart)[columnIndex];
+    }
+
+    private boolean isInWindow(int position) {
+        return position >= mWindowStart && position < mWindowStart + mWindow.size();
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            // SQLite reads text that is not a number as zero.
+            return 0.0;
+        }
+    }
+
+    private static String storageClass(Object value) {
+        return value instanceof Long ? "INTEGER" : "FLOAT";
+    }
+
+    /**
+     * Reads a window of the query's result, see {@link #readWindow}.
+     */
+    interface WindowReader {
+        Window read(int startPosition, int requiredPosition, boolean countAllRows);
+    }
+
+    /**
+     * Consecutive rows of a query's result.
+     */
+    static final class Window {
+        final String[] mColumnNames;
+        final List<Object[]> mRows;
+        final int mStart;
+        // total number of rows, -1 when they were not counted
+        final int mCount;
+        // whether the window stopped because it ran out of space
+        final boolean mFull;
+
+        Window(String[] columnNames, List<Object[]> rows, int start, int count, boolean full) {
+            mColumnNames = columnNames;
+            mRows = rows;
+            mStart = start;
+            mCount = count;
+            mFull = full;
+        }
+    }
+}
@@ -0,0 +1,996 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.sqlite.db.jdbc;
+
+import static android.text.TextUtils.isEmpty;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteAbortException;
+import android.database.sqlite.SQLiteCantOpenDatabaseException;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabaseCorruptException;
+import android.database.sqlite.SQLiteDatabaseLockedException;
+import android.database.sqlite.SQLiteDatatypeMismatchException;
+import android.database.sqlite.SQLiteDiskIOException;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteFullException;
+import android.database.sqlite.SQLiteReadOnlyDatabaseException;
+import android.database.sqlite.SQLiteTransactionListener;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.util.Pair;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.zeoflow.sqlite.db.SimpleSQLiteQuery;
+import com.zeoflow.sqlite.db.SupportSQLiteDatabase;
+import com.zeoflow.sqlite.db.SupportSQLiteQuery;
+import com.zeoflow.sqlite.db.SupportSQLiteStatement;
+
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Implements {@link SupportSQLiteDatabase} on top of JDBC {@link Connection}s to a SQLite
+ * database.
+ * <p>
+ * Writes go through a single primary connection. A JDBC connection can only be used by one
+ * thread at a time, so every statement on it runs while holding a lock on the connection. A
+ * transaction holds the same lock from {@link #beginTransaction()} until the matching
+ * {@link #endTransaction()}, which gives the same thread confinement the framework database has
+ * for its primary connection.
+ * <p>
+ * Once write-ahead logging is enabled, {@code SELECT} queries from threads that are not in a
+ * transaction run on a small pool of read-only connections instead, so they read the last
+ * committed state without waiting for a writer, like the framework's connection pool.
+ */
+class JdbcSQLiteDatabase implements SupportSQLiteDatabase {
+    private static final String[] CONFLICT_VALUES = new String[]
+            {"", " OR ROLLBACK ", " OR ABORT ", " OR FAIL ", " OR IGNORE ", " OR REPLACE "};
+    private static final Object[] EMPTY_BIND_ARGS = new Object[0];
+    private static final String MEMORY_DB_PATH = ":memory:";
+    private static final int DEFAULT_SQL_CACHE_SIZE = 25;
+    private static final int BUSY_TIMEOUT_MILLIS = 30_000;
+    // same as the framework's default WAL connection pool size
+    private static final int MAX_READER_CONNECTIONS = 4;
+
+    // primary result codes, see https://www.sqlite.org/rescode.html
+    private static final int SQLITE_ABORT = 4;
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+    private static final int SQLITE_READONLY = 8;
+    private static final int SQLITE_IOERR = 10;
+    private static final int SQLITE_CORRUPT = 11;
+    private static final int SQLITE_FULL = 13;
+    private static final int SQLITE_CANTOPEN = 14;
+    private static final int SQLITE_CONSTRAINT = 19;
+    private static final int SQLITE_MISMATCH = 20;
+    private static final int SQLITE_NOTADB = 26;
+
+    private final String mPath;
+    private final ReentrantLock mLock = new ReentrantLock();
+    // guarded by mLock
+    private final Session mPrimary;
+    // guarded by mLock
+    private final ArrayDeque<Transaction> mTransactionStack = new ArrayDeque<>();
+    // guarded by itself
+    private final ArrayDeque<Session> mIdleReaders = new ArrayDeque<>();
+    // guarded by mIdleReaders
+    private final List<Pair<String, Object[]>> mPerConnectionSql = new ArrayList<>();
+    // guarded by mIdleReaders, idle and in use
+    private int mReaderCount;
+    private volatile boolean mReadersEnabled;
+    private volatile int mMaxSqlCacheSize = DEFAULT_SQL_CACHE_SIZE;
+    private volatile boolean mClosed;
+
+    JdbcSQLiteDatabase(Connection connection, String path) {
+        mPrimary = new Session(connection, DEFAULT_SQL_CACHE_SIZE);
+        mPath = path;
+    }
+
+    /**
+     * Opens a JDBC connection to the database file at {@code path}.
+     */
+    static Connection openConnection(String path, boolean readOnly) {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setBusyTimeout(BUSY_TIMEOUT_MILLIS);
+        config.setReadOnly(readOnly);
+        try {
+            return config.createConnection("jdbc:sqlite:" + path);
+        } catch (java.sql.SQLException e) {
+            throw toSQLiteException(e);
+        }
+    }
+
+    @Override
+    public SupportSQLiteStatement compileStatement(String sql) {
+        return new JdbcSQLiteStatement(this, sql);
+    }
+
+    @Override
+    public void beginTransaction() {
+        beginTransaction(null, true);
+    }
+
+    @Override
+    public void beginTransactionNonExclusive() {
+        beginTransaction(null, false);
+    }
+
+    @Override
+    public void beginTransactionWithListener(SQLiteTransactionListener transactionListener) {
+        beginTransaction(transactionListener, true);
+    }
+
+    @Override
+    public void beginTransactionWithListenerNonExclusive(
+            SQLiteTransactionListener transactionListener) {
+        beginTransaction(transactionListener, false);
+    }
+
+    private void beginTransaction(@Nullable SQLiteTransactionListener listener,
+            boolean exclusive) {
+        JfrTracer.TransactionEvent event = JfrTracer.beginTransaction(exclusive);
+        mLock.lock();
+        boolean began = false;
+        try {
+            boolean outermost = mTransactionStack.isEmpty();
+            if (outermost) {
+                execute(exclusive ? "BEGIN EXCLUSIVE;" : "BEGIN IMMEDIATE;", EMPTY_BIND_ARGS);
+            }
+            if (listener != null) {
+                try {
+                    listener.onBegin();
+                } catch (RuntimeException e) {
+                    if (outermost) {
+                        execute("ROLLBACK;", EMPTY_BIND_ARGS);
+                    }
+                    throw e;
+                }
+            }
+            mTransactionStack.push(new Transaction(listener, event));
+            began = true;
+        } finally {
+            if (!began) {
+                mLock.unlock();
+                JfrTracer.endTransaction(event, false);
+            }
+        }
+    }
+
+    @Override
+    public void endTransaction() {
+        Transaction transaction = currentTransaction();
+        mTransactionStack.pop();
+        boolean successful = transaction.mMarkedSuccessful && !transaction.mChildFailed;
+        try {
+            RuntimeException listenerError = null;
+            if (transaction.mListener != null) {
+                try {
+                    if (successful) {
+                        transaction.mListener.onCommit();
+                    } else {
+                        transaction.mListener.onRollback();
+                    }
+                } catch (RuntimeException e) {
+                    listenerError = e;
+                    successful = false;
+                }
+            }
+            Transaction parent = mTransactionStack.peek();
+            if (parent == null) {
+                execute(successful ? "COMMIT;" : "ROLLBACK;", EMPTY_BIND_ARGS);
+            } else if (!successful) {
+                parent.mChildFailed = true;
+            }
+            if (listenerError != null) {
+                throw listenerError;
+            }
+        } finally {
+            // releases the hold taken when the transaction began
+            mLock.unlock();
+            JfrTracer.endTransaction(transaction.mEvent, successful);
+        }
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        Transaction transaction = currentTransaction();
+        if (transaction.mMarkedSuccessful) {
+            throw new IllegalStateException("Cannot perform this operation because the"
+                    + " transaction has already been marked successful. The only thing you can"
+                    + " do now is call endTransaction().");
+        }
+        transaction.mMarkedSuccessful = true;
+    }
+
+    private Transaction currentTransaction() {
+        Transaction transaction = mLock.isHeldByCurrentThread() ? mTransactionStack.peek() : null;
+        if (transaction == null) {
+            throw new IllegalStateException("Cannot perform this operation because there is no"
+                    + " current transaction.");
+        }
+        return transaction;
+    }
+
+    @Override
+    public boolean inTransaction() {
+        return mLock.isHeldByCurrentThread() && !mTransactionStack.isEmpty();
+    }
+
+    @Override
+    public boolean isDbLockedByCurrentThread() {
+        return mLock.isHeldByCurrentThread();
+    }
+
+    @Override
+    public boolean yieldIfContendedSafely() {
+        // there is a single primary connection, a transaction is never handed over to another
+        // thread.
+        return false;
+    }
+
+    @Override
+    public boolean yieldIfContendedSafely(long sleepAfterYieldDelay) {
+        return false;
+    }
+
+    @Override
+    public boolean isExecPerConnectionSQLSupported() {
+        return true;
+    }
+
+    @Override
+    public void execPerConnectionSQL(@NonNull String sql, @Nullable Object[] bindArgs) {
+        Object[] args = bindArgs == null ? EMPTY_BIND_ARGS : bindArgs.clone();
+        execSQL(sql, args);
+        synchronized (mIdleReaders) {
+            // readers run it the next time they are acquired, including ones opened later
+            mPerConnectionSql.add(new Pair<>(sql, args));
+        }
+    }
+
+    @Override
+    public int getVersion() {
+        return (int) simpleQueryForLong("PRAGMA user_version;", EMPTY_BIND_ARGS);
+    }
+
+    @Override
+    public void setVersion(int version) {
+        execSQL("PRAGMA user_version = " + version);
+    }
+
+    @Override
+    public long getMaximumSize() {
+        return simpleQueryForLong("PRAGMA max_page_count;", EMPTY_BIND_ARGS) * getPageSize();
+    }
+
+    @Override
+    public long setMaximumSize(long numBytes) {
+        long pageSize = getPageSize();
+        long numPages = numBytes / pageSize;
+        // If numBytes isn't a multiple of pageSize, bump up a page
+        if ((numBytes % pageSize) != 0) {
+            numPages++;
+        }
+        long newPageCount = simpleQueryForLong("PRAGMA max_page_count = " + numPages,
+                EMPTY_BIND_ARGS);
+        return newPageCount * pageSize;
+    }
+
+    @Override
+    public long getPageSize() {
+        return simpleQueryForLong("PRAGMA page_size;", EMPTY_BIND_ARGS);
+    }
+
+    @Override
+    public void setPageSize(long numBytes) {
+        execSQL("PRAGMA page_size = " + numBytes);
+    }
+
+    @Override
+    public Cursor query(String query) {
+        return query(new SimpleSQLiteQuery(query));
+    }
+
+    @Override
+    public Cursor query(String query, Object[] bindArgs) {
+        return query(new SimpleSQLiteQuery(query, bindArgs));
+    }
+
+    @Override
+    public Cursor query(SupportSQLiteQuery supportQuery) {
+        return query(supportQuery, null);
+    }
+
+    @Override
+    public Cursor query(SupportSQLiteQuery supportQuery,
+            CancellationSignal cancellationSignal) {
+        JdbcSQLiteProgram program = new JdbcSQLiteProgram();
+        supportQuery.bindTo(program);
+        return query(supportQuery.getSql(), program.getBindArgs(), cancellationSignal, true);
+    }
+
+    private Cursor query(String sql, Object[] bindArgs,
+            @Nullable CancellationSignal cancellationSignal, boolean allowReader) {
+        return JdbcCursor.open((startPosition, requiredPosition, countAllRows) -> {
+            StatementBody<JdbcCursor.Window> body = statement -> {
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return JdbcCursor.readWindow(resultSet, startPosition, requiredPosition,
+                            countAllRows);
+                }
+            };
+            // each window is read on whichever connection is free at that point, like the
+            // framework cursor re-running its query for a window it has not read yet
+            boolean onReader = allowReader && canUseReader(sql);
+            JfrTracer.QueryEvent event = JfrTracer.beginQuery(sql, onReader);
+            JdbcCursor.Window window = null;
+            try {
+                window = onReader
+                        ? runOnReader(sql, bindArgs, cancellationSignal, body)
+                        : run(sql, bindArgs, cancellationSignal, body);
+                return window;
+            } finally {
+                JfrTracer.endQuery(event, window);
+            }
+        });
+    }
+
+    @Override
+    public long insert(String table, int conflictAlgorithm, ContentValues values)
+            throws SQLException {
+        // taken from SQLiteDatabase class.
+        StringBuilder sql = new StringBuilder();
+        sql.append("INSERT");
+        sql.append(CONFLICT_VALUES[conflictAlgorithm]);
+        sql.append(" INTO ");
+        sql.append(table);
+        int size = (values != null && values.size() > 0) ? values.size() : 0;
+        Object[] bindArgs = new Object[size];
+        if (size > 0) {
+            sql.append('(');
+            int i = 0;
+            for (String colName : values.keySet()) {
+                sql.append((i > 0) ? "," : "");
+                sql.append(colName);
+                bindArgs[i++] = values.get(colName);
+            }
+            sql.append(')');
+            sql.append(" VALUES (");
+            for (i = 0; i < size; i++) {
+                sql.append((i > 0) ? ",?" : "?");
+            }
+            sql.append(')');
+        } else {
+            sql.append(" DEFAULT VALUES");
+        }
+        return executeInsert(sql.toString(), bindArgs);
+    }
+
+    @Override
+    public int delete(String table, String whereClause, Object[] whereArgs) {
+        String query = "DELETE FROM " + table
+                + (isEmpty(whereClause) ? "" : " WHERE " + whereClause);
+        SupportSQLiteStatement statement = compileStatement(query);
+        SimpleSQLiteQuery.bind(statement, whereArgs);
+        return statement.executeUpdateDelete();
+    }
+
+    @Override
+    public int update(String table, int conflictAlgorithm, ContentValues values, String whereClause,
+            Object[] whereArgs) {
+        // taken from SQLiteDatabase class.
+        if (values == null || values.size() == 0) {
+            throw new IllegalArgumentException("Empty values");
+        }
+        StringBuilder sql = new StringBuilder(120);
+        sql.append("UPDATE ");
+        sql.append(CONFLICT_VALUES[conflictAlgorithm]);
+        sql.append(table);
+        sql.append(" SET ");
+
+        // move all bind args to one array
+        int setValuesSize = values.size();
+        int bindArgsSize = (whereArgs == null) ? setValuesSize : (setValuesSize + whereArgs.length);
+        Object[] bindArgs = new Object[bindArgsSize];
+        int i = 0;
+        for (String colName : values.keySet()) {
+            sql.append((i > 0) ? "," : "");
+            sql.append(colName);
+            bindArgs[i++] = values.get(colName);
+            sql.append("=?");
+        }
+        if (whereArgs != null) {
+            for (i = setValuesSize; i < bindArgsSize; i++) {
+                bindArgs[i] = whereArgs[i - setValuesSize];
+            }
+        }
+        if (!isEmpty(whereClause)) {
+            sql.append(" WHERE ");
+            sql.append(whereClause);
+        }
+        return executeUpdateDelete(sql.toString(), bindArgs);
+    }
+
+    @Override
+    public void execSQL(String sql) throws SQLException {
+        execute(sql, EMPTY_BIND_ARGS);
+    }
+
+    @Override
+    public void execSQL(String sql, Object[] bindArgs) throws SQLException {
+        if (bindArgs == null) {
+            throw new IllegalArgumentException("Empty bindArgs");
+        }
+        execute(sql, bindArgs);
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !mClosed;
+    }
+
+    @Override
+    public boolean needUpgrade(int newVersion) {
+        return newVersion > getVersion();
+    }
+
+    @Override
+    public String getPath() {
+        return mPath;
+    }
+
+    @Override
+    public void setLocale(Locale locale) {
+        // the JDBC driver has no LOCALIZED collation to configure, BINARY and NOCASE are
+        // always available.
+    }
+
+    @Override
+    public void setMaxSqlCacheSize(int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("expected value between 0 and 100");
+        }
+        mMaxSqlCacheSize = cacheSize;
+        mLock.lock();
+        try {
+            mPrimary.mStatementCache.resize(cacheSize);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public void setForeignKeyConstraintsEnabled(boolean enable) {
+        if (inTransaction()) {
+            throw new IllegalStateException("Foreign key constraints may not be changed while in"
+                    + " a transaction");
+        }
+        execSQL("PRAGMA foreign_keys = " + (enable ? "ON" : "OFF"));
+    }
+
+    @Override
+    public boolean enableWriteAheadLogging() {
+        if (MEMORY_DB_PATH.equals(mPath)) {
+            return false;
+        }
+        if (!setJournalMode("WAL")) {
+            return false;
+        }
+        // same durability trade-off the framework makes for WAL connections
+        execSQL("PRAGMA synchronous = NORMAL");
+        mReadersEnabled = true;
+        return true;
+    }
+
+    @Override
+    public void disableWriteAheadLogging() {
+        mReadersEnabled = false;
+        // leaving WAL needs the only connection to the file, readers in use close on release
+        closeIdleReaders();
+        if (isWriteAheadLoggingEnabled()) {
+            setJournalMode("DELETE");
+            execSQL("PRAGMA synchronous = FULL");
+        }
+    }
+
+    @Override
+    public boolean isWriteAheadLoggingEnabled() {
+        return "wal".equalsIgnoreCase(simpleQueryForString("PRAGMA journal_mode;",
+                EMPTY_BIND_ARGS));
+    }
+
+    private boolean setJournalMode(String mode) {
+        String newMode = simpleQueryForString("PRAGMA journal_mode = " + mode, EMPTY_BIND_ARGS);
+        return mode.equalsIgnoreCase(newMode);
+    }
+
+    @Override
+    public List<Pair<String, String>> getAttachedDbs() {
+        List<Pair<String, String>> attachedDbs = new ArrayList<>();
+        // databases are attached to the primary connection only
+        try (Cursor cursor = query("PRAGMA database_list;", EMPTY_BIND_ARGS, null, false)) {
+            while (cursor.moveToNext()) {
+                attachedDbs.add(new Pair<>(cursor.getString(1), cursor.getString(2)));
+            }
+        }
+        return attachedDbs;
+    }
+
+    @Override
+    public boolean isDatabaseIntegrityOk() {
+        for (Pair<String, String> attachedDb : getAttachedDbs()) {
+            String result = simpleQueryForString(
+                    "PRAGMA " + attachedDb.first + ".integrity_check(1);", EMPTY_BIND_ARGS);
+            if (!"ok".equalsIgnoreCase(result)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        mLock.lock();
+        try {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            mPrimary.close();
+        } catch (java.sql.SQLException e) {
+            throw toSQLiteException(e);
+        } finally {
+            mLock.unlock();
+        }
+        closeIdleReaders();
+    }
+
+    void execute(String sql, Object[] bindArgs) {
+        runStatement(sql, bindArgs, statement -> {
+            if (statement.execute()) {
+                // a pragma may return its new value, there is nothing to read from it
+                statement.getResultSet().close();
+            }
+            return null;
+        });
+    }
+
+    int executeUpdateDelete(String sql, Object[] bindArgs) {
+        return runStatement(sql, bindArgs, PreparedStatement::executeUpdate);
+    }
+
+    long executeInsert(String sql, Object[] bindArgs) {
+        return runStatement(sql, bindArgs, statement -> {
+            if (statement.executeUpdate() == 0) {
+                return -1L;
+            }
+            // still holding the lock, no other insert can run in between
+            return simpleQueryForLong("SELECT last_insert_rowid();", EMPTY_BIND_ARGS);
+        });
+    }
+
+    long simpleQueryForLong(String sql, Object[] bindArgs) {
+        return runStatement(sql, bindArgs, statement -> {
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    throw new SQLiteDoneException();
+                }
+                return resultSet.getLong(1);
+            }
+        });
+    }
+
+    String simpleQueryForString(String sql, Object[] bindArgs) {
+        return runStatement(sql, bindArgs, statement -> {
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    throw new SQLiteDoneException();
+                }
+                return resultSet.getString(1);
+            }
+        });
+    }
+
+    private <T> T runStatement(String sql, Object[] bindArgs, StatementBody<T> body) {
+        JfrTracer.StatementEvent event = JfrTracer.beginStatement(sql);
+        try {
+            return run(sql, bindArgs, null, body);
+        } finally {
+            JfrTracer.endStatement(event);
+        }
+    }
+
+    /**
+     * Runs the given body with a prepared statement for {@code sql} on the primary connection,
+     * while holding its lock.
+     */
+    private <T> T run(String sql, Object[] bindArgs,
+            @Nullable CancellationSignal cancellationSignal, StatementBody<T> body) {
+        if (cancellationSignal != null) {
+            cancellationSignal.throwIfCanceled();
+        }
+        mLock.lock();
+        try {
+            if (mClosed) {
+                throw new IllegalStateException(
+                        "attempt to re-open an already-closed object: " + mPath);
+            }
+            return runOn(mPrimary, sql, bindArgs, cancellationSignal, body);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Runs the given body with a prepared statement for {@code sql} on a read-only connection
+     * taken from the pool, waiting for one if all of them are in use.
+     */
+    private <T> T runOnReader(String sql, Object[] bindArgs,
+            @Nullable CancellationSignal cancellationSignal, StatementBody<T> body) {
+        if (cancellationSignal != null) {
+            cancellationSignal.throwIfCanceled();
+        }
+        Session reader = acquireReader();
+        try {
+            return runOn(reader, sql, bindArgs, cancellationSignal, body);
+        } finally {
+            releaseReader(reader);
+        }
+    }
+
+    private boolean canUseReader(String sql) {
+        // a transaction must see its own writes, which only the primary connection has
+        return mReadersEnabled && !mLock.isHeldByCurrentThread()
+                && DatabaseUtils.getSqlStatementType(sql) == DatabaseUtils.STATEMENT_SELECT;
+    }
+
+    /**
+     * Runs the given body on the given connection, translating JDBC failures into the
+     * framework's SQLite exceptions. The caller has exclusive use of the connection.
+     */
+    private static <T> T runOn(Session session, String sql, Object[] bindArgs,
+            @Nullable CancellationSignal cancellationSignal, StatementBody<T> body) {
+        try {
+            PreparedStatement statement = session.mStatementCache.acquire(session.mConnection,
+                    sql);
+            try {
+                bind(statement, bindArgs);
+                if (cancellationSignal == null) {
+                    return body.run(statement);
+                }
+                cancellationSignal.setOnCancelListener(() -> cancel(statement));
+                try {
+                    // the listener above does nothing if the signal fired before it was set
+                    cancellationSignal.throwIfCanceled();
+                    return body.run(statement);
+                } finally {
+                    cancellationSignal.setOnCancelListener(null);
+                }
+            } finally {
+                session.mStatementCache.release(sql, statement);
+            }
+        } catch (java.sql.SQLException e) {
+            if (cancellationSignal != null && cancellationSignal.isCanceled()) {
+                throw new OperationCanceledException();
+            }
+            throw toSQLiteException(e);
+        }
+    }
+
+    private Session acquireReader() {
+        Session reader;
+        boolean interrupted = false;
+        synchronized (mIdleReaders) {
+            try {
+                while (true) {
+                    if (mClosed) {
+                        throw new IllegalStateException(
+                                "attempt to re-open an already-closed object: " + mPath);
+                    }
+                    reader = mIdleReaders.poll();
+                    if (reader != null || mReaderCount < MAX_READER_CONNECTIONS) {
+                        break;
+                    }
+                    try {
+                        mIdleReaders.wait();
+                    } catch (InterruptedException e) {
+                        // like the framework pool, keep waiting and restore the flag after
+                        interrupted = true;
+                    }
+                }
+                if (reader == null) {
+                    mReaderCount++;
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        try {
+            if (reader == null) {
+                reader = new Session(openConnection(mPath, true), mMaxSqlCacheSize);
+            }
+            reader.mStatementCache.resize(mMaxSqlCacheSize);
+            applyPerConnectionSql(reader);
+            return reader;
+        } catch (RuntimeException | java.sql.SQLException e) {
+            if (reader != null) {
+                discardReader(reader);
+            } else {
+                synchronized (mIdleReaders) {
+                    mReaderCount--;
+                    mIdleReaders.notifyAll();
+                }
+            }
+            throw e instanceof java.sql.SQLException
+                    ? toSQLiteException((java.sql.SQLException) e) : (RuntimeException) e;
+        }
+    }
+
+    private void applyPerConnectionSql(Session reader) throws java.sql.SQLException {
+        List<Pair<String, Object[]>> pending;
+        synchronized (mIdleReaders) {
+            pending = new ArrayList<>(mPerConnectionSql.subList(reader.mPerConnectionSqlCount,
+                    mPerConnectionSql.size()));
+        }
+        for (Pair<String, Object[]> sql : pending) {
+            try (PreparedStatement statement = reader.mConnection.prepareStatement(sql.first)) {
+                bind(statement, sql.second);
+                if (statement.execute()) {
+                    statement.getResultSet().close();
+                }
+            }
+            reader.mPerConnectionSqlCount++;
+        }
+    }
+
+    private void releaseReader(Session reader) {
+        synchronized (mIdleReaders) {
+            if (!mClosed && mReadersEnabled) {
+                mIdleReaders.push(reader);
+                mIdleReaders.notifyAll();
+                return;
+            }
+        }
+        discardReader(reader);
+    }
+
+    private void discardReader(Session reader) {
+        reader.closeQuietly();
+        synchronized (mIdleReaders) {
+            mReaderCount--;
+            mIdleReaders.notifyAll();
+        }
+    }
+
+    private void closeIdleReaders() {
+        List<Session> readers;
+        synchronized (mIdleReaders) {
+            readers = new ArrayList<>(mIdleReaders);
+            mIdleReaders.clear();
+        }
+        for (Session reader : readers) {
+            discardReader(reader);
+        }
+    }
+
+    private static void bind(PreparedStatement statement, Object[] bindArgs)
+            throws java.sql.SQLException {
+        int parameterCount = statement.getParameterMetaData().getParameterCount();
+        if (bindArgs.length > parameterCount) {
+            throw new IllegalArgumentException("Too many bind arguments.  "
+                    + bindArgs.length + " arguments were provided but the statement needs "
+                    + parameterCount + " arguments.");
+        }
+        for (int i = 0; i < parameterCount; i++) {
+            // arguments that were never bound are NULL, as in the framework
+            Object arg = i < bindArgs.length ? bindArgs[i] : null;
+            int index = i + 1;
+            if (arg == null) {
+                statement.setNull(index, Types.NULL);
+            } else if (arg instanceof byte[]) {
+                statement.setBytes(index, (byte[]) arg);
+            } else if (arg instanceof Double || arg instanceof Float) {
+                statement.setDouble(index, ((Number) arg).doubleValue());
+            } else if (arg instanceof Number) {
+                statement.setLong(index, ((Number) arg).longValue());
+            } else if (arg instanceof Boolean) {
+                statement.setLong(index, (Boolean) arg ? 1 : 0);
+            } else {
+                statement.setString(index, arg.toString());
+            }
+        }
+    }
+
+    private static void cancel(PreparedStatement statement) {
+        try {
+            statement.cancel();
+        } catch (java.sql.SQLException ignored) {
+            // the statement already finished
+        }
+    }
+
+    /**
+     * Maps a JDBC failure to the framework exception for the same SQLite result code.
+     */
+    static SQLiteException toSQLiteException(java.sql.SQLException e) {
+        String message = e.getMessage();
+        SQLiteException exception;
+        switch (e.getErrorCode() & 0xff) {
+            case SQLITE_ABORT:
+                exception = new SQLiteAbortException(message);
+                break;
+            case SQLITE_BUSY:
+            case SQLITE_LOCKED:
+                exception = new SQLiteDatabaseLockedException(message);
+                break;
+            case SQLITE_READONLY:
+                exception = new SQLiteReadOnlyDatabaseException(message);
+                break;
+            case SQLITE_IOERR:
+                exception = new SQLiteDiskIOException(message);
+                break;
+            case SQLITE_CORRUPT:
+            case SQLITE_NOTADB:
+                exception = new SQLiteDatabaseCorruptException(message);
+                break;
+            case SQLITE_FULL:
+                exception = new SQLiteFullException(message);
+                break;
+            case SQLITE_CANTOPEN:
+                exception = new SQLiteCantOpenDatabaseException(message);
+                break;
+            case SQLITE_CONSTRAINT:
+                exception = new SQLiteConstraintException(message);
+                break;
+            case SQLITE_MISMATCH:
+                exception = new SQLiteDatatypeMismatchException(message);
+                break;
+            default:
+                exception = new SQLiteException(message);
+                break;
+        }
+        exception.initCause(e);
+        return exception;
+    }
+
+    /**
+     * A JDBC connection together with the statements prepared on it.
+     */
+    private static final class Session {
+        final Connection mConnection;
+        final StatementCache mStatementCache;
+        // how many per-connection statements have run on this connection, readers only
+        int mPerConnectionSqlCount;
+
+        Session(Connection connection, int maxSqlCacheSize) {
+            mConnection = connection;
+            mStatementCache = new StatementCache(maxSqlCacheSize);
+        }
+
+        void close() throws java.sql.SQLException {
+            mStatementCache.resize(0);
+            mConnection.close();
+        }
+
+        void closeQuietly() {
+            try {
+                close();
+            } catch (java.sql.SQLException ignored) {
+                // nothing to recover, the connection is discarded
+            }
+        }
+    }
+
+    private interface StatementBody<T> {
+        T run(PreparedStatement statement) throws java.sql.SQLException;
+    }
+
+    private static final class Transaction {
+        @Nullable
+        final SQLiteTransactionListener mListener;
+        @Nullable
+        final JfrTracer.TransactionEvent mEvent;
+        boolean mMarkedSuccessful;
+        boolean mChildFailed;
+
+        Transaction(@Nullable SQLiteTransactionListener listener,
+                @Nullable JfrTracer.TransactionEvent event) {
+            mListener = listener;
+            mEvent = event;
+        }
+    }
+
+    /**
+     * An LRU cache of prepared statements keyed by their SQL. A statement is taken out of the
+     * cache while it runs so a nested call with the same SQL prepares its own.
+     */
+    private static final class StatementCache {
+        private final LinkedHashMap<String, PreparedStatement> mStatements =
+                new LinkedHashMap<>(16, 0.75f, true);
+        private int mMaxSize;
+
+        StatementCache(int maxSize) {
+            mMaxSize = maxSize;
+        }
+
+        PreparedStatement acquire(Connection connection, String sql)
+                throws java.sql.SQLException {
+            PreparedStatement statement = mStatements.remove(sql);
+            return statement != null ? statement : connection.prepareStatement(sql);
+        }
+
+        void release(String sql, PreparedStatement statement) {
+            try {
+                statement.clearParameters();
+            } catch (java.sql.SQLException e) {
+                closeQuietly(statement);
+                return;
+            }
+            PreparedStatement previous = mStatements.put(sql, statement);
+            if (previous != null) {
+                closeQuietly(previous);
+            }
+            trimToSize();
+        }
+
+        void resize(int maxSize) {
+            mMaxSize = maxSize;
+            trimToSize();
+        }
+
+        private void trimToSize() {
+            while (mStatements.size() > mMaxSize) {
+                Map.Entry<String, PreparedStatement> eldest =
+                        mStatements.entrySet().iterator().next();
+                mStatements.remove(eldest.getKey());
+                closeQuietly(eldest.getValue());
+            }
+        }
+
+        private static void closeQuietly(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (java.sql.SQLException ignored) {
+                // nothing to recover, the statement is discarded
+            }
+        }
+    }
+}
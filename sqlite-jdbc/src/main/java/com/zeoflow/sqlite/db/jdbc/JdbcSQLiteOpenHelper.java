@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.sqlite.db.jdbc;
+
+import android.database.sqlite.SQLiteCantOpenDatabaseException;
+import android.database.sqlite.SQLiteDatabaseCorruptException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.zeoflow.sqlite.db.SupportSQLiteDatabase;
+import com.zeoflow.sqlite.db.SupportSQLiteOpenHelper;
+
+import java.io.File;
+
+/**
+ * Opens a {@link JdbcSQLiteDatabase} and runs the {@link SupportSQLiteOpenHelper.Callback}
+ * steps around it the way the framework's open helper does: configure, create, upgrade or
+ * downgrade inside a transaction, then open.
+ */
+class JdbcSQLiteOpenHelper implements SupportSQLiteOpenHelper {
+    private static final String MEMORY_DB_PATH = ":memory:";
+
+    @Nullable
+    private final String mName;
+    @NonNull
+    private final String mPath;
+    @NonNull
+    private final Callback mCallback;
+    private final Object mLock = new Object();
+    // guarded by mLock
+    private JdbcSQLiteDatabase mDatabase;
+    // guarded by mLock
+    private boolean mWriteAheadLoggingEnabled;
+
+    JdbcSQLiteOpenHelper(@NonNull File directory, @Nullable String name,
+            @NonNull Callback callback) {
+        mName = name;
+        mCallback = callback;
+        if (name == null) {
+            mPath = MEMORY_DB_PATH;
+        } else {
+            File file = new File(name);
+            mPath = (file.isAbsolute() ? file : new File(directory, name)).getPath();
+        }
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return mName;
+    }
+
+    @Override
+    public void setWriteAheadLoggingEnabled(boolean enabled) {
+        synchronized (mLock) {
+            if (mDatabase != null && mDatabase.isOpen()) {
+                if (enabled) {
+                    mDatabase.enableWriteAheadLogging();
+                } else {
+                    mDatabase.disableWriteAheadLogging();
+                }
+            }
+            mWriteAheadLoggingEnabled = enabled;
+        }
+    }
+
+    @Override
+    public SupportSQLiteDatabase getWritableDatabase() {
+        synchronized (mLock) {
+            if (mDatabase == null || !mDatabase.isOpen()) {
+                mDatabase = open();
+            }
+            return mDatabase;
+        }
+    }
+
+    @Override
+    public SupportSQLiteDatabase getReadableDatabase() {
+        // like the framework helper, the readable database is the writable one, its queries
+        // use the read-only connections once write-ahead logging is enabled
+        return getWritableDatabase();
+    }
+
+    @Override
+    public void close() {
+        synchronized (mLock) {
+            if (mDatabase != null) {
+                mDatabase.close();
+                mDatabase = null;
+            }
+        }
+    }
+
+    private JdbcSQLiteDatabase open() {
+        if (!MEMORY_DB_PATH.equals(mPath)) {
+            File parent = new File(mPath).getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new SQLiteCantOpenDatabaseException("Cannot create the directory for "
+                        + mPath);
+            }
+        }
+        JdbcSQLiteDatabase db = new JdbcSQLiteDatabase(
+                JdbcSQLiteDatabase.openConnection(mPath, false), mPath);
+        try {
+            mCallback.onConfigure(db);
+            if (mWriteAheadLoggingEnabled) {
+                db.enableWriteAheadLogging();
+            }
+            int version = db.getVersion();
+            if (version != mCallback.version) {
+                db.beginTransaction();
+                try {
+                    if (version == 0) {
+                        mCallback.onCreate(db);
+                    } else if (version > mCallback.version) {
+                        mCallback.onDowngrade(db, version, mCallback.version);
+                    } else {
+                        mCallback.onUpgrade(db, version, mCallback.version);
+                    }
+                    db.setVersion(mCallback.version);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+            mCallback.onOpen(db);
+            return db;
+        } catch (SQLiteDatabaseCorruptException e) {
+            mCallback.onCorruption(db);
+            throw e;
+        } catch (RuntimeException e) {
+            db.close();
+            throw e;
+        }
+    }
+}
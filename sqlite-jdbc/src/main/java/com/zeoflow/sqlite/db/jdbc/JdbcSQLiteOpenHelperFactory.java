@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.sqlite.db.jdbc;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.zeoflow.sqlite.db.SupportSQLiteOpenHelper;
+
+import java.io.File;
+
+/**
+ * Implements {@link SupportSQLiteOpenHelper.Factory} using the SQLite library bundled with the
+ * sqlite-jdbc driver instead of the Android framework SQLite implementation.
+ * <p>
+ * This is a plain Java library. It brings the framework's {@code android.database} classes from
+ * android-all, so the helpers and the databases they open can be used directly on a JVM, e.g.
+ * by a desktop tool or a server process that shares a Depot schema:
+ * <pre>
+ * SupportSQLiteOpenHelper helper =
+ *         new JdbcSQLiteOpenHelperFactory(dataDir).create("app.db", callback);
+ * SupportSQLiteDatabase db = helper.getWritableDatabase();
+ * </pre>
+ * A {@code DepotDatabase} on top of them still needs an Android environment such as
+ * Robolectric, since the runtime reads {@code android.os.Build} and the main looper.
+ * <p>
+ * Database names are resolved against the directory given to the constructor, the context of
+ * the {@link SupportSQLiteOpenHelper.Configuration} is not used. A {@code null} name opens an
+ * in-memory database.
+ */
+@SuppressWarnings("unused")
+public final class JdbcSQLiteOpenHelperFactory implements SupportSQLiteOpenHelper.Factory {
+    @NonNull
+    private final File mDirectory;
+
+    /**
+     * Creates a factory that keeps database files in the given directory.
+     *
+     * @param directory The directory that relative database names are resolved against.
+     */
+    public JdbcSQLiteOpenHelperFactory(@NonNull File directory) {
+        mDirectory = directory;
+    }
+
+    @NonNull
+    @Override
+    public SupportSQLiteOpenHelper create(
+            @NonNull SupportSQLiteOpenHelper.Configuration configuration) {
+        return create(configuration.name, configuration.callback);
+    }
+
+    /**
+     * Creates a helper without a {@link SupportSQLiteOpenHelper.Configuration}, which needs an
+     * Android {@code Context} that a plain JVM does not have.
+     *
+     * @param name     Name of the database file, or null for an in-memory database.
+     * @param callback The callback class to handle creation, upgrade and downgrade.
+     * @return A new helper for the database.
+     */
+    @NonNull
+    public SupportSQLiteOpenHelper create(@Nullable String name,
+            @NonNull SupportSQLiteOpenHelper.Callback callback) {
+        return new JdbcSQLiteOpenHelper(mDirectory, name, callback);
+    }
+}
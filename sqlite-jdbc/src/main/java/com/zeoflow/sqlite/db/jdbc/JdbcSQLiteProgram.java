@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.sqlite.db.jdbc;
+
+import com.zeoflow.sqlite.db.SupportSQLiteProgram;
+
+import java.util.Arrays;
+
+/**
+ * Collects the arguments bound to a {@link SupportSQLiteProgram} so they can be applied to a
+ * JDBC statement once it is executed.
+ */
+class JdbcSQLiteProgram implements SupportSQLiteProgram {
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
+    private Object[] mBindArgs = EMPTY_ARGS;
+
+    @Override
+    public void bindNull(int index) {
+        bind(index, null);
+    }
+
+    @Override
+    public void bindLong(int index, long value) {
+        bind(index, value);
+    }
+
+    @Override
+    public void bindDouble(int index, double value) {
+        bind(index, value);
+    }
+
+    @Override
+    public void bindString(int index, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("the bind value at index " + index + " is null");
+        }
+        bind(index, value);
+    }
+
+    @Override
+    public void bindBlob(int index, byte[] value) {
+        if (value == null) {
+            throw new IllegalArgumentException("the bind value at index " + index + " is null");
+        }
+        bind(index, value);
+    }
+
+    @Override
+    public void clearBindings() {
+        mBindArgs = EMPTY_ARGS;
+    }
+
+    @Override
+    public void close() {
+        clearBindings();
+    }
+
+    /**
+     * Returns the bound arguments, where the value bound to index {@code i} is at {@code i - 1}.
+     * Indices that were never bound are {@code null}.
+     */
+    Object[] getBindArgs() {
+        return mBindArgs;
+    }
+
+    private void bind(int index, Object value) {
+        if (index < 1) {
+            throw new IllegalArgumentException("Cannot bind argument at index " + index);
+        }
+        if (index > mBindArgs.length) {
+            mBindArgs = Arrays.copyOf(mBindArgs, index);
+        }
+        mBindArgs[index - 1] = value;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zeoflow.sqlite.db.jdbc;
+
+import com.zeoflow.sqlite.db.SupportSQLiteStatement;
+
+/**
+ * Implements {@link SupportSQLiteStatement} by running the statement's SQL on the JDBC
+ * connection of a {@link JdbcSQLiteDatabase} each time it is executed.
+ */
+class JdbcSQLiteStatement extends JdbcSQLiteProgram implements SupportSQLiteStatement {
+    private final JdbcSQLiteDatabase mDatabase;
+    private final String mSql;
+
+    JdbcSQLiteStatement(JdbcSQLiteDatabase database, String sql) {
+        mDatabase = database;
+        mSql = sql;
+    }
+
+    @Override
+    public void execute() {
+        mDatabase.execute(mSql, getBindArgs());
+    }
+
+    @Override
+    public int executeUpdateDelete() {
+        return mDatabase.executeUpdateDelete(mSql, getBindArgs());
+    }
+
+    @Override
+    public long executeInsert() {
+        return mDatabase.executeInsert(mSql, getBindArgs());
+    }
+
+    @Override
+    public long simpleQueryForLong() {
+        return mDatabase.simpleQueryForLong(mSql, getBindArgs());
+    }
+
+    @Override
+    public String simpleQueryForString() {
+        return mDatabase.simpleQueryForString(mSql, getBindArgs());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2021 ZeoFlow SRL
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zeoflow.sqlite.db.jdbc;
+
+import androidx.annotation.Nullable;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Emits Java Flight Recorder events for the transactions, statements and queries a
+ * {@link JdbcSQLiteDatabase} runs, the JVM counterpart of the runtime's {@code SystraceTracer}.
+ * <p>
+ * The events are part of every recording. Like the JDK's file and socket events they have a
+ * default threshold of 20 ms, which a recording setting can lower, e.g.
+ * {@code com.zeoflow.depot.Query#threshold=0 ms}. When no recording enables them, each hook
+ * costs one enabled check.
+ */
+final class JfrTracer {
+    private JfrTracer() {
+    }
+
+    @Nullable
+    static TransactionEvent beginTransaction(boolean exclusive) {
+        TransactionEvent event = new TransactionEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.exclusive = exclusive;
+        event.begin();
+        return event;
+    }
+
+    static void endTransaction(@Nullable TransactionEvent event, boolean successful) {
+        if (event != null) {
+            event.successful = successful;
+            event.commit();
+        }
+    }
+
+    @Nullable
+    static StatementEvent beginStatement(String sql) {
+        StatementEvent event = new StatementEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.sql = sql;
+        event.begin();
+        return event;
+    }
+
+    static void endStatement(@Nullable StatementEvent event) {
+        if (event != null) {
+            event.commit();
+        }
+    }
+
+    @Nullable
+    static QueryEvent beginQuery(String sql, boolean readOnlyConnection) {
+        QueryEvent event = new QueryEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.sql = sql;
+        event.readOnlyConnection = readOnlyConnection;
+        event.begin();
+        return event;
+    }
+
+    static void endQuery(@Nullable QueryEvent event, @Nullable JdbcCursor.Window window) {
+        if (event != null) {
+            if (window != null) {
+                event.windowStart = window.mStart;
+                event.windowRows = window.mRows.size();
+                event.count = window.mCount;
+            } else {
+                event.windowStart = -1;
+                event.windowRows = -1;
+                event.count = -1;
+            }
+            event.commit();
+        }
+    }
+
+    @Name("com.zeoflow.depot.Transaction")
+    @Label("Depot Transaction")
+    @Description("A SQLite transaction, from the wait for the primary connection until it"
+            + " ended")
+    @Category({"Depot", "SQLite"})
+    @Threshold("20 ms")
+    static final class TransactionEvent extends Event {
+        @Label("Exclusive")
+        boolean exclusive;
+
+        @Label("Successful")
+        @Description("Whether the transaction was marked successful, a nested transaction is"
+                + " only committed with its outermost one")
+        boolean successful;
+    }
+
+    @Name("com.zeoflow.depot.Statement")
+    @Label("Depot Statement")
+    @Description("A SQLite statement that is not a query, run on the primary connection")
+    @Category({"Depot", "SQLite"})
+    @Threshold("20 ms")
+    static final class StatementEvent extends Event {
+        @Label("SQL")
+        String sql;
+    }
+
+    @Name("com.zeoflow.depot.Query")
+    @Label("Depot Query")
+    @Description("A run of a SQLite query that read one window of its cursor")
+    @Category({"Depot", "SQLite"})
+    @Threshold("20 ms")
+    static final class QueryEvent extends Event {
+        @Label("SQL")
+        String sql;
+
+        @Label("Read-Only Connection")
+        @Description("Whether the query ran on a write-ahead logging reader connection")
+        boolean readOnlyConnection;
+
+        @Label("Window Start")
+        @Description("Position of the first row read, -1 if the query failed")
+        int windowStart;
+
+        @Label("Window Rows")
+        @Description("Number of rows read, -1 if the query failed")
+        int windowRows;
+
+        @Label("Row Count")
+        @Description("Number of rows in the result, -1 if they were not counted")
+        int count;
+    }
+}